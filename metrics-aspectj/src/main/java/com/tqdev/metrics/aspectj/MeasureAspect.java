@@ -20,6 +20,9 @@
  */
 package com.tqdev.metrics.aspectj;
 
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.aspectj.lang.JoinPoint;
 import org.aspectj.lang.ProceedingJoinPoint;
 import org.aspectj.lang.annotation.Around;
 import org.aspectj.lang.annotation.Aspect;
@@ -36,6 +39,15 @@ public class MeasureAspect {
 	/** The metric registry. */
 	private final MetricRegistry registry = MetricRegistry.getInstance();
 
+	/** The types by category, so that they are not concatenated per invocation. */
+	private final ConcurrentHashMap<String, String> types = new ConcurrentHashMap<>();
+
+	/**
+	 * The signatures by (static part of the) join point, so that they are not
+	 * formatted per invocation.
+	 */
+	private final ConcurrentHashMap<JoinPoint.StaticPart, String> signatures = new ConcurrentHashMap<>();
+
 	/**
 	 * Measure the total duration and invocation count of public functions of a
 	 * class using the "MeasuredClass" annotation. This method should not be invoked
@@ -60,13 +72,12 @@ public class MeasureAspect {
 		long start = registry.getNanos();
 		Object result = joinPoint.proceed();
 		long duration = registry.getNanos() - start;
-		String signature = joinPoint.getSignature().toShortString();
+		String signature = getSignature(joinPoint);
 		String category = annotation.category();
 		if (category.length() == 0) {
 			category = "Uncategorized";
 		}
-		registry.increment("aspectj." + category + ".Invocations", signature);
-		registry.add("aspectj." + category + ".Durations", signature, duration);
+		registry.record(getType(category), signature, duration);
 		return result;
 	}
 
@@ -100,11 +111,40 @@ public class MeasureAspect {
 		}
 		String signature = annotation.signature();
 		if (signature.length() == 0) {
-			signature = joinPoint.getSignature().toShortString();
+			signature = getSignature(joinPoint);
 		}
-		registry.increment("aspectj." + category + ".Invocations", signature);
-		registry.add("aspectj." + category + ".Durations", signature, duration);
+		registry.record(getType(category), signature, duration);
 		return result;
 	}
 
-}
\ No newline at end of file
+	/**
+	 * Gets the (short) signature of a join point.
+	 *
+	 * @param joinPoint
+	 *            the join point
+	 * @return the signature
+	 */
+	private String getSignature(JoinPoint joinPoint) {
+		JoinPoint.StaticPart staticPart = joinPoint.getStaticPart();
+		String signature = signatures.get(staticPart);
+		if (signature == null) {
+			signature = signatures.computeIfAbsent(staticPart, p -> p.getSignature().toShortString());
+		}
+		return signature;
+	}
+
+	/**
+	 * Gets the type for a category.
+	 *
+	 * @param category
+	 *            the category
+	 * @return the type
+	 */
+	private String getType(String category) {
+		String type = types.get(category);
+		if (type == null) {
+			type = types.computeIfAbsent(category, c -> "aspectj." + c);
+		}
+		return type;
+	}
+}
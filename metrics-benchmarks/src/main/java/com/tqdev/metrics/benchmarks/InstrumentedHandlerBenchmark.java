@@ -0,0 +1,156 @@
+/* Copyright (C) 2017 Maurits van der Schee
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.tqdev.metrics.benchmarks;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.eclipse.jetty.http.HttpFields;
+import org.eclipse.jetty.http.HttpURI;
+import org.eclipse.jetty.http.HttpVersion;
+import org.eclipse.jetty.http.MetaData;
+import org.eclipse.jetty.io.ByteArrayEndPoint;
+import org.eclipse.jetty.server.HttpChannel;
+import org.eclipse.jetty.server.HttpConfiguration;
+import org.eclipse.jetty.server.LocalConnector;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+import org.eclipse.jetty.server.handler.HandlerWrapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.tqdev.metrics.core.MetricRegistry;
+import com.tqdev.metrics.jetty.InstrumentedHandler;
+
+/**
+ * Benchmarks of the overhead of the instrumented Jetty handler, compared to a
+ * plain handler wrapper, on a (recycled) request that is handled immediately.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InstrumentedHandlerBenchmark {
+
+	/** The server. */
+	private Server server;
+
+	/** The channel that provides the request and response. */
+	private HttpChannel channel;
+
+	/** The meta data of the request. */
+	private MetaData.Request metaData;
+
+	/** The plain handler wrapper. */
+	private HandlerWrapper handler;
+
+	/** The instrumented handler. */
+	private InstrumentedHandler instrumentedHandler;
+
+	/**
+	 * The handler that handles every request.
+	 */
+	private static class HelloHandler extends AbstractHandler {
+
+		@Override
+		public void handle(String target, Request baseRequest, HttpServletRequest request,
+				HttpServletResponse response) throws IOException, ServletException {
+			response.setStatus(200);
+			baseRequest.setHandled(true);
+		}
+	}
+
+	/**
+	 * Creates the channel and starts the handlers.
+	 *
+	 * @throws Exception
+	 *             the exception
+	 */
+	@Setup
+	public void setUp() throws Exception {
+		server = new Server();
+		channel = new HttpChannel(new LocalConnector(server), new HttpConfiguration(), new ByteArrayEndPoint(),
+				null);
+		metaData = new MetaData.Request("GET", new HttpURI("/hello"), HttpVersion.HTTP_1_1, new HttpFields());
+		handler = new HandlerWrapper();
+		handler.setHandler(new HelloHandler());
+		handler.setServer(server);
+		handler.start();
+		instrumentedHandler = new InstrumentedHandler(new MetricRegistry());
+		instrumentedHandler.setHandler(new HelloHandler());
+		instrumentedHandler.setServer(server);
+		instrumentedHandler.start();
+	}
+
+	/**
+	 * Stops the handlers.
+	 *
+	 * @throws Exception
+	 *             the exception
+	 */
+	@TearDown
+	public void tearDown() throws Exception {
+		handler.stop();
+		instrumentedHandler.stop();
+	}
+
+	/**
+	 * Gets a recycled request.
+	 *
+	 * @return the request
+	 */
+	private Request request() {
+		channel.recycle();
+		Request request = channel.getRequest();
+		request.setMetaData(metaData);
+		return request;
+	}
+
+	@Benchmark
+	public boolean handle() throws IOException, ServletException {
+		Request request = request();
+		handler.handle("/hello", request, request, channel.getResponse());
+		return request.isHandled();
+	}
+
+	@Benchmark
+	public boolean handleInstrumented() throws IOException, ServletException {
+		Request request = request();
+		instrumentedHandler.handle("/hello", request, request, channel.getResponse());
+		return request.isHandled();
+	}
+}
@@ -0,0 +1,132 @@
+/* Copyright (C) 2017 Maurits van der Schee
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.tqdev.metrics.benchmarks;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.tqdev.metrics.core.MetricRegistry;
+import com.tqdev.metrics.jdbc.InstrumentedConnection;
+
+/**
+ * Benchmarks of the overhead of the JDBC instrumentation (timedExecute) on a
+ * stub statement that does nothing, compared to the stub statement itself.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InstrumentedStatementBenchmark {
+
+	/** The SQL statement. */
+	private static final String SQL = "select * from `users` where `id` = 1";
+
+	/** The stub statement. */
+	private Statement statement;
+
+	/** The instrumented (stub) statement. */
+	private Statement instrumentedStatement;
+
+	/** The stub prepared statement. */
+	private PreparedStatement preparedStatement;
+
+	/** The instrumented (stub) prepared statement. */
+	private PreparedStatement instrumentedPreparedStatement;
+
+	/**
+	 * Creates a stub that returns false, zero or null for every method.
+	 *
+	 * @param <T>
+	 *            the type of the stub
+	 * @param type
+	 *            the interface of the stub
+	 * @return the stub
+	 */
+	private static <T> T stub(Class<T> type) {
+		return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] { type }, (p, m, a) -> {
+			if (m.getReturnType() == boolean.class) {
+				return false;
+			} else if (m.getReturnType() == int.class) {
+				return 0;
+			} else if (m.getReturnType() == long.class) {
+				return 0L;
+			} else if (m.getReturnType() == Statement.class) {
+				return stub(Statement.class);
+			} else if (m.getReturnType() == PreparedStatement.class) {
+				return stub(PreparedStatement.class);
+			}
+			return null;
+		}));
+	}
+
+	/**
+	 * Creates the (instrumented) stub statements.
+	 *
+	 * @throws SQLException
+	 *             the SQL exception
+	 */
+	@Setup
+	public void setUp() throws SQLException {
+		Connection connection = stub(Connection.class);
+		Connection instrumentedConnection = new InstrumentedConnection(connection, new MetricRegistry());
+		statement = connection.createStatement();
+		instrumentedStatement = instrumentedConnection.createStatement();
+		preparedStatement = connection.prepareStatement(SQL);
+		instrumentedPreparedStatement = instrumentedConnection.prepareStatement(SQL);
+	}
+
+	@Benchmark
+	public boolean execute() throws SQLException {
+		return statement.execute(SQL);
+	}
+
+	@Benchmark
+	public boolean executeInstrumented() throws SQLException {
+		return instrumentedStatement.execute(SQL);
+	}
+
+	@Benchmark
+	public boolean executePrepared() throws SQLException {
+		return preparedStatement.execute();
+	}
+
+	@Benchmark
+	public boolean executePreparedInstrumented() throws SQLException {
+		return instrumentedPreparedStatement.execute();
+	}
+}
@@ -0,0 +1,123 @@
+/* Copyright (C) 2017 Maurits van der Schee
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.tqdev.metrics.benchmarks;
+
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.tqdev.metrics.core.MetricRegistry;
+import com.tqdev.metrics.http.MeasureRequestPathFilter;
+
+/**
+ * Benchmarks of the request path filter (that groups the path) with realistic
+ * URIs, through its public entry point with a stub request, response and
+ * chain, compared to calling the chain directly.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MeasureRequestPathFilterBenchmark {
+
+	/** The request URI. */
+	@Param({ "/", "/api/v1/users/12345/orders", "/api/v1/users/0f8fad5b-d9cb-469f-a165-70867728950e/avatar.png",
+			"/files/d41d8cd98f00b204e9800998ecf8427e/2017-11-11/report.csv" })
+	public String requestURI;
+
+	/** The filter. */
+	private MeasureRequestPathFilter filter;
+
+	/** The request. */
+	private HttpServletRequest request;
+
+	/** The response with a content type for which the path is grouped. */
+	private ServletResponse jsonResponse;
+
+	/** The response with a content type for which the path is not grouped. */
+	private ServletResponse otherResponse;
+
+	/** The chain that does nothing. */
+	private final FilterChain chain = (request, response) -> {
+	};
+
+	/**
+	 * Creates the filter and the stubs.
+	 */
+	@Setup
+	public void setUp() {
+		filter = new MeasureRequestPathFilter(new MetricRegistry(), "json|xml|html|csv");
+		request = stub(HttpServletRequest.class, "getRequestURI", requestURI);
+		jsonResponse = stub(ServletResponse.class, "getContentType", "application/json;charset=UTF-8");
+		otherResponse = stub(ServletResponse.class, "getContentType", "image/png");
+	}
+
+	/**
+	 * Creates a stub that returns a value from a single method (and null from
+	 * all others).
+	 *
+	 * @param type
+	 *            the interface
+	 * @param method
+	 *            the name of the method
+	 * @param value
+	 *            the value
+	 * @return the stub
+	 */
+	private static <T> T stub(Class<T> type, String method, Object value) {
+		return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] { type },
+				(proxy, m, args) -> m.getName().equals(method) ? value : null));
+	}
+
+	@Benchmark
+	public void baseline() throws IOException, ServletException {
+		chain.doFilter(request, jsonResponse);
+	}
+
+	@Benchmark
+	public void doFilter() throws IOException, ServletException {
+		filter.doFilter(request, jsonResponse, chain);
+	}
+
+	@Benchmark
+	public void doFilterOther() throws IOException, ServletException {
+		filter.doFilter(request, otherResponse, chain);
+	}
+}
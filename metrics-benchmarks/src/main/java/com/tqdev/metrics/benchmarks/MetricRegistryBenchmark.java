@@ -0,0 +1,136 @@
+/* Copyright (C) 2017 Maurits van der Schee
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.tqdev.metrics.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.tqdev.metrics.core.MetricRegistry;
+
+/**
+ * Benchmarks of the (look up based) metric registry operations, the nested
+ * classes run the same benchmarks with 2 up to 64 threads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(1)
+public class MetricRegistryBenchmark {
+
+	/** The number of keys that are updated. */
+	private static final int KEY_COUNT = 128;
+
+	/** The registry. */
+	private MetricRegistry registry;
+
+	/** The keys. */
+	private String[] keys;
+
+	/**
+	 * The index of the next key of a thread.
+	 */
+	@State(Scope.Thread)
+	public static class Cursor {
+
+		/** The index. */
+		int index;
+
+		/**
+		 * Gets the index of the next key.
+		 *
+		 * @return the index
+		 */
+		int next() {
+			return index = (index + 1) & (KEY_COUNT - 1);
+		}
+	}
+
+	/**
+	 * Creates the registry with all keys.
+	 */
+	@Setup
+	public void setUp() {
+		registry = new MetricRegistry();
+		keys = new String[KEY_COUNT];
+		for (int i = 0; i < KEY_COUNT; i++) {
+			keys[i] = "select * from `table" + i + "` where id = ?";
+			registry.add("jdbc.Statement.Invocations", keys[i], 1);
+		}
+	}
+
+	@Benchmark
+	public boolean increment(Cursor cursor) {
+		return registry.increment("jdbc.Statement.Invocations", keys[cursor.next()]);
+	}
+
+	@Benchmark
+	public boolean add(Cursor cursor) {
+		return registry.add("jdbc.Statement.Invocations", keys[cursor.next()], 123456);
+	}
+
+	@Benchmark
+	public long get(Cursor cursor) {
+		return registry.get("jdbc.Statement.Invocations", keys[cursor.next()]);
+	}
+
+	@Benchmark
+	public void record(Cursor cursor) {
+		registry.record("jdbc.Statement", keys[cursor.next()], 123456);
+	}
+
+	@Threads(2)
+	public static class Threads2 extends MetricRegistryBenchmark {
+	}
+
+	@Threads(4)
+	public static class Threads4 extends MetricRegistryBenchmark {
+	}
+
+	@Threads(8)
+	public static class Threads8 extends MetricRegistryBenchmark {
+	}
+
+	@Threads(16)
+	public static class Threads16 extends MetricRegistryBenchmark {
+	}
+
+	@Threads(32)
+	public static class Threads32 extends MetricRegistryBenchmark {
+	}
+
+	@Threads(64)
+	public static class Threads64 extends MetricRegistryBenchmark {
+	}
+}
@@ -0,0 +1,111 @@
+/* Copyright (C) 2017 Maurits van der Schee
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.tqdev.metrics.benchmarks;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.tqdev.metrics.core.MetricRegistry;
+import com.tqdev.metrics.influxdb.InfluxDbFileReporter;
+import com.tqdev.metrics.prometheus.PrometheusFileReporter;
+
+/**
+ * Benchmarks of the serialization of the InfluxDB and Prometheus reporters
+ * (to a stream that discards the output) for 10k and 100k series.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReporterBenchmark {
+
+	/** The number of series. */
+	@Param({ "10000", "100000" })
+	public int series;
+
+	/** The InfluxDB reporter. */
+	private InfluxDbFileReporter influxDbReporter;
+
+	/** The Prometheus reporter. */
+	private PrometheusFileReporter prometheusReporter;
+
+	/**
+	 * The output stream that counts and discards the bytes.
+	 */
+	private static class NullOutputStream extends OutputStream {
+
+		/** The number of bytes written. */
+		long count;
+
+		@Override
+		public void write(int b) {
+			count++;
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) {
+			count += len;
+		}
+	}
+
+	/**
+	 * Creates a registry with the timers and reporters.
+	 */
+	@Setup
+	public void setUp() {
+		MetricRegistry registry = new MetricRegistry();
+		registry.setMaxKeysPerType(series);
+		for (int i = 0; i < series / 2; i++) {
+			registry.record("jdbc.Statement", "select * from `table" + i + "` where id = ?", 123456 + i);
+		}
+		influxDbReporter = new InfluxDbFileReporter(registry, "localhost", "metrics", "yyyyMMdd", 10);
+		prometheusReporter = new PrometheusFileReporter(registry, "localhost", "metrics", "yyyyMMdd", 10);
+	}
+
+	@Benchmark
+	public long writeInfluxDb() throws IOException {
+		NullOutputStream out = new NullOutputStream();
+		influxDbReporter.write(out);
+		return out.count;
+	}
+
+	@Benchmark
+	public long writePrometheus() throws IOException {
+		NullOutputStream out = new NullOutputStream();
+		prometheusReporter.write(out);
+		return out.count;
+	}
+}
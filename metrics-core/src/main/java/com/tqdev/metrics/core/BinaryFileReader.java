@@ -0,0 +1,295 @@
+/* Copyright (C) 2017 Maurits van der Schee
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.tqdev.metrics.core;
+
+import static com.tqdev.metrics.core.BinaryFileWriter.*;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * The Class BinaryFileReader reads the snapshots from a file that is written
+ * by a {@link BinaryFileWriter} (or a {@link BinaryFileReporter}). Files
+ * with the ".gz" extension are decompressed while reading. A truncated last
+ * record (for instance when the writing process was killed) is ignored.
+ */
+public class BinaryFileReader implements Closeable {
+
+	/** The input. */
+	private final DataInputStream in;
+
+	/** The instance name of the current segment. */
+	private String instanceName;
+
+	/** The types of the segment. */
+	private final List<String> types = new ArrayList<>();
+
+	/** The ids of the series of the segment by type (in order of appearance). */
+	private final Map<String, List<Integer>> ids = new LinkedHashMap<>();
+
+	/** The keys of the series by id. */
+	private final List<String> keys = new ArrayList<>();
+
+	/** The flags of the series by id. */
+	private final List<Integer> flags = new ArrayList<>();
+
+	/** The previous values of the series by id. */
+	private long[][] previous = new long[1024][];
+
+	/** The time of the previous snapshot. */
+	private long millis;
+
+	/**
+	 * Instantiates a new binary file reader.
+	 *
+	 * @param file
+	 *            the file
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public BinaryFileReader(File file) throws IOException {
+		this(file.getName().endsWith(".gz") ? new GZIPInputStream(new FileInputStream(file), 65536)
+				: new FileInputStream(file));
+	}
+
+	/**
+	 * Instantiates a new binary file reader.
+	 *
+	 * @param in
+	 *            the input
+	 */
+	public BinaryFileReader(InputStream in) {
+		this.in = new DataInputStream(new BufferedInputStream(in, 65536));
+	}
+
+	/**
+	 * Gets the instance name of the segment of the last read snapshot.
+	 *
+	 * @return the instance name
+	 */
+	public String getInstanceName() {
+		return instanceName;
+	}
+
+	/**
+	 * Reads the next snapshot.
+	 *
+	 * @return the snapshot, or null at the end of the file
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred or that the file
+	 *             is not written by a binary file writer.
+	 */
+	public Snapshot next() throws IOException {
+		try {
+			while (true) {
+				int tag = in.read();
+				if (tag < 0) {
+					return null;
+				} else if (tag == MAGIC[0]) {
+					readHeader();
+				} else if (instanceName == null) {
+					throw new IOException("Not a binary metric file");
+				} else if (tag == DICTIONARY) {
+					readDictionary();
+				} else if (tag == SNAPSHOT) {
+					return readSnapshot();
+				} else {
+					throw new IOException("Unknown record: " + tag);
+				}
+			}
+		} catch (EOFException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Reads a segment header (after the first byte) and resets the state.
+	 *
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	private void readHeader() throws IOException {
+		for (int i = 1; i < MAGIC.length; i++) {
+			if (in.readByte() != MAGIC[i]) {
+				throw new IOException("Not a binary metric file");
+			}
+		}
+		int version = in.readUnsignedByte();
+		if (version != VERSION) {
+			throw new IOException("Unsupported binary metric file version: " + version);
+		}
+		instanceName = readString();
+		types.clear();
+		ids.clear();
+		keys.clear();
+		flags.clear();
+		millis = 0;
+	}
+
+	/**
+	 * Reads a dictionary record.
+	 *
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	private void readDictionary() throws IOException {
+		int n = (int) readVarint();
+		for (int i = 0; i < n; i++) {
+			int index = (int) readVarint();
+			if (index == types.size()) {
+				types.add(readString());
+			}
+			int id = keys.size();
+			int seriesFlags = in.readUnsignedByte();
+			keys.add(readString());
+			flags.add(seriesFlags);
+			ids.computeIfAbsent(types.get(index), t -> new ArrayList<>()).add(id);
+			if (id == previous.length) {
+				previous = Arrays.copyOf(previous, id * 2);
+			}
+			previous[id] = new long[(seriesFlags & QUANTILES) != 0 ? 1 + Histogram.QUANTILES.length : 1];
+		}
+	}
+
+	/**
+	 * Reads a snapshot record.
+	 *
+	 * @return the snapshot
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	private Snapshot readSnapshot() throws IOException {
+		millis += readDelta();
+		int count = (int) readVarint();
+		if (count > keys.size()) {
+			throw new IOException("Unknown series in snapshot");
+		}
+		boolean[] present = new boolean[count];
+		if (in.readUnsignedByte() == 0) {
+			Arrays.fill(present, true);
+		} else {
+			for (int id = 0; id < count; id += 8) {
+				int bits = in.readUnsignedByte();
+				for (int b = 0; b < 8 && id + b < count; b++) {
+					present[id + b] = (bits & (1 << b)) != 0;
+				}
+			}
+		}
+		for (int id = 0; id < count; id++) {
+			if (present[id]) {
+				long[] values = previous[id];
+				for (int v = 0; v < values.length; v++) {
+					values[v] += readDelta();
+				}
+			}
+		}
+		Snapshot snapshot = new Snapshot(millis, count);
+		for (Map.Entry<String, List<Integer>> entry : ids.entrySet()) {
+			boolean typeAdded = false;
+			for (int id : entry.getValue()) {
+				if (id >= count || !present[id]) {
+					continue;
+				}
+				if (!typeAdded) {
+					snapshot.addType(entry.getKey());
+					typeAdded = true;
+				}
+				long[] values = previous[id];
+				if ((flags.get(id) & GAUGE) != 0) {
+					snapshot.addGauge(keys.get(id), values[0]);
+				} else if ((flags.get(id) & QUANTILES) != 0) {
+					snapshot.add(keys.get(id), values[0], Arrays.copyOfRange(values, 1, values.length), null);
+				} else {
+					snapshot.add(keys.get(id), values[0], null, null);
+				}
+			}
+		}
+		return snapshot;
+	}
+
+	/**
+	 * Reads a difference with a previous value (zigzag varint encoded).
+	 *
+	 * @return the difference
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	private long readDelta() throws IOException {
+		long value = readVarint();
+		return (value >>> 1) ^ -(value & 1);
+	}
+
+	/**
+	 * Reads a string (length and UTF-8 bytes).
+	 *
+	 * @return the string
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	private String readString() throws IOException {
+		byte[] bytes = new byte[(int) readVarint()];
+		in.readFully(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Reads an unsigned varint.
+	 *
+	 * @return the value
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	private long readVarint() throws IOException {
+		long value = 0;
+		for (int shift = 0; shift < 64; shift += 7) {
+			byte b = in.readByte();
+			value |= (long) (b & 0x7f) << shift;
+			if (b >= 0) {
+				return value;
+			}
+		}
+		throw new IOException("Malformed varint");
+	}
+
+	/**
+	 * Closes the file.
+	 *
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	@Override
+	public void close() throws IOException {
+		in.close();
+	}
+}
@@ -0,0 +1,245 @@
+/* Copyright (C) 2017 Maurits van der Schee
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.tqdev.metrics.core;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+/**
+ * The BinaryFileReporter class reports values in the metric registry to
+ * files in the compact binary format of the {@link BinaryFileWriter}, one
+ * file per formatted date (with the ".bin" extension). The names of the
+ * series are written once per file and every report only adds a column of
+ * (varint encoded) differences. Rotated files are compressed in the
+ * background (see {@link FileRotator}). The files can be read with a
+ * {@link BinaryFileReader} or exported as text by the file exporters of the
+ * InfluxDB and Prometheus modules. Reports that fail to write are counted in
+ * type "metrics.Reporter.Errors" (with key "BinaryFileReporter"), the file is
+ * truncated to its length before the report, so that no torn record is left
+ * in front of the segment that the next report starts.
+ */
+public class BinaryFileReporter implements Reporter {
+
+	/**
+	 * The instanceName used to identify the source of the metrics.
+	 */
+	protected final String instanceName;
+
+	/**
+	 * The registry in which the metrics, that this BinaryFileReporter
+	 * reports, are stored.
+	 */
+	protected final MetricRegistry registry;
+
+	/** The metric path. */
+	protected final String metricPath;
+
+	/** The max file count. */
+	protected final int maxFileCount;
+
+	/** The date format. */
+	protected final String dateFormat;
+
+	/** The rotator that compresses and removes the files. */
+	protected final FileRotator rotator;
+
+	/** The writer (that holds the dictionary of the current file). */
+	private final BinaryFileWriter writer;
+
+	/** The file that is written. */
+	private File current;
+
+	/** The length of the file that is written, after the last report. */
+	private long length;
+
+	/** The scheduler that runs this reporter (or null when not running). */
+	private volatile ReportingScheduler scheduler;
+
+	/**
+	 * Instantiates a new binary file reporter.
+	 *
+	 * @param registry
+	 *            the registry
+	 * @param instanceName
+	 *            the instance name
+	 * @param metricPath
+	 *            the metric path
+	 * @param dateFormat
+	 *            the date format
+	 * @param maxFileCount
+	 *            the max file count
+	 */
+	public BinaryFileReporter(MetricRegistry registry, String instanceName, String metricPath, String dateFormat,
+			int maxFileCount) {
+		this.registry = registry;
+		this.instanceName = instanceName;
+		this.metricPath = metricPath;
+		this.dateFormat = dateFormat;
+		this.maxFileCount = maxFileCount;
+		this.writer = new BinaryFileWriter(instanceName);
+		this.rotator = new FileRotator(registry, "BinaryFileReporter", metricPath, ".bin", maxFileCount);
+	}
+
+	/**
+	 * Instantiates a new binary file reporter.
+	 *
+	 * @param registry
+	 *            the registry
+	 * @param instanceName
+	 *            the instance name
+	 * @param metricPath
+	 *            the metric path
+	 * @param dateFormat
+	 *            the date format
+	 * @param maxFileCount
+	 *            the max file count
+	 * @param intervalInSeconds
+	 *            the interval in seconds
+	 */
+	public BinaryFileReporter(MetricRegistry registry, String instanceName, String metricPath, String dateFormat,
+			int maxFileCount, int intervalInSeconds) {
+		this(registry, instanceName, metricPath, dateFormat, maxFileCount);
+		run(intervalInSeconds);
+	}
+
+	/**
+	 * Report.
+	 *
+	 * @return true, if successful
+	 */
+	public boolean report() {
+		if (!registry.isEnabled()) {
+			return true;
+		}
+		return report(registry.snapshot());
+	}
+
+	/**
+	 * Report a snapshot.
+	 *
+	 * @param snapshot
+	 *            the snapshot
+	 * @return true, if successful
+	 */
+	@Override
+	public synchronized boolean report(Snapshot snapshot) {
+		File dir = new File(metricPath);
+		if (!dir.exists()) {
+			if (!dir.mkdir()) {
+				registry.counter(ReportingScheduler.ERRORS_TYPE, "BinaryFileReporter").increment();
+				return false;
+			}
+		}
+		DateFormat formatter = new SimpleDateFormat(dateFormat);
+		File file = new File(dir, formatter.format(new Date(snapshot.getMillis())) + ".bin");
+		rotator.rotate(file);
+		long start = file.length();
+		try {
+			if (!file.equals(current) || start != length) {
+				// a new file, or a file that was not (only) written by us
+				writer.reset();
+				current = file;
+			}
+			try (OutputStream out = open(file)) {
+				writer.write(out, snapshot);
+			}
+			length = file.length();
+		} catch (IOException e) {
+			registry.counter(ReportingScheduler.ERRORS_TYPE, "BinaryFileReporter").increment();
+			writer.reset();
+			truncate(file, start);
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Opens a file for appending.
+	 *
+	 * @param file
+	 *            the file
+	 * @return the output stream
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	OutputStream open(File file) throws IOException {
+		return new FileOutputStream(file, true);
+	}
+
+	/**
+	 * Truncates a file that was partially written by a failed report, as the
+	 * reader can not find the start of the next record after a torn record.
+	 *
+	 * @param file
+	 *            the file
+	 * @param length
+	 *            the length of the file before the report
+	 */
+	private static void truncate(File file, long length) {
+		if (file.isFile() && file.length() > length) {
+			try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+				raf.setLength(length);
+			} catch (IOException ignore) {
+				// ignore when the file cannot be truncated, the reader stops at the torn record
+			}
+		}
+	}
+
+	/**
+	 * Sets the max total bytes of the compressed files, the oldest files are
+	 * removed when it is exceeded.
+	 *
+	 * @param maxTotalBytes
+	 *            the max total bytes
+	 */
+	public void setMaxTotalBytes(long maxTotalBytes) {
+		rotator.setMaxTotalBytes(maxTotalBytes);
+	}
+
+	/**
+	 * Run, on the scheduler that is shared by the reporters of the registry
+	 * that run at the same interval (so they report the same snapshots).
+	 *
+	 * @param intervalInSeconds
+	 *            the interval in seconds
+	 */
+	public void run(int intervalInSeconds) {
+		scheduler = ReportingScheduler.addShared(registry, intervalInSeconds, this);
+	}
+
+	/**
+	 * Handler for shutdown of the scheduler, the rotated files are compressed
+	 * before it returns.
+	 */
+	public void shutdown() {
+		ReportingScheduler scheduler = this.scheduler;
+		if (scheduler != null) {
+			scheduler.remove(this);
+		}
+		rotator.shutdown();
+	}
+}
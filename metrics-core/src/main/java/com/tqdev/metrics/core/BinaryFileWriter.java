@@ -0,0 +1,368 @@
+/* Copyright (C) 2017 Maurits van der Schee
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.tqdev.metrics.core;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * The BinaryFileWriter class writes snapshots in a compact binary format, a
+ * sequence of segments that each start with a header and that consist of
+ * records. The names of the series are written once per segment (in
+ * dictionary records that only contain the new series), every snapshot is
+ * written as a column with a value for every series in the dictionary, as the
+ * difference with the previous value of that series (zigzag varint encoded).
+ * Counters that do not change are thus written as a single byte.
+ *
+ * <pre>
+ * segment    = header { dictionary | snapshot }
+ * header     = "TQMF" version:byte instanceName:string
+ * dictionary = 'D' count:varint { typeIndex:varint [type:string] flags:byte key:string }
+ * snapshot   = 'S' millis:delta count:varint (0 | 1 bitmap) { value:delta [quantiles:delta...] }
+ * string     = length:varint utf8-bytes
+ * </pre>
+ *
+ * A type index that equals the number of known types introduces a new type.
+ * The flags indicate whether the series is a gauge (1) and whether it has
+ * quantiles (2). The snapshot has a bitmap when not all series are present.
+ * Serialized sketches are not written. A writer holds the state of the
+ * current segment and is not thread-safe.
+ */
+public final class BinaryFileWriter {
+
+	/** The magic bytes at the start of a segment. */
+	static final byte[] MAGIC = { 'T', 'Q', 'M', 'F' };
+
+	/** The version of the format. */
+	static final int VERSION = 1;
+
+	/** The tag of a dictionary record. */
+	static final int DICTIONARY = 'D';
+
+	/** The tag of a snapshot record. */
+	static final int SNAPSHOT = 'S';
+
+	/** The flag of a gauge. */
+	static final int GAUGE = 1;
+
+	/** The flag of a series with quantiles. */
+	static final int QUANTILES = 2;
+
+	/** The instance name. */
+	private final String instanceName;
+
+	/** The buffer of a record. */
+	private final ByteArrayOutputStream buffer = new ByteArrayOutputStream(65536);
+
+	/** The index of the types of the segment. */
+	private final HashMap<String, Integer> types = new HashMap<>();
+
+	/** The ids of the series of the segment by type and key. */
+	private final HashMap<String, HashMap<String, Integer>> ids = new HashMap<>();
+
+	/** The flags of the series by id. */
+	private byte[] flags = new byte[1024];
+
+	/** The index of the first previous value of the series by id. */
+	private int[] slots = new int[1024];
+
+	/** The previous values of the series (in slots). */
+	private long[] previous = new long[1024];
+
+	/** The index in the snapshot of the series by id (or -1 when absent). */
+	private int[] present = new int[1024];
+
+	/** The number of series in the dictionary. */
+	private int count;
+
+	/** The number of used slots. */
+	private int slotCount;
+
+	/** The time of the previous snapshot. */
+	private long millis;
+
+	/** Whether a segment is started. */
+	private boolean started;
+
+	/**
+	 * Instantiates a new binary file writer.
+	 *
+	 * @param instanceName
+	 *            the name of the JVM instance or machine that generates the
+	 *            metrics
+	 */
+	public BinaryFileWriter(String instanceName) {
+		this.instanceName = instanceName;
+	}
+
+	/**
+	 * Starts a new segment on the next write, this must be done when the
+	 * output is not a continuation of the previous output (for instance when
+	 * a new file is started).
+	 */
+	public void reset() {
+		started = false;
+		types.clear();
+		ids.clear();
+		count = 0;
+		slotCount = 0;
+		millis = 0;
+	}
+
+	/**
+	 * Write a snapshot (preceded by a segment header and a dictionary when
+	 * needed) with a single write to the output.
+	 *
+	 * @param out
+	 *            the out
+	 * @param snapshot
+	 *            the snapshot
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public void write(OutputStream out, Snapshot snapshot) throws IOException {
+		buffer.reset();
+		if (!started || !isCompatible(snapshot)) {
+			reset();
+			started = true;
+			buffer.write(MAGIC);
+			buffer.write(VERSION);
+			writeString(instanceName);
+		}
+		writeDictionary(snapshot);
+		writeSnapshot(snapshot);
+		buffer.writeTo(out);
+		out.flush();
+	}
+
+	/**
+	 * Checks if the kinds of the series in the snapshot match the dictionary
+	 * (a series may have been replaced by a gauge or histogram).
+	 *
+	 * @param snapshot
+	 *            the snapshot
+	 * @return true, if compatible
+	 */
+	private boolean isCompatible(Snapshot snapshot) {
+		for (int t = 0; t < snapshot.getTypeCount(); t++) {
+			HashMap<String, Integer> keys = ids.get(snapshot.getType(t));
+			if (keys == null) {
+				continue;
+			}
+			for (int i = snapshot.getStart(t); i < snapshot.getEnd(t); i++) {
+				Integer id = keys.get(snapshot.getKey(i));
+				if (id != null && flags[id] != flagsOf(snapshot, i)) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Write a dictionary record with the series of the snapshot that are not
+	 * in the dictionary yet.
+	 *
+	 * @param snapshot
+	 *            the snapshot
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	private void writeDictionary(Snapshot snapshot) throws IOException {
+		List<Integer> added = null;
+		for (int t = 0; t < snapshot.getTypeCount(); t++) {
+			String type = snapshot.getType(t);
+			HashMap<String, Integer> keys = ids.computeIfAbsent(type, k -> new HashMap<>());
+			for (int i = snapshot.getStart(t); i < snapshot.getEnd(t); i++) {
+				if (!keys.containsKey(snapshot.getKey(i))) {
+					if (added == null) {
+						added = new ArrayList<>();
+					}
+					keys.put(snapshot.getKey(i), add(flagsOf(snapshot, i)));
+					added.add(i);
+				}
+			}
+		}
+		if (added == null) {
+			return;
+		}
+		buffer.write(DICTIONARY);
+		writeVarint(added.size());
+		int t = 0;
+		for (int i : added) {
+			while (snapshot.getEnd(t) <= i) {
+				t++;
+			}
+			String type = snapshot.getType(t);
+			Integer index = types.get(type);
+			if (index == null) {
+				writeVarint(types.size());
+				writeString(type);
+				types.put(type, types.size());
+			} else {
+				writeVarint(index);
+			}
+			buffer.write(flagsOf(snapshot, i));
+			writeString(snapshot.getKey(i));
+		}
+	}
+
+	/**
+	 * Adds a series to the dictionary.
+	 *
+	 * @param seriesFlags
+	 *            the flags of the series
+	 * @return the id of the series
+	 */
+	private int add(int seriesFlags) {
+		int size = (seriesFlags & QUANTILES) != 0 ? 1 + Histogram.QUANTILES.length : 1;
+		if (count == flags.length) {
+			flags = Arrays.copyOf(flags, count * 2);
+			slots = Arrays.copyOf(slots, count * 2);
+		}
+		if (slotCount + size > previous.length) {
+			previous = Arrays.copyOf(previous, Math.max(previous.length * 2, slotCount + size));
+		}
+		flags[count] = (byte) seriesFlags;
+		slots[count] = slotCount;
+		Arrays.fill(previous, slotCount, slotCount + size, 0);
+		slotCount += size;
+		return count++;
+	}
+
+	/**
+	 * Write a snapshot record.
+	 *
+	 * @param snapshot
+	 *            the snapshot
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	private void writeSnapshot(Snapshot snapshot) throws IOException {
+		if (present.length < count) {
+			present = new int[flags.length];
+		}
+		Arrays.fill(present, 0, count, -1);
+		int presentCount = 0;
+		for (int t = 0; t < snapshot.getTypeCount(); t++) {
+			HashMap<String, Integer> keys = ids.get(snapshot.getType(t));
+			for (int i = snapshot.getStart(t); i < snapshot.getEnd(t); i++) {
+				present[keys.get(snapshot.getKey(i))] = i;
+				presentCount++;
+			}
+		}
+		buffer.write(SNAPSHOT);
+		writeDelta(snapshot.getMillis(), millis);
+		millis = snapshot.getMillis();
+		writeVarint(count);
+		if (presentCount == count) {
+			buffer.write(0);
+		} else {
+			buffer.write(1);
+			for (int id = 0; id < count; id += 8) {
+				int bits = 0;
+				for (int b = 0; b < 8 && id + b < count; b++) {
+					if (present[id + b] >= 0) {
+						bits |= 1 << b;
+					}
+				}
+				buffer.write(bits);
+			}
+		}
+		for (int id = 0; id < count; id++) {
+			int i = present[id];
+			if (i < 0) {
+				continue;
+			}
+			int slot = slots[id];
+			writeDelta(snapshot.getValue(i), previous[slot]);
+			previous[slot] = snapshot.getValue(i);
+			if ((flags[id] & QUANTILES) != 0) {
+				for (int q = 0; q < Histogram.QUANTILES.length; q++) {
+					long quantile = snapshot.getQuantile(i, q);
+					writeDelta(quantile, previous[slot + 1 + q]);
+					previous[slot + 1 + q] = quantile;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Gets the flags of a series in a snapshot.
+	 *
+	 * @param snapshot
+	 *            the snapshot
+	 * @param i
+	 *            the index of the series
+	 * @return the flags
+	 */
+	private static int flagsOf(Snapshot snapshot, int i) {
+		return (snapshot.isGauge(i) ? GAUGE : 0) | (snapshot.hasQuantiles(i) ? QUANTILES : 0);
+	}
+
+	/**
+	 * Write the difference between a value and a previous value (zigzag
+	 * varint encoded).
+	 *
+	 * @param value
+	 *            the value
+	 * @param previousValue
+	 *            the previous value
+	 */
+	private void writeDelta(long value, long previousValue) {
+		long delta = value - previousValue;
+		writeVarint((delta << 1) ^ (delta >> 63));
+	}
+
+	/**
+	 * Write a string (length and UTF-8 bytes).
+	 *
+	 * @param str
+	 *            the string
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	private void writeString(String str) throws IOException {
+		byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+		writeVarint(bytes.length);
+		buffer.write(bytes);
+	}
+
+	/**
+	 * Write an unsigned varint.
+	 *
+	 * @param value
+	 *            the value
+	 */
+	private void writeVarint(long value) {
+		while ((value & ~0x7fL) != 0) {
+			buffer.write((int) ((value & 0x7f) | 0x80));
+			value >>>= 7;
+		}
+		buffer.write((int) value);
+	}
+}
@@ -0,0 +1,111 @@
+/* Copyright (C) 2017 Maurits van der Schee
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.tqdev.metrics.core;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The Class CompositeKeys holds keys that are composed of two parts (such as
+ * "controller.action"), so that instrumentation can look up the key by its
+ * parts instead of concatenating them on every update. Looking up a key that
+ * was composed before does not allocate. When the cache exceeds its maximum
+ * size (for instance when a part is unbounded) it is cleared.
+ */
+public class CompositeKeys {
+
+	/** The default maximum number of keys. */
+	public static final int DEFAULT_MAX_SIZE = 10000;
+
+	/** The separator between the parts. */
+	private final String separator;
+
+	/** The maximum number of keys. */
+	private final int maxSize;
+
+	/** The keys by first and second part. */
+	private final ConcurrentHashMap<String, ConcurrentHashMap<String, String>> keys;
+
+	/** The number of keys. */
+	private final AtomicInteger size;
+
+	/**
+	 * Instantiates a new composite key cache with the default maximum size.
+	 *
+	 * @param separator
+	 *            the separator between the parts
+	 */
+	public CompositeKeys(String separator) {
+		this(separator, DEFAULT_MAX_SIZE);
+	}
+
+	/**
+	 * Instantiates a new composite key cache.
+	 *
+	 * @param separator
+	 *            the separator between the parts
+	 * @param maxSize
+	 *            the maximum number of keys
+	 */
+	public CompositeKeys(String separator, int maxSize) {
+		this.separator = separator;
+		this.maxSize = maxSize;
+		this.keys = new ConcurrentHashMap<>();
+		this.size = new AtomicInteger();
+	}
+
+	/**
+	 * Gets the key that is composed of two parts.
+	 *
+	 * @param first
+	 *            the first part
+	 * @param second
+	 *            the second part
+	 * @return the key
+	 */
+	public String get(String first, String second) {
+		ConcurrentHashMap<String, String> seconds = keys.get(first);
+		if (seconds != null) {
+			String key = seconds.get(second);
+			if (key != null) {
+				return key;
+			}
+		}
+		if (size.get() >= maxSize) {
+			keys.clear();
+			size.set(0);
+		}
+		String key = first + separator + second;
+		if (keys.computeIfAbsent(first, f -> new ConcurrentHashMap<>()).putIfAbsent(second, key) == null) {
+			size.incrementAndGet();
+		}
+		return key;
+	}
+
+	/**
+	 * Gets the number of keys in the cache.
+	 *
+	 * @return the number of keys
+	 */
+	public int size() {
+		return size.get();
+	}
+}
@@ -0,0 +1,129 @@
+/* Copyright (C) 2017 Maurits van der Schee
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.tqdev.metrics.core;
+
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The Class Counter holds a value that is incremented or added to. A counter
+ * that is obtained from the registry can be kept in a field and updated
+ * directly, so that no lookup by type and key is needed on every update.
+ * Every update stamps the counter with the current epoch (see {@link Epoch}),
+ * so that snapshots of changes can skip counters that did not change.
+ */
+public class Counter {
+
+	/** The updater for the stamp. */
+	private static final AtomicLongFieldUpdater<Counter> STAMP = AtomicLongFieldUpdater.newUpdater(Counter.class,
+			"stamp");
+
+	/** The adder that holds the value. */
+	private final LongAdder adder;
+
+	/** Whether the counter is kept in the registry when it is reset. */
+	boolean pinned;
+
+	/** The epoch of the last update. */
+	volatile long stamp;
+
+	/**
+	 * Instantiates a new counter.
+	 */
+	Counter() {
+		this(new LongAdder());
+	}
+
+	/**
+	 * Instantiates a new counter that holds its value in the given adder.
+	 * Subclasses that hold the value elsewhere pass null and override all
+	 * methods.
+	 *
+	 * @param adder
+	 *            the adder
+	 */
+	Counter(LongAdder adder) {
+		this.adder = adder;
+	}
+
+	/**
+	 * Increment the value by one.
+	 */
+	public void increment() {
+		adder.increment();
+		touch();
+	}
+
+	/**
+	 * Decrement the value by one.
+	 */
+	public void decrement() {
+		adder.decrement();
+		touch();
+	}
+
+	/**
+	 * Adds a value.
+	 *
+	 * @param value
+	 *            the value
+	 */
+	public void add(long value) {
+		adder.add(value);
+		touch();
+	}
+
+	/**
+	 * Gets the value.
+	 *
+	 * @return the value
+	 */
+	public long get() {
+		return adder.sum();
+	}
+
+	/**
+	 * Sets the value.
+	 *
+	 * @param value
+	 *            the value
+	 */
+	void set(long value) {
+		adder.reset();
+		adder.add(value);
+		touch();
+	}
+
+	/**
+	 * Resets the value to zero.
+	 */
+	void reset() {
+		adder.reset();
+		touch();
+	}
+
+	/**
+	 * Stamps the counter with the current epoch, after it is updated.
+	 */
+	final void touch() {
+		Epoch.stamp(STAMP, this);
+	}
+}
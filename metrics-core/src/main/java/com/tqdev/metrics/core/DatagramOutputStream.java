@@ -0,0 +1,158 @@
+/* Copyright (C) 2017 Maurits van der Schee
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.tqdev.metrics.core;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.SocketAddress;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+
+/**
+ * The Class DatagramOutputStream packs the lines (ending in a line feed) that
+ * are written into datagrams of at most the maximum packet size (lines are
+ * never split). A packet is sent when the next line does not fit or when the
+ * stream is closed, after which the stream can be reused. Packets are sent
+ * from a reused direct buffer and dropped when they can not be sent
+ * immediately (on a non-blocking channel), lines that do not fit in a packet
+ * are skipped. Both are counted, the packets that are dropped are also
+ * counted per report (see {@link #resetDropped()}), so that a reporter can
+ * tell whether all of its packets were sent. This stream is not thread-safe.
+ */
+public class DatagramOutputStream extends OutputStream {
+
+	/** The channel. */
+	private final DatagramChannel channel;
+
+	/** The address. */
+	private final SocketAddress address;
+
+	/** The packet. */
+	private final ByteBuffer packet;
+
+	/** The line that is being written. */
+	private final byte[] line;
+
+	/** The length of the line (that may exceed the line buffer). */
+	private int length;
+
+	/** The counter of dropped packets. */
+	private final Counter droppedPackets;
+
+	/** The counter of oversized lines. */
+	private final Counter oversizedLines;
+
+	/** The number of packets that were dropped since the last reset. */
+	private int dropped;
+
+	/**
+	 * Instantiates a new datagram output stream.
+	 *
+	 * @param channel
+	 *            the channel
+	 * @param address
+	 *            the address the packets are sent to
+	 * @param maxPacketSize
+	 *            the maximum packet size
+	 * @param droppedPackets
+	 *            the counter of dropped packets
+	 * @param oversizedLines
+	 *            the counter of oversized lines
+	 */
+	public DatagramOutputStream(DatagramChannel channel, SocketAddress address, int maxPacketSize,
+			Counter droppedPackets, Counter oversizedLines) {
+		this.channel = channel;
+		this.address = address;
+		this.packet = ByteBuffer.allocateDirect(maxPacketSize);
+		this.line = new byte[maxPacketSize];
+		this.droppedPackets = droppedPackets;
+		this.oversizedLines = oversizedLines;
+	}
+
+	@Override
+	public void write(int b) {
+		if (length < line.length) {
+			line[length] = (byte) b;
+		}
+		length++;
+		if (b == '\n') {
+			if (length > line.length) {
+				oversizedLines.increment();
+			} else {
+				if (length > packet.remaining()) {
+					send();
+				}
+				packet.put(line, 0, length);
+			}
+			length = 0;
+		}
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) {
+		for (int i = off; i < off + len; i++) {
+			write(b[i]);
+		}
+	}
+
+	/**
+	 * Gets the number of packets that were dropped since the last call and
+	 * resets it, so that it can be checked after every report.
+	 *
+	 * @return the number of dropped packets
+	 */
+	public int resetDropped() {
+		int count = dropped;
+		dropped = 0;
+		return count;
+	}
+
+	/**
+	 * Sends the last packet, an incomplete line is discarded.
+	 */
+	@Override
+	public void close() {
+		send();
+		length = 0;
+	}
+
+	/**
+	 * Sends the packet (when it is not empty), the packet is dropped when it
+	 * can not be sent immediately.
+	 */
+	private void send() {
+		if (packet.position() > 0) {
+			((Buffer) packet).flip();
+			try {
+				if (channel.send(packet, address) == 0) {
+					droppedPackets.increment();
+					dropped++;
+				}
+			} catch (IOException e) {
+				droppedPackets.increment();
+				dropped++;
+			} finally {
+				((Buffer) packet).clear();
+			}
+		}
+	}
+}
@@ -0,0 +1,84 @@
+/* Copyright (C) 2017 Maurits van der Schee
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.tqdev.metrics.core;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
+/**
+ * The Class Epoch tracks which metrics changed since a snapshot. Every
+ * snapshot advances the (global) epoch before it reads the metrics, and every
+ * metric stamps itself with the current epoch after it is updated. A metric
+ * that has a stamp lower than the epoch that was advanced to by a snapshot
+ * (the cursor of that snapshot) did not change since that snapshot read it, so
+ * later snapshots can skip it without reading its value. The stamp is only
+ * written once per epoch, so updates usually only read the epoch and the
+ * stamp. The epoch is shared by all registries, as it only has to increase.
+ */
+final class Epoch {
+
+	/** The current epoch (starts at 1, so that cursor 0 includes all metrics). */
+	private static final AtomicLong CURRENT = new AtomicLong(1);
+
+	/**
+	 * Prevents instantiation.
+	 */
+	private Epoch() {
+	}
+
+	/**
+	 * Advances the epoch, this is done by a snapshot before it reads the
+	 * metrics.
+	 *
+	 * @return the new epoch (the cursor of the snapshot)
+	 */
+	static long advance() {
+		return CURRENT.incrementAndGet();
+	}
+
+	/**
+	 * Stamps a metric with the current epoch, after it is updated. The stamp
+	 * never decreases and the epoch is read again after the stamp is written,
+	 * so that an update that races with a snapshot (that advances the epoch
+	 * and then skips the metric as its stamp is not written yet) is stamped
+	 * with the cursor of that snapshot and found by the next snapshot.
+	 *
+	 * @param <T>
+	 *            the type of the metric
+	 * @param stamp
+	 *            the updater of the stamp of the metric
+	 * @param metric
+	 *            the metric
+	 */
+	static <T> void stamp(AtomicLongFieldUpdater<T> stamp, T metric) {
+		long epoch = CURRENT.get();
+		while (true) {
+			long s = stamp.get(metric);
+			if (s >= epoch || stamp.compareAndSet(metric, s, epoch)) {
+				long current = CURRENT.get();
+				if (current == epoch) {
+					return;
+				}
+				epoch = current;
+			}
+		}
+	}
+}
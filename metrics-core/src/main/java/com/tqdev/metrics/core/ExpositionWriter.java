@@ -0,0 +1,201 @@
+/* Copyright (C) 2017 Maurits van der Schee
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.tqdev.metrics.core;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The Class ExpositionWriter is a streaming writer for text formats (such as
+ * the InfluxDB line protocol and the Prometheus text format) that encodes
+ * directly into a byte array that is written to the output stream when it is
+ * full. Longs are formatted without creating strings and names are written
+ * in their encoded (and escaped) form, see {@link NameCache}. A reporter may
+ * keep a single writer and reset it for every report, so that the buffer is
+ * not allocated again. This writer is not thread-safe.
+ */
+public final class ExpositionWriter {
+
+	/** The decimal digits. */
+	private static final byte[] DIGITS = { '0', '1', '2', '3', '4', '5', '6', '7', '8', '9' };
+
+	/** The bytes of Long.MIN_VALUE, as it can not be negated. */
+	private static final byte[] MIN_VALUE = String.valueOf(Long.MIN_VALUE).getBytes(StandardCharsets.US_ASCII);
+
+	/** The out. */
+	private OutputStream out;
+
+	/** The buffer. */
+	private final byte[] buffer;
+
+	/** The number of bytes in the buffer. */
+	private int count;
+
+	/**
+	 * Instantiates a new exposition writer with a buffer of 8192 bytes.
+	 *
+	 * @param out
+	 *            the out
+	 */
+	public ExpositionWriter(OutputStream out) {
+		this(out, 8192);
+	}
+
+	/**
+	 * Instantiates a new exposition writer.
+	 *
+	 * @param out
+	 *            the out
+	 * @param size
+	 *            the size of the buffer (at least 20 bytes)
+	 */
+	public ExpositionWriter(OutputStream out, int size) {
+		this.out = out;
+		this.buffer = new byte[Math.max(size, 20)];
+	}
+
+	/**
+	 * Instantiates a new exposition writer that writes to the output stream
+	 * that is set by {@link #reset(OutputStream)}.
+	 *
+	 * @param size
+	 *            the size of the buffer (at least 20 bytes)
+	 */
+	public ExpositionWriter(int size) {
+		this(null, size);
+	}
+
+	/**
+	 * Resets the writer to write to an output stream, bytes that were not
+	 * written (as a previous write failed) are discarded.
+	 *
+	 * @param out
+	 *            the out
+	 * @return the writer
+	 */
+	public ExpositionWriter reset(OutputStream out) {
+		this.out = out;
+		count = 0;
+		return this;
+	}
+
+	/**
+	 * Writes a byte.
+	 *
+	 * @param b
+	 *            the byte
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public void write(byte b) throws IOException {
+		if (count == buffer.length) {
+			flushBuffer();
+		}
+		buffer[count++] = b;
+	}
+
+	/**
+	 * Writes bytes.
+	 *
+	 * @param bytes
+	 *            the bytes
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public void write(byte[] bytes) throws IOException {
+		if (bytes.length > buffer.length - count) {
+			flushBuffer();
+			if (bytes.length > buffer.length) {
+				out.write(bytes);
+				return;
+			}
+		}
+		System.arraycopy(bytes, 0, buffer, count, bytes.length);
+		count += bytes.length;
+	}
+
+	/**
+	 * Writes a long as decimal digits.
+	 *
+	 * @param value
+	 *            the value
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public void write(long value) throws IOException {
+		if (value == Long.MIN_VALUE) {
+			write(MIN_VALUE);
+			return;
+		}
+		if (buffer.length - count < 20) {
+			flushBuffer();
+		}
+		if (value < 0) {
+			buffer[count++] = '-';
+			value = -value;
+		}
+		int length = 1;
+		for (long v = value; v >= 10; v /= 10) {
+			length++;
+		}
+		for (int i = count + length - 1; i >= count; i--) {
+			buffer[i] = DIGITS[(int) (value % 10)];
+			value /= 10;
+		}
+		count += length;
+	}
+
+	/**
+	 * Writes the buffer to the output stream and flushes it.
+	 *
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public void flush() throws IOException {
+		flushBuffer();
+		out.flush();
+	}
+
+	/**
+	 * Writes the buffer to the output stream and closes it.
+	 *
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public void close() throws IOException {
+		flushBuffer();
+		out.close();
+	}
+
+	/**
+	 * Writes the buffer to the output stream.
+	 *
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	private void flushBuffer() throws IOException {
+		if (count > 0) {
+			out.write(buffer, 0, count);
+			count = 0;
+		}
+	}
+}
@@ -0,0 +1,338 @@
+/* Copyright (C) 2017 Maurits van der Schee
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.tqdev.metrics.core;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * The FileRotator class rotates the files of a file reporter. When the
+ * reporter moves on to a new file, the previous file is compressed (gzip) on
+ * a background thread with a low priority, so that reporting is not delayed.
+ * The directory is only listed once (to pick up the files of a previous run),
+ * after that the compressed files and their sizes are tracked in memory. The
+ * oldest compressed files are removed when there are more than the max file
+ * count or when their total size exceeds the max total bytes. The files are
+ * ordered by name, so the names should sort chronologically (as formatted
+ * dates do). A file that fails to compress is counted in type
+ * "metrics.Reporter.Errors" (with the key of the reporter) and compressed
+ * again on the next rotation. A file that is rotated to again (when the
+ * clock is set back) is not compressed while it is written.
+ */
+public class FileRotator {
+
+	/** The extension of compressed files. */
+	private static final String GZIP_EXTENSION = ".gz";
+
+	/** The extension of files that are being compressed. */
+	private static final String TEMPORARY_EXTENSION = ".gz.tmp";
+
+	/** The registry in which the failures are counted. */
+	private final MetricRegistry registry;
+
+	/** The key of the failures (the name of the reporter). */
+	private final String key;
+
+	/** The directory. */
+	private final File dir;
+
+	/** The extension of the files that are written. */
+	private final String extension;
+
+	/** The max file count (of compressed files). */
+	private final int maxFileCount;
+
+	/** The max total bytes (of compressed files). */
+	private volatile long maxTotalBytes = Long.MAX_VALUE;
+
+	/** The sizes of the compressed files by name. */
+	private final TreeMap<String, Long> compressed = new TreeMap<>();
+
+	/** The total size of the compressed files. */
+	private long totalBytes;
+
+	/** The file that is written (or null before the first rotation). */
+	private File current;
+
+	/** The files that are submitted, but not yet compressed. */
+	private final Set<File> queued = new HashSet<>();
+
+	/** The files that failed to compress. */
+	private final List<File> failed = new ArrayList<>();
+
+	/** The file that is being compressed (or null). */
+	private File compressing;
+
+	/** The executor that compresses files. */
+	private final ExecutorService compressor;
+
+	/**
+	 * Instantiates a new file rotator.
+	 *
+	 * @param registry
+	 *            the registry in which the failures are counted
+	 * @param key
+	 *            the key of the failures (the name of the reporter)
+	 * @param path
+	 *            the path of the directory
+	 * @param extension
+	 *            the extension of the files that are written (such as
+	 *            ".txt")
+	 * @param maxFileCount
+	 *            the max file count
+	 */
+	public FileRotator(MetricRegistry registry, String key, String path, String extension, int maxFileCount) {
+		this.registry = registry;
+		this.key = key;
+		this.dir = new File(path);
+		this.extension = extension;
+		this.maxFileCount = maxFileCount;
+		ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 10, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+				runnable -> {
+					Thread thread = new Thread(runnable, "metrics-file-compressor");
+					thread.setDaemon(true);
+					thread.setPriority(Thread.MIN_PRIORITY);
+					return thread;
+				});
+		executor.allowCoreThreadTimeOut(true);
+		this.compressor = executor;
+	}
+
+	/**
+	 * Sets the max total bytes of the compressed files.
+	 *
+	 * @param maxTotalBytes
+	 *            the max total bytes
+	 */
+	public void setMaxTotalBytes(long maxTotalBytes) {
+		this.maxTotalBytes = maxTotalBytes;
+		synchronized (this) {
+			removeOldest();
+		}
+	}
+
+	/**
+	 * Gets the total size of the compressed files.
+	 *
+	 * @return the total bytes
+	 */
+	public synchronized long getTotalBytes() {
+		return totalBytes;
+	}
+
+	/**
+	 * Rotates to the file that is written next. When it is another file than
+	 * the previous file, the previous file is compressed. On the first
+	 * rotation the directory is listed to find the files of a previous run.
+	 * The files that failed to compress are submitted again. When the file
+	 * that is written next is queued for compression, it is taken off the
+	 * queue (or, when it is being compressed, this waits for the compression
+	 * to finish).
+	 *
+	 * @param file
+	 *            the file that is written next
+	 */
+	public synchronized void rotate(File file) {
+		if (current == null) {
+			scan(file);
+		} else if (!current.equals(file)) {
+			submit(current);
+		}
+		for (File f : failed) {
+			submit(f);
+		}
+		failed.clear();
+		queued.remove(file);
+		while (file.equals(compressing)) {
+			try {
+				wait();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				break;
+			}
+		}
+		current = file;
+	}
+
+	/**
+	 * Lists the directory, registers the compressed files and compresses the
+	 * files that are not compressed yet.
+	 *
+	 * @param file
+	 *            the file that is written next
+	 */
+	private void scan(File file) {
+		File[] directoryListing = dir.listFiles();
+		if (directoryListing == null) {
+			return;
+		}
+		for (File f : directoryListing) {
+			String name = f.getName();
+			if (name.endsWith(extension + TEMPORARY_EXTENSION)) {
+				f.delete();
+			} else if (name.endsWith(extension + GZIP_EXTENSION)) {
+				add(name, f.length());
+			} else if (name.endsWith(extension) && !f.equals(file)) {
+				submit(f);
+			}
+		}
+		removeOldest();
+	}
+
+	/**
+	 * Submits a file for compression, unless the rotator is shut down (then
+	 * the file is compressed on the next run) or the file is already queued.
+	 *
+	 * @param file
+	 *            the file
+	 */
+	private void submit(File file) {
+		if (!compressor.isShutdown() && queued.add(file)) {
+			compressor.execute(() -> compress(file));
+		}
+	}
+
+	/**
+	 * Compresses a file (via a temporary file) and removes it. When the
+	 * compressed file exists, the file is appended as gzip member. The file
+	 * is skipped when it was taken off the queue (as it is written again).
+	 *
+	 * @param file
+	 *            the file
+	 */
+	private void compress(File file) {
+		synchronized (this) {
+			if (!queued.remove(file)) {
+				return;
+			}
+			compressing = file;
+		}
+		try {
+			if (file.exists()) {
+				compress(file, new File(file.getPath() + GZIP_EXTENSION));
+			}
+		} finally {
+			synchronized (this) {
+				compressing = null;
+				notifyAll();
+			}
+		}
+	}
+
+	/**
+	 * Compresses a file into the target file and registers the target file.
+	 * A failure is counted and the file is compressed again on the next
+	 * rotation.
+	 *
+	 * @param file
+	 *            the file
+	 * @param target
+	 *            the target file
+	 */
+	private void compress(File file, File target) {
+		File temporary = new File(file.getPath() + TEMPORARY_EXTENSION);
+		try {
+			try (InputStream in = new FileInputStream(file);
+					OutputStream out = new GZIPOutputStream(new FileOutputStream(temporary), 65536)) {
+				byte[] buffer = new byte[65536];
+				int length;
+				while ((length = in.read(buffer)) > 0) {
+					out.write(buffer, 0, length);
+				}
+			}
+			if (target.exists()) {
+				try (OutputStream out = new FileOutputStream(target, true)) {
+					Files.copy(temporary.toPath(), out);
+				}
+				temporary.delete();
+			} else {
+				Files.move(temporary.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE);
+			}
+			file.delete();
+		} catch (IOException e) {
+			registry.counter(ReportingScheduler.ERRORS_TYPE, key).increment();
+			temporary.delete();
+			synchronized (this) {
+				failed.add(file);
+			}
+			return;
+		}
+		synchronized (this) {
+			add(target.getName(), target.length());
+			removeOldest();
+		}
+	}
+
+	/**
+	 * Registers a compressed file.
+	 *
+	 * @param name
+	 *            the name
+	 * @param size
+	 *            the size
+	 */
+	private void add(String name, long size) {
+		Long previous = compressed.put(name, size);
+		totalBytes += size - (previous != null ? previous : 0);
+	}
+
+	/**
+	 * Removes the oldest compressed files while there are too many or they
+	 * are too large.
+	 */
+	private void removeOldest() {
+		while (!compressed.isEmpty() && (compressed.size() > maxFileCount || totalBytes > maxTotalBytes)) {
+			Map.Entry<String, Long> oldest = compressed.pollFirstEntry();
+			totalBytes -= oldest.getValue();
+			new File(dir, oldest.getKey()).delete();
+		}
+	}
+
+	/**
+	 * Finishes the compression of the rotated files (waiting at most 10
+	 * seconds) and stops the compression thread.
+	 */
+	public void shutdown() {
+		compressor.shutdown();
+		try {
+			compressor.awaitTermination(10, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
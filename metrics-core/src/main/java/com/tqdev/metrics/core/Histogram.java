@@ -0,0 +1,270 @@
+/* Copyright (C) 2017 Maurits van der Schee
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.tqdev.metrics.core;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
+/**
+ * The Class Histogram keeps track of the distribution of recorded values (such
+ * as durations in nanoseconds) using log-linear buckets, like HdrHistogram
+ * does: every power of two is divided into 8 linear sub-buckets, so that the
+ * relative error of a quantile is at most 12.5%. Values from 2^40 (about 18
+ * minutes in nanoseconds) are counted in a single overflow bucket. Recording
+ * is lock-free: the counts are kept in one array of 305 buckets (about 2.5 kB)
+ * and, under contention, striped over the threads in at most 4 more arrays,
+ * so the memory footprint of a key is at most about 12.5 kB (regardless of
+ * the number of processors). Every record stamps the histogram with the
+ * current epoch (see {@link Epoch}), so that snapshots of changes can skip
+ * histograms that did not change.
+ */
+public class Histogram {
+
+	/** The updater for the stamp. */
+	private static final AtomicLongFieldUpdater<Histogram> STAMP = AtomicLongFieldUpdater
+			.newUpdater(Histogram.class, "stamp");
+
+	/** The quantiles that reporters report for a histogram. */
+	public static final double[] QUANTILES = { 0.5, 0.9, 0.99, 0.999 };
+
+	/** The number of bits used for the sub-buckets of a power of two. */
+	private static final int SUB_BUCKET_BITS = 3;
+
+	/** The number of sub-buckets of a power of two. */
+	private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+
+	/** The power of two from which values are counted in the overflow bucket. */
+	private static final int MAX_EXPONENT = 40;
+
+	/** The number of buckets (including the overflow bucket). */
+	static final int BUCKET_COUNT = (MAX_EXPONENT - SUB_BUCKET_BITS + 1) * SUB_BUCKET_COUNT + 1;
+
+	/** The maximum number of stripes (a power of two). */
+	private static final int MAX_STRIPES = 4;
+
+	/** The counts per bucket that are used when there is no contention. */
+	private final AtomicLongArray buckets;
+
+	/** The striped counts, created on contention (size is a power of two). */
+	private volatile AtomicLongArray[] stripes;
+
+	/** Whether the histogram is kept in the registry when it is reset. */
+	boolean pinned;
+
+	/** The timer that this histogram records the latencies of (or null). */
+	Timer timer;
+
+	/** The epoch of the last update. */
+	volatile long stamp;
+
+	/**
+	 * Instantiates a new histogram.
+	 */
+	Histogram() {
+		buckets = new AtomicLongArray(BUCKET_COUNT);
+	}
+
+	/**
+	 * Record a value.
+	 *
+	 * @param value
+	 *            the value
+	 */
+	public void record(long value) {
+		int index = getIndex(value);
+		AtomicLongArray[] ss = stripes;
+		if (ss == null) {
+			long c = buckets.get(index);
+			if (buckets.compareAndSet(index, c, c + 1)) {
+				Epoch.stamp(STAMP, this);
+				return;
+			}
+			ss = expand(null);
+		}
+		AtomicLongArray stripe = ss[(int) (Thread.currentThread().getId() * 0x9E3779B9L) & (ss.length - 1)];
+		long c = stripe.get(index);
+		if (!stripe.compareAndSet(index, c, c + 1)) {
+			stripe.getAndIncrement(index);
+			if (ss.length < MAX_STRIPES) {
+				expand(ss);
+			}
+		}
+		Epoch.stamp(STAMP, this);
+	}
+
+	/**
+	 * Gets the number of recorded values.
+	 *
+	 * @return the count
+	 */
+	public long getCount() {
+		long count = 0;
+		AtomicLongArray[] ss = stripes;
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			count += get(ss, i);
+		}
+		return count;
+	}
+
+	/**
+	 * Gets the (highest equivalent) value at a given quantile, values in the
+	 * overflow bucket are reported as 2^40.
+	 *
+	 * @param quantile
+	 *            the quantile (between 0 and 1)
+	 * @return the value at the quantile, or zero when nothing is recorded
+	 */
+	public long getQuantile(double quantile) {
+		long[] values = new long[1];
+		getQuantiles(new double[] { quantile }, values);
+		return values[0];
+	}
+
+	/**
+	 * Gets the values at the given quantiles and the number of recorded
+	 * values, reading the buckets only once (so that they are consistent).
+	 *
+	 * @param quantiles
+	 *            the quantiles (between 0 and 1)
+	 * @param values
+	 *            the values at the quantiles (output)
+	 * @return the count
+	 */
+	long getQuantiles(double[] quantiles, long[] values) {
+		long[] counts = new long[BUCKET_COUNT];
+		long count = 0;
+		AtomicLongArray[] ss = stripes;
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			counts[i] = get(ss, i);
+			count += counts[i];
+		}
+		for (int q = 0; q < quantiles.length; q++) {
+			values[q] = 0;
+			if (count == 0) {
+				continue;
+			}
+			long rank = Math.max(1, (long) Math.ceil(quantiles[q] * count));
+			long seen = 0;
+			values[q] = getHighestValue(BUCKET_COUNT - 1);
+			for (int i = 0; i < BUCKET_COUNT; i++) {
+				seen += counts[i];
+				if (seen >= rank) {
+					values[q] = getHighestValue(i);
+					break;
+				}
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Resets all counts to zero.
+	 */
+	void reset() {
+		AtomicLongArray[] ss = stripes;
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			buckets.set(i, 0);
+			if (ss != null) {
+				for (AtomicLongArray stripe : ss) {
+					stripe.set(i, 0);
+				}
+			}
+		}
+		Epoch.stamp(STAMP, this);
+	}
+
+	/**
+	 * Gets the count of a bucket, summed over the stripes.
+	 *
+	 * @param ss
+	 *            the stripes (or null)
+	 * @param index
+	 *            the index of the bucket
+	 * @return the count
+	 */
+	private long get(AtomicLongArray[] ss, int index) {
+		long count = buckets.get(index);
+		if (ss != null) {
+			for (AtomicLongArray stripe : ss) {
+				count += stripe.get(index);
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Doubles the number of stripes (or creates them).
+	 *
+	 * @param expected
+	 *            the stripes that were found to be contended
+	 * @return the current stripes
+	 */
+	private synchronized AtomicLongArray[] expand(AtomicLongArray[] expected) {
+		AtomicLongArray[] ss = stripes;
+		if (ss == expected) {
+			int length = (ss == null) ? 2 : ss.length << 1;
+			AtomicLongArray[] expanded = new AtomicLongArray[length];
+			for (int i = 0; i < length; i++) {
+				expanded[i] = (ss != null && i < ss.length) ? ss[i] : new AtomicLongArray(BUCKET_COUNT);
+			}
+			stripes = ss = expanded;
+		}
+		return ss;
+	}
+
+	/**
+	 * Gets the index of the bucket that a value is counted in.
+	 *
+	 * @param value
+	 *            the value
+	 * @return the index
+	 */
+	static int getIndex(long value) {
+		if (value < SUB_BUCKET_COUNT) {
+			return value < 0 ? 0 : (int) value;
+		}
+		int exponent = 63 - Long.numberOfLeadingZeros(value);
+		if (exponent >= MAX_EXPONENT) {
+			return BUCKET_COUNT - 1;
+		}
+		int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKET_COUNT - 1);
+		return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKET_COUNT + subBucket;
+	}
+
+	/**
+	 * Gets the highest value that is counted in a bucket.
+	 *
+	 * @param index
+	 *            the index
+	 * @return the value
+	 */
+	static long getHighestValue(int index) {
+		if (index < SUB_BUCKET_COUNT) {
+			return index;
+		}
+		if (index == BUCKET_COUNT - 1) {
+			return 1L << MAX_EXPONENT;
+		}
+		int shift = index / SUB_BUCKET_COUNT - 1;
+		long lowest = (long) (SUB_BUCKET_COUNT + index % SUB_BUCKET_COUNT) << shift;
+		return lowest + (1L << shift) - 1;
+	}
+}
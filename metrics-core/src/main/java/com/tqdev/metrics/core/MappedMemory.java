@@ -0,0 +1,206 @@
+/* Copyright (C) 2017 Maurits van der Schee
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.tqdev.metrics.core;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+
+/**
+ * The Class MappedMemory provides atomic and ordered access to the memory of
+ * a mapped file, so that it can be updated by many threads of this process
+ * and read by other processes. Java 8 has no VarHandles, so the memory is
+ * accessed by address using Unsafe. Unsafe is only reached through method
+ * handles (that are inlined like direct calls), so that it is not referenced
+ * at compile time.
+ */
+final class MappedMemory {
+
+	/** The method that gets a long with volatile semantics. */
+	private static final MethodHandle GET_LONG_VOLATILE;
+
+	/** The method that puts a long with volatile semantics. */
+	private static final MethodHandle PUT_LONG_VOLATILE;
+
+	/** The method that atomically adds to a long. */
+	private static final MethodHandle GET_AND_ADD_LONG;
+
+	/** The method that gets an int with volatile semantics. */
+	private static final MethodHandle GET_INT_VOLATILE;
+
+	/** The method that puts an int as an ordered write. */
+	private static final MethodHandle PUT_ORDERED_INT;
+
+	/** The method that gets a long from a field of an object. */
+	private static final MethodHandle GET_LONG;
+
+	/** The offset of the address field in a buffer. */
+	private static final long ADDRESS_OFFSET;
+
+	static {
+		try {
+			Class<?> type = Class.forName("sun.misc.Unsafe");
+			Field field = type.getDeclaredField("theUnsafe");
+			field.setAccessible(true);
+			Object unsafe = field.get(null);
+			MethodHandles.Lookup lookup = MethodHandles.lookup();
+			MethodType getLong = MethodType.methodType(long.class, Object.class, long.class);
+			MethodType putLong = MethodType.methodType(void.class, Object.class, long.class, long.class);
+			GET_LONG_VOLATILE = lookup.findVirtual(type, "getLongVolatile", getLong).bindTo(unsafe);
+			PUT_LONG_VOLATILE = lookup.findVirtual(type, "putLongVolatile", putLong).bindTo(unsafe);
+			GET_AND_ADD_LONG = lookup.findVirtual(type, "getAndAddLong",
+					MethodType.methodType(long.class, Object.class, long.class, long.class)).bindTo(unsafe);
+			GET_INT_VOLATILE = lookup.findVirtual(type, "getIntVolatile",
+					MethodType.methodType(int.class, Object.class, long.class)).bindTo(unsafe);
+			PUT_ORDERED_INT = lookup.findVirtual(type, "putOrderedInt",
+					MethodType.methodType(void.class, Object.class, long.class, int.class)).bindTo(unsafe);
+			GET_LONG = lookup.findVirtual(type, "getLong", getLong).bindTo(unsafe);
+			ADDRESS_OFFSET = (long) lookup
+					.findVirtual(type, "objectFieldOffset", MethodType.methodType(long.class, Field.class))
+					.invoke(unsafe, Buffer.class.getDeclaredField("address"));
+		} catch (Throwable e) {
+			throw new ExceptionInInitializerError(e);
+		}
+	}
+
+	/** The buffer, referenced so that the memory stays mapped. */
+	private final MappedByteBuffer buffer;
+
+	/** The address of the first byte of the buffer. */
+	private final long address;
+
+	/**
+	 * Instantiates a new mapped memory.
+	 *
+	 * @param buffer
+	 *            the buffer
+	 */
+	MappedMemory(MappedByteBuffer buffer) {
+		this.buffer = buffer;
+		try {
+			this.address = (long) GET_LONG.invokeExact((Object) buffer, ADDRESS_OFFSET);
+		} catch (Throwable e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Gets the buffer. It is returned as a ByteBuffer, as the methods of
+	 * MappedByteBuffer that newer JDKs override (such as duplicate) do not
+	 * exist on Java 8.
+	 *
+	 * @return the buffer
+	 */
+	ByteBuffer getBuffer() {
+		return buffer;
+	}
+
+	/**
+	 * Forces changes to the memory to be written to the file.
+	 */
+	void force() {
+		buffer.force();
+	}
+
+	/**
+	 * Gets the long at an offset (with volatile semantics).
+	 *
+	 * @param offset
+	 *            the offset (aligned at 8 bytes)
+	 * @return the long
+	 */
+	long getLongVolatile(int offset) {
+		try {
+			return (long) GET_LONG_VOLATILE.invokeExact((Object) null, address + offset);
+		} catch (Throwable e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Sets the long at an offset (with volatile semantics).
+	 *
+	 * @param offset
+	 *            the offset (aligned at 8 bytes)
+	 * @param value
+	 *            the value
+	 */
+	void putLongVolatile(int offset, long value) {
+		try {
+			PUT_LONG_VOLATILE.invokeExact((Object) null, address + offset, value);
+		} catch (Throwable e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Atomically adds to the long at an offset.
+	 *
+	 * @param offset
+	 *            the offset (aligned at 8 bytes)
+	 * @param delta
+	 *            the delta
+	 * @return the previous value
+	 */
+	long addLong(int offset, long delta) {
+		try {
+			return (long) GET_AND_ADD_LONG.invokeExact((Object) null, address + offset, delta);
+		} catch (Throwable e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Gets the int at an offset (with volatile semantics).
+	 *
+	 * @param offset
+	 *            the offset (aligned at 4 bytes)
+	 * @return the int
+	 */
+	int getIntVolatile(int offset) {
+		try {
+			return (int) GET_INT_VOLATILE.invokeExact((Object) null, address + offset);
+		} catch (Throwable e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Sets the int at an offset as an ordered write, so that all writes before
+	 * it are visible to a reader that reads it.
+	 *
+	 * @param offset
+	 *            the offset (aligned at 4 bytes)
+	 * @param value
+	 *            the value
+	 */
+	void putIntOrdered(int offset, int value) {
+		try {
+			PUT_ORDERED_INT.invokeExact((Object) null, address + offset, value);
+		} catch (Throwable e) {
+			throw new IllegalStateException(e);
+		}
+	}
+}
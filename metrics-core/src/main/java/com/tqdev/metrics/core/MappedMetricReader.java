@@ -0,0 +1,160 @@
+/* Copyright (C) 2017 Maurits van der Schee
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.tqdev.metrics.core;
+
+import static com.tqdev.metrics.core.MappedMetricStore.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The Class MappedMetricReader maps a file that is written by a
+ * {@link MappedMetricStore} (of another process) and reads snapshots of the
+ * counters from it, without any request to the process that writes it. It
+ * can also be used to inspect the last values after that process has died.
+ */
+public class MappedMetricReader {
+
+	/** The mapped memory of the file. */
+	private final MappedMemory memory;
+
+	/** The number of slots. */
+	private final int capacity;
+
+	/**
+	 * Instantiates a new mapped metric reader.
+	 *
+	 * @param file
+	 *            the file
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred or that the file
+	 *             is not written by a metric store.
+	 */
+	public MappedMetricReader(File file) throws IOException {
+		try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+			long size = raf.length();
+			if (size < HEADER_SIZE) {
+				throw new IOException("Not a metric store: " + file);
+			}
+			memory = new MappedMemory(raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, size));
+		}
+		ByteBuffer buffer = memory.getBuffer();
+		if (buffer.getInt(MAGIC_OFFSET) != MAGIC) {
+			throw new IOException("Not a metric store: " + file);
+		}
+		if (buffer.getInt(VERSION_OFFSET) != VERSION) {
+			throw new IOException("Unsupported metric store version: " + buffer.getInt(VERSION_OFFSET));
+		}
+		capacity = buffer.getInt(CAPACITY_OFFSET);
+		if (HEADER_SIZE + (long) capacity * SLOT_SIZE + buffer.getInt(NAMES_SIZE_OFFSET) > buffer.capacity()) {
+			throw new IOException("Truncated metric store: " + file);
+		}
+	}
+
+	/**
+	 * Gets the time (in milliseconds) at which the store was created, this
+	 * changes when the writing process is restarted.
+	 *
+	 * @return the creation time
+	 */
+	public long getCreated() {
+		return memory.getBuffer().getLong(CREATED_OFFSET);
+	}
+
+	/**
+	 * Reads a snapshot of the counters in the file, grouped by type.
+	 *
+	 * @return the snapshot
+	 */
+	public Snapshot snapshot() {
+		int count = Math.min(memory.getIntVolatile(COUNT_OFFSET), capacity);
+		ByteBuffer buffer = memory.getBuffer().duplicate();
+		int names = HEADER_SIZE + capacity * SLOT_SIZE;
+		Map<String, List<Integer>> slots = new LinkedHashMap<>();
+		String[] keys = new String[count];
+		for (int i = 0; i < count; i++) {
+			int slot = HEADER_SIZE + i * SLOT_SIZE;
+			int name = names + buffer.getInt(slot + NAME_OFFSET);
+			int typeLength = buffer.getInt(slot + TYPE_LENGTH_OFFSET);
+			int keyLength = buffer.getInt(slot + KEY_LENGTH_OFFSET);
+			String type = decode(buffer, name, typeLength);
+			keys[i] = decode(buffer, name + typeLength, keyLength);
+			slots.computeIfAbsent(type, t -> new ArrayList<>()).add(i);
+		}
+		Snapshot snapshot = new Snapshot(System.currentTimeMillis(), count);
+		for (Map.Entry<String, List<Integer>> entry : slots.entrySet()) {
+			snapshot.addType(entry.getKey());
+			for (int i : entry.getValue()) {
+				long value = memory.getLongVolatile(HEADER_SIZE + i * SLOT_SIZE + VALUE_OFFSET);
+				snapshot.add(keys[i], value, null, null);
+			}
+		}
+		return snapshot;
+	}
+
+	/**
+	 * Decodes a name.
+	 *
+	 * @param buffer
+	 *            the buffer
+	 * @param offset
+	 *            the offset
+	 * @param length
+	 *            the length in bytes
+	 * @return the name
+	 */
+	private static String decode(ByteBuffer buffer, int offset, int length) {
+		byte[] bytes = new byte[length];
+		((Buffer) buffer).position(offset);
+		buffer.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Prints the counters in a file written by a metric store.
+	 *
+	 * @param args
+	 *            the file
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length != 1) {
+			System.err.println("Usage: java " + MappedMetricReader.class.getName() + " <file>");
+			System.exit(1);
+		}
+		Snapshot snapshot = new MappedMetricReader(new File(args[0])).snapshot();
+		for (int t = 0; t < snapshot.getTypeCount(); t++) {
+			for (int i = snapshot.getStart(t); i < snapshot.getEnd(t); i++) {
+				System.out.println(snapshot.getType(t) + " " + snapshot.getKey(i) + " " + snapshot.getValue(i));
+			}
+		}
+	}
+}
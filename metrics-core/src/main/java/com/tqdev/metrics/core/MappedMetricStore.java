@@ -0,0 +1,301 @@
+/* Copyright (C) 2017 Maurits van der Schee
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.tqdev.metrics.core;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+
+/**
+ * The Class MappedMetricStore keeps the values of counters in a memory-mapped
+ * file, so that they can be read by another process (using
+ * {@link MappedMetricReader}) without any request to this JVM, and so that
+ * the last values can be inspected after the JVM has died. Counters are
+ * updated with atomic writes to the mapped memory, the operating system
+ * writes the memory to the file.
+ *
+ * The file starts with a header, followed by a fixed number of slots (64
+ * bytes each, so that counters do not share cache lines) that hold the value
+ * and the location of the name, followed by a region with the names (UTF-8
+ * type and key). A slot is published by incrementing the count in the header
+ * after the slot and its name are written. When the slots or the names are
+ * exhausted, counters are kept on the heap (and are not exported).
+ */
+public class MappedMetricStore {
+
+	/** The magic number that identifies the file ("TQMS"). */
+	static final int MAGIC = 0x54514D53;
+
+	/** The version of the file format. */
+	static final int VERSION = 1;
+
+	/** The offset of the magic number in the header. */
+	static final int MAGIC_OFFSET = 0;
+
+	/** The offset of the version in the header. */
+	static final int VERSION_OFFSET = 4;
+
+	/** The offset of the capacity (number of slots) in the header. */
+	static final int CAPACITY_OFFSET = 8;
+
+	/** The offset of the size of the name region in the header. */
+	static final int NAMES_SIZE_OFFSET = 12;
+
+	/** The offset of the number of published slots in the header. */
+	static final int COUNT_OFFSET = 16;
+
+	/** The offset of the creation time (in milliseconds) in the header. */
+	static final int CREATED_OFFSET = 24;
+
+	/** The size of the header. */
+	static final int HEADER_SIZE = 64;
+
+	/** The size of a slot. */
+	static final int SLOT_SIZE = 64;
+
+	/** The offset of the value in a slot. */
+	static final int VALUE_OFFSET = 0;
+
+	/** The offset of the name (relative to the name region) in a slot. */
+	static final int NAME_OFFSET = 8;
+
+	/** The offset of the length of the type (in bytes) in a slot. */
+	static final int TYPE_LENGTH_OFFSET = 12;
+
+	/** The offset of the length of the key (in bytes) in a slot. */
+	static final int KEY_LENGTH_OFFSET = 16;
+
+	/** The default number of bytes in the name region per slot. */
+	public static final int DEFAULT_NAME_BYTES_PER_SLOT = 128;
+
+	/** The file. */
+	private final File file;
+
+	/** The mapped memory of the file. */
+	private final MappedMemory memory;
+
+	/** The number of slots. */
+	private final int capacity;
+
+	/** The size of the name region. */
+	private final int namesSize;
+
+	/** The number of used slots. */
+	private int count;
+
+	/** The number of used bytes in the name region. */
+	private int namesEnd;
+
+	/** The counters by type and key. */
+	private final HashMap<String, HashMap<String, Counter>> counters;
+
+	/**
+	 * Instantiates a new mapped metric store. The file is created or, when it
+	 * exists, overwritten.
+	 *
+	 * @param file
+	 *            the file
+	 * @param capacity
+	 *            the maximum number of counters in the file
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public MappedMetricStore(File file, int capacity) throws IOException {
+		this(file, capacity, capacity * DEFAULT_NAME_BYTES_PER_SLOT);
+	}
+
+	/**
+	 * Instantiates a new mapped metric store. The file is created or, when it
+	 * exists, overwritten.
+	 *
+	 * @param file
+	 *            the file
+	 * @param capacity
+	 *            the maximum number of counters in the file
+	 * @param namesSize
+	 *            the number of bytes for the types and keys of the counters
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public MappedMetricStore(File file, int capacity, int namesSize) throws IOException {
+		if (capacity < 0 || namesSize < 0) {
+			throw new IllegalArgumentException("Capacity and names size must not be negative");
+		}
+		this.file = file;
+		this.capacity = capacity;
+		this.namesSize = namesSize;
+		this.counters = new HashMap<>();
+		long size = HEADER_SIZE + (long) capacity * SLOT_SIZE + namesSize;
+		if (size > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("Store too large: " + size + " bytes");
+		}
+		try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+			raf.setLength(size);
+			memory = new MappedMemory(raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size));
+		}
+		ByteBuffer buffer = memory.getBuffer();
+		memory.putIntOrdered(COUNT_OFFSET, 0);
+		buffer.putInt(MAGIC_OFFSET, MAGIC);
+		buffer.putInt(VERSION_OFFSET, VERSION);
+		buffer.putInt(CAPACITY_OFFSET, capacity);
+		buffer.putInt(NAMES_SIZE_OFFSET, namesSize);
+		buffer.putLong(CREATED_OFFSET, System.currentTimeMillis());
+	}
+
+	/**
+	 * Gets the file.
+	 *
+	 * @return the file
+	 */
+	public File getFile() {
+		return file;
+	}
+
+	/**
+	 * Gets the maximum number of counters in the file.
+	 *
+	 * @return the capacity
+	 */
+	public int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * Gets the number of counters in the file.
+	 *
+	 * @return the number of counters
+	 */
+	public synchronized int size() {
+		return count;
+	}
+
+	/**
+	 * Forces the values to be written to the file, this is not needed for
+	 * readers or when the JVM dies, only when the machine may crash.
+	 */
+	public void force() {
+		memory.force();
+	}
+
+	/**
+	 * Gets the counter for a given type and key from the file. The counter is
+	 * allocated when it does not exist, its value is kept when it does.
+	 *
+	 * @param type
+	 *            the type
+	 * @param key
+	 *            the key
+	 * @return the counter, or null when the file is full
+	 */
+	synchronized Counter counter(String type, String key) {
+		HashMap<String, Counter> map = counters.computeIfAbsent(type, t -> new HashMap<>());
+		Counter counter = map.get(key);
+		if (counter != null) {
+			return counter;
+		}
+		byte[] typeBytes = type.getBytes(StandardCharsets.UTF_8);
+		byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+		if (count == capacity || namesEnd + typeBytes.length + keyBytes.length > namesSize) {
+			return null;
+		}
+		ByteBuffer buffer = memory.getBuffer().duplicate();
+		((Buffer) buffer).position(HEADER_SIZE + capacity * SLOT_SIZE + namesEnd);
+		buffer.put(typeBytes);
+		buffer.put(keyBytes);
+		int slot = HEADER_SIZE + count * SLOT_SIZE;
+		buffer.putLong(slot + VALUE_OFFSET, 0);
+		buffer.putInt(slot + NAME_OFFSET, namesEnd);
+		buffer.putInt(slot + TYPE_LENGTH_OFFSET, typeBytes.length);
+		buffer.putInt(slot + KEY_LENGTH_OFFSET, keyBytes.length);
+		namesEnd += typeBytes.length + keyBytes.length;
+		count++;
+		memory.putIntOrdered(COUNT_OFFSET, count);
+		counter = new Cell(memory, slot + VALUE_OFFSET);
+		map.put(key, counter);
+		return counter;
+	}
+
+	/**
+	 * The Class Cell is a counter that holds its value in the mapped memory.
+	 */
+	private static final class Cell extends Counter {
+
+		/** The memory. */
+		private final MappedMemory memory;
+
+		/** The offset of the value. */
+		private final int offset;
+
+		/**
+		 * Instantiates a new cell.
+		 *
+		 * @param memory
+		 *            the memory
+		 * @param offset
+		 *            the offset of the value
+		 */
+		Cell(MappedMemory memory, int offset) {
+			super(null);
+			this.memory = memory;
+			this.offset = offset;
+		}
+
+		@Override
+		public void increment() {
+			memory.addLong(offset, 1);
+			touch();
+		}
+
+		@Override
+		public void decrement() {
+			memory.addLong(offset, -1);
+			touch();
+		}
+
+		@Override
+		public void add(long value) {
+			memory.addLong(offset, value);
+			touch();
+		}
+
+		@Override
+		public long get() {
+			return memory.getLongVolatile(offset);
+		}
+
+		@Override
+		void set(long value) {
+			memory.putLongVolatile(offset, value);
+			touch();
+		}
+
+		@Override
+		void reset() {
+			memory.putLongVolatile(offset, 0);
+			touch();
+		}
+	}
+}
@@ -21,10 +21,13 @@
 package com.tqdev.metrics.core;
 
 import static java.util.Collections.emptySet;
+import static java.util.Collections.singleton;
 
+import java.util.IdentityHashMap;
 import java.util.Map;
+import java.util.TreeSet;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * The Class MetricRegistry provides access to all metrics that are tracked.
@@ -33,20 +36,72 @@ public class MetricRegistry {
 
 	/**
 	 * The values in the metric registry have a type and a key and are of type
-	 * LongAdder or Gauge.
+	 * Counter, Gauge, Histogram, Sketch or (one of the two series of a) Timer.
 	 */
 	protected volatile ConcurrentHashMap<String, ConcurrentHashMap<String, Object>> values;
 
+	/**
+	 * The timers in the metric registry by type (without the ".Invocations" or
+	 * ".Durations" suffix) and key.
+	 */
+	protected final ConcurrentHashMap<String, ConcurrentHashMap<String, Timer>> timers;
+
 	/**
 	 * Metrics enabled status.
 	 */
 	protected boolean enabled;
 
+	/**
+	 * Whether timers keep a histogram of their durations.
+	 */
+	protected volatile boolean timerHistograms;
+
+	/**
+	 * The default maximum number of keys per type.
+	 */
+	public static final int DEFAULT_MAX_KEYS_PER_TYPE = 10000;
+
+	/**
+	 * The key that metrics are stored under when a type has reached the
+	 * maximum number of keys.
+	 */
+	public static final String OVERFLOW_KEY = "(overflow)";
+
+	/**
+	 * The type of the counters of updates that are stored under the overflow
+	 * key (by type).
+	 */
+	public static final String DROPPED_UPDATES_TYPE = "metrics.Registry.DroppedUpdates";
+
+	/**
+	 * The counters of updates that are stored under the overflow key by type,
+	 * so that an overflowing update does not look them up in the registry.
+	 */
+	private final ConcurrentHashMap<String, Counter> droppedUpdates = new ConcurrentHashMap<>();
+
+	/**
+	 * The maximum number of keys per type.
+	 */
+	protected volatile int maxKeysPerType = DEFAULT_MAX_KEYS_PER_TYPE;
+
+	/**
+	 * The store in which the values of new counters are kept, or null when
+	 * they are kept on the heap.
+	 */
+	protected volatile MappedMetricStore store;
+
+	/**
+	 * The structure version, it is incremented after a type or key is added
+	 * or removed.
+	 */
+	protected final AtomicLong structureVersion = new AtomicLong();
+
 	/**
 	 * Instantiates a new metric registry.
 	 */
 	public MetricRegistry() {
 		values = new ConcurrentHashMap<>();
+		timers = new ConcurrentHashMap<>();
 		enabled = true;
 	}
 
@@ -55,18 +110,137 @@ public class MetricRegistry {
 	 */
 	public MetricRegistry(boolean enabled) {
 		values = new ConcurrentHashMap<>();
+		timers = new ConcurrentHashMap<>();
 		this.enabled = enabled;
 	}
 
 	/**
-	 * Resets the metric registry.
+	 * Resets the metric registry. Counters, timers, histograms and sketches
+	 * that are handed out by {@link #counter(String, String)},
+	 * {@link #timer(String, String)}, {@link #histogram(String, String)} and
+	 * {@link #sketch(String, String)} are kept and set to zero, all other
+	 * metrics are removed.
 	 */
 	public void reset() {
-		for (Map.Entry<String, ConcurrentHashMap<String, Object>> entry : values.entrySet()) {
-			entry.getValue().clear();
+		for (ConcurrentHashMap<String, Timer> map : timers.values()) {
+			for (String key : map.keySet()) {
+				map.computeIfPresent(key, (k, t) -> {
+					if (t.pinned) {
+						t.reset();
+						return t;
+					}
+					t.removed = true;
+					return null;
+				});
+			}
+		}
+		for (ConcurrentHashMap<String, Object> map : values.values()) {
+			for (String key : map.keySet()) {
+				map.computeIfPresent(key, (k, o) -> {
+					if (o instanceof Counter) {
+						// a counter in a store is reused when it is created again
+						((Counter) o).reset();
+						if (((Counter) o).pinned) {
+							return o;
+						}
+					}
+					if (o instanceof Timer.Series && !((Timer.Series) o).timer.removed) {
+						return o;
+					}
+					if (o instanceof Histogram) {
+						Histogram histogram = (Histogram) o;
+						if (histogram.pinned) {
+							histogram.reset();
+							return o;
+						}
+						if (histogram.timer != null && !histogram.timer.removed) {
+							return o;
+						}
+					}
+					if (o instanceof Sketch && ((Sketch) o).pinned) {
+						((Sketch) o).reset();
+						return o;
+					}
+					return null;
+				});
+			}
+		}
+		structureVersion.incrementAndGet();
+	}
+
+	/**
+	 * Checks if timers keep a histogram of their durations.
+	 *
+	 * @return true, if timers keep a histogram
+	 */
+	public boolean hasTimerHistograms() {
+		return timerHistograms;
+	}
+
+	/**
+	 * Sets whether timers keep a histogram of their durations. The histogram
+	 * of a timer has the type of the timer with suffix ".Latencies". It uses
+	 * about 2.5 kB per key, and at most about 12.5 kB for a key that is
+	 * recorded concurrently by many threads (see {@link Histogram}).
+	 *
+	 * @param timerHistograms
+	 *            whether timers keep a histogram
+	 */
+	public void setTimerHistograms(boolean timerHistograms) {
+		this.timerHistograms = timerHistograms;
+		for (Map.Entry<String, ConcurrentHashMap<String, Timer>> entry : timers.entrySet()) {
+			for (Map.Entry<String, Timer> timer : entry.getValue().entrySet()) {
+				registerTimerHistogram(entry.getKey(), timer.getKey(), timer.getValue());
+			}
 		}
 	}
 
+	/**
+	 * Gets the maximum number of keys per type.
+	 *
+	 * @return the maximum number of keys per type
+	 */
+	public int getMaxKeysPerType() {
+		return maxKeysPerType;
+	}
+
+	/**
+	 * Sets the maximum number of keys per type. When a type has reached the
+	 * maximum, metrics with new keys are stored under the key "(overflow)" and
+	 * every update that is stored there is counted in type
+	 * "metrics.Registry.DroppedUpdates" (with the type as key). This keeps the memory use and export size bounded
+	 * when keys are unbounded (such as SQL statements or usernames).
+	 *
+	 * @param maxKeysPerType
+	 *            the maximum number of keys per type
+	 */
+	public void setMaxKeysPerType(int maxKeysPerType) {
+		this.maxKeysPerType = maxKeysPerType;
+	}
+
+	/**
+	 * Gets the store in which the values of new counters are kept.
+	 *
+	 * @return the store, or null when counters are kept on the heap
+	 */
+	public MappedMetricStore getStore() {
+		return store;
+	}
+
+	/**
+	 * Sets the store in which the values of new counters are kept, so that
+	 * they can be read by other processes using a {@link MappedMetricReader}.
+	 * Counters that already exist are kept on the heap, so the store should be
+	 * set before any metrics are created. Timers, histograms, sketches and
+	 * gauges are always kept on the heap.
+	 *
+	 * @param store
+	 *            the store, or null to keep counters on the heap
+	 */
+	public void setStore(MappedMetricStore store) {
+		this.store = store;
+	}
+
 	/**
 	 * Checks if metrics are enabled.
 	 *
@@ -96,10 +270,9 @@ public class MetricRegistry {
 	 * @return true, if successful
 	 */
 	public boolean increment(String type, String key) {
-		Object o = values.computeIfAbsent(type, t -> new ConcurrentHashMap<>()).computeIfAbsent(key,
-				k -> new LongAdder());
-		if (o instanceof LongAdder) {
-			((LongAdder) o).increment();
+		Object o = getOrCreateCounter(type, key);
+		if (o instanceof Counter) {
+			((Counter) o).increment();
 			return true;
 		}
 		return false;
@@ -115,10 +288,9 @@ public class MetricRegistry {
 	 * @return true, if successful
 	 */
 	public boolean decrement(String type, String key) {
-		Object o = values.computeIfAbsent(type, t -> new ConcurrentHashMap<>()).computeIfAbsent(key,
-				k -> new LongAdder());
-		if (o instanceof LongAdder) {
-			((LongAdder) o).decrement();
+		Object o = getOrCreateCounter(type, key);
+		if (o instanceof Counter) {
+			((Counter) o).decrement();
 			return true;
 		}
 		return false;
@@ -136,15 +308,48 @@ public class MetricRegistry {
 	 * @return true, if successful
 	 */
 	public boolean add(String type, String key, long value) {
-		Object o = values.computeIfAbsent(type, t -> new ConcurrentHashMap<>()).computeIfAbsent(key,
-				k -> new LongAdder());
-		if (o instanceof LongAdder) {
-			((LongAdder) o).add(value);
+		Object o = getOrCreateCounter(type, key);
+		if (o instanceof Counter) {
+			((Counter) o).add(value);
 			return true;
 		}
 		return false;
 	}
 
+	/**
+	 * Records an invocation with its duration in the timer for a given type and
+	 * key. The invocation count and the total duration can be read using the
+	 * type with suffix ".Invocations" and ".Durations".
+	 *
+	 * @param type
+	 *            the type
+	 * @param key
+	 *            the key
+	 * @param duration
+	 *            the duration in nanoseconds
+	 */
+	public void record(String type, String key, long duration) {
+		ConcurrentHashMap<String, Timer> map = timers.get(type);
+		if (map != null) {
+			Timer timer = map.get(key);
+			if (timer != null) {
+				timer.record(duration);
+				return;
+			}
+		}
+		if (map == null) {
+			map = timers.computeIfAbsent(type, t -> new ConcurrentHashMap<>());
+		}
+		String limitedKey = limitKey(type, map, key);
+		Timer timer = map.get(limitedKey);
+		if (timer == null) {
+			int size = map.size();
+			timer = map.computeIfAbsent(limitedKey, k -> registerTimer(type, k, new Timer()));
+			checkStructure(map, size);
+		}
+		timer.record(duration);
+	}
+
 	/**
 	 * Sets the value of a metric for a given type and key.
 	 *
@@ -156,9 +361,22 @@ public class MetricRegistry {
 	 *            the value
 	 */
 	public void set(String type, String key, long value) {
-		LongAdder adder = new LongAdder();
-		adder.add(value);
-		values.computeIfAbsent(type, t -> new ConcurrentHashMap<>()).put(key, adder);
+		ConcurrentHashMap<String, Object> map = values.get(type);
+		if (map != null) {
+			Object o = map.get(key);
+			if (o instanceof Counter) {
+				((Counter) o).set(value);
+				return;
+			}
+		}
+		map = values.computeIfAbsent(type, t -> new ConcurrentHashMap<>());
+		int size = map.size();
+		map.compute(limitKey(type, map, key), (k, o) -> {
+			Counter counter = (o instanceof Counter) ? (Counter) o : newCounter(type, k);
+			counter.set(value);
+			return counter;
+		});
+		checkStructure(map, size);
 	}
 
 	/**
@@ -172,7 +390,321 @@ public class MetricRegistry {
 	 *            the value
 	 */
 	public void set(String type, String key, Gauge value) {
-		values.computeIfAbsent(type, t -> new ConcurrentHashMap<>()).put(key, value);
+		ConcurrentHashMap<String, Object> map = values.computeIfAbsent(type, t -> new ConcurrentHashMap<>());
+		int size = map.size();
+		map.put(limitKey(type, map, key), value);
+		checkStructure(map, size);
+	}
+
+	/**
+	 * Gets the counter of a metric for a given type and key, so that it can be
+	 * updated without looking it up. The counter is created when it does not
+	 * exist and it is kept (at zero) when the registry is reset. When the
+	 * metric is a Gauge a detached counter is returned, updates to it are not
+	 * registered.
+	 *
+	 * @param type
+	 *            the type
+	 * @param key
+	 *            the key
+	 * @return the counter
+	 */
+	public Counter counter(String type, String key) {
+		ConcurrentHashMap<String, Object> map = values.computeIfAbsent(type, t -> new ConcurrentHashMap<>());
+		int size = map.size();
+		Object o = map.compute(limitKey(type, map, key), (k, v) -> {
+			Object value = (v == null) ? newCounter(type, k) : v;
+			if (value instanceof Counter) {
+				((Counter) value).pinned = true;
+			}
+			return value;
+		});
+		checkStructure(map, size);
+		if (o instanceof Counter) {
+			return (Counter) o;
+		}
+		return new Counter();
+	}
+
+	/**
+	 * Gets the timer for a given type and key, so that it can be updated
+	 * without looking it up. The timer is created when it does not exist and
+	 * it is kept (at zero) when the registry is reset. The invocation count and
+	 * the total duration can be read using the type with suffix ".Invocations"
+	 * and ".Durations".
+	 *
+	 * @param type
+	 *            the type
+	 * @param key
+	 *            the key
+	 * @return the timer
+	 */
+	public Timer timer(String type, String key) {
+		ConcurrentHashMap<String, Timer> map = timers.get(type);
+		if (map != null) {
+			Timer timer = map.get(key);
+			if (timer != null && timer.pinned) {
+				return timer;
+			}
+		}
+		map = timers.computeIfAbsent(type, t -> new ConcurrentHashMap<>());
+		int size = map.size();
+		Timer timer = map.compute(limitKey(type, map, key), (k, t) -> {
+			Timer value = (t == null) ? registerTimer(type, k, new Timer()) : t;
+			value.pinned = true;
+			return value;
+		});
+		checkStructure(map, size);
+		return timer;
+	}
+
+	/**
+	 * Gets the metric for a given type and key, creating a counter when it does
+	 * not exist. Existing metrics are found using plain lookups, so that
+	 * updating them does not allocate or lock.
+	 *
+	 * @param type
+	 *            the type
+	 * @param key
+	 *            the key
+	 * @return the metric
+	 */
+	private Object getOrCreateCounter(String type, String key) {
+		ConcurrentHashMap<String, Object> map = values.get(type);
+		if (map != null) {
+			Object o = map.get(key);
+			if (o != null) {
+				return o;
+			}
+		}
+		if (map == null) {
+			map = values.computeIfAbsent(type, t -> new ConcurrentHashMap<>());
+		}
+		String limitedKey = limitKey(type, map, key);
+		Object o = map.get(limitedKey);
+		if (o == null) {
+			int size = map.size();
+			o = map.computeIfAbsent(limitedKey, k -> newCounter(type, k));
+			checkStructure(map, size);
+		}
+		return o;
+	}
+
+	/**
+	 * Creates a new counter for a given type and key, in the store when it is
+	 * set and not full, otherwise on the heap.
+	 *
+	 * @param type
+	 *            the type
+	 * @param key
+	 *            the key
+	 * @return the counter
+	 */
+	private Counter newCounter(String type, String key) {
+		MappedMetricStore store = this.store;
+		if (store != null) {
+			Counter counter = store.counter(type, key);
+			if (counter != null) {
+				return counter;
+			}
+		}
+		return new Counter();
+	}
+
+	/**
+	 * Gets the key that a metric of a given type and key is stored under. This
+	 * is the key itself, unless the key does not exist and the type has
+	 * reached the maximum number of keys, then the update is counted as
+	 * dropped and the overflow key is returned. The counter of dropped updates
+	 * is kept per type, so that this does not lock. As the check is not
+	 * atomic, concurrent updates may (slightly) exceed the maximum.
+	 *
+	 * @param type
+	 *            the type
+	 * @param map
+	 *            the map with the keys of the type
+	 * @param key
+	 *            the key
+	 * @return the key that the metric is stored under
+	 */
+	private String limitKey(String type, ConcurrentHashMap<String, ?> map, String key) {
+		if (map.size() < maxKeysPerType || map.containsKey(key) || OVERFLOW_KEY.equals(key)) {
+			return key;
+		}
+		Counter dropped = droppedUpdates.get(type);
+		if (dropped == null) {
+			dropped = droppedUpdates.computeIfAbsent(type, t -> {
+				ConcurrentHashMap<String, Object> counters = values.computeIfAbsent(DROPPED_UPDATES_TYPE,
+						u -> new ConcurrentHashMap<>());
+				int size = counters.size();
+				Object o = counters.compute(t, (k, v) -> {
+					Object value = (v == null) ? newCounter(DROPPED_UPDATES_TYPE, k) : v;
+					if (value instanceof Counter) {
+						((Counter) value).pinned = true;
+					}
+					return value;
+				});
+				checkStructure(counters, size);
+				return (o instanceof Counter) ? (Counter) o : new Counter();
+			});
+		}
+		dropped.increment();
+		return OVERFLOW_KEY;
+	}
+
+	/**
+	 * Registers the two series of a timer, the values of existing counters
+	 * are carried over.
+	 *
+	 * @param type
+	 *            the type
+	 * @param key
+	 *            the key
+	 * @param timer
+	 *            the timer
+	 * @return the timer
+	 */
+	private Timer registerTimer(String type, String key, Timer timer) {
+		values.computeIfAbsent(type + ".Invocations", t -> new ConcurrentHashMap<>()).compute(key, (k, o) -> {
+			if (o instanceof Gauge) {
+				return o;
+			}
+			if (o instanceof Counter) {
+				timer.add(((Counter) o).get(), 0);
+			}
+			return timer.invocations;
+		});
+		values.computeIfAbsent(type + ".Durations", t -> new ConcurrentHashMap<>()).compute(key, (k, o) -> {
+			if (o instanceof Gauge) {
+				return o;
+			}
+			if (o instanceof Counter) {
+				timer.add(0, ((Counter) o).get());
+			}
+			return timer.durations;
+		});
+		registerTimerHistogram(type, key, timer);
+		return timer;
+	}
+
+	/**
+	 * Registers (or unregisters) the histogram of a timer, depending on
+	 * whether timers keep a histogram.
+	 *
+	 * @param type
+	 *            the type
+	 * @param key
+	 *            the key
+	 * @param timer
+	 *            the timer
+	 */
+	private void registerTimerHistogram(String type, String key, Timer timer) {
+		synchronized (timer) {
+			if (timerHistograms && timer.histogram == null) {
+				Histogram histogram = new Histogram();
+				histogram.timer = timer;
+				ConcurrentHashMap<String, Object> map = values.computeIfAbsent(type + ".Latencies",
+						t -> new ConcurrentHashMap<>());
+				int size = map.size();
+				map.compute(key, (k, o) -> (o instanceof Gauge) ? o : histogram);
+				checkStructure(map, size);
+				timer.histogram = histogram;
+			} else if (!timerHistograms && timer.histogram != null) {
+				ConcurrentHashMap<String, Object> map = values.get(type + ".Latencies");
+				if (map != null && map.remove(key, timer.histogram)) {
+					structureVersion.incrementAndGet();
+				}
+				timer.histogram = null;
+			}
+		}
+	}
+
+	/**
+	 * Gets the histogram for a given type and key, so that it can be updated
+	 * without looking it up. The histogram is created when it does not exist
+	 * and it is kept (at zero) when the registry is reset. When the metric is
+	 * not a histogram a detached histogram is returned, values recorded in it
+	 * are not registered.
+	 *
+	 * @param type
+	 *            the type
+	 * @param key
+	 *            the key
+	 * @return the histogram
+	 */
+	public Histogram histogram(String type, String key) {
+		ConcurrentHashMap<String, Object> map = values.computeIfAbsent(type, t -> new ConcurrentHashMap<>());
+		int size = map.size();
+		Object o = map.compute(limitKey(type, map, key), (k, v) -> {
+			Object value = (v == null) ? new Histogram() : v;
+			if (value instanceof Histogram) {
+				((Histogram) value).pinned = true;
+			}
+			return value;
+		});
+		checkStructure(map, size);
+		if (o instanceof Histogram) {
+			return (Histogram) o;
+		}
+		return new Histogram();
+	}
+
+	/**
+	 * Gets the sketch for a given type and key, so that it can be updated
+	 * without looking it up. The sketch is created when it does not exist and
+	 * it is kept (at zero) when the registry is reset. When the metric is not
+	 * a sketch a detached sketch is returned, values recorded in it are not
+	 * registered.
+	 *
+	 * @param type
+	 *            the type
+	 * @param key
+	 *            the key
+	 * @return the sketch
+	 */
+	public Sketch sketch(String type, String key) {
+		ConcurrentHashMap<String, Object> map = values.computeIfAbsent(type, t -> new ConcurrentHashMap<>());
+		int size = map.size();
+		Object o = map.compute(limitKey(type, map, key), (k, v) -> {
+			Object value = (v == null) ? new Sketch() : v;
+			if (value instanceof Sketch) {
+				((Sketch) value).pinned = true;
+			}
+			return value;
+		});
+		checkStructure(map, size);
+		if (o instanceof Sketch) {
+			return (Sketch) o;
+		}
+		return new Sketch();
+	}
+
+	/**
+	 * Gets the structure version, it changes after a type or key is added or
+	 * removed (and on reset), so that information derived from the types and
+	 * keys can be cached until it changes.
+	 *
+	 * @return the structure version
+	 */
+	public long getStructureVersion() {
+		return structureVersion.get();
+	}
+
+	/**
+	 * Increments the structure version when keys were added to (or removed
+	 * from) a map. It is called after the change, so that a reader that reads
+	 * the version before it reads the types and keys never caches a stale
+	 * result under the new version.
+	 *
+	 * @param map
+	 *            the map
+	 * @param size
+	 *            the size of the map before the change
+	 */
+	private void checkStructure(ConcurrentHashMap<String, ?> map, int size) {
+		if (map.size() != size) {
+			structureVersion.incrementAndGet();
+		}
 	}
 
 	/**
@@ -240,8 +772,14 @@ public class MetricRegistry {
 		ConcurrentHashMap<String, Object> map = values.get(type);
 		if (map != null) {
 			Object o = map.get(key);
-			if (o instanceof LongAdder) {
-				return ((LongAdder) o).sum();
+			if (o instanceof Counter) {
+				return ((Counter) o).get();
+			} else if (o instanceof Timer.Series) {
+				return ((Timer.Series) o).get();
+			} else if (o instanceof Histogram) {
+				return ((Histogram) o).getCount();
+			} else if (o instanceof Sketch) {
+				return ((Sketch) o).getCount();
 			} else if (o instanceof Gauge) {
 				return ((Gauge) o).measure();
 			}
@@ -249,6 +787,186 @@ public class MetricRegistry {
 		return 0;
 	}
 
+	/**
+	 * Gets the histogram of a metric for a given type and key.
+	 *
+	 * @param type
+	 *            the type
+	 * @param key
+	 *            the key
+	 * @return the histogram, or null when the metric is not a histogram
+	 */
+	public Histogram getHistogram(String type, String key) {
+		ConcurrentHashMap<String, Object> map = values.get(type);
+		if (map != null) {
+			Object o = map.get(key);
+			if (o instanceof Histogram) {
+				return (Histogram) o;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Gets the sketch of a metric for a given type and key.
+	 *
+	 * @param type
+	 *            the type
+	 * @param key
+	 *            the key
+	 * @return the sketch, or null when the metric is not a sketch
+	 */
+	public Sketch getSketch(String type, String key) {
+		ConcurrentHashMap<String, Object> map = values.get(type);
+		if (map != null) {
+			Object o = map.get(key);
+			if (o instanceof Sketch) {
+				return (Sketch) o;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Captures a snapshot of all metrics in one pass, so that reporters can
+	 * serialize them without looking up every key.
+	 *
+	 * @return the snapshot
+	 */
+	public Snapshot snapshot() {
+		return snapshot(values.keySet(), false, 0);
+	}
+
+	/**
+	 * Captures a snapshot of the metrics that changed since an earlier
+	 * snapshot, identified by its cursor. Metrics keep the epoch of their last
+	 * update, so untouched metrics are skipped without reading them (gauges
+	 * are measured on demand and always included).
+	 *
+	 * @param cursor
+	 *            the cursor of an earlier snapshot (or 0 for all metrics)
+	 * @return the snapshot with the changed metrics
+	 */
+	public Snapshot snapshotChangedSince(long cursor) {
+		return snapshot(values.keySet(), false, cursor);
+	}
+
+	/**
+	 * Captures a snapshot of all metrics in one pass, ordered by type and (per
+	 * type) by key when sorted, so that formats that group the metrics of a
+	 * type (in families) produce stable output.
+	 *
+	 * @param sorted
+	 *            whether the types and keys are sorted
+	 * @return the snapshot
+	 */
+	public Snapshot snapshot(boolean sorted) {
+		return snapshot(sorted ? new TreeSet<>(values.keySet()) : values.keySet(), sorted, 0);
+	}
+
+	/**
+	 * Captures a snapshot of the metrics of a given type.
+	 *
+	 * @param type
+	 *            the type
+	 * @return the snapshot (without types when the type does not exist)
+	 */
+	public Snapshot snapshot(String type) {
+		return snapshot(singleton(type), false, 0);
+	}
+
+	/**
+	 * Captures a snapshot of the metrics of the given types. The two series of
+	 * a timer are read at the same instant. The epoch is advanced before the
+	 * metrics are read, so that every update that is not in this snapshot is
+	 * stamped with (at least) the cursor of this snapshot.
+	 *
+	 * @param types
+	 *            the types
+	 * @param sorted
+	 *            whether the keys are sorted
+	 * @param since
+	 *            the cursor of an earlier snapshot (or 0 for all metrics)
+	 * @return the snapshot
+	 */
+	private Snapshot snapshot(Iterable<String> types, boolean sorted, long since) {
+		int capacity = 0;
+		for (String type : types) {
+			ConcurrentHashMap<String, Object> map = values.get(type);
+			if (map != null) {
+				capacity += map.size();
+			}
+		}
+		Snapshot snapshot = new Snapshot(getMillis(), since > 0 ? 16 : capacity);
+		snapshot.setCursor(Epoch.advance(), since);
+		IdentityHashMap<Timer, long[]> timerValues = new IdentityHashMap<>();
+		for (String type : types) {
+			ConcurrentHashMap<String, Object> map = values.get(type);
+			if (map == null) {
+				continue;
+			}
+			boolean added = false;
+			if (since <= 0) {
+				snapshot.addType(type);
+				added = true;
+			}
+			for (Map.Entry<String, Object> entry : map.entrySet()) {
+				Object o = entry.getValue();
+				long stamp = stamp(o);
+				if (stamp < since) {
+					continue;
+				}
+				if (!added) {
+					snapshot.addType(type);
+					added = true;
+				}
+				if (o instanceof Counter) {
+					snapshot.add(entry.getKey(), ((Counter) o).get(), null, null, stamp);
+				} else if (o instanceof Timer.Series) {
+					Timer.Series series = (Timer.Series) o;
+					long[] timer = timerValues.computeIfAbsent(series.timer, Timer::read);
+					snapshot.add(entry.getKey(), series.durations ? timer[1] : timer[0], null, null, stamp);
+				} else if (o instanceof Histogram) {
+					long[] quantiles = new long[Histogram.QUANTILES.length];
+					long count = ((Histogram) o).getQuantiles(Histogram.QUANTILES, quantiles);
+					snapshot.add(entry.getKey(), count, quantiles, null, stamp);
+				} else if (o instanceof Sketch) {
+					Sketch sketch = ((Sketch) o).copy();
+					long[] quantiles = new long[Histogram.QUANTILES.length];
+					long count = sketch.getQuantiles(Histogram.QUANTILES, quantiles);
+					snapshot.add(entry.getKey(), count, quantiles, sketch.toBytes(), stamp);
+				} else if (o instanceof Gauge) {
+					snapshot.addGauge(entry.getKey(), ((Gauge) o).measure());
+				}
+			}
+			if (sorted && added) {
+				snapshot.sortType();
+			}
+		}
+		return snapshot;
+	}
+
+	/**
+	 * Gets the epoch of the last update of a metric (see {@link Epoch}), read
+	 * before its value so that a concurrent update is not missed.
+	 *
+	 * @param o
+	 *            the metric
+	 * @return the epoch (maximum for gauges, which are always measured)
+	 */
+	private static long stamp(Object o) {
+		if (o instanceof Counter) {
+			return ((Counter) o).stamp;
+		} else if (o instanceof Timer.Series) {
+			return ((Timer.Series) o).timer.stamp;
+		} else if (o instanceof Histogram) {
+			return ((Histogram) o).stamp;
+		} else if (o instanceof Sketch) {
+			return ((Sketch) o).stamp;
+		}
+		return Long.MAX_VALUE;
+	}
+
 	/**
 	 * Gets the elapsed time in nanoseconds (from an arbitrary point in time,
 	 * probably JVM start).
@@ -0,0 +1,127 @@
+/* Copyright (C) 2017 Maurits van der Schee
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.tqdev.metrics.core;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * The Class NameCache holds the encoded (and escaped) form of names (such as
+ * types and keys), so that a reporter encodes every name only once instead
+ * of on every report. The names of a snapshot are the instances that are
+ * stored in the registry, so lookups are usually resolved by reference.
+ * Names are encoded on the first report that contains them (not when they
+ * are registered), as the encoding depends on the output format of the
+ * reporter. When the cache exceeds its maximum size (for instance as metrics are
+ * removed and added) it is cleared.
+ */
+public class NameCache {
+
+	/** The default maximum number of names. */
+	public static final int DEFAULT_MAX_SIZE = 100000;
+
+	/** The encoder. */
+	private final Function<String, byte[]> encoder;
+
+	/** The maximum number of names. */
+	private final int maxSize;
+
+	/** The encoded names. */
+	private final ConcurrentHashMap<String, byte[]> names;
+
+	/**
+	 * Instantiates a new name cache with the default maximum size.
+	 *
+	 * @param encoder
+	 *            the encoder
+	 */
+	public NameCache(Function<String, byte[]> encoder) {
+		this(encoder, DEFAULT_MAX_SIZE);
+	}
+
+	/**
+	 * Instantiates a new name cache.
+	 *
+	 * @param encoder
+	 *            the encoder
+	 * @param maxSize
+	 *            the maximum number of names
+	 */
+	public NameCache(Function<String, byte[]> encoder, int maxSize) {
+		this.encoder = encoder;
+		this.maxSize = maxSize;
+		this.names = new ConcurrentHashMap<>();
+	}
+
+	/**
+	 * Gets the encoded form of a name.
+	 *
+	 * @param name
+	 *            the name
+	 * @return the encoded name (that must not be modified)
+	 */
+	public byte[] get(String name) {
+		byte[] bytes = names.get(name);
+		if (bytes == null) {
+			bytes = encoder.apply(name);
+			if (names.size() >= maxSize) {
+				names.clear();
+			}
+			names.put(name, bytes);
+		}
+		return bytes;
+	}
+
+	/**
+	 * Splits a type on its first two dots in three parts, the measurement, the
+	 * instance and the type (for instance "jdbc", "Statement" and "Duration"),
+	 * that reporters map to their names and labels. Parts that are missing
+	 * are empty, the last part may contain dots.
+	 *
+	 * @param type
+	 *            the type
+	 * @return the three parts
+	 */
+	public static String[] splitType(String type) {
+		String[] parts = { type, "", "" };
+		int first = type.indexOf('.');
+		if (first >= 0) {
+			parts[0] = type.substring(0, first);
+			int second = type.indexOf('.', first + 1);
+			if (second >= 0) {
+				parts[1] = type.substring(first + 1, second);
+				parts[2] = type.substring(second + 1);
+			} else {
+				parts[1] = type.substring(first + 1);
+			}
+		}
+		return parts;
+	}
+
+	/**
+	 * Gets the number of names in the cache.
+	 *
+	 * @return the number of names
+	 */
+	public int size() {
+		return names.size();
+	}
+}
@@ -0,0 +1,50 @@
+/* Copyright (C) 2017 Maurits van der Schee
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.tqdev.metrics.core;
+
+/**
+ * The Reporter interface is implemented by reporters that can report a given
+ * snapshot of the registry, so that a {@link ReportingScheduler} can take a
+ * single snapshot per interval and hand it to all of its reporters.
+ */
+public interface Reporter {
+
+	/**
+	 * Report the metrics of a (consistent) snapshot of the registry.
+	 *
+	 * @param snapshot
+	 *            the snapshot
+	 * @return true, if successful
+	 */
+	boolean report(Snapshot snapshot);
+
+	/**
+	 * Gets the cursor of the last reported snapshot, for reporters that only
+	 * report the metrics that changed since then (see
+	 * {@link Snapshot#changedSince(long)}), so that the scheduler can skip
+	 * the metrics that no reporter needs.
+	 *
+	 * @return the cursor (or -1 when all metrics are reported)
+	 */
+	default long getCursor() {
+		return -1;
+	}
+}
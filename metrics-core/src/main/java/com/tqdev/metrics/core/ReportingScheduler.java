@@ -0,0 +1,375 @@
+/* Copyright (C) 2017 Maurits van der Schee
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.tqdev.metrics.core;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The ReportingScheduler class runs any number of reporters on a single
+ * schedule. Every tick a single snapshot of the registry is taken and handed
+ * to all reporters, so that they report the same values. The ticks are
+ * aligned to multiples of the interval on the wall clock (so that the series
+ * of different hosts line up), shifted by a random jitter that is chosen once
+ * per scheduler (so that a fleet of hosts does not report at the same
+ * moment). Every reporter runs on a (daemon) worker thread, when a reporter
+ * has not finished its previous report the tick is skipped for that reporter
+ * instead of queued, so that a slow reporter does not pile up work or delay
+ * the other reporters. All schedulers share a single ticker thread and a
+ * pool of worker threads (that only exist while reports run). Reporters that
+ * are run on their own (using their "run" method) are added to the scheduler
+ * that is shared by the registry and interval, see
+ * {@link #addShared(MetricRegistry, int, Reporter)}.
+ */
+public class ReportingScheduler {
+
+	/** The type of the counters of reports that failed (by reporter). */
+	public static final String ERRORS_TYPE = "metrics.Reporter.Errors";
+
+	/** The executor that schedules the ticks of all schedulers. */
+	private static final ScheduledThreadPoolExecutor TICKER;
+
+	/** The executor that runs the reports of all schedulers. */
+	private static final ThreadPoolExecutor WORKERS;
+
+	/** The shared schedulers by registry and interval (guarded by itself). */
+	private static final Map<MetricRegistry, Map<Integer, ReportingScheduler>> SHARED = new HashMap<>();
+
+	static {
+		TICKER = new ScheduledThreadPoolExecutor(1, runnable -> {
+			Thread thread = new Thread(runnable, "metrics-reporting-scheduler");
+			thread.setDaemon(true);
+			return thread;
+		});
+		TICKER.setRemoveOnCancelPolicy(true);
+		WORKERS = new ThreadPoolExecutor(0, Integer.MAX_VALUE, 60, TimeUnit.SECONDS, new SynchronousQueue<>(),
+				runnable -> {
+					Thread thread = new Thread(runnable, "metrics-reporter");
+					thread.setDaemon(true);
+					return thread;
+				});
+	}
+
+	/** The registry of which the snapshots are taken. */
+	private final MetricRegistry registry;
+
+	/** The interval in milliseconds. */
+	private final long intervalMillis;
+
+	/** The offset of the ticks from the interval boundaries (the jitter). */
+	private final long offsetMillis;
+
+	/** The reporters (with their state). */
+	private final List<Task> tasks = new CopyOnWriteArrayList<>();
+
+	/** The number of reports that were skipped. */
+	private final AtomicLong skipped = new AtomicLong();
+
+	/** The number of reports that failed with an exception. */
+	private final AtomicLong errors = new AtomicLong();
+
+	/** The interval in seconds when the scheduler is shared (or zero). */
+	private int sharedInterval;
+
+	/** Whether the scheduler was started. */
+	private boolean started;
+
+	/** Whether the scheduler was shut down. */
+	private volatile boolean shutdown;
+
+	/** The next scheduled tick (or null). */
+	private ScheduledFuture<?> next;
+
+	/** The time of the last scheduled tick. */
+	private long lastTick;
+
+	/**
+	 * Instantiates a new reporting scheduler with a jitter of at most a tenth
+	 * of the interval.
+	 *
+	 * @param registry
+	 *            the registry
+	 * @param intervalInSeconds
+	 *            the interval in seconds
+	 */
+	public ReportingScheduler(MetricRegistry registry, int intervalInSeconds) {
+		this(registry, TimeUnit.SECONDS.toMillis(intervalInSeconds), TimeUnit.SECONDS.toMillis(intervalInSeconds) / 10);
+	}
+
+	/**
+	 * Instantiates a new reporting scheduler.
+	 *
+	 * @param registry
+	 *            the registry
+	 * @param intervalMillis
+	 *            the interval in milliseconds
+	 * @param maxJitterMillis
+	 *            the max jitter in milliseconds (less than the interval)
+	 */
+	public ReportingScheduler(MetricRegistry registry, long intervalMillis, long maxJitterMillis) {
+		if (intervalMillis <= 0) {
+			throw new IllegalArgumentException("interval must be positive");
+		}
+		if (maxJitterMillis < 0 || maxJitterMillis >= intervalMillis) {
+			throw new IllegalArgumentException("jitter must be less than the interval");
+		}
+		this.registry = registry;
+		this.intervalMillis = intervalMillis;
+		this.offsetMillis = maxJitterMillis == 0 ? 0 : ThreadLocalRandom.current().nextLong(maxJitterMillis + 1);
+	}
+
+	/**
+	 * Adds a reporter to the (started) scheduler that is shared by all
+	 * reporters of a registry that report at the same interval, so that they
+	 * report the same snapshots. The shared scheduler is created when it does
+	 * not exist and it is shut down when its last reporter is removed.
+	 *
+	 * @param registry
+	 *            the registry
+	 * @param intervalInSeconds
+	 *            the interval in seconds
+	 * @param reporter
+	 *            the reporter
+	 * @return the shared scheduler
+	 */
+	public static ReportingScheduler addShared(MetricRegistry registry, int intervalInSeconds, Reporter reporter) {
+		synchronized (SHARED) {
+			ReportingScheduler scheduler = SHARED.computeIfAbsent(registry, r -> new HashMap<>())
+					.computeIfAbsent(intervalInSeconds, i -> new ReportingScheduler(registry, i));
+			scheduler.sharedInterval = intervalInSeconds;
+			scheduler.add(reporter);
+			scheduler.start();
+			return scheduler;
+		}
+	}
+
+	/**
+	 * Adds a reporter, it is reported to from the next tick on.
+	 *
+	 * @param reporter
+	 *            the reporter
+	 */
+	public void add(Reporter reporter) {
+		tasks.add(new Task(reporter));
+	}
+
+	/**
+	 * Removes a reporter, a report that is running is not interrupted. A
+	 * shared scheduler is shut down when its last reporter is removed.
+	 *
+	 * @param reporter
+	 *            the reporter
+	 */
+	public void remove(Reporter reporter) {
+		synchronized (SHARED) {
+			tasks.removeIf(task -> task.reporter == reporter);
+			if (sharedInterval > 0 && tasks.isEmpty()) {
+				Map<Integer, ReportingScheduler> schedulers = SHARED.get(registry);
+				if (schedulers != null && schedulers.remove(sharedInterval, this) && schedulers.isEmpty()) {
+					SHARED.remove(registry);
+				}
+				shutdown();
+			}
+		}
+	}
+
+	/**
+	 * Gets the offset of the ticks from the interval boundaries.
+	 *
+	 * @return the offset in milliseconds
+	 */
+	public long getOffsetMillis() {
+		return offsetMillis;
+	}
+
+	/**
+	 * Gets the number of reports that were skipped, because the reporter had
+	 * not finished its previous report.
+	 *
+	 * @return the number of skipped reports
+	 */
+	public long getSkippedCount() {
+		return skipped.get();
+	}
+
+	/**
+	 * Gets the number of reports that failed with an exception, these are
+	 * also counted in type "metrics.Reporter.Errors" (with the simple class
+	 * name of the reporter as key).
+	 *
+	 * @return the number of failed reports
+	 */
+	public long getErrorCount() {
+		return errors.get();
+	}
+
+	/**
+	 * Starts scheduling the ticks, the first tick is on the next (jittered)
+	 * interval boundary.
+	 */
+	public synchronized void start() {
+		if (started) {
+			return;
+		}
+		started = true;
+		schedule();
+	}
+
+	/**
+	 * Calculates the first tick after a time.
+	 *
+	 * @param millis
+	 *            the time in milliseconds
+	 * @return the time of the tick in milliseconds
+	 */
+	long nextTick(long millis) {
+		return Math.floorDiv(millis - offsetMillis, intervalMillis) * intervalMillis + intervalMillis + offsetMillis;
+	}
+
+	/**
+	 * Schedules the next tick. Ticks that have passed (as the ticker thread
+	 * was not scheduled in time) are skipped, and a tick is never scheduled
+	 * twice (when the delay expires slightly before the wall clock reaches
+	 * the tick).
+	 */
+	private synchronized void schedule() {
+		if (shutdown) {
+			return;
+		}
+		long now = registry.getMillis();
+		lastTick = nextTick(Math.max(now, lastTick));
+		next = TICKER.schedule(this::tick, lastTick - now, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Runs a tick and schedules the next.
+	 */
+	private void tick() {
+		try {
+			report();
+		} finally {
+			schedule();
+		}
+	}
+
+	/**
+	 * Takes a snapshot of the registry and hands it to all reporters that are
+	 * not busy. When all reporters only report changed metrics, the snapshot
+	 * only has the metrics that changed since the oldest of their cursors.
+	 */
+	public void report() {
+		if (!registry.isEnabled() || tasks.isEmpty()) {
+			return;
+		}
+		long cursor = Long.MAX_VALUE;
+		for (Task task : tasks) {
+			cursor = Math.min(cursor, task.reporter.getCursor());
+		}
+		Snapshot snapshot = cursor > 0 ? registry.snapshotChangedSince(cursor) : registry.snapshot();
+		for (Task task : tasks) {
+			task.submit(snapshot);
+		}
+	}
+
+	/**
+	 * Stops the ticks, reports that are running are finished.
+	 */
+	public synchronized void shutdown() {
+		shutdown = true;
+		if (next != null) {
+			next.cancel(false);
+			next = null;
+		}
+	}
+
+	/**
+	 * A reporter with the state of its report.
+	 */
+	private final class Task implements Runnable {
+
+		/** The reporter. */
+		private final Reporter reporter;
+
+		/** Whether a report is running. */
+		private final AtomicBoolean busy = new AtomicBoolean();
+
+		/** The snapshot to report. */
+		private volatile Snapshot snapshot;
+
+		/**
+		 * Instantiates a new task.
+		 *
+		 * @param reporter
+		 *            the reporter
+		 */
+		private Task(Reporter reporter) {
+			this.reporter = reporter;
+		}
+
+		/**
+		 * Submits a snapshot, unless the previous report is still running.
+		 *
+		 * @param snapshot
+		 *            the snapshot
+		 */
+		private void submit(Snapshot snapshot) {
+			if (shutdown) {
+				return;
+			}
+			if (!busy.compareAndSet(false, true)) {
+				skipped.incrementAndGet();
+				return;
+			}
+			this.snapshot = snapshot;
+			try {
+				WORKERS.execute(this);
+			} catch (RejectedExecutionException e) {
+				// the workers are shut down (as the JVM exits)
+				this.snapshot = null;
+				busy.set(false);
+			}
+		}
+
+		@Override
+		public void run() {
+			try {
+				reporter.report(snapshot);
+			} catch (RuntimeException e) {
+				errors.incrementAndGet();
+				registry.counter(ERRORS_TYPE, reporter.getClass().getSimpleName()).increment();
+			} finally {
+				snapshot = null;
+				busy.set(false);
+			}
+		}
+	}
+}
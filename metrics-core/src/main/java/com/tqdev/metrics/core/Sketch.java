@@ -0,0 +1,446 @@
+/* Copyright (C) 2017 Maurits van der Schee
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.tqdev.metrics.core;
+
+import java.io.ByteArrayOutputStream;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * The Class Sketch keeps track of the distribution of recorded values (such
+ * as durations in nanoseconds) with a relative error of 1% per quantile, like
+ * DDSketch does: value v is counted in logarithmic bucket ceil(log_g(v)) with
+ * g = 1.01 / 0.99. As all sketches use the same buckets, sketches of
+ * different instances can be merged into one, which is not possible with
+ * (averages of) quantiles. Sketches can be serialized to a compact byte
+ * representation (only the buckets that are non-empty are written) so that
+ * reporters can write them. Values from 2^40 (about 18 minutes in
+ * nanoseconds) are counted in a single overflow bucket. Recording is
+ * lock-free and the buckets are allocated lazily in pages of 32, so a sketch
+ * only takes memory for the range of values it has seen. Like the collapsing
+ * store of DDSketch, at most 16 pages (512 buckets, a factor of about 28000
+ * between the lowest and the highest value) are kept: when a higher page is
+ * needed, the lowest page is collapsed into the lowest bucket of the next
+ * page, so that the high quantiles keep their relative accuracy. Every update
+ * stamps the sketch with the current epoch (see {@link Epoch}), so that
+ * snapshots of changes can skip sketches that did not change.
+ */
+public class Sketch {
+
+	/** The relative accuracy of the quantiles. */
+	public static final double RELATIVE_ACCURACY = 0.01;
+
+	/** The base of the logarithm that determines the buckets. */
+	private static final double GAMMA = (1 + RELATIVE_ACCURACY) / (1 - RELATIVE_ACCURACY);
+
+	/** The natural logarithm of the base. */
+	private static final double LOG_GAMMA = Math.log(GAMMA);
+
+	/** The power of two from which values are counted in the overflow bucket. */
+	private static final int MAX_EXPONENT = 40;
+
+	/** The index of the overflow bucket (the zero bucket has index 0). */
+	private static final int OVERFLOW_INDEX = 2 + (int) Math.ceil(MAX_EXPONENT * Math.log(2) / LOG_GAMMA);
+
+	/** The number of buckets (including the zero and overflow bucket). */
+	static final int BUCKET_COUNT = OVERFLOW_INDEX + 1;
+
+	/** The version of the serialized representation. */
+	private static final byte VERSION = 1;
+
+	/** The number of bits of the index of a bucket within its page. */
+	private static final int PAGE_BITS = 5;
+
+	/** The number of buckets in a page. */
+	private static final int PAGE_SIZE = 1 << PAGE_BITS;
+
+	/** The maximum number of pages that is allocated. */
+	static final int MAX_PAGES = 16;
+
+	/** The updater for the stamp. */
+	private static final AtomicLongFieldUpdater<Sketch> STAMP = AtomicLongFieldUpdater.newUpdater(Sketch.class,
+			"stamp");
+
+	/** The pages with the counts per bucket (null when not allocated). */
+	private final AtomicReferenceArray<AtomicLongArray> pages;
+
+	/** The lowest index, lower buckets are collapsed into this bucket. */
+	private volatile int minIndex;
+
+	/** The number of allocated pages (guarded by this). */
+	private int pageCount;
+
+	/** Whether the sketch is kept in the registry when it is reset. */
+	boolean pinned;
+
+	/** The epoch of the last update. */
+	volatile long stamp;
+
+	/**
+	 * Instantiates a new sketch.
+	 */
+	public Sketch() {
+		pages = new AtomicReferenceArray<>((BUCKET_COUNT + PAGE_SIZE - 1) >> PAGE_BITS);
+	}
+
+	/**
+	 * Record a value.
+	 *
+	 * @param value
+	 *            the value
+	 */
+	public void record(long value) {
+		add(getIndex(value), 1);
+		Epoch.stamp(STAMP, this);
+	}
+
+	/**
+	 * Merges the counts of another sketch into this sketch.
+	 *
+	 * @param other
+	 *            the other sketch
+	 */
+	public void merge(Sketch other) {
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			long count = other.get(i);
+			if (count != 0) {
+				add(i, count);
+			}
+		}
+		Epoch.stamp(STAMP, this);
+	}
+
+	/**
+	 * Gets the number of recorded values.
+	 *
+	 * @return the count
+	 */
+	public long getCount() {
+		long count = 0;
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			count += get(i);
+		}
+		return count;
+	}
+
+	/**
+	 * Gets the (estimated) value at a given quantile, values in the overflow
+	 * bucket are reported as 2^40.
+	 *
+	 * @param quantile
+	 *            the quantile (between 0 and 1)
+	 * @return the value at the quantile, or zero when nothing is recorded
+	 */
+	public long getQuantile(double quantile) {
+		long[] values = new long[1];
+		getQuantiles(new double[] { quantile }, values);
+		return values[0];
+	}
+
+	/**
+	 * Gets the values at the given quantiles and the number of recorded
+	 * values, reading the buckets only once (so that they are consistent).
+	 *
+	 * @param quantiles
+	 *            the quantiles (between 0 and 1)
+	 * @param values
+	 *            the values at the quantiles (output)
+	 * @return the count
+	 */
+	long getQuantiles(double[] quantiles, long[] values) {
+		long[] counts = new long[BUCKET_COUNT];
+		long count = 0;
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			counts[i] = get(i);
+			count += counts[i];
+		}
+		for (int q = 0; q < quantiles.length; q++) {
+			values[q] = 0;
+			if (count == 0) {
+				continue;
+			}
+			long rank = Math.max(1, (long) Math.ceil(quantiles[q] * count));
+			long seen = 0;
+			values[q] = getValue(OVERFLOW_INDEX);
+			for (int i = 0; i < BUCKET_COUNT; i++) {
+				seen += counts[i];
+				if (seen >= rank) {
+					values[q] = getValue(i);
+					break;
+				}
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Serializes the sketch as a version byte, followed by the number of
+	 * non-empty buckets and for every non-empty bucket the difference with
+	 * the previous index and the count, all as unsigned variable length
+	 * integers (7 bits per byte).
+	 *
+	 * @return the bytes
+	 */
+	public byte[] toBytes() {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		long[] counts = new long[BUCKET_COUNT];
+		int buckets = 0;
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			counts[i] = get(i);
+			if (counts[i] != 0) {
+				buckets++;
+			}
+		}
+		out.write(VERSION);
+		writeVarLong(out, buckets);
+		int previous = 0;
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			if (counts[i] != 0) {
+				writeVarLong(out, i - previous);
+				writeVarLong(out, counts[i]);
+				previous = i;
+			}
+		}
+		return out.toByteArray();
+	}
+
+	/**
+	 * Deserializes a sketch that is serialized using {@link #toBytes()}.
+	 *
+	 * @param bytes
+	 *            the bytes
+	 * @return the sketch
+	 * @throws IllegalArgumentException
+	 *             when the bytes are not a serialized sketch
+	 */
+	public static Sketch fromBytes(byte[] bytes) {
+		if (bytes.length == 0 || bytes[0] != VERSION) {
+			throw new IllegalArgumentException("Unsupported sketch version");
+		}
+		Sketch sketch = new Sketch();
+		int[] position = { 1 };
+		long buckets = readVarLong(bytes, position);
+		long index = 0;
+		for (long i = 0; i < buckets; i++) {
+			index += readVarLong(bytes, position);
+			if (index >= BUCKET_COUNT) {
+				throw new IllegalArgumentException("Invalid sketch bucket index: " + index);
+			}
+			sketch.add((int) index, readVarLong(bytes, position));
+		}
+		return sketch;
+	}
+
+	/**
+	 * Copies the sketch, so that it can be read consistently.
+	 *
+	 * @return the copy
+	 */
+	Sketch copy() {
+		Sketch sketch = new Sketch();
+		sketch.merge(this);
+		return sketch;
+	}
+
+	/**
+	 * Resets all counts to zero and releases the pages.
+	 */
+	synchronized void reset() {
+		for (int p = 0; p < pages.length(); p++) {
+			pages.set(p, null);
+		}
+		pageCount = 0;
+		minIndex = 0;
+		Epoch.stamp(STAMP, this);
+	}
+
+	/**
+	 * Gets the number of allocated pages.
+	 *
+	 * @return the page count
+	 */
+	synchronized int getPageCount() {
+		return pageCount;
+	}
+
+	/**
+	 * Gets the count of a bucket.
+	 *
+	 * @param index
+	 *            the index
+	 * @return the count
+	 */
+	private long get(int index) {
+		AtomicLongArray page = pages.get(index >> PAGE_BITS);
+		return page == null ? 0 : page.get(index & (PAGE_SIZE - 1));
+	}
+
+	/**
+	 * Adds a count to a bucket (or to the lowest bucket when it is collapsed).
+	 * When the page of the bucket is collapsed while adding, the count is
+	 * moved along, so that it is never lost.
+	 *
+	 * @param index
+	 *            the index
+	 * @param count
+	 *            the count
+	 */
+	private void add(int index, long count) {
+		while (true) {
+			int i = Math.max(index, minIndex);
+			int p = i >> PAGE_BITS;
+			AtomicLongArray page = pages.get(p);
+			if (page == null) {
+				allocate(i);
+				continue;
+			}
+			int b = i & (PAGE_SIZE - 1);
+			page.getAndAdd(b, count);
+			if (pages.get(p) == page) {
+				return;
+			}
+			count = page.getAndSet(b, 0);
+			if (count == 0) {
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Allocates the page of a bucket, collapsing the lowest page when the
+	 * maximum number of pages is reached. When the bucket is below the lowest
+	 * page at that point, the lower buckets are collapsed instead.
+	 *
+	 * @param index
+	 *            the index
+	 */
+	private synchronized void allocate(int index) {
+		int p = Math.max(index, minIndex) >> PAGE_BITS;
+		if (pages.get(p) != null) {
+			return;
+		}
+		if (pageCount < MAX_PAGES) {
+			pages.set(p, new AtomicLongArray(PAGE_SIZE));
+			pageCount++;
+			return;
+		}
+		int lowest = minIndex >> PAGE_BITS;
+		while (pages.get(lowest) == null) {
+			lowest++;
+		}
+		if (p < lowest) {
+			minIndex = lowest << PAGE_BITS;
+			return;
+		}
+		pages.set(p, new AtomicLongArray(PAGE_SIZE));
+		int next = lowest + 1;
+		while (pages.get(next) == null) {
+			next++;
+		}
+		AtomicLongArray page = pages.get(lowest);
+		minIndex = next << PAGE_BITS;
+		pages.set(lowest, null);
+		for (int b = 0; b < PAGE_SIZE; b++) {
+			long count = page.getAndSet(b, 0);
+			if (count != 0) {
+				add(minIndex, count);
+			}
+		}
+	}
+
+	/**
+	 * Gets the index of the bucket that a value is counted in.
+	 *
+	 * @param value
+	 *            the value
+	 * @return the index
+	 */
+	static int getIndex(long value) {
+		if (value <= 0) {
+			return 0;
+		}
+		if (value >= 1L << MAX_EXPONENT) {
+			return OVERFLOW_INDEX;
+		}
+		return 1 + (int) Math.ceil(Math.log(value) / LOG_GAMMA);
+	}
+
+	/**
+	 * Gets the value that represents a bucket, which is within the relative
+	 * accuracy of all values that are counted in the bucket.
+	 *
+	 * @param index
+	 *            the index
+	 * @return the value
+	 */
+	static long getValue(int index) {
+		if (index == 0) {
+			return 0;
+		}
+		if (index == OVERFLOW_INDEX) {
+			return 1L << MAX_EXPONENT;
+		}
+		return Math.round(2 * Math.pow(GAMMA, index - 1) / (GAMMA + 1));
+	}
+
+	/**
+	 * Writes an unsigned variable length integer.
+	 *
+	 * @param out
+	 *            the out
+	 * @param value
+	 *            the value
+	 */
+	private static void writeVarLong(ByteArrayOutputStream out, long value) {
+		while ((value & ~0x7FL) != 0) {
+			out.write((int) (value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		out.write((int) value);
+	}
+
+	/**
+	 * Reads an unsigned variable length integer.
+	 *
+	 * @param bytes
+	 *            the bytes
+	 * @param position
+	 *            the position (that is advanced)
+	 * @return the value
+	 * @throws IllegalArgumentException
+	 *             when the bytes end before the integer does
+	 */
+	private static long readVarLong(byte[] bytes, int[] position) {
+		long value = 0;
+		for (int shift = 0; shift < 64; shift += 7) {
+			if (position[0] >= bytes.length) {
+				throw new IllegalArgumentException("Truncated sketch");
+			}
+			byte b = bytes[position[0]++];
+			value |= (long) (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				return value;
+			}
+		}
+		throw new IllegalArgumentException("Malformed sketch");
+	}
+}
@@ -0,0 +1,151 @@
+/* Copyright (C) 2017 Maurits van der Schee
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.tqdev.metrics.core;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * The Class SketchMerger is an offline tool that reads the sketches from files
+ * that are written by the InfluxDB or Prometheus file reporters of many
+ * instances and merges them per series (ignoring the host), so that
+ * fleet-wide quantiles can be calculated. Files are read in the given order
+ * and only the last sketch of every series of every host is used (sketches
+ * are cumulative). Files that are compressed (ending in ".gz") are supported.
+ */
+public class SketchMerger {
+
+	/** The sketch line as written by the InfluxDB reporters. */
+	private static final Pattern INFLUXDB_LINE = Pattern
+			.compile("^((?:\\\\.|[^\\s\\\\])+) sketch=\"([A-Za-z0-9+/=]*)\" \\d+$");
+
+	/** The host tag as written by the InfluxDB reporters. */
+	private static final Pattern INFLUXDB_HOST = Pattern.compile(",host=(?:\\\\.|[^,\\\\])*");
+
+	/** The sketch comment as written by the Prometheus reporters. */
+	private static final Pattern PROMETHEUS_LINE = Pattern.compile("^# SKETCH (.+\\}) ([A-Za-z0-9+/=]*)$");
+
+	/** The host label as written by the Prometheus reporters. */
+	private static final Pattern PROMETHEUS_HOST = Pattern.compile("host=\"(?:[^\"\\\\]|\\\\.)*\",?");
+
+	/** The quantiles that are printed by the tool. */
+	private static final double[] QUANTILES = { 0.5, 0.99, 0.999 };
+
+	/** The names of the quantiles that are printed by the tool. */
+	private static final String[] QUANTILE_NAMES = { "p50", "p99", "p999" };
+
+	/**
+	 * Merges the sketches in the given files per series.
+	 *
+	 * @param paths
+	 *            the paths of the files
+	 * @return the merged sketches per series (without host), ordered by series
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public static Map<String, Sketch> merge(List<Path> paths) throws IOException {
+		Map<String, String[]> latest = new LinkedHashMap<>();
+		for (Path path : paths) {
+			try (BufferedReader reader = new BufferedReader(new InputStreamReader(open(path), StandardCharsets.UTF_8))) {
+				String line;
+				while ((line = reader.readLine()) != null) {
+					Matcher influxDb = INFLUXDB_LINE.matcher(line);
+					if (influxDb.matches()) {
+						String series = INFLUXDB_HOST.matcher(influxDb.group(1)).replaceFirst("");
+						latest.put(influxDb.group(1), new String[] { series, influxDb.group(2) });
+						continue;
+					}
+					Matcher prometheus = PROMETHEUS_LINE.matcher(line);
+					if (prometheus.matches()) {
+						String series = PROMETHEUS_HOST.matcher(prometheus.group(1)).replaceFirst("");
+						latest.put(prometheus.group(1), new String[] { series, prometheus.group(2) });
+					}
+				}
+			}
+		}
+		Map<String, Sketch> merged = new TreeMap<>();
+		for (String[] entry : latest.values()) {
+			Sketch sketch = Sketch.fromBytes(Base64.getDecoder().decode(entry[1]));
+			merged.computeIfAbsent(entry[0], s -> new Sketch()).merge(sketch);
+		}
+		return merged;
+	}
+
+	/**
+	 * Opens a file, decompressing it when it ends in ".gz".
+	 *
+	 * @param path
+	 *            the path
+	 * @return the input stream
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	private static InputStream open(Path path) throws IOException {
+		InputStream in = Files.newInputStream(path);
+		if (path.toString().endsWith(".gz")) {
+			return new GZIPInputStream(in);
+		}
+		return in;
+	}
+
+	/**
+	 * Prints the count, p50, p99 and p999 of the merged sketches per series.
+	 *
+	 * @param args
+	 *            the files to merge
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length == 0) {
+			System.err.println("Usage: java " + SketchMerger.class.getName() + " <file> [<file> ...]");
+			System.exit(1);
+		}
+		List<Path> paths = new ArrayList<>();
+		for (String arg : args) {
+			paths.add(Paths.get(arg));
+		}
+		for (Map.Entry<String, Sketch> entry : merge(paths).entrySet()) {
+			StringBuilder line = new StringBuilder(entry.getKey());
+			line.append(" count=").append(entry.getValue().getCount());
+			for (int i = 0; i < QUANTILES.length; i++) {
+				line.append(' ').append(QUANTILE_NAMES[i]).append('=');
+				line.append(entry.getValue().getQuantile(QUANTILES[i]));
+			}
+			System.out.println(line);
+		}
+	}
+}
@@ -0,0 +1,517 @@
+/* Copyright (C) 2017 Maurits van der Schee
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.tqdev.metrics.core;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * The Class Snapshot is an immutable, array-backed view of (a part of) the
+ * metric registry that is captured in one pass, so that reporters can
+ * serialize the metrics without looking up every key. The metrics are grouped
+ * by type: the metrics of type t have the indexes from {@link #getStart(int)}
+ * up to (but not including) {@link #getEnd(int)}. Histograms and sketches
+ * have the number of recorded values as value and also have quantiles (one
+ * for every {@link Histogram#QUANTILES}), sketches also have their serialized
+ * form. The invocation count and total duration of a timer are read at the
+ * same instant. A snapshot of the registry has a cursor, a snapshot of the
+ * metrics that changed since then can be captured with
+ * {@link MetricRegistry#snapshotChangedSince(long)} (or filtered with
+ * {@link #changedSince(long)}).
+ */
+public final class Snapshot {
+
+	/** The time of the snapshot in milliseconds since the epoch. */
+	private final long millis;
+
+	/** The cursor of the snapshot (0 when it is not taken of the registry). */
+	private long cursor;
+
+	/** The cursor that the metrics changed since (0 when it has all metrics). */
+	private long since;
+
+	/** The types. */
+	private String[] types;
+
+	/** The index of the first metric of every type (and the size at the end). */
+	private int[] offsets;
+
+	/** The number of types. */
+	private int typeCount;
+
+	/** The keys. */
+	private String[] keys;
+
+	/** The values. */
+	private long[] values;
+
+	/** The quantiles of histograms and sketches (otherwise null). */
+	private long[][] quantiles;
+
+	/** The serialized sketches (otherwise null). */
+	private byte[][] sketches;
+
+	/** Whether the metrics are gauges (measured on demand). */
+	private boolean[] gauges;
+
+	/** The epochs of the last updates of the metrics (see {@link Epoch}). */
+	private long[] stamps;
+
+	/** The index of the keys of every type, built on the first lookup. */
+	private HashMap<String, Integer>[] index;
+
+	/** The number of metrics. */
+	private int size;
+
+	/**
+	 * Instantiates a new (empty) snapshot, that is filled by the registry.
+	 *
+	 * @param millis
+	 *            the time of the snapshot in milliseconds since the epoch
+	 * @param capacity
+	 *            the expected number of metrics
+	 */
+	Snapshot(long millis, int capacity) {
+		this.millis = millis;
+		types = new String[8];
+		offsets = new int[9];
+		capacity = Math.max(capacity, 16);
+		keys = new String[capacity];
+		values = new long[capacity];
+		quantiles = new long[capacity][];
+		sketches = new byte[capacity][];
+		gauges = new boolean[capacity];
+		stamps = new long[capacity];
+	}
+
+	/**
+	 * Sets the cursor of the snapshot and the cursor that the metrics changed
+	 * since.
+	 *
+	 * @param cursor
+	 *            the cursor of the snapshot
+	 * @param since
+	 *            the cursor that the metrics changed since (0 for all metrics)
+	 */
+	void setCursor(long cursor, long since) {
+		this.cursor = cursor;
+		this.since = since;
+	}
+
+	/**
+	 * Starts a type, the metrics that are added next are of this type.
+	 *
+	 * @param type
+	 *            the type
+	 */
+	void addType(String type) {
+		if (typeCount == types.length) {
+			types = Arrays.copyOf(types, typeCount * 2);
+			offsets = Arrays.copyOf(offsets, typeCount * 2 + 1);
+		}
+		types[typeCount++] = type;
+		offsets[typeCount - 1] = size;
+		offsets[typeCount] = size;
+	}
+
+	/**
+	 * Adds a metric of the last added type.
+	 *
+	 * @param key
+	 *            the key
+	 * @param value
+	 *            the value
+	 * @param quantiles
+	 *            the quantiles (or null)
+	 * @param sketch
+	 *            the serialized sketch (or null)
+	 */
+	void add(String key, long value, long[] quantiles, byte[] sketch) {
+		add(key, value, false, quantiles, sketch, Long.MAX_VALUE);
+	}
+
+	/**
+	 * Adds a metric of the last added type, that was last updated in the
+	 * given epoch.
+	 *
+	 * @param key
+	 *            the key
+	 * @param value
+	 *            the value
+	 * @param quantiles
+	 *            the quantiles (or null)
+	 * @param sketch
+	 *            the serialized sketch (or null)
+	 * @param stamp
+	 *            the epoch of the last update
+	 */
+	void add(String key, long value, long[] quantiles, byte[] sketch, long stamp) {
+		add(key, value, false, quantiles, sketch, stamp);
+	}
+
+	/**
+	 * Adds a gauge of the last added type, gauges are measured and
+	 * considered changed in every snapshot.
+	 *
+	 * @param key
+	 *            the key
+	 * @param value
+	 *            the measured value
+	 */
+	void addGauge(String key, long value) {
+		add(key, value, true, null, null, Long.MAX_VALUE);
+	}
+
+	/**
+	 * Adds a metric of the last added type.
+	 *
+	 * @param key
+	 *            the key
+	 * @param value
+	 *            the value
+	 * @param gauge
+	 *            whether the metric is a gauge
+	 * @param quantiles
+	 *            the quantiles (or null)
+	 * @param sketch
+	 *            the serialized sketch (or null)
+	 * @param stamp
+	 *            the epoch of the last update
+	 */
+	private void add(String key, long value, boolean gauge, long[] quantiles, byte[] sketch, long stamp) {
+		if (size == keys.length) {
+			keys = Arrays.copyOf(keys, size * 2);
+			values = Arrays.copyOf(values, size * 2);
+			this.quantiles = Arrays.copyOf(this.quantiles, size * 2);
+			sketches = Arrays.copyOf(sketches, size * 2);
+			gauges = Arrays.copyOf(gauges, size * 2);
+			stamps = Arrays.copyOf(stamps, size * 2);
+		}
+		keys[size] = key;
+		values[size] = value;
+		gauges[size] = gauge;
+		this.quantiles[size] = quantiles;
+		sketches[size] = sketch;
+		stamps[size] = stamp;
+		size++;
+		offsets[typeCount] = size;
+	}
+
+	/**
+	 * Sorts the metrics of the last added type by key, in place (with a heap
+	 * sort), so that sorted snapshots do not need sorted copies of the maps
+	 * of the registry.
+	 */
+	void sortType() {
+		int from = offsets[typeCount - 1];
+		int n = size - from;
+		for (int i = n / 2 - 1; i >= 0; i--) {
+			siftDown(from, i, n);
+		}
+		for (int end = n - 1; end > 0; end--) {
+			swap(from, from + end);
+			siftDown(from, 0, end);
+		}
+	}
+
+	/**
+	 * Moves a metric down the heap (of the metrics from an index) until it is
+	 * not smaller than its children.
+	 *
+	 * @param from
+	 *            the index of the first metric of the heap
+	 * @param i
+	 *            the position of the metric in the heap
+	 * @param n
+	 *            the size of the heap
+	 */
+	private void siftDown(int from, int i, int n) {
+		for (int child = 2 * i + 1; child < n; child = 2 * i + 1) {
+			if (child + 1 < n && keys[from + child + 1].compareTo(keys[from + child]) > 0) {
+				child++;
+			}
+			if (keys[from + i].compareTo(keys[from + child]) >= 0) {
+				return;
+			}
+			swap(from + i, from + child);
+			i = child;
+		}
+	}
+
+	/**
+	 * Swaps two metrics.
+	 *
+	 * @param i
+	 *            the index of the first metric
+	 * @param j
+	 *            the index of the second metric
+	 */
+	private void swap(int i, int j) {
+		String key = keys[i];
+		keys[i] = keys[j];
+		keys[j] = key;
+		long value = values[i];
+		values[i] = values[j];
+		values[j] = value;
+		long[] q = quantiles[i];
+		quantiles[i] = quantiles[j];
+		quantiles[j] = q;
+		byte[] sketch = sketches[i];
+		sketches[i] = sketches[j];
+		sketches[j] = sketch;
+		boolean gauge = gauges[i];
+		gauges[i] = gauges[j];
+		gauges[j] = gauge;
+		long stamp = stamps[i];
+		stamps[i] = stamps[j];
+		stamps[j] = stamp;
+	}
+
+	/**
+	 * Gets the time of the snapshot.
+	 *
+	 * @return the time in milliseconds since the epoch
+	 */
+	public long getMillis() {
+		return millis;
+	}
+
+	/**
+	 * Gets the cursor of the snapshot, the metrics that changed after this
+	 * snapshot was taken can be captured by passing it to
+	 * {@link MetricRegistry#snapshotChangedSince(long)}.
+	 *
+	 * @return the cursor (0 when the snapshot is not taken of the registry)
+	 */
+	public long getCursor() {
+		return cursor;
+	}
+
+	/**
+	 * Gets the number of types.
+	 *
+	 * @return the number of types
+	 */
+	public int getTypeCount() {
+		return typeCount;
+	}
+
+	/**
+	 * Gets a type.
+	 *
+	 * @param t
+	 *            the index of the type
+	 * @return the type
+	 */
+	public String getType(int t) {
+		return types[t];
+	}
+
+	/**
+	 * Gets the index of the first metric of a type.
+	 *
+	 * @param t
+	 *            the index of the type
+	 * @return the index of the first metric
+	 */
+	public int getStart(int t) {
+		return offsets[t];
+	}
+
+	/**
+	 * Gets the index after the last metric of a type.
+	 *
+	 * @param t
+	 *            the index of the type
+	 * @return the index after the last metric
+	 */
+	public int getEnd(int t) {
+		return offsets[t + 1];
+	}
+
+	/**
+	 * Gets the number of metrics.
+	 *
+	 * @return the number of metrics
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Gets the key of a metric.
+	 *
+	 * @param i
+	 *            the index of the metric
+	 * @return the key
+	 */
+	public String getKey(int i) {
+		return keys[i];
+	}
+
+	/**
+	 * Gets the value of a metric.
+	 *
+	 * @param i
+	 *            the index of the metric
+	 * @return the value
+	 */
+	public long getValue(int i) {
+		return values[i];
+	}
+
+	/**
+	 * Checks if a metric is a gauge, its value is measured on demand and may
+	 * go up and down. Other values (without quantiles) are counters.
+	 *
+	 * @param i
+	 *            the index of the metric
+	 * @return true, if the metric is a gauge
+	 */
+	public boolean isGauge(int i) {
+		return gauges[i];
+	}
+
+	/**
+	 * Checks if a metric (histogram or sketch) has quantiles.
+	 *
+	 * @param i
+	 *            the index of the metric
+	 * @return true, if the metric has quantiles
+	 */
+	public boolean hasQuantiles(int i) {
+		return quantiles[i] != null;
+	}
+
+	/**
+	 * Gets the value at a quantile of a metric (histogram or sketch).
+	 *
+	 * @param i
+	 *            the index of the metric
+	 * @param q
+	 *            the index of the quantile in {@link Histogram#QUANTILES}
+	 * @return the value at the quantile
+	 */
+	public long getQuantile(int i, int q) {
+		return quantiles[i][q];
+	}
+
+	/**
+	 * Checks if a metric is a sketch.
+	 *
+	 * @param i
+	 *            the index of the metric
+	 * @return true, if the metric is a sketch
+	 */
+	public boolean hasSketch(int i) {
+		return sketches[i] != null;
+	}
+
+	/**
+	 * Gets the serialized sketch of a metric (see {@link Sketch#toBytes()}).
+	 *
+	 * @param i
+	 *            the index of the metric
+	 * @return the serialized sketch (a copy)
+	 */
+	public byte[] getSketch(int i) {
+		return sketches[i].clone();
+	}
+
+	/**
+	 * Gets the index of a type.
+	 *
+	 * @param type
+	 *            the type
+	 * @return the index of the type, or -1 when the type is not in the snapshot
+	 */
+	public int indexOfType(String type) {
+		for (int t = 0; t < typeCount; t++) {
+			if (types[t].equals(type)) {
+				return t;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Gets the index of a metric.
+	 *
+	 * @param type
+	 *            the type
+	 * @param key
+	 *            the key
+	 * @return the index of the metric, or -1 when the metric is not in the
+	 *         snapshot
+	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	public synchronized int indexOf(String type, String key) {
+		int t = indexOfType(type);
+		if (t < 0) {
+			return -1;
+		}
+		if (index == null) {
+			index = new HashMap[typeCount];
+		}
+		HashMap<String, Integer> keys = index[t];
+		if (keys == null) {
+			keys = new HashMap<>();
+			for (int i = offsets[t]; i < offsets[t + 1]; i++) {
+				keys.put(this.keys[i], i);
+			}
+			index[t] = keys;
+		}
+		Integer i = keys.get(key);
+		return (i == null) ? -1 : i;
+	}
+
+	/**
+	 * Gets the metrics that changed since the snapshot with the given cursor
+	 * was taken (gauges are always included). The metrics are filtered by the
+	 * epoch of their last update, so that a snapshot that is shared by
+	 * reporters with different cursors can be narrowed down per reporter.
+	 *
+	 * @param cursor
+	 *            the cursor of an earlier snapshot (or 0 for all metrics)
+	 * @return the snapshot with the changed metrics (this snapshot when it
+	 *         has no older changes)
+	 */
+	public Snapshot changedSince(long cursor) {
+		if (cursor <= since) {
+			return this;
+		}
+		Snapshot changed = new Snapshot(millis, 16);
+		changed.setCursor(this.cursor, cursor);
+		for (int t = 0; t < typeCount; t++) {
+			boolean added = false;
+			for (int i = offsets[t]; i < offsets[t + 1]; i++) {
+				if (stamps[i] >= cursor) {
+					if (!added) {
+						changed.addType(types[t]);
+						added = true;
+					}
+					changed.add(keys[i], values[i], gauges[i], quantiles[i], sketches[i], stamps[i]);
+				}
+			}
+		}
+		return changed;
+	}
+}
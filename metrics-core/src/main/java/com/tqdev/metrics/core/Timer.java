@@ -0,0 +1,307 @@
+/* Copyright (C) 2017 Maurits van der Schee
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.tqdev.metrics.core;
+
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
+/**
+ * The Class Timer keeps track of the invocation count and the total duration
+ * (in nanoseconds) of an operation. Both values are stored together in one
+ * cell that is padded to a cache line of its own. Under contention the cells
+ * are striped over the threads (at most one cell per processor), like a
+ * LongAdder does. A timer is visible in the registry as two series: the
+ * invocation count with type suffix ".Invocations" and the total duration
+ * with type suffix ".Durations". When timer histograms are enabled in the
+ * registry, the distribution of the durations is also kept in a histogram with
+ * type suffix ".Latencies". Every record stamps the timer with the current
+ * epoch (see {@link Epoch}), so that snapshots of changes can skip timers that
+ * did not change.
+ */
+public class Timer {
+
+	/** The number of processors, that bounds the number of cells. */
+	private static final int NCPU = Runtime.getRuntime().availableProcessors();
+
+	/** The updater for the stamp. */
+	private static final AtomicLongFieldUpdater<Timer> STAMP = AtomicLongFieldUpdater.newUpdater(Timer.class,
+			"stamp");
+
+	/** The cell that is used when there is no contention. */
+	private final Cell base;
+
+	/** The striped cells, created on contention (size is a power of two). */
+	private volatile Cell[] cells;
+
+	/** The invocation count series as stored in the registry. */
+	final Series invocations;
+
+	/** The total duration series as stored in the registry. */
+	final Series durations;
+
+	/** The histogram of the durations (or null). */
+	Histogram histogram;
+
+	/** Whether the timer is kept in the registry when it is reset. */
+	volatile boolean pinned;
+
+	/** Whether the timer is removed from the registry. */
+	volatile boolean removed;
+
+	/** The epoch of the last update. */
+	volatile long stamp;
+
+	/**
+	 * Instantiates a new timer.
+	 */
+	Timer() {
+		base = new Cell();
+		invocations = new Series(this, false);
+		durations = new Series(this, true);
+	}
+
+	/**
+	 * Record an invocation with its duration.
+	 *
+	 * @param duration
+	 *            the duration in nanoseconds
+	 */
+	public void record(long duration) {
+		Histogram h = histogram;
+		if (h != null) {
+			h.record(duration);
+		}
+		Cell[] cs = cells;
+		if (cs == null) {
+			if (base.tryRecord(duration)) {
+				Epoch.stamp(STAMP, this);
+				return;
+			}
+			cs = expand(null);
+		}
+		Cell cell = cs[(int) (Thread.currentThread().getId() * 0x9E3779B9L) & (cs.length - 1)];
+		if (!cell.tryRecord(duration)) {
+			cell.record(duration);
+			if (cs.length < NCPU) {
+				expand(cs);
+			}
+		}
+		Epoch.stamp(STAMP, this);
+	}
+
+	/**
+	 * Gets the invocation count.
+	 *
+	 * @return the invocation count
+	 */
+	public long getInvocations() {
+		long sum = base.count;
+		Cell[] cs = cells;
+		if (cs != null) {
+			for (Cell cell : cs) {
+				sum += cell.count;
+			}
+		}
+		return sum;
+	}
+
+	/**
+	 * Gets the total duration.
+	 *
+	 * @return the total duration in nanoseconds
+	 */
+	public long getDurations() {
+		long sum = base.total;
+		Cell[] cs = cells;
+		if (cs != null) {
+			for (Cell cell : cs) {
+				sum += cell.total;
+			}
+		}
+		return sum;
+	}
+
+	/**
+	 * Reads the invocation count and the total duration in one pass over the
+	 * cells, so that they match (apart from invocations that are being
+	 * recorded concurrently).
+	 *
+	 * @return the invocation count and the total duration in nanoseconds
+	 */
+	long[] read() {
+		long count = base.count;
+		long total = base.total;
+		Cell[] cs = cells;
+		if (cs != null) {
+			for (Cell cell : cs) {
+				count += cell.count;
+				total += cell.total;
+			}
+		}
+		return new long[] { count, total };
+	}
+
+	/**
+	 * Adds an invocation count and total duration, as when these are carried
+	 * over from counters.
+	 *
+	 * @param count
+	 *            the invocation count
+	 * @param total
+	 *            the total duration in nanoseconds
+	 */
+	void add(long count, long total) {
+		Cell.COUNT.getAndAdd(base, count);
+		Cell.TOTAL.getAndAdd(base, total);
+		Epoch.stamp(STAMP, this);
+	}
+
+	/**
+	 * Resets the invocation count and total duration to zero.
+	 */
+	void reset() {
+		Histogram h = histogram;
+		if (h != null) {
+			h.reset();
+		}
+		base.count = 0;
+		base.total = 0;
+		Cell[] cs = cells;
+		if (cs != null) {
+			for (Cell cell : cs) {
+				cell.count = 0;
+				cell.total = 0;
+			}
+		}
+		Epoch.stamp(STAMP, this);
+	}
+
+	/**
+	 * Doubles the number of striped cells (or creates them).
+	 *
+	 * @param expected
+	 *            the cells that were found to be contended
+	 * @return the current cells
+	 */
+	private synchronized Cell[] expand(Cell[] expected) {
+		Cell[] cs = cells;
+		if (cs == expected) {
+			int length = (cs == null) ? 2 : cs.length << 1;
+			Cell[] expanded = new Cell[length];
+			for (int i = 0; i < length; i++) {
+				expanded[i] = (cs != null && i < cs.length) ? cs[i] : new Cell();
+			}
+			cells = cs = expanded;
+		}
+		return cs;
+	}
+
+	/**
+	 * The padding in front of the values of a cell.
+	 */
+	static class CellPadding {
+		long p01, p02, p03, p04, p05, p06, p07;
+	}
+
+	/**
+	 * The values of a cell, the invocation count and the total duration.
+	 */
+	static class CellValues extends CellPadding {
+		volatile long count;
+		volatile long total;
+	}
+
+	/**
+	 * A cell that holds an invocation count and a total duration on a cache
+	 * line of its own.
+	 */
+	static final class Cell extends CellValues {
+		long p11, p12, p13, p14, p15, p16, p17;
+
+		/** The updater for the invocation count. */
+		static final AtomicLongFieldUpdater<CellValues> COUNT = AtomicLongFieldUpdater.newUpdater(CellValues.class,
+				"count");
+
+		/** The updater for the total duration. */
+		static final AtomicLongFieldUpdater<CellValues> TOTAL = AtomicLongFieldUpdater.newUpdater(CellValues.class,
+				"total");
+
+		/**
+		 * Try to record an invocation, fails when the cell is contended.
+		 *
+		 * @param duration
+		 *            the duration
+		 * @return true, if successful
+		 */
+		boolean tryRecord(long duration) {
+			long c = count;
+			if (COUNT.compareAndSet(this, c, c + 1)) {
+				TOTAL.getAndAdd(this, duration);
+				return true;
+			}
+			return false;
+		}
+
+		/**
+		 * Record an invocation.
+		 *
+		 * @param duration
+		 *            the duration
+		 */
+		void record(long duration) {
+			COUNT.getAndIncrement(this);
+			TOTAL.getAndAdd(this, duration);
+		}
+	}
+
+	/**
+	 * One of the two series of a timer as stored in the registry.
+	 */
+	static final class Series {
+
+		/** The timer. */
+		final Timer timer;
+
+		/** Whether this is the total duration or the invocation count. */
+		final boolean durations;
+
+		/**
+		 * Instantiates a new series.
+		 *
+		 * @param timer
+		 *            the timer
+		 * @param durations
+		 *            whether this is the total duration series
+		 */
+		Series(Timer timer, boolean durations) {
+			this.timer = timer;
+			this.durations = durations;
+		}
+
+		/**
+		 * Gets the value of the series.
+		 *
+		 * @return the value
+		 */
+		long get() {
+			return durations ? timer.getDurations() : timer.getInvocations();
+		}
+	}
+}
@@ -0,0 +1,141 @@
+/* Copyright (C) 2017 Maurits van der Schee
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.tqdev.metrics.core;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class BinaryFileReporterTest {
+
+	MetricRegistry registry;
+
+	long millis = 1510373758123L;
+
+	Path tempPath;
+
+	@Before
+	public void setUp() throws IOException {
+		registry = new MetricRegistry() {
+			@Override
+			public long getMillis() {
+				return millis;
+			}
+		};
+		tempPath = Files.createTempDirectory(null);
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		for (Path path : Files.newDirectoryStream(tempPath)) {
+			Files.delete(path);
+		}
+		Files.delete(tempPath);
+	}
+
+	private int count(File file) throws IOException {
+		int count = 0;
+		try (BinaryFileReader reader = new BinaryFileReader(file)) {
+			while (reader.next() != null) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	@Test
+	public void shouldAppendSnapshotsOfRestartedReporters() throws IOException {
+		registry.increment("jdbc.Statement.Invocations", "select");
+		BinaryFileReporter reporter = new BinaryFileReporter(registry, "localhost", tempPath.toString(), "yyyyMMdd", 2);
+		assertThat(reporter.report()).isTrue();
+		assertThat(reporter.report()).isTrue();
+		reporter = new BinaryFileReporter(registry, "localhost", tempPath.toString(), "yyyyMMdd", 2);
+		assertThat(reporter.report()).isTrue();
+		assertThat(count(tempPath.resolve("20171111.bin").toFile())).isEqualTo(3);
+	}
+
+	@Test
+	public void shouldRemoveOldestFiles() throws IOException {
+		registry.increment("jdbc.Statement.Invocations", "select");
+		BinaryFileReporter reporter = new BinaryFileReporter(registry, "localhost", tempPath.toString(), "yyyyMMdd", 2);
+		for (long day = 0; day < 5; day++) {
+			millis = 1510373758123L + day * 86400000L;
+			assertThat(reporter.report()).isTrue();
+		}
+		reporter.shutdown();
+		assertThat(tempPath.toFile().list()).containsOnly("20171113.bin.gz", "20171114.bin.gz", "20171115.bin");
+		assertThat(count(tempPath.resolve("20171114.bin.gz").toFile())).isEqualTo(1);
+	}
+
+	@Test
+	public void shouldCountFailedReports() throws IOException {
+		registry.increment("jdbc.Statement.Invocations", "select");
+		Files.createDirectory(tempPath.resolve("20171111.bin"));
+		BinaryFileReporter reporter = new BinaryFileReporter(registry, "localhost", tempPath.toString(), "yyyyMMdd", 2);
+		assertThat(reporter.report()).isFalse();
+		assertThat(registry.get(ReportingScheduler.ERRORS_TYPE, "BinaryFileReporter")).isEqualTo(1);
+	}
+
+	@Test
+	public void shouldNotLeaveTornRecordBeforeNewSegment() throws IOException {
+		registry.increment("jdbc.Statement.Invocations", "select");
+		boolean[] fail = new boolean[1];
+		BinaryFileReporter reporter = new BinaryFileReporter(registry, "localhost", tempPath.toString(), "yyyyMMdd", 2) {
+			@Override
+			OutputStream open(File file) throws IOException {
+				return new FilterOutputStream(super.open(file)) {
+					@Override
+					public void write(byte[] b, int off, int len) throws IOException {
+						if (fail[0]) {
+							// write part of the record, as when the disk is full
+							out.write(b, off, len / 2);
+							throw new IOException("No space left on device");
+						}
+						out.write(b, off, len);
+					}
+				};
+			}
+		};
+		assertThat(reporter.report()).isTrue();
+		registry.increment("jdbc.Statement.Invocations", "update");
+		fail[0] = true;
+		assertThat(reporter.report()).isFalse();
+		fail[0] = false;
+		assertThat(reporter.report()).isTrue();
+		try (BinaryFileReader reader = new BinaryFileReader(tempPath.resolve("20171111.bin").toFile())) {
+			assertThat(reader.next().size()).isEqualTo(1);
+			Snapshot snapshot = reader.next();
+			assertThat(snapshot.size()).isEqualTo(3);
+			assertThat(snapshot.indexOf("jdbc.Statement.Invocations", "update")).isGreaterThanOrEqualTo(0);
+			assertThat(reader.next()).isNull();
+		}
+		assertThat(registry.get(ReportingScheduler.ERRORS_TYPE, "BinaryFileReporter")).isEqualTo(1);
+	}
+}
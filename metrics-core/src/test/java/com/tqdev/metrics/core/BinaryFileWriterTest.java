@@ -0,0 +1,163 @@
+/* Copyright (C) 2017 Maurits van der Schee
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.tqdev.metrics.core;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class BinaryFileWriterTest {
+
+	MetricRegistry registry;
+
+	BinaryFileWriter writer;
+
+	ByteArrayOutputStream out;
+
+	@Before
+	public void setUp() {
+		registry = new MetricRegistry();
+		writer = new BinaryFileWriter("localhost");
+		out = new ByteArrayOutputStream();
+	}
+
+	private List<Snapshot> read(byte[] bytes) throws IOException {
+		List<Snapshot> snapshots = new ArrayList<>();
+		try (BinaryFileReader reader = new BinaryFileReader(new ByteArrayInputStream(bytes))) {
+			Snapshot snapshot;
+			while ((snapshot = reader.next()) != null) {
+				snapshots.add(snapshot);
+			}
+		}
+		return snapshots;
+	}
+
+	private void assertEqual(Snapshot actual, Snapshot expected) {
+		assertThat(actual.getMillis()).isEqualTo(expected.getMillis());
+		assertThat(actual.size()).isEqualTo(expected.size());
+		for (int t = 0; t < expected.getTypeCount(); t++) {
+			for (int i = expected.getStart(t); i < expected.getEnd(t); i++) {
+				int j = actual.indexOf(expected.getType(t), expected.getKey(i));
+				assertThat(j).isGreaterThanOrEqualTo(0);
+				assertThat(actual.getValue(j)).isEqualTo(expected.getValue(i));
+				assertThat(actual.isGauge(j)).isEqualTo(expected.isGauge(i));
+				assertThat(actual.hasQuantiles(j)).isEqualTo(expected.hasQuantiles(i));
+				for (int q = 0; expected.hasQuantiles(i) && q < Histogram.QUANTILES.length; q++) {
+					assertThat(actual.getQuantile(j, q)).isEqualTo(expected.getQuantile(i, q));
+				}
+			}
+		}
+	}
+
+	@Test
+	public void shouldReadWrittenSnapshots() throws IOException {
+		List<Snapshot> written = new ArrayList<>();
+		registry.add("jdbc.Statement.Invocations", "select", 3);
+		registry.set("jvm.Runtime", "Threads", () -> 12);
+		registry.histogram("jdbc.Statement.Latency", "select").record(1000);
+		written.add(registry.snapshot());
+		writer.write(out, written.get(0));
+		registry.add("jdbc.Statement.Invocations", "select", -5);
+		registry.add("jdbc.Statement.Invocations", "update", 1);
+		registry.histogram("jdbc.Statement.Latency", "select").record(100000);
+		written.add(registry.snapshot());
+		writer.write(out, written.get(1));
+		List<Snapshot> snapshots = read(out.toByteArray());
+		assertThat(snapshots).hasSize(2);
+		assertEqual(snapshots.get(0), written.get(0));
+		assertEqual(snapshots.get(1), written.get(1));
+	}
+
+	@Test
+	public void shouldReadSnapshotsWithRemovedSeries() throws IOException {
+		for (int i = 0; i < 10; i++) {
+			registry.increment("type", "key" + i);
+		}
+		writer.write(out, registry.snapshot());
+		registry.reset();
+		registry.increment("type", "key3");
+		Snapshot written = registry.snapshot();
+		writer.write(out, written);
+		List<Snapshot> snapshots = read(out.toByteArray());
+		assertThat(snapshots.get(0).size()).isEqualTo(10);
+		assertEqual(snapshots.get(1), written);
+	}
+
+	@Test
+	public void shouldStartNewSegmentWhenKindChanges() throws IOException {
+		registry.increment("type", "key");
+		writer.write(out, registry.snapshot());
+		int length = out.size();
+		registry.set("type", "key", () -> 7);
+		Snapshot written = registry.snapshot();
+		writer.write(out, written);
+		List<Snapshot> snapshots = read(out.toByteArray());
+		assertThat(snapshots).hasSize(2);
+		assertEqual(snapshots.get(1), written);
+		assertThat(Arrays.copyOfRange(out.toByteArray(), length, length + 4)).isEqualTo(BinaryFileWriter.MAGIC);
+	}
+
+	@Test
+	public void shouldReadSegmentsOfInstances() throws IOException {
+		registry.increment("type", "key");
+		writer.write(out, registry.snapshot());
+		new BinaryFileWriter("otherhost").write(out, registry.snapshot());
+		try (BinaryFileReader reader = new BinaryFileReader(new ByteArrayInputStream(out.toByteArray()))) {
+			assertThat(reader.next()).isNotNull();
+			assertThat(reader.getInstanceName()).isEqualTo("localhost");
+			assertThat(reader.next()).isNotNull();
+			assertThat(reader.getInstanceName()).isEqualTo("otherhost");
+			assertThat(reader.next()).isNull();
+		}
+	}
+
+	@Test
+	public void shouldIgnoreTruncatedRecord() throws IOException {
+		registry.increment("type", "key");
+		writer.write(out, registry.snapshot());
+		writer.write(out, registry.snapshot());
+		byte[] bytes = out.toByteArray();
+		assertThat(read(Arrays.copyOf(bytes, bytes.length - 1))).hasSize(1);
+	}
+
+	@Test
+	public void shouldWriteUnchangedCountersAsSingleBytes() throws IOException {
+		for (int i = 0; i < 20000; i++) {
+			registry.add("jdbc.Statement.Invocations", "select * from table" + i, i * 1000);
+		}
+		writer.write(out, registry.snapshot());
+		int length = out.size();
+		for (int i = 0; i < 20000; i += 10) {
+			registry.increment("jdbc.Statement.Invocations", "select * from table" + i);
+		}
+		writer.write(out, registry.snapshot());
+		assertThat(out.size() - length).isLessThan(20000 + 20);
+		assertThat(read(out.toByteArray())).hasSize(2);
+	}
+}
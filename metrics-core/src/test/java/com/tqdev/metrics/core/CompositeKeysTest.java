@@ -0,0 +1,53 @@
+/* Copyright (C) 2017 Maurits van der Schee
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.tqdev.metrics.core;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.Test;
+
+public class CompositeKeysTest {
+
+	@Test
+	public void shouldComposeKeyOfParts() {
+		CompositeKeys keys = new CompositeKeys(".");
+		assertThat(keys.get("Controller", "action")).isEqualTo("Controller.action");
+		assertThat(keys.get("Controller", "other")).isEqualTo("Controller.other");
+		assertThat(keys.size()).isEqualTo(2);
+	}
+
+	@Test
+	public void shouldReturnSameInstanceWhenComposedBefore() {
+		CompositeKeys keys = new CompositeKeys("-");
+		String key = keys.get("get", "requests");
+		assertThat(keys.get("get", "requests")).isSameAs(key);
+	}
+
+	@Test
+	public void shouldClearWhenExceedingMaxSize() {
+		CompositeKeys keys = new CompositeKeys(".", 2);
+		keys.get("a", "1");
+		keys.get("a", "2");
+		assertThat(keys.size()).isEqualTo(2);
+		assertThat(keys.get("b", "1")).isEqualTo("b.1");
+		assertThat(keys.size()).isEqualTo(1);
+	}
+}
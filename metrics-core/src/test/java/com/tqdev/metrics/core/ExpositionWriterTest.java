@@ -0,0 +1,103 @@
+/* Copyright (C) 2017 Maurits van der Schee
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.tqdev.metrics.core;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class ExpositionWriterTest {
+
+	ByteArrayOutputStream out;
+
+	ExpositionWriter writer;
+
+	@Before
+	public void setUp() {
+		out = new ByteArrayOutputStream();
+		writer = new ExpositionWriter(out, 32);
+	}
+
+	private String written() throws IOException {
+		writer.flush();
+		return new String(out.toByteArray(), StandardCharsets.UTF_8);
+	}
+
+	@Test
+	public void shouldWriteLongs() throws IOException {
+		long[] values = { 0, 7, 10, -1, 1234567890123L, Long.MAX_VALUE, Long.MIN_VALUE };
+		StringBuilder expected = new StringBuilder();
+		for (long value : values) {
+			writer.write(value);
+			writer.write((byte) ' ');
+			expected.append(value).append(' ');
+		}
+		assertThat(written()).isEqualTo(expected.toString());
+	}
+
+	@Test
+	public void shouldWriteBytesLargerThanBuffer() throws IOException {
+		byte[] small = "small ".getBytes(StandardCharsets.UTF_8);
+		byte[] large = "a line that is larger than the buffer".getBytes(StandardCharsets.UTF_8);
+		writer.write(small);
+		writer.write(large);
+		writer.write(small);
+		assertThat(written()).isEqualTo("small a line that is larger than the buffersmall ");
+	}
+
+	@Test
+	public void shouldWriteNothingUntilFlushed() throws IOException {
+		writer.write(123);
+		assertThat(out.size()).isEqualTo(0);
+		assertThat(written()).isEqualTo("123");
+	}
+
+	@Test
+	public void shouldDiscardUnwrittenBytesWhenReset() throws IOException {
+		writer.write(123);
+		ByteArrayOutputStream other = new ByteArrayOutputStream();
+		writer.reset(other).write(456);
+		writer.flush();
+		assertThat(out.size()).isEqualTo(0);
+		assertThat(new String(other.toByteArray(), StandardCharsets.UTF_8)).isEqualTo("456");
+	}
+
+	@Test
+	public void shouldEncodeNamesOnce() {
+		int[] encoded = new int[1];
+		NameCache names = new NameCache(name -> {
+			encoded[0]++;
+			return name.getBytes(StandardCharsets.UTF_8);
+		}, 2);
+		assertThat(names.get("a")).isEqualTo(new byte[] { 'a' });
+		assertThat(names.get("a")).isSameAs(names.get("a"));
+		assertThat(encoded[0]).isEqualTo(1);
+		names.get("b");
+		names.get("c");
+		assertThat(names.size()).isEqualTo(1);
+		assertThat(encoded[0]).isEqualTo(3);
+	}
+}
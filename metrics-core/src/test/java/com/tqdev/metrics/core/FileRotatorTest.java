@@ -0,0 +1,161 @@
+/* Copyright (C) 2017 Maurits van der Schee
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.tqdev.metrics.core;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class FileRotatorTest {
+
+	MetricRegistry registry;
+
+	Path tempPath;
+
+	@Before
+	public void setUp() throws IOException {
+		registry = new MetricRegistry();
+		tempPath = Files.createTempDirectory(null);
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		for (Path path : Files.newDirectoryStream(tempPath)) {
+			Files.delete(path);
+		}
+		Files.delete(tempPath);
+	}
+
+	private File write(String name, String content) throws IOException {
+		Path path = tempPath.resolve(name);
+		Files.write(path, content.getBytes(StandardCharsets.UTF_8));
+		return path.toFile();
+	}
+
+	private String read(String name) throws IOException {
+		try (InputStream in = new GZIPInputStream(Files.newInputStream(tempPath.resolve(name)))) {
+			StringBuilder content = new StringBuilder();
+			byte[] buffer = new byte[8192];
+			int length;
+			while ((length = in.read(buffer)) > 0) {
+				content.append(new String(buffer, 0, length, StandardCharsets.UTF_8));
+			}
+			return content.toString();
+		}
+	}
+
+	@Test
+	public void shouldCompressPreviousFileButNotCurrentFile() throws IOException {
+		FileRotator rotator = new FileRotator(registry, "FileReporter", tempPath.toString(), ".txt", 10);
+		rotator.rotate(write("20171110.txt", "first\n"));
+		rotator.rotate(write("20171110.txt", "first\nsecond\n"));
+		rotator.rotate(write("20171111.txt", "third\n"));
+		rotator.shutdown();
+		assertThat(tempPath.toFile().list()).containsOnly("20171110.txt.gz", "20171111.txt");
+		assertThat(read("20171110.txt.gz")).isEqualTo("first\nsecond\n");
+		assertThat(rotator.getTotalBytes()).isEqualTo(tempPath.resolve("20171110.txt.gz").toFile().length());
+	}
+
+	@Test
+	public void shouldCompressFilesOfPreviousRun() throws IOException {
+		write("20171109.txt.gz.tmp", "partial");
+		write("20171110.txt", "previous\n");
+		write("other.log", "other\n");
+		FileRotator rotator = new FileRotator(registry, "FileReporter", tempPath.toString(), ".txt", 10);
+		rotator.rotate(write("20171111.txt", "current\n"));
+		rotator.shutdown();
+		assertThat(tempPath.toFile().list()).containsOnly("20171110.txt.gz", "20171111.txt", "other.log");
+		assertThat(read("20171110.txt.gz")).isEqualTo("previous\n");
+	}
+
+	@Test
+	public void shouldAppendToExistingCompressedFile() throws IOException {
+		FileRotator rotator = new FileRotator(registry, "FileReporter", tempPath.toString(), ".txt", 10);
+		rotator.rotate(write("20171110.txt", "first\n"));
+		rotator.rotate(write("20171111.txt", "second\n"));
+		rotator.shutdown();
+		write("20171110.txt", "third\n");
+		rotator = new FileRotator(registry, "FileReporter", tempPath.toString(), ".txt", 10);
+		rotator.rotate(write("20171112.txt", "fourth\n"));
+		rotator.shutdown();
+		assertThat(read("20171110.txt.gz")).isEqualTo("first\nthird\n");
+	}
+
+	@Test
+	public void shouldRemoveOldestFilesByCountAndTotalBytes() throws IOException {
+		FileRotator rotator = new FileRotator(registry, "FileReporter", tempPath.toString(), ".txt", 3);
+		for (int day = 10; day < 16; day++) {
+			rotator.rotate(write("201711" + day + ".txt", "day " + day + "\n"));
+		}
+		rotator.shutdown();
+		assertThat(tempPath.toFile().list()).containsOnly("20171112.txt.gz", "20171113.txt.gz", "20171114.txt.gz",
+				"20171115.txt");
+		long size = tempPath.resolve("20171114.txt.gz").toFile().length();
+		rotator.setMaxTotalBytes(size + 1);
+		assertThat(tempPath.toFile().list()).containsOnly("20171114.txt.gz", "20171115.txt");
+		assertThat(rotator.getTotalBytes()).isEqualTo(size);
+	}
+
+	@Test
+	public void shouldCompressFailedFileAgainOnNextRotation() throws IOException, InterruptedException {
+		FileRotator rotator = new FileRotator(registry, "FileReporter", tempPath.toString(), ".txt", 10);
+		rotator.rotate(write("20171110.txt", "first\n"));
+		// the temporary file can not be written (and is removed after the failure)
+		Files.createDirectory(tempPath.resolve("20171110.txt.gz.tmp"));
+		rotator.rotate(write("20171111.txt", "second\n"));
+		for (int i = 0; i < 100 && registry.get(ReportingScheduler.ERRORS_TYPE, "FileReporter") == 0; i++) {
+			Thread.sleep(50);
+		}
+		assertThat(registry.get(ReportingScheduler.ERRORS_TYPE, "FileReporter")).isEqualTo(1);
+		rotator.rotate(tempPath.resolve("20171111.txt").toFile());
+		rotator.shutdown();
+		assertThat(tempPath.toFile().list()).containsOnly("20171110.txt.gz", "20171111.txt");
+		assertThat(read("20171110.txt.gz")).isEqualTo("first\n");
+		assertThat(rotator.getTotalBytes()).isEqualTo(tempPath.resolve("20171110.txt.gz").toFile().length());
+	}
+
+	@Test
+	public void shouldNotLoseDataWhenRotatingBackToQueuedFile() throws IOException {
+		FileRotator rotator = new FileRotator(registry, "FileReporter", tempPath.toString(), ".txt", 10);
+		rotator.rotate(write("20171110.txt", "first\n"));
+		rotator.rotate(write("20171111.txt", "second\n"));
+		// the clock is set back
+		File file = tempPath.resolve("20171110.txt").toFile();
+		rotator.rotate(file);
+		Files.write(file.toPath(), "third\n".getBytes(StandardCharsets.UTF_8), StandardOpenOption.CREATE,
+				StandardOpenOption.APPEND);
+		rotator.rotate(write("20171112.txt", "fourth\n"));
+		rotator.shutdown();
+		assertThat(tempPath.toFile().list()).containsOnly("20171110.txt.gz", "20171111.txt.gz", "20171112.txt");
+		assertThat(read("20171110.txt.gz")).isEqualTo("first\nthird\n");
+	}
+}
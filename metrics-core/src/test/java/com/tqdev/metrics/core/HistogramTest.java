@@ -0,0 +1,103 @@
+/* Copyright (C) 2017 Maurits van der Schee
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.tqdev.metrics.core;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class HistogramTest {
+
+	Histogram histogram;
+
+	@Before
+	public void setUp() {
+		histogram = new Histogram();
+	}
+
+	@Test
+	public void shouldBeZeroWhenCreated() {
+		assertThat(histogram.getCount()).isEqualTo(0);
+		assertThat(histogram.getQuantile(0.5)).isEqualTo(0);
+	}
+
+	@Test
+	public void shouldHaveExactValuesWhenSmall() {
+		for (long value = 0; value < 16; value++) {
+			assertThat(Histogram.getHighestValue(Histogram.getIndex(value))).isEqualTo(value);
+		}
+	}
+
+	@Test
+	public void shouldBeWithinRelativeErrorOfValue() {
+		for (long value = 1; value < (1L << 40); value = value * 3 + 1) {
+			long highest = Histogram.getHighestValue(Histogram.getIndex(value));
+			assertThat(highest).isGreaterThanOrEqualTo(value);
+			assertThat(highest - value).isLessThanOrEqualTo(value / 8);
+		}
+	}
+
+	@Test
+	public void shouldBeInOverflowBucketWhenLarge() {
+		assertThat(Histogram.getIndex(Long.MAX_VALUE)).isEqualTo(Histogram.BUCKET_COUNT - 1);
+		assertThat(Histogram.getIndex(1L << 40)).isEqualTo(Histogram.BUCKET_COUNT - 1);
+		assertThat(Histogram.getIndex((1L << 40) - 1)).isEqualTo(Histogram.BUCKET_COUNT - 2);
+	}
+
+	@Test
+	public void shouldHaveQuantilesWhenRecording() {
+		for (long value = 1; value <= 1000; value++) {
+			histogram.record(value);
+		}
+		assertThat(histogram.getCount()).isEqualTo(1000);
+		assertThat(histogram.getQuantile(0.5)).isEqualTo(511);
+		assertThat(histogram.getQuantile(0.9)).isEqualTo(959);
+		assertThat(histogram.getQuantile(0.999)).isEqualTo(1023);
+	}
+
+	@Test
+	public void shouldNotLoseRecordingsWhenContended() throws InterruptedException {
+		Thread[] threads = new Thread[8];
+		for (int i = 0; i < threads.length; i++) {
+			threads[i] = new Thread(() -> {
+				for (int j = 0; j < 100000; j++) {
+					histogram.record(j % 1000);
+				}
+			});
+			threads[i].start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		assertThat(histogram.getCount()).isEqualTo(800000);
+		assertThat(histogram.getQuantile(0.5)).isEqualTo(511);
+		histogram.reset();
+		assertThat(histogram.getCount()).isEqualTo(0);
+	}
+
+	@Test
+	public void shouldBeZeroWhenReset() {
+		histogram.record(123);
+		histogram.reset();
+		assertThat(histogram.getCount()).isEqualTo(0);
+	}
+}
@@ -0,0 +1,130 @@
+/* Copyright (C) 2017 Maurits van der Schee
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.tqdev.metrics.core;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class MappedMetricStoreTest {
+
+	Path tempPath;
+
+	File file;
+
+	MetricRegistry registry;
+
+	@Before
+	public void setUp() throws IOException {
+		tempPath = Files.createTempDirectory(null);
+		file = tempPath.resolve("metrics.bin").toFile();
+		registry = new MetricRegistry();
+		registry.setStore(new MappedMetricStore(file, 4));
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		for (Path path : Files.newDirectoryStream(tempPath)) {
+			Files.delete(path);
+		}
+		Files.delete(tempPath);
+	}
+
+	@Test
+	public void shouldReadCountersFromFile() throws IOException {
+		registry.increment("type1", "key1");
+		registry.add("type2", "key1", 123);
+		registry.increment("type1", "kéy2");
+		registry.set("type1", "kéy2", 5);
+		Snapshot snapshot = new MappedMetricReader(file).snapshot();
+		assertThat(snapshot.getTypeCount()).isEqualTo(2);
+		assertThat(snapshot.getType(0)).isEqualTo("type1");
+		assertThat(snapshot.getKey(0)).isEqualTo("key1");
+		assertThat(snapshot.getValue(0)).isEqualTo(1);
+		assertThat(snapshot.getKey(1)).isEqualTo("kéy2");
+		assertThat(snapshot.getValue(1)).isEqualTo(5);
+		assertThat(snapshot.getType(1)).isEqualTo("type2");
+		assertThat(snapshot.getValue(2)).isEqualTo(123);
+	}
+
+	@Test
+	public void shouldSeeUpdatesWithoutReopening() throws IOException {
+		Counter counter = registry.counter("type", "key");
+		MappedMetricReader reader = new MappedMetricReader(file);
+		assertThat(reader.snapshot().getValue(0)).isEqualTo(0);
+		counter.add(42);
+		assertThat(reader.snapshot().getValue(0)).isEqualTo(42);
+		assertThat(registry.get("type", "key")).isEqualTo(42);
+		registry.increment("type", "key2");
+		assertThat(reader.snapshot().size()).isEqualTo(2);
+	}
+
+	@Test
+	public void shouldReuseSlotsWhenReset() throws IOException {
+		registry.increment("type", "key");
+		registry.reset();
+		assertThat(new MappedMetricReader(file).snapshot().getValue(0)).isEqualTo(0);
+		registry.increment("type", "key");
+		assertThat(registry.getStore().size()).isEqualTo(1);
+		assertThat(new MappedMetricReader(file).snapshot().getValue(0)).isEqualTo(1);
+	}
+
+	@Test
+	public void shouldKeepCountersOnHeapWhenFull() throws IOException {
+		for (int i = 0; i < 6; i++) {
+			registry.add("type", "key" + i, i);
+		}
+		assertThat(registry.get("type", "key5")).isEqualTo(5);
+		assertThat(new MappedMetricReader(file).snapshot().size()).isEqualTo(4);
+	}
+
+	@Test
+	public void shouldKeepValuesWhenWriterIsGone() throws IOException {
+		registry.add("type", "key", 7);
+		registry.setStore(null);
+		registry = null;
+		assertThat(new MappedMetricReader(file).snapshot().getValue(0)).isEqualTo(7);
+	}
+
+	@Test
+	public void shouldNotCountAfterNewStoreIsCreated() throws IOException {
+		registry.add("type", "key", 7);
+		MappedMetricReader reader = new MappedMetricReader(file);
+		long created = reader.getCreated();
+		new MappedMetricStore(file, 4);
+		assertThat(reader.snapshot().size()).isEqualTo(0);
+		assertThat(reader.getCreated()).isGreaterThanOrEqualTo(created);
+	}
+
+	@Test(expected = IOException.class)
+	public void shouldNotReadOtherFiles() throws IOException {
+		Path other = tempPath.resolve("other.txt");
+		Files.write(other, new byte[128]);
+		new MappedMetricReader(other.toFile());
+	}
+}
@@ -1,10 +1,15 @@
 package com.tqdev.metrics.core;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assume.assumeTrue;
+
+import java.lang.management.ManagementFactory;
 
 import org.junit.Before;
 import org.junit.Test;
 
+import com.sun.management.ThreadMXBean;
+
 public class MetricRegistryTest {
 
 	MetricRegistry registry;
@@ -197,6 +202,405 @@ public class MetricRegistryTest {
 		assertThat(registry.add("type", "key", 123)).isFalse();
 	}
 
+	@Test
+	public void shouldBeSameCounterWhenGettingCounterTwice() {
+		assertThat(registry.counter("type", "key")).isSameAs(registry.counter("type", "key"));
+	}
+
+	@Test
+	public void shouldBeNumberWhenAddingToCounter() {
+		Counter counter = registry.counter("type", "key");
+		counter.increment();
+		counter.add(122);
+		registry.increment("type", "key");
+		assertThat(registry.get("type", "key")).isEqualTo(124);
+	}
+
+	@Test
+	public void shouldKeepCounterWhenSettingLongNumber() {
+		Counter counter = registry.counter("type", "key");
+		registry.set("type", "key", 123);
+		counter.increment();
+		assertThat(registry.get("type", "key")).isEqualTo(124);
+	}
+
+	@Test
+	public void shouldHaveKeyAndZeroValueOfCounterWhenReset() {
+		Counter counter = registry.counter("type", "key");
+		counter.add(123);
+		registry.increment("type", "key2");
+		registry.reset();
+		assertThat(registry.getKeys("type")).containsExactly("key");
+		assertThat(registry.get("type", "key")).isEqualTo(0);
+		counter.increment();
+		assertThat(registry.get("type", "key")).isEqualTo(1);
+	}
+
+	@Test
+	public void shouldNotRegisterCounterWhenGettingCounterOfGauge() {
+		registry.set("type", "key", () -> 123);
+		registry.counter("type", "key").increment();
+		assertThat(registry.get("type", "key")).isEqualTo(123);
+	}
+
+	@Test
+	public void shouldHaveInvocationsAndDurationsWhenRecording() {
+		registry.record("type", "key", 123);
+		registry.record("type", "key", 1234);
+		assertThat(registry.getTypes()).containsOnly("type.Invocations", "type.Durations");
+		assertThat(registry.get("type.Invocations", "key")).isEqualTo(2);
+		assertThat(registry.get("type.Durations", "key")).isEqualTo(1357);
+	}
+
+	@Test
+	public void shouldBeSameTimerWhenGettingTimerTwice() {
+		assertThat(registry.timer("type", "key")).isSameAs(registry.timer("type", "key"));
+	}
+
+	@Test
+	public void shouldCarryOverCountersWhenGettingTimer() {
+		registry.increment("type.Invocations", "key");
+		registry.add("type.Durations", "key", 123);
+		Timer timer = registry.timer("type", "key");
+		timer.record(1234);
+		assertThat(registry.get("type.Invocations", "key")).isEqualTo(2);
+		assertThat(registry.get("type.Durations", "key")).isEqualTo(1357);
+	}
+
+	@Test
+	public void shouldHaveKeyAndZeroValueOfTimerWhenReset() {
+		Timer timer = registry.timer("type", "key");
+		timer.record(123);
+		registry.reset();
+		assertThat(registry.getKeys("type.Invocations")).containsExactly("key");
+		assertThat(registry.get("type.Durations", "key")).isEqualTo(0);
+		timer.record(1234);
+		assertThat(registry.get("type.Invocations", "key")).isEqualTo(1);
+		assertThat(registry.get("type.Durations", "key")).isEqualTo(1234);
+	}
+
+	@Test
+	public void shouldNotHaveKeyOfRecordedTimerWhenReset() {
+		registry.record("type", "key", 123);
+		registry.reset();
+		assertThat(registry.getKeys("type.Invocations").iterator().hasNext()).isEqualTo(false);
+		registry.record("type", "key", 1234);
+		assertThat(registry.get("type.Durations", "key")).isEqualTo(1234);
+	}
+
+	@Test
+	public void shouldBeSameHistogramWhenGettingHistogramTwice() {
+		assertThat(registry.histogram("type", "key")).isSameAs(registry.histogram("type", "key"));
+	}
+
+	@Test
+	public void shouldBeCountWhenRecordingInHistogram() {
+		registry.histogram("type", "key").record(123);
+		registry.histogram("type", "key").record(1234);
+		assertThat(registry.get("type", "key")).isEqualTo(2);
+		assertThat(registry.getHistogram("type", "key").getQuantile(0.5)).isEqualTo(127);
+	}
+
+	@Test
+	public void shouldHaveKeyAndZeroValueOfHistogramWhenReset() {
+		registry.histogram("type", "key").record(123);
+		registry.reset();
+		assertThat(registry.getKeys("type")).containsExactly("key");
+		assertThat(registry.get("type", "key")).isEqualTo(0);
+	}
+
+	@Test
+	public void shouldNotHaveLatenciesWhenRecordingWithoutTimerHistograms() {
+		registry.record("type", "key", 123);
+		assertThat(registry.hasType("type.Latencies")).isFalse();
+	}
+
+	@Test
+	public void shouldHaveLatenciesWhenRecordingWithTimerHistograms() {
+		registry.setTimerHistograms(true);
+		registry.record("type", "key", 123);
+		registry.record("type", "key", 1234);
+		assertThat(registry.get("type.Latencies", "key")).isEqualTo(2);
+		assertThat(registry.getHistogram("type.Latencies", "key").getQuantile(1)).isEqualTo(1279);
+	}
+
+	@Test
+	public void shouldAddAndRemoveLatenciesOfExistingTimers() {
+		Timer timer = registry.timer("type", "key");
+		registry.setTimerHistograms(true);
+		timer.record(123);
+		assertThat(registry.get("type.Latencies", "key")).isEqualTo(1);
+		registry.setTimerHistograms(false);
+		assertThat(registry.has("type.Latencies", "key")).isFalse();
+		timer.record(123);
+		assertThat(registry.get("type.Invocations", "key")).isEqualTo(2);
+	}
+
+	@Test
+	public void shouldNotHaveLatenciesOfRecordedTimerWhenReset() {
+		registry.setTimerHistograms(true);
+		registry.record("type", "key", 123);
+		registry.reset();
+		assertThat(registry.has("type.Latencies", "key")).isFalse();
+	}
+
+	@Test
+	public void shouldBeSameSketchWhenGettingSketchTwice() {
+		assertThat(registry.sketch("type", "key")).isSameAs(registry.sketch("type", "key"));
+	}
+
+	@Test
+	public void shouldHaveKeyAndZeroValueOfSketchWhenReset() {
+		registry.sketch("type", "key").record(123);
+		assertThat(registry.get("type", "key")).isEqualTo(1);
+		registry.reset();
+		assertThat(registry.getKeys("type")).containsExactly("key");
+		assertThat(registry.getSketch("type", "key").getCount()).isEqualTo(0);
+	}
+
+	@Test
+	public void shouldUseOverflowKeyWhenExceedingMaxKeys() {
+		registry.setMaxKeysPerType(2);
+		registry.increment("type", "key1");
+		registry.increment("type", "key2");
+		registry.increment("type", "key3");
+		registry.add("type", "key4", 2);
+		registry.increment("type", "key1");
+		assertThat(registry.getKeys("type")).containsOnly("key1", "key2", MetricRegistry.OVERFLOW_KEY);
+		assertThat(registry.get("type", "key1")).isEqualTo(2);
+		assertThat(registry.get("type", MetricRegistry.OVERFLOW_KEY)).isEqualTo(3);
+		assertThat(registry.get(MetricRegistry.DROPPED_UPDATES_TYPE, "type")).isEqualTo(2);
+	}
+
+	@Test
+	public void shouldUseOverflowTimerWhenExceedingMaxKeys() {
+		registry.setMaxKeysPerType(1);
+		registry.record("type", "key1", 123);
+		registry.record("type", "key2", 1234);
+		assertThat(registry.getKeys("type.Invocations")).containsOnly("key1", MetricRegistry.OVERFLOW_KEY);
+		assertThat(registry.get("type.Durations", MetricRegistry.OVERFLOW_KEY)).isEqualTo(1234);
+		assertThat(registry.timer("type", "key3")).isSameAs(registry.timer("type", MetricRegistry.OVERFLOW_KEY));
+		assertThat(registry.get(MetricRegistry.DROPPED_UPDATES_TYPE, "type")).isEqualTo(2);
+	}
+
+	@Test
+	public void shouldCountEveryDroppedUpdate() {
+		registry.setMaxKeysPerType(1);
+		registry.increment("type", "key1");
+		registry.increment("type", "key2");
+		long version = registry.getStructureVersion();
+		registry.increment("type", "key2");
+		registry.increment("type", "key3");
+		assertThat(registry.getStructureVersion()).isEqualTo(version);
+		assertThat(registry.get("type", MetricRegistry.OVERFLOW_KEY)).isEqualTo(3);
+		assertThat(registry.get(MetricRegistry.DROPPED_UPDATES_TYPE, "type")).isEqualTo(3);
+	}
+
+	@Test
+	public void shouldKeepDroppedUpdatesWhenReset() {
+		registry.setMaxKeysPerType(1);
+		registry.increment("type", "key1");
+		registry.increment("type", "key2");
+		registry.reset();
+		assertThat(registry.getKeys(MetricRegistry.DROPPED_UPDATES_TYPE)).containsExactly("type");
+		assertThat(registry.get(MetricRegistry.DROPPED_UPDATES_TYPE, "type")).isEqualTo(0);
+	}
+
+	@Test
+	public void shouldHaveTypesKeysAndValuesInSnapshot() {
+		registry.add("type1", "key1", 123);
+		registry.set("type1", "key2", () -> 1234);
+		registry.add("type2", "key1", 12345);
+		Snapshot snapshot = registry.snapshot();
+		assertThat(snapshot.getTypeCount()).isEqualTo(2);
+		assertThat(snapshot.size()).isEqualTo(3);
+		int t = snapshot.indexOfType("type1");
+		assertThat(snapshot.getEnd(t) - snapshot.getStart(t)).isEqualTo(2);
+		for (t = 0; t < snapshot.getTypeCount(); t++) {
+			for (int i = snapshot.getStart(t); i < snapshot.getEnd(t); i++) {
+				assertThat(snapshot.getValue(i)).isEqualTo(registry.get(snapshot.getType(t), snapshot.getKey(i)));
+			}
+		}
+	}
+
+	@Test
+	public void shouldHaveSortedTypesAndKeysInSortedSnapshot() {
+		for (int i = 20; i > 0; i--) {
+			registry.increment("type" + (char) ('a' + i), "key" + (char) ('a' + i));
+			registry.increment("typeb", "key" + (char) ('a' + i));
+		}
+		Snapshot snapshot = registry.snapshot(true);
+		assertThat(snapshot.getTypeCount()).isEqualTo(20);
+		for (int t = 1; t < snapshot.getTypeCount(); t++) {
+			assertThat(snapshot.getType(t).compareTo(snapshot.getType(t - 1))).isPositive();
+		}
+		int t = snapshot.indexOfType("typeb");
+		assertThat(snapshot.getEnd(t) - snapshot.getStart(t)).isEqualTo(20);
+		for (int i = snapshot.getStart(t) + 1; i < snapshot.getEnd(t); i++) {
+			assertThat(snapshot.getKey(i).compareTo(snapshot.getKey(i - 1))).isPositive();
+		}
+	}
+
+	@Test
+	public void shouldKeepValuesWithKeysInSortedSnapshot() {
+		for (int i = 0; i < 1000; i++) {
+			registry.add("type", "key" + i, i);
+		}
+		registry.set("type", "gauge", () -> -1);
+		Snapshot snapshot = registry.snapshot(true);
+		for (int i = 1; i < snapshot.size(); i++) {
+			assertThat(snapshot.getKey(i).compareTo(snapshot.getKey(i - 1))).isPositive();
+		}
+		for (int i = 0; i < snapshot.size(); i++) {
+			assertThat(snapshot.isGauge(i)).isEqualTo(snapshot.getKey(i).equals("gauge"));
+			assertThat(snapshot.getValue(i)).isEqualTo(registry.get("type", snapshot.getKey(i)));
+		}
+	}
+
+	@Test
+	public void shouldFindGaugesAndKeysInSnapshot() {
+		registry.add("type1", "key1", 123);
+		registry.set("type1", "key2", () -> 1234);
+		Snapshot snapshot = registry.snapshot();
+		int i = snapshot.indexOf("type1", "key2");
+		assertThat(snapshot.getValue(i)).isEqualTo(1234);
+		assertThat(snapshot.isGauge(i)).isTrue();
+		assertThat(snapshot.isGauge(snapshot.indexOf("type1", "key1"))).isFalse();
+		assertThat(snapshot.indexOf("type1", "key3")).isEqualTo(-1);
+		assertThat(snapshot.indexOf("type2", "key1")).isEqualTo(-1);
+	}
+
+	@Test
+	public void shouldNotChangeSnapshotWhenUpdating() {
+		registry.record("type", "key", 123);
+		Snapshot snapshot = registry.snapshot("type.Durations");
+		registry.record("type", "key", 1234);
+		assertThat(snapshot.getTypeCount()).isEqualTo(1);
+		assertThat(snapshot.getKey(0)).isEqualTo("key");
+		assertThat(snapshot.getValue(0)).isEqualTo(123);
+		assertThat(registry.snapshot("unknown").getTypeCount()).isEqualTo(0);
+	}
+
+	@Test
+	public void shouldHaveQuantilesAndSketchInSnapshot() {
+		registry.histogram("type", "histogram").record(123);
+		registry.sketch("type", "sketch").record(1000);
+		registry.increment("type", "counter");
+		Snapshot snapshot = registry.snapshot();
+		for (int i = 0; i < snapshot.size(); i++) {
+			switch (snapshot.getKey(i)) {
+			case "histogram":
+				assertThat(snapshot.getValue(i)).isEqualTo(1);
+				assertThat(snapshot.getQuantile(i, 0)).isEqualTo(127);
+				assertThat(snapshot.hasSketch(i)).isFalse();
+				break;
+			case "sketch":
+				assertThat(snapshot.getQuantile(i, 0)).isEqualTo(1002);
+				assertThat(Sketch.fromBytes(snapshot.getSketch(i)).getCount()).isEqualTo(1);
+				break;
+			default:
+				assertThat(snapshot.hasQuantiles(i)).isFalse();
+			}
+		}
+	}
+
+	@Test
+	public void shouldHaveOnlyChangedMetricsInSnapshotSincePrevious() {
+		registry.add("type1", "key1", 123);
+		registry.add("type1", "key2", 123);
+		registry.histogram("type2", "key1").record(123);
+		registry.add("type3", "key1", 123);
+		Snapshot previous = registry.snapshot();
+		registry.increment("type1", "key2");
+		registry.increment("type1", "key3");
+		registry.add("type3", "key1", 0);
+		Snapshot changed = registry.snapshotChangedSince(previous.getCursor());
+		assertThat(changed.getTypeCount()).isEqualTo(2);
+		assertThat(changed.indexOfType("type2")).isEqualTo(-1);
+		int t = changed.indexOfType("type1");
+		assertThat(changed.getEnd(t) - changed.getStart(t)).isEqualTo(2);
+		assertThat(changed.getKey(changed.getStart(t)) + changed.getKey(changed.getStart(t) + 1)).isIn("key2key3",
+				"key3key2");
+		registry.histogram("type2", "key1").record(123);
+		changed = registry.snapshotChangedSince(previous.getCursor());
+		assertThat(changed.indexOfType("type2")).isGreaterThanOrEqualTo(0);
+		assertThat(registry.snapshotChangedSince(changed.getCursor()).size()).isEqualTo(0);
+	}
+
+	@Test
+	public void shouldFilterSharedSnapshotByCursor() {
+		registry.add("type1", "key1", 123);
+		registry.timer("type2", "key1").record(1000);
+		registry.set("type3", "key1", () -> 1L);
+		Snapshot previous = registry.snapshot();
+		registry.increment("type1", "key1");
+		Snapshot snapshot = registry.snapshotChangedSince(0);
+		assertThat(snapshot.size()).isEqualTo(4);
+		assertThat(snapshot.changedSince(0)).isSameAs(snapshot);
+		Snapshot changed = snapshot.changedSince(previous.getCursor());
+		assertThat(changed.getCursor()).isEqualTo(snapshot.getCursor());
+		assertThat(changed.size()).isEqualTo(2);
+		assertThat(changed.indexOfType("type1")).isGreaterThanOrEqualTo(0);
+		assertThat(changed.indexOfType("type2.Invocations")).isEqualTo(-1);
+		assertThat(changed.indexOfType("type3")).isGreaterThanOrEqualTo(0);
+		registry.timer("type2", "key1").record(1000);
+		changed = registry.snapshotChangedSince(snapshot.getCursor());
+		assertThat(changed.indexOfType("type1")).isEqualTo(-1);
+		assertThat(changed.indexOfType("type2.Invocations")).isGreaterThanOrEqualTo(0);
+		assertThat(changed.indexOfType("type2.Durations")).isGreaterThanOrEqualTo(0);
+	}
+
+	@Test
+	public void shouldNotAllocateWhenUpdatingExistingMetrics() {
+		java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		assumeTrue(bean instanceof ThreadMXBean);
+		ThreadMXBean threads = (ThreadMXBean) bean;
+		assumeTrue(threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled());
+		long id = Thread.currentThread().getId();
+		Counter counter = registry.counter("type", "handle");
+		Timer timer = registry.timer("type", "timer");
+		CompositeKeys keys = new CompositeKeys(".");
+		String controller = "Controller";
+		String action = "action";
+		long before = 0;
+		for (int i = 0; i < 20000; i++) {
+			if (i == 10000) {
+				before = threads.getThreadAllocatedBytes(id);
+			}
+			registry.increment("type", "key");
+			registry.decrement("type", "key");
+			registry.add("type", "key", i);
+			registry.set("type", "value", i);
+			registry.record("type", "key", i);
+			counter.increment();
+			timer.record(i);
+			registry.record("type", keys.get(controller, action), i);
+		}
+		long after = threads.getThreadAllocatedBytes(id);
+		assertThat(after - before).isLessThan(10000);
+	}
+
+	@Test
+	public void shouldChangeStructureVersionOnlyWhenKeysAreAddedOrRemoved() {
+		long version = registry.getStructureVersion();
+		registry.increment("type", "key");
+		assertThat(registry.getStructureVersion()).isGreaterThan(version);
+		version = registry.getStructureVersion();
+		registry.increment("type", "key");
+		registry.add("type", "key", 123);
+		registry.set("type", "key", 1);
+		registry.counter("type", "key").increment();
+		assertThat(registry.getStructureVersion()).isEqualTo(version);
+		registry.record("type", "timer", 10);
+		assertThat(registry.getStructureVersion()).isGreaterThan(version);
+		version = registry.getStructureVersion();
+		registry.record("type", "timer", 10);
+		registry.timer("type", "timer").record(10);
+		assertThat(registry.getStructureVersion()).isEqualTo(version);
+		registry.reset();
+		assertThat(registry.getStructureVersion()).isGreaterThan(version);
+	}
+
 	@Test
 	public void shouldBeOfTypeMetricRegistry() {
 		MetricRegistry metricRegistry = MetricRegistry.getInstance();
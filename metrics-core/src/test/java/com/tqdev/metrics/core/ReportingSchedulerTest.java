@@ -0,0 +1,185 @@
+/* Copyright (C) 2017 Maurits van der Schee
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.tqdev.metrics.core;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ReportingSchedulerTest {
+
+	private MetricRegistry registry;
+
+	private ReportingScheduler scheduler;
+
+	@Before
+	public void setUp() {
+		registry = new MetricRegistry();
+		registry.increment("a.b.c", "d");
+	}
+
+	@After
+	public void tearDown() {
+		if (scheduler != null) {
+			scheduler.shutdown();
+		}
+	}
+
+	@Test
+	public void shouldAlignTicksToTheInterval() {
+		scheduler = new ReportingScheduler(registry, 10000, 0);
+		assertThat(scheduler.nextTick(12345)).isEqualTo(20000);
+		assertThat(scheduler.nextTick(20000)).isEqualTo(30000);
+		assertThat(scheduler.nextTick(-1)).isEqualTo(0);
+	}
+
+	@Test
+	public void shouldShiftTicksByTheJitter() {
+		scheduler = new ReportingScheduler(registry, 10000, 2000);
+		long offset = scheduler.getOffsetMillis();
+		assertThat(offset).isBetween(0L, 2000L);
+		assertThat(scheduler.nextTick(12345)).isEqualTo(20000 + offset);
+		assertThat(scheduler.nextTick(20000 + offset)).isEqualTo(30000 + offset);
+	}
+
+	@Test
+	public void shouldReportOneSnapshotToAllReporters() throws InterruptedException {
+		BlockingQueue<Snapshot> reported = new LinkedBlockingQueue<>();
+		scheduler = new ReportingScheduler(registry, 10000, 0);
+		scheduler.add(snapshot -> reported.add(snapshot));
+		scheduler.add(snapshot -> reported.add(snapshot));
+		scheduler.report();
+		Snapshot first = reported.poll(5, TimeUnit.SECONDS);
+		Snapshot second = reported.poll(5, TimeUnit.SECONDS);
+		assertThat(first).isNotNull().isSameAs(second);
+		assertThat(first.getValue(first.indexOf("a.b.c", "d"))).isEqualTo(1);
+	}
+
+	@Test
+	public void shouldSkipTicksOfBusyReporters() throws InterruptedException {
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		BlockingQueue<Snapshot> reported = new LinkedBlockingQueue<>();
+		scheduler = new ReportingScheduler(registry, 10000, 0);
+		scheduler.add(snapshot -> {
+			started.countDown();
+			try {
+				release.await();
+			} catch (InterruptedException e) {
+				return false;
+			}
+			return true;
+		});
+		scheduler.add(snapshot -> reported.add(snapshot));
+		scheduler.report();
+		assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+		assertThat(reported.poll(5, TimeUnit.SECONDS)).isNotNull();
+		// the other reporter is busy until its report has returned
+		Snapshot second = null;
+		for (int i = 0; i < 100 && second == null; i++) {
+			scheduler.report();
+			second = reported.poll(50, TimeUnit.MILLISECONDS);
+		}
+		assertThat(second).isNotNull();
+		assertThat(scheduler.getSkippedCount()).isGreaterThanOrEqualTo(1);
+		release.countDown();
+	}
+
+	@Test
+	public void shouldCountFailedReports() throws InterruptedException {
+		CountDownLatch failed = new CountDownLatch(1);
+		scheduler = new ReportingScheduler(registry, 10000, 0);
+		scheduler.add(new FailingReporter(failed));
+		scheduler.report();
+		assertThat(failed.await(5, TimeUnit.SECONDS)).isTrue();
+		for (int i = 0; i < 100 && scheduler.getErrorCount() == 0; i++) {
+			Thread.sleep(10);
+		}
+		assertThat(scheduler.getErrorCount()).isEqualTo(1);
+		assertThat(registry.get(ReportingScheduler.ERRORS_TYPE, "FailingReporter")).isEqualTo(1);
+	}
+
+	@Test
+	public void shouldShareSchedulersByRegistryAndInterval() {
+		Reporter first = snapshot -> true;
+		Reporter second = snapshot -> true;
+		scheduler = ReportingScheduler.addShared(registry, 10, first);
+		assertThat(ReportingScheduler.addShared(registry, 10, second)).isSameAs(scheduler);
+		ReportingScheduler other = ReportingScheduler.addShared(registry, 20, second);
+		assertThat(other).isNotSameAs(scheduler);
+		other.remove(second);
+		MetricRegistry otherRegistry = new MetricRegistry();
+		assertThat(ReportingScheduler.addShared(otherRegistry, 10, second)).isNotSameAs(scheduler);
+		ReportingScheduler.addShared(otherRegistry, 10, second).remove(second);
+		scheduler.remove(first);
+		assertThat(ReportingScheduler.addShared(registry, 10, first)).isSameAs(scheduler);
+		scheduler.remove(first);
+		scheduler.remove(second);
+		ReportingScheduler replaced = ReportingScheduler.addShared(registry, 10, first);
+		assertThat(replaced).isNotSameAs(scheduler);
+		replaced.remove(first);
+	}
+
+	@Test
+	public void shouldNotReportWhenDisabled() throws InterruptedException {
+		BlockingQueue<Snapshot> reported = new LinkedBlockingQueue<>();
+		scheduler = new ReportingScheduler(registry, 10000, 0);
+		scheduler.add(snapshot -> reported.add(snapshot));
+		registry.setEnabled(false);
+		scheduler.report();
+		assertThat(reported.poll(100, TimeUnit.MILLISECONDS)).isNull();
+	}
+
+	@Test
+	public void shouldReportOnTicks() throws InterruptedException {
+		BlockingQueue<Snapshot> reported = new LinkedBlockingQueue<>();
+		scheduler = new ReportingScheduler(registry, 50, 0);
+		scheduler.add(snapshot -> reported.add(snapshot));
+		scheduler.start();
+		Snapshot first = reported.poll(5, TimeUnit.SECONDS);
+		Snapshot second = reported.poll(5, TimeUnit.SECONDS);
+		assertThat(first).isNotNull();
+		assertThat(second).isNotNull();
+		assertThat(second.getMillis()).isGreaterThan(first.getMillis());
+	}
+
+	private static class FailingReporter implements Reporter {
+
+		private final CountDownLatch failed;
+
+		private FailingReporter(CountDownLatch failed) {
+			this.failed = failed;
+		}
+
+		@Override
+		public boolean report(Snapshot snapshot) {
+			failed.countDown();
+			throw new IllegalStateException("failed");
+		}
+	}
+}
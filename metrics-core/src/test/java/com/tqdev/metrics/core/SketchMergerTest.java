@@ -0,0 +1,95 @@
+/* Copyright (C) 2017 Maurits van der Schee
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.tqdev.metrics.core;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SketchMergerTest {
+
+	Path tempPath;
+
+	@Before
+	public void setUp() throws IOException {
+		tempPath = Files.createTempDirectory(null);
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		for (Path path : Files.newDirectoryStream(tempPath)) {
+			Files.delete(path);
+		}
+		Files.delete(tempPath);
+	}
+
+	private String encode(long... values) {
+		Sketch sketch = new Sketch();
+		for (long value : values) {
+			sketch.record(value);
+		}
+		return Base64.getEncoder().encodeToString(sketch.toBytes());
+	}
+
+	@Test
+	public void shouldMergeInfluxDbSketchesOfHosts() throws IOException {
+		Path first = tempPath.resolve("first.txt");
+		Path second = tempPath.resolve("second.txt.gz");
+		Files.write(first, ("jdbc,host=a,instance=Statement,type=Latency,type_instance=select sketch=\"" + encode(1000)
+				+ "\" 1510373758000000000\n"
+				+ "jdbc,host=a,instance=Statement,type=Latency,type_instance=select sketch=\"" + encode(1000, 1000)
+				+ "\" 1510373768000000000\n").getBytes());
+		try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(second))) {
+			out.write(("jdbc,host=b,instance=Statement,type=Latency,type_instance=select value=1i 1510373758000000000\n"
+					+ "jdbc,host=b,instance=Statement,type=Latency,type_instance=select sketch=\"" + encode(100000)
+					+ "\" 1510373758000000000\n").getBytes());
+		}
+		Map<String, Sketch> merged = SketchMerger.merge(Arrays.asList(first, second));
+		assertThat(merged).containsOnlyKeys("jdbc,instance=Statement,type=Latency,type_instance=select");
+		Sketch sketch = merged.get("jdbc,instance=Statement,type=Latency,type_instance=select");
+		assertThat(sketch.getCount()).isEqualTo(3);
+		assertThat(sketch.getQuantile(0.5)).isBetween(990L, 1010L);
+		assertThat(sketch.getQuantile(0.99)).isBetween(99000L, 101000L);
+	}
+
+	@Test
+	public void shouldMergePrometheusSketchesOfHosts() throws IOException {
+		Path file = tempPath.resolve("20171111.prom");
+		Files.write(file, ("# SKETCH jdbc{host=\"a\",instance=\"Statement\",type=\"Latency\",type_instance=\"select\"} "
+				+ encode(1000) + "\n"
+				+ "# SKETCH jdbc{host=\"b\",instance=\"Statement\",type=\"Latency\",type_instance=\"select\"} "
+				+ encode(1000) + "\n").getBytes());
+		Map<String, Sketch> merged = SketchMerger.merge(Arrays.asList(file));
+		assertThat(merged).containsOnlyKeys("jdbc{instance=\"Statement\",type=\"Latency\",type_instance=\"select\"}");
+		assertThat(merged.values().iterator().next().getCount()).isEqualTo(2);
+	}
+}
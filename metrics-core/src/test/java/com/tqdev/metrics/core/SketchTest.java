@@ -0,0 +1,153 @@
+/* Copyright (C) 2017 Maurits van der Schee
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.tqdev.metrics.core;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Arrays;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class SketchTest {
+
+	Sketch sketch;
+
+	@Before
+	public void setUp() {
+		sketch = new Sketch();
+	}
+
+	@Test
+	public void shouldBeZeroWhenCreated() {
+		assertThat(sketch.getCount()).isEqualTo(0);
+		assertThat(sketch.getQuantile(0.5)).isEqualTo(0);
+	}
+
+	@Test
+	public void shouldBeWithinRelativeAccuracyOfValue() {
+		for (long value = 1; value < (1L << 40); value = value * 3 + 1) {
+			long estimate = Sketch.getValue(Sketch.getIndex(value));
+			assertThat(Math.abs(estimate - value)).isLessThanOrEqualTo(Math.max(1, value / 100));
+		}
+	}
+
+	@Test
+	public void shouldBeInOverflowBucketWhenLarge() {
+		assertThat(Sketch.getIndex(Long.MAX_VALUE)).isEqualTo(Sketch.BUCKET_COUNT - 1);
+		assertThat(Sketch.getIndex((1L << 40) - 1)).isLessThan(Sketch.BUCKET_COUNT - 1);
+	}
+
+	@Test
+	public void shouldHaveQuantilesWhenRecording() {
+		for (long value = 1; value <= 1000; value++) {
+			sketch.record(value * 1000);
+		}
+		assertThat(sketch.getCount()).isEqualTo(1000);
+		assertThat(sketch.getQuantile(0.5)).isBetween(495000L, 505000L);
+		assertThat(sketch.getQuantile(0.99)).isBetween(980100L, 999900L);
+	}
+
+	@Test
+	public void shouldHaveQuantilesOfBothWhenMerging() {
+		Sketch other = new Sketch();
+		for (long value = 1; value <= 500; value++) {
+			sketch.record(value * 1000);
+			other.record((value + 500) * 1000);
+		}
+		sketch.merge(other);
+		assertThat(sketch.getCount()).isEqualTo(1000);
+		assertThat(sketch.getQuantile(0.5)).isBetween(495000L, 505000L);
+		assertThat(sketch.getQuantile(0.99)).isBetween(980100L, 999900L);
+	}
+
+	@Test
+	public void shouldBeEqualWhenSerializingAndDeserializing() {
+		sketch.record(0);
+		sketch.record(123);
+		sketch.record(123456789);
+		sketch.record(Long.MAX_VALUE);
+		byte[] bytes = sketch.toBytes();
+		Sketch copy = Sketch.fromBytes(bytes);
+		assertThat(bytes.length).isLessThan(16);
+		assertThat(copy.toBytes()).isEqualTo(bytes);
+		assertThat(copy.getCount()).isEqualTo(4);
+		assertThat(copy.getQuantile(0.5)).isEqualTo(sketch.getQuantile(0.5));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void shouldThrowWhenDeserializingTruncatedBytes() {
+		sketch.record(123);
+		byte[] bytes = sketch.toBytes();
+		Sketch.fromBytes(Arrays.copyOf(bytes, bytes.length - 1));
+	}
+
+	@Test
+	public void shouldOnlyAllocatePagesForRecordedRange() {
+		assertThat(sketch.getPageCount()).isEqualTo(0);
+		for (long value = 1000000; value <= 2000000; value += 1000) {
+			sketch.record(value);
+		}
+		assertThat(sketch.getPageCount()).isLessThanOrEqualTo(3);
+	}
+
+	@Test
+	public void shouldCollapseLowestPagesWhenRangeIsWide() {
+		long count = 0;
+		for (long value = 1; value < (1L << 40); value = value * 11 / 10 + 1) {
+			sketch.record(value);
+			count++;
+		}
+		assertThat(sketch.getPageCount()).isEqualTo(Sketch.MAX_PAGES);
+		assertThat(sketch.getCount()).isEqualTo(count);
+		long p99 = sketch.getQuantile(0.99);
+		sketch.record(1);
+		assertThat(sketch.getPageCount()).isEqualTo(Sketch.MAX_PAGES);
+		assertThat(sketch.getCount()).isEqualTo(count + 1);
+		assertThat(sketch.getQuantile(0.99)).isEqualTo(p99);
+	}
+
+	@Test
+	public void shouldNotLoseRecordingsWhenCollapsingConcurrently() throws InterruptedException {
+		Thread[] threads = new Thread[4];
+		for (int i = 0; i < threads.length; i++) {
+			threads[i] = new Thread(() -> {
+				for (int j = 0; j < 100000; j++) {
+					sketch.record(1L << (j % 40));
+				}
+			});
+			threads[i].start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		assertThat(sketch.getCount()).isEqualTo(400000);
+		assertThat(sketch.getPageCount()).isLessThanOrEqualTo(Sketch.MAX_PAGES);
+	}
+
+	@Test
+	public void shouldBeZeroWhenReset() {
+		sketch.record(123);
+		sketch.reset();
+		assertThat(sketch.getCount()).isEqualTo(0);
+		assertThat(sketch.getPageCount()).isEqualTo(0);
+	}
+}
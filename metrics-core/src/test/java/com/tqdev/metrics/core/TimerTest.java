@@ -0,0 +1,76 @@
+/* Copyright (C) 2017 Maurits van der Schee
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.tqdev.metrics.core;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class TimerTest {
+
+	Timer timer;
+
+	@Before
+	public void setUp() {
+		timer = new Timer();
+	}
+
+	@Test
+	public void shouldBeZeroWhenCreated() {
+		assertThat(timer.getInvocations()).isEqualTo(0);
+		assertThat(timer.getDurations()).isEqualTo(0);
+	}
+
+	@Test
+	public void shouldCountAndSumWhenRecording() {
+		timer.record(123);
+		timer.record(1234);
+		assertThat(timer.getInvocations()).isEqualTo(2);
+		assertThat(timer.getDurations()).isEqualTo(1357);
+	}
+
+	@Test
+	public void shouldNotLoseRecordingsWhenContended() throws InterruptedException {
+		Thread[] threads = new Thread[8];
+		for (int i = 0; i < threads.length; i++) {
+			threads[i] = new Thread(() -> {
+				for (int j = 0; j < 100000; j++) {
+					timer.record(3);
+				}
+			});
+			threads[i].start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		assertThat(timer.getInvocations()).isEqualTo(800000);
+		assertThat(timer.getDurations()).isEqualTo(2400000);
+	}
+
+	@Test
+	public void shouldBeZeroWhenReset() {
+		timer.record(123);
+		timer.reset();
+		assertThat(timer.getInvocations()).isEqualTo(0);
+		assertThat(timer.getDurations()).isEqualTo(0);
+	}
+}
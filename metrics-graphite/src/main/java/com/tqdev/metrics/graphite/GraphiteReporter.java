@@ -0,0 +1,632 @@
+/* Copyright (C) 2017 Maurits van der Schee
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.tqdev.metrics.graphite;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+
+import com.tqdev.metrics.core.ExpositionWriter;
+import com.tqdev.metrics.core.Histogram;
+import com.tqdev.metrics.core.MetricRegistry;
+import com.tqdev.metrics.core.NameCache;
+import com.tqdev.metrics.core.Reporter;
+import com.tqdev.metrics.core.ReportingScheduler;
+import com.tqdev.metrics.core.Snapshot;
+
+/**
+ * The GraphiteReporter class reports values in the metric registry to a
+ * Graphite (carbon) server over a single persistent TCP connection, either
+ * using the pickle protocol (batches of metrics, port 2004 by default) or the
+ * plaintext protocol (one line per metric, port 2003 by default). When the
+ * connection fails, the report fails and the reporter reconnects with a
+ * backoff that doubles after every failed attempt (up to the maximum). The
+ * channel is non-blocking: when the server does not read the metrics of a
+ * report within the write timeout the report fails and the reporter
+ * disconnects, so that a report never blocks the reporter (or its shutdown).
+ * Reports that fail to write are counted in type "metrics.Reporter.Errors"
+ * (with key "GraphiteReporter").
+ *
+ * Paths are built from the type (split on dots in measurement, instance and
+ * type, like the InfluxDB tags) and the key, prefixed with the instance name
+ * (for instance "localhost.jdbc.Statement.Invocations.select"), quantiles of
+ * histograms and sketches have a suffix (".p50", ".p90", ".p99" and ".p999")
+ * and so has the number of values that they recorded (".count").
+ * Dots, slashes and whitespace in the parts are replaced with an underscore.
+ */
+public class GraphiteReporter implements Reporter {
+
+	/** The default port of the pickle protocol. */
+	public static final int DEFAULT_PICKLE_PORT = 2004;
+
+	/** The default port of the plaintext protocol. */
+	public static final int DEFAULT_PLAINTEXT_PORT = 2003;
+
+	/** The maximum number of metrics in a pickle batch. */
+	public static final int MAX_BATCH_SIZE = 500;
+
+	/** The default write timeout (of a report) in milliseconds. */
+	public static final long DEFAULT_WRITE_TIMEOUT = 10000;
+
+	/** The connect timeout in milliseconds. */
+	private static final int CONNECT_TIMEOUT = 5000;
+
+	/** The suffixes of the quantiles of histograms and sketches. */
+	private static final byte[][] QUANTILE_SUFFIXES = new byte[Histogram.QUANTILES.length][];
+
+	/** The suffix of the number of recorded values of histograms and sketches. */
+	private static final byte[] COUNT_SUFFIX = ".count".getBytes(StandardCharsets.US_ASCII);
+
+	/** The pickle opcodes (protocol 2). */
+	private static final int PROTO = 0x80, EMPTY_LIST = ']', MARK = '(', APPENDS = 'e', STOP = '.',
+			BINUNICODE = 'X', BININT = 'J', LONG1 = 0x8a, TUPLE2 = 0x86;
+
+	static {
+		for (int q = 0; q < Histogram.QUANTILES.length; q++) {
+			String digits = String.valueOf(Histogram.QUANTILES[q]).substring(2);
+			if (digits.length() == 1) {
+				digits += "0";
+			}
+			QUANTILE_SUFFIXES[q] = (".p" + digits).getBytes(StandardCharsets.US_ASCII);
+		}
+	}
+
+	/**
+	 * The instanceName used to identify the source of the metrics (as first
+	 * part of the path).
+	 */
+	protected final String instanceName;
+
+	/**
+	 * The registry in which the metrics, that this GraphiteReporter reports,
+	 * are stored.
+	 */
+	protected final MetricRegistry registry;
+
+	/** The address of the Graphite server. */
+	protected final InetSocketAddress address;
+
+	/** Whether the pickle protocol is used (instead of plaintext). */
+	protected final boolean pickle;
+
+	/** The encoded starts of the paths by type. */
+	private final NameCache types = new NameCache(this::encodeType);
+
+	/** The encoded keys. */
+	private final NameCache keys = new NameCache(GraphiteReporter::encode);
+
+	/** The writer that is reused between reports (guarded by this). */
+	private final ExpositionWriter writer = new ExpositionWriter(8192);
+
+	/** The (reused) buffer of a pickle batch. */
+	private final ByteArrayOutputStream batch = new ByteArrayOutputStream(65536);
+
+	/** The channel (or null when not connected). */
+	private SocketChannel channel;
+
+	/** The selector that waits until the channel is writable. */
+	private Selector selector;
+
+	/** The stream that writes to the channel. */
+	private OutputStream out;
+
+	/** The write timeout in milliseconds. */
+	private long writeTimeout = DEFAULT_WRITE_TIMEOUT;
+
+	/** The time (in millis) at which the report that is written times out. */
+	private long deadline;
+
+	/** The initial backoff in milliseconds. */
+	private long initialBackoff = 1000;
+
+	/** The maximum backoff in milliseconds. */
+	private long maxBackoff = 60000;
+
+	/** The current backoff in milliseconds (0 when connected). */
+	private long backoff;
+
+	/** The time (in millis) before which no connect is attempted. */
+	private long retryAt;
+
+	/** The scheduler that runs this reporter (or null when not running). */
+	private volatile ReportingScheduler scheduler;
+
+	/**
+	 * Instantiates a new Graphite reporter.
+	 *
+	 * @param registry
+	 *            the registry
+	 * @param instanceName
+	 *            the instance name
+	 * @param address
+	 *            the address of the Graphite server
+	 * @param pickle
+	 *            whether the pickle protocol is used (instead of plaintext)
+	 */
+	public GraphiteReporter(MetricRegistry registry, String instanceName, InetSocketAddress address, boolean pickle) {
+		this.registry = registry;
+		this.instanceName = instanceName;
+		this.address = address;
+		this.pickle = pickle;
+	}
+
+	/**
+	 * Instantiates a new Graphite reporter.
+	 *
+	 * @param registry
+	 *            the registry
+	 * @param instanceName
+	 *            the instance name
+	 * @param address
+	 *            the address of the Graphite server
+	 * @param pickle
+	 *            whether the pickle protocol is used (instead of plaintext)
+	 * @param intervalInSeconds
+	 *            the interval in seconds
+	 */
+	public GraphiteReporter(MetricRegistry registry, String instanceName, InetSocketAddress address, boolean pickle,
+			int intervalInSeconds) {
+		this(registry, instanceName, address, pickle);
+		run(intervalInSeconds);
+	}
+
+	/**
+	 * Sets the backoff after a failed connection, it doubles after every
+	 * failed attempt (up to the maximum).
+	 *
+	 * @param initialMillis
+	 *            the initial backoff in milliseconds
+	 * @param maxMillis
+	 *            the maximum backoff in milliseconds
+	 */
+	public synchronized void setBackoff(long initialMillis, long maxMillis) {
+		this.initialBackoff = initialMillis;
+		this.maxBackoff = maxMillis;
+	}
+
+	/**
+	 * Sets the time in which the metrics of a report must be written, the
+	 * reporter disconnects when they are not.
+	 *
+	 * @param millis
+	 *            the write timeout in milliseconds
+	 */
+	public synchronized void setWriteTimeout(long millis) {
+		this.writeTimeout = millis;
+	}
+
+	/**
+	 * Checks if the reporter is connected.
+	 *
+	 * @return true, if connected
+	 */
+	public synchronized boolean isConnected() {
+		return channel != null;
+	}
+
+	/**
+	 * Report.
+	 *
+	 * @return true, if successful
+	 */
+	public boolean report() {
+		if (!registry.isEnabled()) {
+			return true;
+		}
+		return report(registry.snapshot());
+	}
+
+	/**
+	 * Report a snapshot.
+	 *
+	 * @param snapshot
+	 *            the snapshot
+	 * @return true, if successful
+	 */
+	@Override
+	public synchronized boolean report(Snapshot snapshot) {
+		if (!connect()) {
+			return false;
+		}
+		deadline = System.currentTimeMillis() + writeTimeout;
+		try {
+			if (pickle) {
+				writePickle(snapshot);
+			} else {
+				writePlaintext(snapshot);
+			}
+		} catch (IOException e) {
+			registry.counter(ReportingScheduler.ERRORS_TYPE, "GraphiteReporter").increment();
+			disconnect();
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Connects when not connected and the backoff has passed.
+	 *
+	 * @return true, if connected
+	 */
+	private boolean connect() {
+		if (channel != null) {
+			return true;
+		}
+		long now = System.currentTimeMillis();
+		if (now < retryAt) {
+			return false;
+		}
+		SocketChannel c = null;
+		Selector s = null;
+		try {
+			c = SocketChannel.open();
+			c.socket().connect(address, CONNECT_TIMEOUT);
+			c.socket().setTcpNoDelay(true);
+			c.configureBlocking(false);
+			s = Selector.open();
+			c.register(s, SelectionKey.OP_WRITE);
+		} catch (IOException e) {
+			close(s);
+			close(c);
+			retry();
+			return false;
+		}
+		channel = c;
+		selector = s;
+		out = new ChannelOutputStream();
+		backoff = 0;
+		return true;
+	}
+
+	/**
+	 * Closes the connection and schedules the reconnect.
+	 */
+	private void disconnect() {
+		close(selector);
+		close(channel);
+		selector = null;
+		channel = null;
+		out = null;
+		retry();
+	}
+
+	/**
+	 * Doubles the backoff (up to the maximum) and schedules the reconnect.
+	 */
+	private void retry() {
+		backoff = backoff == 0 ? initialBackoff : Math.min(backoff * 2, maxBackoff);
+		retryAt = System.currentTimeMillis() + backoff;
+	}
+
+	/**
+	 * Closes a channel or selector.
+	 *
+	 * @param c
+	 *            the channel or selector (or null)
+	 */
+	private static void close(Closeable c) {
+		if (c != null) {
+			try {
+				c.close();
+			} catch (IOException ignore) {
+				// ignore when channel cannot be closed
+			}
+		}
+	}
+
+	/**
+	 * Write the metrics of a snapshot as plaintext lines ("path value
+	 * timestamp").
+	 *
+	 * @param snapshot
+	 *            the snapshot
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	private void writePlaintext(Snapshot snapshot) throws IOException {
+		ExpositionWriter w = writer.reset(out);
+		long time = snapshot.getMillis() / 1000;
+		for (int t = 0; t < snapshot.getTypeCount(); t++) {
+			byte[] type = types.get(snapshot.getType(t));
+			for (int i = snapshot.getStart(t); i < snapshot.getEnd(t); i++) {
+				byte[] key = keys.get(snapshot.getKey(i));
+				if (snapshot.hasQuantiles(i)) {
+					for (int q = 0; q < QUANTILE_SUFFIXES.length; q++) {
+						writeLine(w, type, key, QUANTILE_SUFFIXES[q], snapshot.getQuantile(i, q), time);
+					}
+					writeLine(w, type, key, COUNT_SUFFIX, snapshot.getValue(i), time);
+				} else {
+					writeLine(w, type, key, null, snapshot.getValue(i), time);
+				}
+			}
+		}
+		w.flush();
+	}
+
+	/**
+	 * Write a plaintext line.
+	 *
+	 * @param w
+	 *            the writer
+	 * @param type
+	 *            the encoded start of the path
+	 * @param key
+	 *            the encoded key
+	 * @param suffix
+	 *            the encoded suffix (or null)
+	 * @param value
+	 *            the value
+	 * @param time
+	 *            the time in seconds
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	private static void writeLine(ExpositionWriter w, byte[] type, byte[] key, byte[] suffix, long value, long time)
+			throws IOException {
+		w.write(type);
+		w.write(key);
+		if (suffix != null) {
+			w.write(suffix);
+		}
+		w.write((byte) ' ');
+		w.write(value);
+		w.write((byte) ' ');
+		w.write(time);
+		w.write((byte) '\n');
+	}
+
+	/**
+	 * Write the metrics of a snapshot as pickled lists of "(path, (timestamp,
+	 * value))" tuples, each batch prefixed with its length (4 bytes, big
+	 * endian).
+	 *
+	 * @param snapshot
+	 *            the snapshot
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	private void writePickle(Snapshot snapshot) throws IOException {
+		long time = snapshot.getMillis() / 1000;
+		int count = 0;
+		for (int t = 0; t < snapshot.getTypeCount(); t++) {
+			byte[] type = types.get(snapshot.getType(t));
+			for (int i = snapshot.getStart(t); i < snapshot.getEnd(t); i++) {
+				byte[] key = keys.get(snapshot.getKey(i));
+				if (snapshot.hasQuantiles(i)) {
+					for (int q = 0; q < QUANTILE_SUFFIXES.length; q++) {
+						count = writeTuple(count, type, key, QUANTILE_SUFFIXES[q], snapshot.getQuantile(i, q), time);
+					}
+					count = writeTuple(count, type, key, COUNT_SUFFIX, snapshot.getValue(i), time);
+				} else {
+					count = writeTuple(count, type, key, null, snapshot.getValue(i), time);
+				}
+			}
+		}
+		if (count > 0) {
+			sendBatch();
+		}
+		out.flush();
+	}
+
+	/**
+	 * Write a tuple to the batch, the batch is sent when it is full.
+	 *
+	 * @param count
+	 *            the number of tuples in the batch
+	 * @param type
+	 *            the encoded start of the path
+	 * @param key
+	 *            the encoded key
+	 * @param suffix
+	 *            the encoded suffix (or null)
+	 * @param value
+	 *            the value
+	 * @param time
+	 *            the time in seconds
+	 * @return the number of tuples in the batch
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	private int writeTuple(int count, byte[] type, byte[] key, byte[] suffix, long value, long time)
+			throws IOException {
+		if (count == 0) {
+			batch.reset();
+			batch.write(PROTO);
+			batch.write(2);
+			batch.write(EMPTY_LIST);
+			batch.write(MARK);
+		}
+		int length = type.length + key.length + (suffix != null ? suffix.length : 0);
+		batch.write(BINUNICODE);
+		writeInt(batch, length);
+		batch.write(type);
+		batch.write(key);
+		if (suffix != null) {
+			batch.write(suffix);
+		}
+		writeNumber(batch, time);
+		writeNumber(batch, value);
+		batch.write(TUPLE2);
+		batch.write(TUPLE2);
+		if (++count == MAX_BATCH_SIZE) {
+			sendBatch();
+			return 0;
+		}
+		return count;
+	}
+
+	/**
+	 * Terminates the batch and sends it prefixed with its length.
+	 *
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	private void sendBatch() throws IOException {
+		batch.write(APPENDS);
+		batch.write(STOP);
+		int length = batch.size();
+		out.write(new byte[] { (byte) (length >>> 24), (byte) (length >>> 16), (byte) (length >>> 8), (byte) length });
+		batch.writeTo(out);
+	}
+
+	/**
+	 * Write a pickled integer, as 4 byte integer when it fits, otherwise as 8
+	 * byte long.
+	 *
+	 * @param b
+	 *            the batch
+	 * @param value
+	 *            the value
+	 */
+	private static void writeNumber(ByteArrayOutputStream b, long value) {
+		if (value == (int) value) {
+			b.write(BININT);
+			writeInt(b, (int) value);
+		} else {
+			b.write(LONG1);
+			b.write(8);
+			writeInt(b, (int) value);
+			writeInt(b, (int) (value >>> 32));
+		}
+	}
+
+	/**
+	 * Write an integer (4 bytes, little endian).
+	 *
+	 * @param b
+	 *            the batch
+	 * @param value
+	 *            the value
+	 */
+	private static void writeInt(ByteArrayOutputStream b, int value) {
+		b.write(value);
+		b.write(value >>> 8);
+		b.write(value >>> 16);
+		b.write(value >>> 24);
+	}
+
+	/**
+	 * Encodes the start of the path of a type, the instance name followed by
+	 * the (non-empty) parts of the type.
+	 *
+	 * @param type
+	 *            the type
+	 * @return the encoded start of the path
+	 */
+	private byte[] encodeType(String type) {
+		StringBuilder path = new StringBuilder(sanitize(instanceName));
+		for (String part : NameCache.splitType(type)) {
+			if (!part.isEmpty()) {
+				path.append('.').append(sanitize(part));
+			}
+		}
+		path.append('.');
+		return path.toString().getBytes(StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Encodes a key as the last part of the path.
+	 *
+	 * @param key
+	 *            the key
+	 * @return the encoded key
+	 */
+	private static byte[] encode(String key) {
+		return sanitize(key).getBytes(StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Replaces the characters that separate the parts of a path (or a
+	 * plaintext line) with an underscore.
+	 *
+	 * @param part
+	 *            the part
+	 * @return the sanitized part
+	 */
+	private static String sanitize(String part) {
+		return part.replaceAll("[./\\\\\\s]", "_");
+	}
+
+	/**
+	 * Run, on the scheduler that is shared by the reporters of the registry
+	 * that run at the same interval (so they report the same snapshots).
+	 *
+	 * @param intervalInSeconds
+	 *            the interval in seconds
+	 */
+	public void run(int intervalInSeconds) {
+		scheduler = ReportingScheduler.addShared(registry, intervalInSeconds, this);
+	}
+
+	/**
+	 * Handler for shutdown of the scheduler and the connection.
+	 */
+	public void shutdown() {
+		ReportingScheduler scheduler = this.scheduler;
+		if (scheduler != null) {
+			scheduler.remove(this);
+		}
+		synchronized (this) {
+			close(selector);
+			close(channel);
+			selector = null;
+			channel = null;
+			out = null;
+		}
+	}
+
+	/**
+	 * The ChannelOutputStream class writes to the (non-blocking) channel,
+	 * waiting until the channel is writable as long as the deadline of the
+	 * report has not passed.
+	 */
+	private final class ChannelOutputStream extends OutputStream {
+
+		@Override
+		public void write(int b) throws IOException {
+			write(new byte[] { (byte) b }, 0, 1);
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			ByteBuffer buffer = ByteBuffer.wrap(b, off, len);
+			while (buffer.hasRemaining()) {
+				if (channel.write(buffer) > 0) {
+					continue;
+				}
+				long remaining = deadline - System.currentTimeMillis();
+				if (remaining <= 0) {
+					throw new SocketTimeoutException("write timed out");
+				}
+				selector.select(remaining);
+				selector.selectedKeys().clear();
+			}
+		}
+	}
+}
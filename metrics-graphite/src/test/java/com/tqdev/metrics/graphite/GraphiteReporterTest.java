@@ -0,0 +1,266 @@
+/* Copyright (C) 2017 Maurits van der Schee
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.tqdev.metrics.graphite;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.tqdev.metrics.core.MetricRegistry;
+import com.tqdev.metrics.core.ReportingScheduler;
+
+/**
+ * The Class GraphiteReporterTest.
+ */
+public class GraphiteReporterTest {
+
+	/** The registry. */
+	protected MetricRegistry registry;
+
+	/** The local TCP listener. */
+	private ServerSocket listener;
+
+	/** The accepted connection. */
+	private Socket connection;
+
+	/** The reporter. */
+	private GraphiteReporter reporter;
+
+	/**
+	 * Initialize.
+	 *
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	@Before
+	public void setUp() throws IOException {
+		registry = spy(new MetricRegistry());
+		when(registry.getMillis()).thenReturn(1510373758123L);
+		listener = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+	}
+
+	/**
+	 * Cleanup.
+	 *
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	@After
+	public void tearDown() throws IOException {
+		if (reporter != null) {
+			reporter.shutdown();
+		}
+		if (connection != null) {
+			connection.close();
+		}
+		listener.close();
+	}
+
+	/**
+	 * Creates the reporter.
+	 *
+	 * @param pickle
+	 *            whether the pickle protocol is used
+	 */
+	private void createReporter(boolean pickle) {
+		reporter = new GraphiteReporter(registry, "localhost",
+				new InetSocketAddress(InetAddress.getLoopbackAddress(), listener.getLocalPort()), pickle);
+	}
+
+	/**
+	 * Receives the bytes that are sent, until nothing arrives for 200
+	 * milliseconds.
+	 *
+	 * @return the bytes
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	private byte[] receive() throws IOException {
+		if (connection == null) {
+			connection = listener.accept();
+		}
+		connection.setSoTimeout(200);
+		ByteArrayOutputStream received = new ByteArrayOutputStream();
+		InputStream in = connection.getInputStream();
+		byte[] buffer = new byte[65536];
+		try {
+			int length;
+			while ((length = in.read(buffer)) > 0) {
+				received.write(buffer, 0, length);
+			}
+		} catch (SocketTimeoutException e) {
+			// nothing more is sent
+		}
+		return received.toByteArray();
+	}
+
+	/**
+	 * Should send plaintext lines.
+	 *
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	@Test
+	public void shouldSendPlaintextLines() throws IOException {
+		createReporter(false);
+		registry.add("jdbc.Statement.Invocations", "select * from users", 3);
+		registry.set("jvm.Runtime", "Threads", 12);
+		assertThat(reporter.report()).isTrue();
+		String content = new String(receive(), StandardCharsets.UTF_8);
+		assertThat(content.split("\n")).containsOnly(
+				"localhost.jdbc.Statement.Invocations.select_*_from_users 3 1510373758",
+				"localhost.jvm.Runtime.Threads 12 1510373758");
+	}
+
+	/**
+	 * Should send quantiles with a suffix.
+	 *
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	@Test
+	public void shouldSendQuantilesWithSuffix() throws IOException {
+		createReporter(false);
+		registry.histogram("jdbc.Statement.Latency", "select").record(1000);
+		registry.histogram("jdbc.Statement.Latency", "select").record(1000);
+		assertThat(reporter.report()).isTrue();
+		String content = new String(receive(), StandardCharsets.UTF_8);
+		assertThat(content).contains("localhost.jdbc.Statement.Latency.select.p50 ",
+				"localhost.jdbc.Statement.Latency.select.p999 ", "localhost.jdbc.Statement.Latency.select.count 2 ");
+		assertThat(content.split("\n")).hasSize(5);
+	}
+
+	/**
+	 * Should send a pickled batch prefixed with its length.
+	 *
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	@Test
+	public void shouldSendPickledBatch() throws IOException {
+		createReporter(true);
+		registry.increment("jdbc.Statement.Invocations", "select");
+		assertThat(reporter.report()).isTrue();
+		byte[] path = "localhost.jdbc.Statement.Invocations.select".getBytes(StandardCharsets.UTF_8);
+		ByteBuffer expected = ByteBuffer.allocate(path.length + 27).order(ByteOrder.LITTLE_ENDIAN);
+		expected.putInt(Integer.reverseBytes(path.length + 23));
+		expected.put(new byte[] { (byte) 0x80, 2, ']', '(', 'X' }).putInt(path.length).put(path);
+		expected.put((byte) 'J').putInt(1510373758).put((byte) 'J').putInt(1);
+		expected.put(new byte[] { (byte) 0x86, (byte) 0x86, 'e', '.' });
+		assertThat(receive()).isEqualTo(expected.array());
+	}
+
+	/**
+	 * Should split pickled batches.
+	 *
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	@Test
+	public void shouldSplitPickledBatches() throws IOException {
+		createReporter(true);
+		for (int i = 0; i <= GraphiteReporter.MAX_BATCH_SIZE; i++) {
+			registry.increment("jdbc.Statement.Invocations", "query" + i);
+		}
+		assertThat(reporter.report()).isTrue();
+		ByteBuffer received = ByteBuffer.wrap(receive());
+		int batches = 0;
+		while (received.hasRemaining()) {
+			int length = received.getInt();
+			assertThat(received.get(received.position())).isEqualTo((byte) 0x80);
+			assertThat(received.get(received.position() + length - 1)).isEqualTo((byte) '.');
+			received.position(received.position() + length);
+			batches++;
+		}
+		assertThat(batches).isEqualTo(2);
+	}
+
+	/**
+	 * Should reconnect after backoff.
+	 *
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 * @throws InterruptedException
+	 *             the interrupted exception
+	 */
+	@Test
+	public void shouldReconnectAfterBackoff() throws IOException, InterruptedException {
+		int port = listener.getLocalPort();
+		listener.close();
+		createReporter(false);
+		reporter.setBackoff(100, 100);
+		registry.increment("jdbc.Statement.Invocations", "select");
+		assertThat(reporter.report()).isFalse();
+		assertThat(reporter.isConnected()).isFalse();
+		listener = new ServerSocket();
+		listener.setReuseAddress(true);
+		listener.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+		assertThat(reporter.report()).isFalse();
+		Thread.sleep(150);
+		assertThat(reporter.report()).isTrue();
+		assertThat(reporter.isConnected()).isTrue();
+		assertThat(new String(receive(), StandardCharsets.UTF_8))
+				.isEqualTo("localhost.jdbc.Statement.Invocations.select 1 1510373758\n");
+	}
+
+	/**
+	 * Should disconnect when the server does not read.
+	 *
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	@Test
+	public void shouldDisconnectWhenServerDoesNotRead() throws IOException {
+		createReporter(false);
+		reporter.setWriteTimeout(100);
+		for (int i = 0; i < 10000; i++) {
+			registry.increment("jdbc.Statement.Invocations", "query" + i);
+		}
+		boolean reported = true;
+		long start = System.currentTimeMillis();
+		for (int i = 0; i < 1000 && reported; i++) {
+			reported = reporter.report();
+			if (connection == null) {
+				connection = listener.accept();
+			}
+		}
+		assertThat(reported).isFalse();
+		assertThat(reporter.isConnected()).isFalse();
+		assertThat(System.currentTimeMillis() - start).isLessThan(5000);
+		assertThat(registry.get(ReportingScheduler.ERRORS_TYPE, "GraphiteReporter")).isEqualTo(1);
+	}
+}
@@ -11,10 +11,17 @@ import javax.servlet.ServletResponse;
 import javax.servlet.http.HttpServletRequest;
 
 import com.tqdev.metrics.core.MetricRegistry;
+import com.tqdev.metrics.core.Timer;
 
 public class MeasureRequestPathFilter implements Filter {
 	private final MetricRegistry registry;
 
+	/** The timer of the "(other)" path group. */
+	private final Timer otherTimer;
+
+	/** The path group for requests that are not grouped by path. */
+	private static final String OTHER = "(other)";
+
 	/**
 	 * The content types for which the path is grouped, e.g: "json|xml|html|csv"
 	 */
@@ -27,6 +34,7 @@ public class MeasureRequestPathFilter implements Filter {
 	public MeasureRequestPathFilter(MetricRegistry registry, String contentTypes) {
 		this.registry = registry;
 		this.contentTypes = contentTypes;
+		this.otherTimer = registry.timer("http.Path", OTHER);
 	}
 
 	@Override
@@ -63,9 +71,13 @@ public class MeasureRequestPathFilter implements Filter {
 
 	private void registerMeasurement(String requestURI, String contentType, long duration) {
 		final String pathGroup = getPathGroup(requestURI, contentType);
-		if (pathGroup != null) {
-			registry.increment("http.Path.Invocations", pathGroup);
-			registry.add("http.Path.Durations", pathGroup, duration);
+		if (pathGroup == null) {
+			return;
+		}
+		if (OTHER.equals(pathGroup)) {
+			otherTimer.record(duration);
+		} else {
+			registry.record("http.Path", pathGroup, duration);
 		}
 	}
 
@@ -80,7 +92,7 @@ public class MeasureRequestPathFilter implements Filter {
 	 */
 	private String getPathGroup(String requestURI, String contentType) {
 		if (requestURI == null || contentType == null || !contentType.matches(".*(" + contentTypes + ").*")) {
-			return "(other)";
+			return OTHER;
 		}
 		String parts[] = requestURI.split("/");
 		for (int i = 0; i < parts.length; i++) {
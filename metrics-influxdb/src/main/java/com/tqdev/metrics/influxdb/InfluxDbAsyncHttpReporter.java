@@ -0,0 +1,279 @@
+/* Copyright (C) 2017 Maurits van der Schee
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.tqdev.metrics.influxdb;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+import com.tqdev.metrics.core.MetricRegistry;
+import com.tqdev.metrics.core.ReportingScheduler;
+import com.tqdev.metrics.core.Snapshot;
+
+/**
+ * The InfluxDbAsyncHttpReporter class reports values in the metric registry
+ * to InfluxDB without blocking the reporting thread. Every report is
+ * compressed (as a gzip member) into a bounded spool outside the heap, from
+ * which a sender thread posts it. When the sender is behind (for instance
+ * after an outage) several reports are posted in one request (as gzip
+ * members can be concatenated). Failed requests are retried with an
+ * exponential backoff, when the spool is full the oldest reports are dropped.
+ * Failed requests are counted in type "metrics.Reporter.Errors" (with key
+ * "InfluxDbAsyncHttpReporter"). The connection is kept alive (and reused)
+ * between requests, as responses are read completely. When only changed
+ * series are written, a snapshot is marked as reported only when InfluxDB
+ * accepted the report of it, so that a report that is dropped does not lose
+ * changes: they are written again in the next report.
+ */
+public class InfluxDbAsyncHttpReporter extends InfluxDbHttpReporter {
+
+	/** The maximum number of (compressed) bytes in a request. */
+	public static final int MAX_REQUEST_BYTES = 4 * 1024 * 1024;
+
+	/** The spool. */
+	private final Spool spool;
+
+	/** The sender thread. */
+	private final Thread sender;
+
+	/** The initial backoff in milliseconds. */
+	private volatile long initialBackoff = TimeUnit.SECONDS.toMillis(1);
+
+	/** The maximum backoff in milliseconds. */
+	private volatile long maxBackoff = TimeUnit.MINUTES.toMillis(1);
+
+	/** The sequence number of the last spooled report (guarded by this). */
+	private long spooledSequence;
+
+	/** The snapshot of the last spooled report, until it is sent (guarded by this). */
+	private Snapshot spooledSnapshot;
+
+	/**
+	 * Instantiates a new asynchronous InfluxDB HTTP reporter.
+	 *
+	 * @param registry
+	 *            the registry
+	 * @param instanceName
+	 *            the instance name
+	 * @param reportUrl
+	 *            the report URL
+	 * @param spoolSize
+	 *            the size of the spool in bytes
+	 */
+	public InfluxDbAsyncHttpReporter(MetricRegistry registry, String instanceName, String reportUrl, int spoolSize) {
+		super(registry, instanceName, reportUrl);
+		this.spool = new Spool(spoolSize);
+		this.sender = new Thread(this::send, "influxdb-sender");
+		this.sender.setDaemon(true);
+		this.sender.start();
+	}
+
+	/**
+	 * Instantiates a new asynchronous InfluxDB HTTP reporter.
+	 *
+	 * @param registry
+	 *            the registry
+	 * @param instanceName
+	 *            the instance name
+	 * @param reportUrl
+	 *            the report URL
+	 * @param spoolSize
+	 *            the size of the spool in bytes
+	 * @param intervalInSeconds
+	 *            the interval in seconds
+	 */
+	public InfluxDbAsyncHttpReporter(MetricRegistry registry, String instanceName, String reportUrl, int spoolSize,
+			int intervalInSeconds) {
+		this(registry, instanceName, reportUrl, spoolSize);
+		run(intervalInSeconds);
+	}
+
+	/**
+	 * Sets the backoff after a failed request, it doubles after every failed
+	 * request (up to the maximum).
+	 *
+	 * @param initialMillis
+	 *            the initial backoff in milliseconds
+	 * @param maxMillis
+	 *            the maximum backoff in milliseconds
+	 */
+	public void setBackoff(long initialMillis, long maxMillis) {
+		this.initialBackoff = initialMillis;
+		this.maxBackoff = maxMillis;
+	}
+
+	/**
+	 * Gets the number of reports that are not sent yet.
+	 *
+	 * @return the number of pending reports
+	 */
+	public int getPendingCount() {
+		return spool.size();
+	}
+
+	/**
+	 * Gets the number of reports that are dropped, because the spool was full
+	 * or InfluxDB rejected them.
+	 *
+	 * @return the number of dropped reports
+	 */
+	public long getDroppedCount() {
+		return spool.getDropped();
+	}
+
+	/**
+	 * Report a snapshot, the values are added to the spool and sent by the
+	 * sender thread. The snapshot is marked as reported when it is sent.
+	 *
+	 * @param snapshot
+	 *            the snapshot
+	 * @return true, if successful
+	 */
+	@Override
+	public boolean report(Snapshot snapshot) {
+		if (snapshot.size() == 0) {
+			return true;
+		}
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		try {
+			write(new GZIPOutputStream(baos), snapshot);
+		} catch (IOException e) {
+			return false;
+		}
+		long sequence = spool.add(baos.toByteArray(), baos.size());
+		if (sequence < 0) {
+			return false;
+		}
+		synchronized (this) {
+			spooledSequence = sequence;
+			spooledSnapshot = snapshot;
+		}
+		return true;
+	}
+
+	/**
+	 * Marks the snapshot of the last spooled report as reported when it is
+	 * sent. The snapshot of an older report is not kept, as the changes since
+	 * the last reported snapshot are written in every report, so the last
+	 * reported snapshot may lag behind without losing changes.
+	 *
+	 * @param sequence
+	 *            the sequence number after the last sent report
+	 */
+	private synchronized void sent(long sequence) {
+		if (spooledSnapshot != null && spooledSequence < sequence) {
+			setReported(spooledSnapshot);
+			spooledSnapshot = null;
+		}
+	}
+
+	/**
+	 * Sends the reports in the spool until the thread is interrupted.
+	 */
+	private void send() {
+		ByteArrayOutputStream request = new ByteArrayOutputStream(65536);
+		long backoff = 0;
+		try {
+			while (!Thread.currentThread().isInterrupted()) {
+				spool.await(TimeUnit.SECONDS.toMillis(1));
+				if (spool.size() == 0) {
+					continue;
+				}
+				request.reset();
+				long sequence;
+				try {
+					sequence = spool.read(request, MAX_REQUEST_BYTES);
+				} catch (IOException e) {
+					continue;
+				}
+				int status = post(request);
+				if (status >= 200 && status < 300) {
+					spool.remove(sequence);
+					sent(sequence);
+					backoff = 0;
+					continue;
+				}
+				registry.counter(ReportingScheduler.ERRORS_TYPE, "InfluxDbAsyncHttpReporter").increment();
+				if (status >= 400 && status < 500 && status != 408 && status != 429) {
+					// the request is rejected, retrying it will not help
+					spool.drop(sequence);
+					backoff = 0;
+				} else {
+					backoff = Math.min(backoff == 0 ? initialBackoff : backoff * 2, maxBackoff);
+					Thread.sleep(backoff);
+				}
+			}
+		} catch (InterruptedException e) {
+			// stop sending on shutdown
+		}
+	}
+
+	/**
+	 * Posts a request.
+	 *
+	 * @param request
+	 *            the request (one or more gzip members)
+	 * @return the status code, or -1 when the request failed
+	 */
+	private int post(ByteArrayOutputStream request) {
+		try {
+			HttpURLConnection con = (HttpURLConnection) new URL(reportUrl).openConnection();
+			con.setRequestMethod("POST");
+			con.setConnectTimeout(Long.valueOf(TimeUnit.SECONDS.toMillis(2)).intValue());
+			con.setReadTimeout(Long.valueOf(TimeUnit.SECONDS.toMillis(10)).intValue());
+			con.setDoOutput(true);
+			con.setRequestProperty("Content-Encoding", "gzip");
+			con.setFixedLengthStreamingMode(request.size());
+			try (OutputStream out = con.getOutputStream()) {
+				request.writeTo(out);
+			}
+			int status = con.getResponseCode();
+			// read the response completely, so that the connection is reused
+			try (InputStream in = status < 400 ? con.getInputStream() : con.getErrorStream()) {
+				if (in != null) {
+					byte[] buffer = new byte[1024];
+					while (in.read(buffer) != -1) {
+						// discard
+					}
+				}
+			}
+			return status;
+		} catch (IOException e) {
+			// counted as failed request by the sender
+			return -1;
+		}
+	}
+
+	/**
+	 * Stops the reporting and the sender thread (reports that are not sent
+	 * are lost).
+	 */
+	@Override
+	public void shutdown() {
+		super.shutdown();
+		sender.interrupt();
+	}
+}
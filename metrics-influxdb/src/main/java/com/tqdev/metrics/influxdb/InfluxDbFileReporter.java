@@ -22,17 +22,15 @@ package com.tqdev.metrics.influxdb;
 
 import java.io.BufferedOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileOutputStream;
-import java.io.FilenameFilter;
 import java.io.IOException;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
-import java.util.Arrays;
 import java.util.Date;
-import java.util.zip.GZIPOutputStream;
 
+import com.tqdev.metrics.core.FileRotator;
 import com.tqdev.metrics.core.MetricRegistry;
+import com.tqdev.metrics.core.Snapshot;
 
 /**
  * The InfluxDbFileReporter class reports values in the metric registry to
@@ -49,6 +47,9 @@ public class InfluxDbFileReporter extends InfluxDbReporter {
 	/** The date format. */
 	protected final String dateFormat;
 
+	/** The rotator that compresses and removes the files. */
+	protected final FileRotator rotator;
+
 	/**
 	 * Instantiates a new InfluxDB file reporter.
 	 *
@@ -69,6 +70,7 @@ public class InfluxDbFileReporter extends InfluxDbReporter {
 		this.metricPath = metricPath;
 		this.dateFormat = dateFormat;
 		this.maxFileCount = maxFileCount;
+		this.rotator = new FileRotator(registry, "InfluxDbFileReporter", metricPath, ".txt", maxFileCount);
 	}
 
 	/**
@@ -93,19 +95,19 @@ public class InfluxDbFileReporter extends InfluxDbReporter {
 		this.metricPath = metricPath;
 		this.dateFormat = dateFormat;
 		this.maxFileCount = maxFileCount;
+		this.rotator = new FileRotator(registry, "InfluxDbFileReporter", metricPath, ".txt", maxFileCount);
 		run(intervalInSeconds);
 	}
 
 	/**
-	 * Report.
+	 * Report a snapshot.
 	 *
+	 * @param snapshot
+	 *            the snapshot
 	 * @return true, if successful
 	 */
 	@Override
-	public boolean report() {
-		if (!registry.isEnabled()) {
-			return true;
-		}
+	public boolean report(Snapshot snapshot) {
 		File dir = new File(metricPath);
 		if (!dir.exists()) {
 			if (!dir.mkdir()) {
@@ -113,14 +115,14 @@ public class InfluxDbFileReporter extends InfluxDbReporter {
 			}
 		}
 		DateFormat formatter = new SimpleDateFormat(dateFormat);
-		String filename = metricPath + "/" + formatter.format(new Date(registry.getMillis())) + ".txt";
+		String filename = metricPath + "/" + formatter.format(new Date(snapshot.getMillis())) + ".txt";
+		rotator.rotate(new File(filename));
 		try {
 			FileOutputStream fos = new FileOutputStream(filename, true);
 			BufferedOutputStream out = new BufferedOutputStream(fos, 8192);
-			write(out);
+			write(out, snapshot);
 			out.close();
-			compress(filename);
-			remove(maxFileCount);
+			setReported(snapshot);
 		} catch (IOException e) {
 			// TODO: log
 			return false;
@@ -129,59 +131,24 @@ public class InfluxDbFileReporter extends InfluxDbReporter {
 	}
 
 	/**
-	 * Compress.
+	 * Sets the max total bytes of the compressed files, the oldest files are
+	 * removed when it is exceeded.
 	 *
-	 * @param filename
-	 *            the filename
-	 * @throws IOException
-	 *             Signals that an I/O exception has occurred.
+	 * @param maxTotalBytes
+	 *            the max total bytes
 	 */
-	private void compress(String filename) throws IOException {
-		File current = new File(filename);
-		File dir = new File(metricPath);
-		FilenameFilter textFileFilter = (f, s) -> s.endsWith(".txt");
-		File[] directoryListing = dir.listFiles(textFileFilter);
-		if (directoryListing != null) {
-			for (File file : directoryListing) {
-				if (file.getCanonicalPath() != current.getCanonicalPath()) {
-					try (FileOutputStream fos = new FileOutputStream(file.getPath() + ".gz");
-							GZIPOutputStream gzos = new GZIPOutputStream(fos)) {
-						byte[] buffer = new byte[8192];
-						int length;
-						try (FileInputStream fis = new FileInputStream(file.getPath())) {
-							while ((length = fis.read(buffer)) > 0) {
-								gzos.write(buffer, 0, length);
-							}
-						}
-					}
-					file.delete();
-				}
-			}
-		} else {
-			throw new IOException("Directory not listable: " + metricPath);
-		}
+	public void setMaxTotalBytes(long maxTotalBytes) {
+		rotator.setMaxTotalBytes(maxTotalBytes);
 	}
 
 	/**
-	 * Removes the.
-	 *
-	 * @param maxFileCount
-	 *            the max file count
-	 * @throws IOException
-	 *             Signals that an I/O exception has occurred.
+	 * Handler for shutdown of Executor service, the rotated files are
+	 * compressed before it returns.
 	 */
-	private void remove(int maxFileCount) throws IOException {
-		File dir = new File(metricPath);
-		FilenameFilter gzipFileFilter = (f, s) -> s.endsWith(".gz");
-		File[] directoryListing = dir.listFiles(gzipFileFilter);
-		if (directoryListing != null) {
-			Arrays.sort(directoryListing);
-			for (int i = 0; i < directoryListing.length - maxFileCount; i++) {
-				directoryListing[i].delete();
-			}
-		} else {
-			throw new IOException("Directory not listable: " + metricPath);
-		}
+	@Override
+	public void shutdown() {
+		super.shutdown();
+		rotator.shutdown();
 	}
 
 }
\ No newline at end of file
@@ -28,6 +28,7 @@ import java.util.concurrent.TimeUnit;
 import java.util.zip.GZIPOutputStream;
 
 import com.tqdev.metrics.core.MetricRegistry;
+import com.tqdev.metrics.core.Snapshot;
 
 /**
  * The InfluxDbHttpReporter class reports values in the metric registry to
@@ -72,15 +73,14 @@ public class InfluxDbHttpReporter extends InfluxDbReporter {
 	}
 
 	/**
-	 * Report.
+	 * Report a snapshot.
 	 *
+	 * @param snapshot
+	 *            the snapshot
 	 * @return true, if successful
 	 */
 	@Override
-	public boolean report() {
-		if (!registry.isEnabled()) {
-			return true;
-		}
+	public boolean report(Snapshot snapshot) {
 		HttpURLConnection con = null;
 		try {
 			con = (HttpURLConnection) new URL(reportUrl).openConnection();
@@ -93,13 +93,14 @@ public class InfluxDbHttpReporter extends InfluxDbReporter {
 
 			ByteArrayOutputStream baos = new ByteArrayOutputStream();
 			GZIPOutputStream gzos = new GZIPOutputStream(baos);
-			this.write(gzos);
+			this.write(gzos, snapshot);
 			byte[] bytes = baos.toByteArray();
 			con.setRequestProperty("Content-Encoding", "gzip");
 			con.setRequestProperty("Content-Length", Long.toString(bytes.length));
 			con.getOutputStream().write(bytes);
 
 			if (con.getResponseCode() == 200) {
+				setReported(snapshot);
 				return true;
 			}
 		} catch (IOException e) {
@@ -20,15 +20,44 @@
  */
 package com.tqdev.metrics.influxdb;
 
+import java.io.IOException;
 import java.io.OutputStream;
-import java.io.PrintWriter;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.TimeUnit;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
 
+import com.tqdev.metrics.core.ExpositionWriter;
+import com.tqdev.metrics.core.Histogram;
 import com.tqdev.metrics.core.MetricRegistry;
+import com.tqdev.metrics.core.NameCache;
+import com.tqdev.metrics.core.Reporter;
+import com.tqdev.metrics.core.ReportingScheduler;
+import com.tqdev.metrics.core.Snapshot;
 
-abstract class InfluxDbReporter {
+abstract class InfluxDbReporter implements Reporter {
+
+	/** The quantile tags of histograms and sketches. */
+	private static final byte[][] QUANTILE_TAGS = new byte[Histogram.QUANTILES.length][];
+
+	/** The value field. */
+	private static final byte[] VALUE_FIELD = " value=".getBytes(StandardCharsets.US_ASCII);
+
+	/** The count field (of histograms and sketches). */
+	private static final byte[] COUNT_FIELD = " count=".getBytes(StandardCharsets.US_ASCII);
+
+	/** The suffix of an integer field and the separator of the time. */
+	private static final byte[] INTEGER_SUFFIX = "i ".getBytes(StandardCharsets.US_ASCII);
+
+	/** The sketch field. */
+	private static final byte[] SKETCH_FIELD = " sketch=\"".getBytes(StandardCharsets.US_ASCII);
+
+	/** The end of the sketch field and the separator of the time. */
+	private static final byte[] SKETCH_SUFFIX = "\" ".getBytes(StandardCharsets.US_ASCII);
+
+	static {
+		for (int q = 0; q < QUANTILE_TAGS.length; q++) {
+			QUANTILE_TAGS[q] = (",quantile=" + Histogram.QUANTILES[q]).getBytes(StandardCharsets.US_ASCII);
+		}
+	}
 
 	/**
 	 * The instanceName used to identify the source of the metrics in InfluxDB.
@@ -41,7 +70,29 @@ abstract class InfluxDbReporter {
 	 */
 	protected final MetricRegistry registry;
 
-	private final ScheduledExecutorService exec;
+	/** The scheduler that runs this reporter (or null when not running). */
+	private volatile ReportingScheduler scheduler;
+
+	/**
+	 * Whether only the series that changed since the last successful report
+	 * are written.
+	 */
+	protected volatile boolean changedOnly;
+
+	/**
+	 * The cursor of the snapshot of the last successful report, that changes
+	 * are determined against (0 when nothing is reported yet).
+	 */
+	private volatile long cursor;
+
+	/** The encoded starts of the series by type. */
+	private final NameCache types = new NameCache(this::encodeType);
+
+	/** The encoded keys. */
+	private final NameCache keys = new NameCache(InfluxDbReporter::encodeKey);
+
+	/** The writer that is reused between reports (guarded by itself). */
+	private final ExpositionWriter writer = new ExpositionWriter(8192);
 
 	/**
 	 * Instantiates a new JMX reporter.
@@ -56,61 +107,213 @@ abstract class InfluxDbReporter {
 	public InfluxDbReporter(MetricRegistry registry, String instanceName) {
 		this.instanceName = instanceName;
 		this.registry = registry;
-		this.exec = Executors.newSingleThreadScheduledExecutor();
 	}
 
 	/**
-	 * Write.
+	 * Checks if only the series that changed since the last successful report
+	 * are written.
+	 *
+	 * @return true, if only changed series are written
+	 */
+	public boolean isChangedOnly() {
+		return changedOnly;
+	}
+
+	/**
+	 * Sets whether only the series that changed since the last successful
+	 * report are written, this reduces the payload (and the time spent
+	 * encoding it) when most series do not change between reports. Metrics
+	 * keep the epoch of their last update, so the series that were not
+	 * updated since the snapshot of the last successful report are not read
+	 * either (gauges are always written, as they are measured on demand).
+	 *
+	 * @param changedOnly
+	 *            whether only changed series are written
+	 */
+	public void setChangedOnly(boolean changedOnly) {
+		this.changedOnly = changedOnly;
+	}
+
+	/**
+	 * Marks a snapshot as successfully reported, so that it becomes the
+	 * cursor that changes are determined against.
+	 *
+	 * @param snapshot
+	 *            the snapshot
+	 */
+	protected void setReported(Snapshot snapshot) {
+		cursor = snapshot.getCursor();
+	}
+
+	/**
+	 * Gets the cursor of the snapshot of the last successful report, when
+	 * only changed series are written.
+	 *
+	 * @return the cursor (or -1 when all series are written)
+	 */
+	@Override
+	public long getCursor() {
+		return changedOnly ? cursor : -1;
+	}
+
+	/**
+	 * Write the metrics of a new snapshot of the registry.
 	 *
 	 * @param out
 	 *            the out
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
 	 */
-	public void write(OutputStream out) {
-		PrintWriter w = new PrintWriter(out);
-		String instanceStr = instanceName.replaceAll("[, =]", "\\$1");
-		String time = String.valueOf((registry.getMillis() / 1000) * 1000000000);
-		for (String type : registry.getTypes()) {
-			String typeStr = type.replaceAll("[, ]", "\\$1");
-			for (String key : registry.getKeys(type)) {
-				String keyStr = key.replaceAll("[, =]", "\\$1");
-				String parts[] = typeStr.split("\\.", 3);
-				w.print(parts[0]);
-				w.print(",host=");
-				w.print(instanceStr);
-				w.print(",instance=");
-				if (parts.length > 1) {
-					w.print(parts[1]);
-				}
-				w.print(",type=");
-				if (parts.length > 2) {
-					w.append(parts[2]);
+	public void write(OutputStream out) throws IOException {
+		write(out, registry.snapshot());
+	}
+
+	/**
+	 * Write the metrics of a (consistent) snapshot of the registry. Histograms
+	 * are written as one line per quantile (with a "quantile" tag) and a line
+	 * with the number of recorded values as "count" field. Sketches are
+	 * written the same way, with a line with the serialized sketch (Base64)
+	 * as "sketch" string field, so that sketches of many instances can be
+	 * merged by {@link com.tqdev.metrics.core.SketchMerger}.
+	 * When only changed series are written, the series that did not change
+	 * since the last successful report are skipped.
+	 *
+	 * @param out
+	 *            the out
+	 * @param snapshot
+	 *            the snapshot
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public void write(OutputStream out, Snapshot snapshot) throws IOException {
+		if (changedOnly) {
+			snapshot = snapshot.changedSince(cursor);
+		}
+		synchronized (writer) {
+			ExpositionWriter w = writer.reset(out);
+			long time = (snapshot.getMillis() / 1000) * 1000000000;
+			for (int t = 0; t < snapshot.getTypeCount(); t++) {
+				byte[] series = types.get(snapshot.getType(t));
+				for (int i = snapshot.getStart(t); i < snapshot.getEnd(t); i++) {
+					byte[] key = keys.get(snapshot.getKey(i));
+					if (snapshot.hasQuantiles(i)) {
+						for (int q = 0; q < QUANTILE_TAGS.length; q++) {
+							w.write(series);
+							w.write(key);
+							w.write(QUANTILE_TAGS[q]);
+							w.write(VALUE_FIELD);
+							w.write(snapshot.getQuantile(i, q));
+							w.write(INTEGER_SUFFIX);
+							w.write(time);
+							w.write((byte) '\n');
+						}
+					}
+					if (snapshot.hasSketch(i)) {
+						w.write(series);
+						w.write(key);
+						w.write(SKETCH_FIELD);
+						w.write(Base64.getEncoder().encode(snapshot.getSketch(i)));
+						w.write(SKETCH_SUFFIX);
+						w.write(time);
+						w.write((byte) '\n');
+					}
+					w.write(series);
+					w.write(key);
+					w.write(snapshot.hasQuantiles(i) ? COUNT_FIELD : VALUE_FIELD);
+					w.write(snapshot.getValue(i));
+					w.write(INTEGER_SUFFIX);
+					w.write(time);
+					w.write((byte) '\n');
 				}
-				w.print(",type_instance=");
-				w.print(keyStr);
-				w.print(" value=");
-				w.print(registry.get(type, key));
-				w.println("i " + time);
 			}
+			w.close();
 		}
-		w.close();
 	}
 
-	public abstract boolean report();
+	/**
+	 * Encodes the start of the series of a type, up to the value of the
+	 * "type_instance" tag.
+	 *
+	 * @param type
+	 *            the type
+	 * @return the encoded start of the series
+	 */
+	private byte[] encodeType(String type) {
+		String parts[] = NameCache.splitType(type);
+		StringBuilder series = new StringBuilder();
+		series.append(escape(parts[0], ", "));
+		series.append(",host=");
+		series.append(escape(instanceName, ", ="));
+		series.append(",instance=");
+		series.append(escape(parts[1], ", ="));
+		series.append(",type=");
+		series.append(escape(parts[2], ", ="));
+		series.append(",type_instance=");
+		return series.toString().getBytes(StandardCharsets.UTF_8);
+	}
 
 	/**
-	 * Run.
+	 * Encodes a key as tag value.
+	 *
+	 * @param key
+	 *            the key
+	 * @return the encoded key
+	 */
+	private static byte[] encodeKey(String key) {
+		return escape(key, ", =").getBytes(StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Escapes characters with a backslash.
+	 *
+	 * @param str
+	 *            the string
+	 * @param chars
+	 *            the characters to escape
+	 * @return the escaped string
+	 */
+	private static String escape(String str, String chars) {
+		StringBuilder escaped = new StringBuilder(str.length());
+		for (int i = 0; i < str.length(); i++) {
+			char c = str.charAt(i);
+			if (chars.indexOf(c) >= 0) {
+				escaped.append('\\');
+			}
+			escaped.append(c);
+		}
+		return escaped.toString();
+	}
+
+	/**
+	 * Report a new snapshot of the registry.
+	 *
+	 * @return true, if successful
+	 */
+	public boolean report() {
+		if (!registry.isEnabled()) {
+			return true;
+		}
+		return report(changedOnly ? registry.snapshotChangedSince(cursor) : registry.snapshot());
+	}
+
+	/**
+	 * Run, on the scheduler that is shared by the reporters of the registry
+	 * that run at the same interval (so they report the same snapshots).
 	 *
 	 * @param intervalInSeconds
 	 *            the interval in seconds
 	 */
 	public void run(int intervalInSeconds) {
-		exec.scheduleAtFixedRate(() -> this.report(), 1, intervalInSeconds, TimeUnit.SECONDS);
+		scheduler = ReportingScheduler.addShared(registry, intervalInSeconds, this);
 	}
 
 	/**
-	 * Handler for shutdown of Executor service.
+	 * Handler for shutdown of the scheduler.
 	 */
 	public void shutdown() {
-		this.exec.shutdown();
+		ReportingScheduler scheduler = this.scheduler;
+		if (scheduler != null) {
+			scheduler.remove(this);
+		}
 	}
 }
\ No newline at end of file
@@ -0,0 +1,145 @@
+/* Copyright (C) 2017 Maurits van der Schee
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.tqdev.metrics.influxdb;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.DatagramChannel;
+
+import com.tqdev.metrics.core.DatagramOutputStream;
+import com.tqdev.metrics.core.MetricRegistry;
+import com.tqdev.metrics.core.ReportingScheduler;
+import com.tqdev.metrics.core.Snapshot;
+
+/**
+ * The InfluxDbUdpReporter class reports values in the metric registry to
+ * InfluxDB over UDP (fire-and-forget). Lines are packed into packets of at
+ * most the maximum packet size (lines are never split), that are sent from a
+ * reused direct buffer over a non-blocking channel. Packets that can not be
+ * sent immediately and lines that do not fit in a packet are dropped and
+ * counted in the types "metrics.Reporter.DroppedPackets" and
+ * "metrics.Reporter.OversizedLines" (with key "InfluxDbUdp"). Reports that
+ * fail (or of which packets were dropped) are counted in type
+ * "metrics.Reporter.Errors" (with key "InfluxDbUdpReporter"). A report of
+ * which packets were dropped is not marked as reported, so that its changes
+ * are sent again when only changed series are written.
+ */
+public class InfluxDbUdpReporter extends InfluxDbReporter {
+
+	/**
+	 * The default maximum packet size, that fits the MTU of Ethernet (1500
+	 * bytes) minus the IP and UDP headers (with room for IP options).
+	 */
+	public static final int DEFAULT_MAX_PACKET_SIZE = 1432;
+
+	/** The address. */
+	protected final InetSocketAddress address;
+
+	/** The channel. */
+	private final DatagramChannel channel;
+
+	/** The packets that are written. */
+	private final DatagramOutputStream packets;
+
+	/**
+	 * Instantiates a new InfluxDB UDP reporter.
+	 *
+	 * @param registry
+	 *            the registry
+	 * @param instanceName
+	 *            the instance name
+	 * @param address
+	 *            the address of the InfluxDB UDP listener
+	 * @param maxPacketSize
+	 *            the maximum packet size
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public InfluxDbUdpReporter(MetricRegistry registry, String instanceName, InetSocketAddress address,
+			int maxPacketSize) throws IOException {
+		super(registry, instanceName);
+		this.address = address;
+		this.channel = DatagramChannel.open();
+		this.channel.configureBlocking(false);
+		this.packets = new DatagramOutputStream(channel, address, maxPacketSize,
+				registry.counter("metrics.Reporter.DroppedPackets", "InfluxDbUdp"),
+				registry.counter("metrics.Reporter.OversizedLines", "InfluxDbUdp"));
+	}
+
+	/**
+	 * Instantiates a new InfluxDB UDP reporter.
+	 *
+	 * @param registry
+	 *            the registry
+	 * @param instanceName
+	 *            the instance name
+	 * @param address
+	 *            the address of the InfluxDB UDP listener
+	 * @param maxPacketSize
+	 *            the maximum packet size
+	 * @param intervalInSeconds
+	 *            the interval in seconds
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public InfluxDbUdpReporter(MetricRegistry registry, String instanceName, InetSocketAddress address,
+			int maxPacketSize, int intervalInSeconds) throws IOException {
+		this(registry, instanceName, address, maxPacketSize);
+		run(intervalInSeconds);
+	}
+
+	/**
+	 * Report a snapshot, the report fails when any of its packets is dropped.
+	 *
+	 * @param snapshot
+	 *            the snapshot
+	 * @return true, if successful
+	 */
+	@Override
+	public synchronized boolean report(Snapshot snapshot) {
+		packets.resetDropped();
+		try {
+			write(packets, snapshot);
+		} catch (IOException e) {
+			registry.counter(ReportingScheduler.ERRORS_TYPE, "InfluxDbUdpReporter").increment();
+			return false;
+		}
+		if (packets.resetDropped() > 0) {
+			registry.counter(ReportingScheduler.ERRORS_TYPE, "InfluxDbUdpReporter").increment();
+			return false;
+		}
+		setReported(snapshot);
+		return true;
+	}
+
+	/**
+	 * Handler for shutdown of Executor service and the channel.
+	 */
+	@Override
+	public void shutdown() {
+		super.shutdown();
+		try {
+			channel.close();
+		} catch (IOException ignore) {
+			// ignore when channel cannot be closed
+		}
+	}
+}
@@ -0,0 +1,254 @@
+/* Copyright (C) 2017 Maurits van der Schee
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.tqdev.metrics.influxdb;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+
+/**
+ * The Class Spool is a bounded first-in-first-out queue of records (the
+ * encoded intervals of a reporter) in a ring buffer outside the heap. When a
+ * record does not fit, the oldest records are dropped. Records are numbered,
+ * so that records that are read can be removed after they are sent, even
+ * when older records were dropped in the mean time.
+ */
+class Spool {
+
+	/** The buffer. */
+	private final ByteBuffer buffer;
+
+	/** The position of the oldest record. */
+	private int head;
+
+	/** The number of used bytes. */
+	private int used;
+
+	/** The number of records. */
+	private int count;
+
+	/** The sequence number of the oldest record. */
+	private long first;
+
+	/** The number of dropped records. */
+	private long dropped;
+
+	/**
+	 * Instantiates a new spool.
+	 *
+	 * @param capacity
+	 *            the capacity in bytes
+	 */
+	Spool(int capacity) {
+		buffer = ByteBuffer.allocateDirect(capacity);
+	}
+
+	/**
+	 * Adds a record, dropping the oldest records when it does not fit.
+	 *
+	 * @param record
+	 *            the record
+	 * @param length
+	 *            the length of the record
+	 * @return the sequence number of the record, or -1 when it is larger than
+	 *         the spool
+	 */
+	synchronized long add(byte[] record, int length) {
+		if (length + 4 > buffer.capacity()) {
+			dropped++;
+			return -1;
+		}
+		while (used + length + 4 > buffer.capacity()) {
+			removeFirst();
+			dropped++;
+		}
+		int tail = (head + used) % buffer.capacity();
+		byte[] header = { (byte) (length >>> 24), (byte) (length >>> 16), (byte) (length >>> 8), (byte) length };
+		tail = put(tail, header, 4);
+		put(tail, record, length);
+		used += length + 4;
+		count++;
+		notifyAll();
+		return first + count - 1;
+	}
+
+	/**
+	 * Waits for a record to be added.
+	 *
+	 * @param millis
+	 *            the maximum time to wait
+	 * @throws InterruptedException
+	 *             when the thread is interrupted
+	 */
+	synchronized void await(long millis) throws InterruptedException {
+		if (count == 0) {
+			wait(millis);
+		}
+	}
+
+	/**
+	 * Writes the oldest records (at least one, when there is one) to an output
+	 * stream, without removing them.
+	 *
+	 * @param out
+	 *            the out
+	 * @param maxBytes
+	 *            the maximum number of bytes of the records after the first
+	 * @return the sequence number after the last written record
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	synchronized long read(OutputStream out, int maxBytes) throws IOException {
+		int position = head;
+		int bytes = 0;
+		long sequence = first;
+		byte[] chunk = new byte[8192];
+		for (int i = 0; i < count; i++) {
+			int length = (get(position) << 24) | (get(position + 1) << 16) | (get(position + 2) << 8)
+					| get(position + 3);
+			if (i > 0 && bytes + length > maxBytes) {
+				break;
+			}
+			position = (position + 4) % buffer.capacity();
+			for (int done = 0; done < length;) {
+				int n = Math.min(chunk.length, length - done);
+				position = get(position, chunk, n);
+				out.write(chunk, 0, n);
+				done += n;
+			}
+			bytes += length;
+			sequence++;
+		}
+		return sequence;
+	}
+
+	/**
+	 * Removes the records before a sequence number (that are not dropped yet).
+	 *
+	 * @param sequence
+	 *            the sequence number
+	 */
+	synchronized void remove(long sequence) {
+		while (first < sequence && count > 0) {
+			removeFirst();
+		}
+	}
+
+	/**
+	 * Drops the records before a sequence number (that are not dropped yet).
+	 *
+	 * @param sequence
+	 *            the sequence number
+	 */
+	synchronized void drop(long sequence) {
+		while (first < sequence && count > 0) {
+			removeFirst();
+			dropped++;
+		}
+	}
+
+	/**
+	 * Gets the number of records.
+	 *
+	 * @return the number of records
+	 */
+	synchronized int size() {
+		return count;
+	}
+
+	/**
+	 * Gets the number of dropped records.
+	 *
+	 * @return the number of dropped records
+	 */
+	synchronized long getDropped() {
+		return dropped;
+	}
+
+	/**
+	 * Removes the oldest record.
+	 */
+	private void removeFirst() {
+		int length = (get(head) << 24) | (get(head + 1) << 16) | (get(head + 2) << 8) | get(head + 3);
+		head = (head + length + 4) % buffer.capacity();
+		used -= length + 4;
+		count--;
+		first++;
+	}
+
+	/**
+	 * Gets an (unsigned) byte at a position (that may wrap around).
+	 *
+	 * @param position
+	 *            the position
+	 * @return the byte
+	 */
+	private int get(int position) {
+		return buffer.get(position % buffer.capacity()) & 0xff;
+	}
+
+	/**
+	 * Gets bytes from a position (wrapping around).
+	 *
+	 * @param position
+	 *            the position
+	 * @param bytes
+	 *            the bytes
+	 * @param length
+	 *            the length
+	 * @return the position after the bytes
+	 */
+	private int get(int position, byte[] bytes, int length) {
+		ByteBuffer b = buffer.duplicate();
+		int part = Math.min(length, b.capacity() - position);
+		((Buffer) b).position(position);
+		b.get(bytes, 0, part);
+		if (part < length) {
+			((Buffer) b).position(0);
+			b.get(bytes, part, length - part);
+		}
+		return (position + length) % b.capacity();
+	}
+
+	/**
+	 * Puts bytes at a position (wrapping around).
+	 *
+	 * @param position
+	 *            the position
+	 * @param bytes
+	 *            the bytes
+	 * @param length
+	 *            the length
+	 * @return the position after the bytes
+	 */
+	private int put(int position, byte[] bytes, int length) {
+		ByteBuffer b = buffer.duplicate();
+		int part = Math.min(length, b.capacity() - position);
+		((Buffer) b).position(position);
+		b.put(bytes, 0, part);
+		if (part < length) {
+			((Buffer) b).position(0);
+			b.put(bytes, part, length - part);
+		}
+		return (position + length) % b.capacity();
+	}
+}
@@ -0,0 +1,207 @@
+/* Copyright (C) 2017 Maurits van der Schee
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.tqdev.metrics.influxdb;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.when;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpServer;
+import com.tqdev.metrics.core.MetricRegistry;
+
+/**
+ * The Class InfluxDbAsyncHttpReporterTest.
+ */
+public class InfluxDbAsyncHttpReporterTest {
+
+	/** The registry. */
+	protected MetricRegistry registry;
+
+	/** The server. */
+	private HttpServer server;
+
+	/** The status codes that the server responds with (the last is repeated). */
+	private final List<Integer> statuses = new CopyOnWriteArrayList<>();
+
+	/** The number of requests. */
+	private final AtomicInteger requests = new AtomicInteger();
+
+	/** The lines of the successful requests. */
+	private final List<List<String>> accepted = new CopyOnWriteArrayList<>();
+
+	/** The reporter. */
+	private InfluxDbAsyncHttpReporter reporter;
+
+	/**
+	 * Initialize.
+	 *
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	@Before
+	public void setUp() throws IOException {
+		registry = spy(new MetricRegistry());
+		when(registry.getMillis()).thenReturn(1510373758123L);
+		server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+		server.createContext("/write", exchange -> {
+			int request = requests.getAndIncrement();
+			int status = statuses.get(Math.min(request, statuses.size() - 1));
+			List<String> lines = new ArrayList<>();
+			try (BufferedReader body = new BufferedReader(new InputStreamReader(
+					new GZIPInputStream(exchange.getRequestBody()), StandardCharsets.UTF_8))) {
+				String line;
+				while ((line = body.readLine()) != null) {
+					lines.add(line);
+				}
+			}
+			if (status == 204) {
+				accepted.add(lines);
+			}
+			exchange.sendResponseHeaders(status, -1);
+			exchange.close();
+		});
+		server.start();
+		reporter = new InfluxDbAsyncHttpReporter(registry, "localhost",
+				"http://127.0.0.1:" + server.getAddress().getPort() + "/write?db=collectd", 1024 * 1024);
+		reporter.setBackoff(50, 100);
+	}
+
+	/**
+	 * Cleanup.
+	 */
+	@After
+	public void tearDown() {
+		reporter.shutdown();
+		server.stop(0);
+	}
+
+	/**
+	 * Waits until all reports are sent.
+	 *
+	 * @throws InterruptedException
+	 *             when the thread is interrupted
+	 */
+	private void awaitSent() throws InterruptedException {
+		for (int i = 0; i < 500 && reporter.getPendingCount() > 0; i++) {
+			Thread.sleep(10);
+		}
+		assertThat(reporter.getPendingCount()).isEqualTo(0);
+	}
+
+	/**
+	 * Should post data.
+	 *
+	 * @throws InterruptedException
+	 *             when the thread is interrupted
+	 */
+	@Test
+	public void shouldPostData() throws InterruptedException {
+		statuses.add(204);
+		registry.add("jdbc.Statement.Duration", "select", 123);
+		assertThat(reporter.report()).isTrue();
+		awaitSent();
+		assertThat(accepted).hasSize(1);
+		assertThat(accepted.get(0)).containsExactly(
+				"jdbc,host=localhost,instance=Statement,type=Duration,type_instance=select value=123i 1510373758000000000");
+	}
+
+	/**
+	 * Should post pending reports in one request after an outage.
+	 *
+	 * @throws InterruptedException
+	 *             when the thread is interrupted
+	 */
+	@Test
+	public void shouldPostPendingReportsAfterOutage() throws InterruptedException {
+		statuses.add(503);
+		statuses.add(503);
+		statuses.add(204);
+		registry.add("jdbc.Statement.Duration", "select", 123);
+		assertThat(reporter.report()).isTrue();
+		registry.add("jdbc.Statement.Duration", "select", 123);
+		assertThat(reporter.report()).isTrue();
+		awaitSent();
+		assertThat(requests.get()).isGreaterThanOrEqualTo(3);
+		assertThat(accepted).hasSize(1);
+		assertThat(accepted.get(0)).containsExactly(
+				"jdbc,host=localhost,instance=Statement,type=Duration,type_instance=select value=123i 1510373758000000000",
+				"jdbc,host=localhost,instance=Statement,type=Duration,type_instance=select value=246i 1510373758000000000");
+		assertThat(reporter.getDroppedCount()).isEqualTo(0);
+	}
+
+	/**
+	 * Should drop rejected reports.
+	 *
+	 * @throws InterruptedException
+	 *             when the thread is interrupted
+	 */
+	@Test
+	public void shouldDropRejectedReports() throws InterruptedException {
+		statuses.add(400);
+		registry.add("jdbc.Statement.Duration", "select", 123);
+		assertThat(reporter.report()).isTrue();
+		awaitSent();
+		assertThat(accepted).isEmpty();
+		assertThat(reporter.getDroppedCount()).isEqualTo(1);
+	}
+
+	/**
+	 * Should write changes again when their report is rejected.
+	 *
+	 * @throws InterruptedException
+	 *             when the thread is interrupted
+	 */
+	@Test
+	public void shouldWriteChangesAgainWhenRejected() throws InterruptedException {
+		statuses.add(400);
+		statuses.add(204);
+		reporter.setChangedOnly(true);
+		registry.add("jdbc.Statement.Duration", "select", 123);
+		assertThat(reporter.report()).isTrue();
+		awaitSent();
+		assertThat(reporter.report()).isTrue();
+		awaitSent();
+		assertThat(accepted).hasSize(1);
+		assertThat(accepted.get(0)).containsExactly(
+				"jdbc,host=localhost,instance=Statement,type=Duration,type_instance=select value=123i 1510373758000000000",
+				"metrics,host=localhost,instance=Reporter,type=Errors,type_instance=InfluxDbAsyncHttpReporter value=1i 1510373758000000000");
+		assertThat(reporter.report()).isTrue();
+		awaitSent();
+		assertThat(accepted).hasSize(1);
+		assertThat(reporter.getPendingCount()).isEqualTo(0);
+	}
+}
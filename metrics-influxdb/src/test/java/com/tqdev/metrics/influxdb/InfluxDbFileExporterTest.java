@@ -0,0 +1,94 @@
+/* Copyright (C) 2017 Maurits van der Schee
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.tqdev.metrics.influxdb;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.tqdev.metrics.core.BinaryFileWriter;
+import com.tqdev.metrics.core.MetricRegistry;
+
+/**
+ * The Class InfluxDbFileExporterTest.
+ */
+public class InfluxDbFileExporterTest {
+
+	/** The registry. */
+	protected MetricRegistry registry;
+
+	/** The binary file. */
+	private File file;
+
+	/**
+	 * Initialize.
+	 *
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	@Before
+	public void setUp() throws IOException {
+		registry = spy(new MetricRegistry());
+		when(registry.getMillis()).thenReturn(1510373758123L);
+		file = File.createTempFile("metrics", ".bin");
+	}
+
+	/**
+	 * Cleanup.
+	 */
+	@After
+	public void tearDown() {
+		file.delete();
+	}
+
+	/**
+	 * Should export binary file.
+	 *
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	@Test
+	public void shouldExportBinaryFile() throws IOException {
+		BinaryFileWriter writer = new BinaryFileWriter("localhost");
+		try (OutputStream out = new FileOutputStream(file)) {
+			registry.add("jdbc.Statement.Duration", "select", 123);
+			writer.write(out, registry.snapshot());
+			registry.add("jdbc.Statement.Duration", "select", 2);
+			writer.write(out, registry.snapshot());
+		}
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		InfluxDbFileExporter.export(file, out);
+		assertThat(new String(out.toByteArray(), StandardCharsets.UTF_8)).isEqualTo(
+				"jdbc,host=localhost,instance=Statement,type=Duration,type_instance=select value=123i 1510373758000000000\n"
+						+ "jdbc,host=localhost,instance=Statement,type=Duration,type_instance=select value=125i 1510373758000000000\n");
+	}
+}
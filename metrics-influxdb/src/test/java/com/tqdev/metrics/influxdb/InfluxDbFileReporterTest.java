@@ -30,6 +30,8 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
 import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
 
 import org.junit.After;
 import org.junit.Before;
@@ -115,6 +117,89 @@ public class InfluxDbFileReporterTest {
 				"jdbc,host=localhost,instance=Statement,type=Duration,type_instance=select value=123i 1510373758000000000");
 	}
 
+	/**
+	 * Should escape tag values.
+	 *
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	@Test
+	public void shouldEscapeTagValues() throws IOException {
+		registry.add("jdbc.Statement.Duration", "select a, b=1", 123);
+		boolean success = reporter.report();
+		String content = String.join("\n", Files.readAllLines(tempPath.resolve("20171111.txt")));
+		assertThat(success).isTrue();
+		assertThat(content).isEqualTo(
+				"jdbc,host=localhost,instance=Statement,type=Duration,type_instance=select\\ a\\,\\ b\\=1 value=123i 1510373758000000000");
+	}
+
+	/**
+	 * Should write quantiles and count of histogram.
+	 *
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	@Test
+	public void shouldWriteQuantilesAndCountOfHistogram() throws IOException {
+		registry.histogram("jdbc.Statement.Latency", "select").record(123);
+		registry.histogram("jdbc.Statement.Latency", "select").record(120);
+		boolean success = reporter.report();
+		String content = String.join("\n", Files.readAllLines(tempPath.resolve("20171111.txt")));
+		assertThat(success).isTrue();
+		assertThat(content).isEqualTo(
+				"jdbc,host=localhost,instance=Statement,type=Latency,type_instance=select,quantile=0.5 value=127i 1510373758000000000" + "\n"
+						+ "jdbc,host=localhost,instance=Statement,type=Latency,type_instance=select,quantile=0.9 value=127i 1510373758000000000" + "\n"
+						+ "jdbc,host=localhost,instance=Statement,type=Latency,type_instance=select,quantile=0.99 value=127i 1510373758000000000" + "\n"
+						+ "jdbc,host=localhost,instance=Statement,type=Latency,type_instance=select,quantile=0.999 value=127i 1510373758000000000" + "\n"
+						+ "jdbc,host=localhost,instance=Statement,type=Latency,type_instance=select count=2i 1510373758000000000");
+	}
+
+	/**
+	 * Should write sketch.
+	 *
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	@Test
+	public void shouldWriteSketch() throws IOException {
+		registry.sketch("jdbc.Statement.Latency", "select").record(1000);
+		boolean success = reporter.report();
+		List<String> lines = Files.readAllLines(tempPath.resolve("20171111.txt"));
+		assertThat(success).isTrue();
+		assertThat(lines).hasSize(6);
+		assertThat(lines.get(0)).isEqualTo(
+				"jdbc,host=localhost,instance=Statement,type=Latency,type_instance=select,quantile=0.5 value=1002i 1510373758000000000");
+		assertThat(lines.get(4)).isEqualTo("jdbc,host=localhost,instance=Statement,type=Latency,type_instance=select sketch=\""
+				+ Base64.getEncoder().encodeToString(registry.getSketch("jdbc.Statement.Latency", "select").toBytes())
+				+ "\" 1510373758000000000");
+		assertThat(lines.get(5)).isEqualTo(
+				"jdbc,host=localhost,instance=Statement,type=Latency,type_instance=select count=1i 1510373758000000000");
+	}
+
+	/**
+	 * Should write only changed series.
+	 *
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	@Test
+	public void shouldWriteOnlyChangedSeries() throws IOException {
+		reporter.setChangedOnly(true);
+		registry.add("jdbc.Statement.Duration", "select", 123);
+		registry.add("jdbc.Statement.Duration", "update", 123);
+		boolean success = reporter.report();
+		registry.add("jdbc.Statement.Duration", "update", 1);
+		registry.add("jdbc.Statement.Duration", "delete", 1);
+		success &= reporter.report();
+		success &= reporter.report();
+		List<String> lines = Files.readAllLines(tempPath.resolve("20171111.txt"));
+		assertThat(success).isTrue();
+		assertThat(lines).hasSize(4);
+		assertThat(lines.subList(2, 4)).containsOnly(
+				"jdbc,host=localhost,instance=Statement,type=Duration,type_instance=update value=124i 1510373758000000000",
+				"jdbc,host=localhost,instance=Statement,type=Duration,type_instance=delete value=1i 1510373758000000000");
+	}
+
 	/**
 	 * Should append file.
 	 *
@@ -146,6 +231,7 @@ public class InfluxDbFileReporterTest {
 		String line = "jdbc,host=localhost,instance=Statement,type=Duration,type_instance=select value=123i 1510373758000000000\n";
 		Files.write(tempPath.resolve("20171110.txt"), line.getBytes(), StandardOpenOption.CREATE_NEW);
 		boolean success = reporter.report();
+		reporter.shutdown();
 		File[] gzipFiles = tempPath.toFile().listFiles((f, s) -> s.endsWith(".gz"));
 		File[] textFiles = tempPath.toFile().listFiles((f, s) -> s.endsWith(".txt"));
 		assertThat(success).isTrue();
@@ -169,6 +255,7 @@ public class InfluxDbFileReporterTest {
 		Files.createFile(tempPath.resolve("20171109.txt.gz"));
 		Files.write(tempPath.resolve("20171110.txt"), line.getBytes(), StandardOpenOption.CREATE_NEW);
 		boolean success = reporter.report();
+		reporter.shutdown();
 		File[] gzipFiles = tempPath.toFile().listFiles((f, s) -> s.endsWith(".gz"));
 		Arrays.sort(gzipFiles);
 		File[] textFiles = tempPath.toFile().listFiles((f, s) -> s.endsWith(".txt"));
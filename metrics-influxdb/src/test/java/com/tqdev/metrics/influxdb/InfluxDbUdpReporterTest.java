@@ -0,0 +1,184 @@
+/* Copyright (C) 2017 Maurits van der Schee
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.tqdev.metrics.influxdb;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.tqdev.metrics.core.MetricRegistry;
+
+/**
+ * The Class InfluxDbUdpReporterTest.
+ */
+public class InfluxDbUdpReporterTest {
+
+	/** The registry. */
+	protected MetricRegistry registry;
+
+	/** The local UDP listener. */
+	private DatagramSocket listener;
+
+	/** The reporter. */
+	private InfluxDbUdpReporter reporter;
+
+	/**
+	 * Initialize.
+	 *
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	@Before
+	public void setUp() throws IOException {
+		registry = spy(new MetricRegistry());
+		when(registry.getMillis()).thenReturn(1510373758123L);
+		listener = new DatagramSocket(0, InetAddress.getLoopbackAddress());
+		reporter = new InfluxDbUdpReporter(registry, "localhost",
+				new InetSocketAddress(InetAddress.getLoopbackAddress(), listener.getLocalPort()), 256);
+	}
+
+	/**
+	 * Cleanup.
+	 */
+	@After
+	public void tearDown() {
+		reporter.shutdown();
+		listener.close();
+	}
+
+	/**
+	 * Receives the packets that are sent, until no packet arrives for 200
+	 * milliseconds.
+	 *
+	 * @return the packets
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	private List<String> receive() throws IOException {
+		List<String> packets = new ArrayList<>();
+		byte[] buffer = new byte[65536];
+		listener.setSoTimeout(200);
+		try {
+			while (true) {
+				DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+				listener.receive(packet);
+				packets.add(new String(packet.getData(), 0, packet.getLength(), StandardCharsets.UTF_8));
+			}
+		} catch (SocketTimeoutException e) {
+			return packets;
+		}
+	}
+
+	/**
+	 * Should send lines.
+	 *
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	@Test
+	public void shouldSendLines() throws IOException {
+		registry.add("jdbc.Statement.Duration", "select", 123);
+		assertThat(reporter.report()).isTrue();
+		String content = String.join("", receive());
+		assertThat(content).contains(
+				"jdbc,host=localhost,instance=Statement,type=Duration,type_instance=select value=123i 1510373758000000000\n");
+		assertThat(content).contains(
+				"metrics,host=localhost,instance=Reporter,type=DroppedPackets,type_instance=InfluxDbUdp value=0i 1510373758000000000\n");
+	}
+
+	/**
+	 * Should pack lines into packets of maximum size.
+	 *
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	@Test
+	public void shouldPackLinesIntoPackets() throws IOException {
+		for (int i = 0; i < 10; i++) {
+			registry.add("jdbc.Statement.Duration", "select" + i, i);
+		}
+		assertThat(reporter.report()).isTrue();
+		List<String> packets = receive();
+		assertThat(packets.size()).isGreaterThan(1);
+		int lines = 0;
+		for (String packet : packets) {
+			assertThat(packet.length()).isLessThanOrEqualTo(256);
+			assertThat(packet).endsWith("\n");
+			lines += packet.split("\n").length;
+		}
+		assertThat(lines).isEqualTo(12);
+	}
+
+	/**
+	 * Should count oversized lines.
+	 *
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	@Test
+	public void shouldCountOversizedLines() throws IOException {
+		StringBuilder key = new StringBuilder();
+		for (int i = 0; i < 300; i++) {
+			key.append('x');
+		}
+		registry.add("jdbc.Statement.Duration", key.toString(), 1);
+		assertThat(reporter.report()).isTrue();
+		assertThat(String.join("", receive())).doesNotContain("xxx");
+		assertThat(registry.get("metrics.Reporter.OversizedLines", "InfluxDbUdp")).isEqualTo(1);
+	}
+
+	/**
+	 * Should fail and not mark as reported when packets are dropped.
+	 *
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	@Test
+	public void shouldFailWhenPacketsAreDropped() throws IOException {
+		reporter.setChangedOnly(true);
+		registry.add("jdbc.Statement.Duration", "select", 123);
+		assertThat(reporter.report()).isTrue();
+		assertThat(String.join("", receive())).contains("type_instance=select value=123i");
+		long cursor = reporter.getCursor();
+		registry.add("jdbc.Statement.Duration", "select", 1);
+		// sending on a closed channel fails, so the packets are dropped
+		reporter.shutdown();
+		assertThat(reporter.report()).isFalse();
+		assertThat(receive()).isEmpty();
+		assertThat(reporter.getCursor()).isEqualTo(cursor);
+		assertThat(registry.get("metrics.Reporter.DroppedPackets", "InfluxDbUdp")).isGreaterThan(0);
+		assertThat(registry.get("metrics.Reporter.Errors", "InfluxDbUdpReporter")).isEqualTo(1);
+	}
+}
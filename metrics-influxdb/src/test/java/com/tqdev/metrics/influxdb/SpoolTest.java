@@ -0,0 +1,93 @@
+/* Copyright (C) 2017 Maurits van der Schee
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.tqdev.metrics.influxdb;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class SpoolTest {
+
+	Spool spool;
+
+	@Before
+	public void setUp() {
+		spool = new Spool(32);
+	}
+
+	private void add(String record) {
+		byte[] bytes = record.getBytes(StandardCharsets.UTF_8);
+		spool.add(bytes, bytes.length);
+	}
+
+	private String read(int maxBytes) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		spool.read(out, maxBytes);
+		return new String(out.toByteArray(), StandardCharsets.UTF_8);
+	}
+
+	@Test
+	public void shouldReadRecordsInOrder() throws IOException {
+		add("first");
+		add("second");
+		assertThat(read(100)).isEqualTo("firstsecond");
+		assertThat(read(5)).isEqualTo("first");
+		assertThat(read(0)).isEqualTo("first");
+		assertThat(spool.size()).isEqualTo(2);
+	}
+
+	@Test
+	public void shouldDropOldestRecordsWhenFull() throws IOException {
+		add("0123456789");
+		add("abcdefghij");
+		add("ABCDEFGHIJ");
+		assertThat(spool.size()).isEqualTo(2);
+		assertThat(spool.getDropped()).isEqualTo(1);
+		assertThat(read(100)).isEqualTo("abcdefghijABCDEFGHIJ");
+	}
+
+	@Test
+	public void shouldNotRemoveRecordsAddedAfterRead() throws IOException {
+		add("0123456789");
+		long sequence = spool.read(new ByteArrayOutputStream(), 100);
+		add("abcdefghij");
+		add("ABCDEFGHIJ");
+		spool.remove(sequence);
+		assertThat(read(100)).isEqualTo("abcdefghijABCDEFGHIJ");
+		sequence = spool.read(new ByteArrayOutputStream(), 100);
+		spool.remove(sequence);
+		assertThat(spool.size()).isEqualTo(0);
+		add("wrapped around");
+		assertThat(read(100)).isEqualTo("wrapped around");
+	}
+
+	@Test
+	public void shouldNotAddRecordsLargerThanSpool() {
+		add("a record that is larger than the spool");
+		assertThat(spool.size()).isEqualTo(0);
+		assertThat(spool.getDropped()).isEqualTo(1);
+	}
+}
@@ -43,6 +43,7 @@ import java.sql.Timestamp;
 import java.util.Calendar;
 
 import com.tqdev.metrics.core.MetricRegistry;
+import com.tqdev.metrics.core.Timer;
 
 /**
  * Instrumentation wrapper class for {@link PreparedStatement}.
@@ -55,6 +56,9 @@ public class InstrumentedPreparedStatement extends InstrumentedStatement impleme
 	/** The wrapped prepared statement. */
 	private final PreparedStatement preparedStatement;
 
+	/** The timer of the sql (resolved on first execution). */
+	private Timer timer;
+
 	/**
 	 * Instantiates a new instrumented prepared statement.
 	 *
@@ -78,7 +82,7 @@ public class InstrumentedPreparedStatement extends InstrumentedStatement impleme
 	 */
 	@Override
 	public ResultSet executeQuery() throws SQLException {
-		return timedExecute(sql, preparedStatement::executeQuery);
+		return instrument(sql, timedExecute(preparedStatement::executeQuery));
 	}
 
 	/*
@@ -88,7 +92,7 @@ public class InstrumentedPreparedStatement extends InstrumentedStatement impleme
 	 */
 	@Override
 	public int executeUpdate() throws SQLException {
-		return timedExecute(sql, preparedStatement::executeUpdate);
+		return timedExecute(preparedStatement::executeUpdate);
 	}
 
 	/*
@@ -98,7 +102,7 @@ public class InstrumentedPreparedStatement extends InstrumentedStatement impleme
 	 */
 	@Override
 	public boolean execute() throws SQLException {
-		return timedExecute(sql, preparedStatement::execute);
+		return timedExecute(preparedStatement::execute);
 	}
 
 	/*
@@ -108,7 +112,26 @@ public class InstrumentedPreparedStatement extends InstrumentedStatement impleme
 	 */
 	@Override
 	public long executeLargeUpdate() throws SQLException {
-		return timedExecute(sql, preparedStatement::executeLargeUpdate);
+		return timedExecute(preparedStatement::executeLargeUpdate);
+	}
+
+	/**
+	 * Timed execute on the timer of the sql of this prepared statement.
+	 *
+	 * @param <C>
+	 *            the generic type
+	 * @param f
+	 *            the f
+	 * @return the c
+	 * @throws SQLException
+	 *             the SQL exception
+	 */
+	private <C> C timedExecute(SqlHandler<C> f) throws SQLException {
+		executing(sql);
+		if (timer == null) {
+			timer = registry.timer("jdbc.Statement", SqlNormalizer.getInstance().normalize(sql));
+		}
+		return timedExecute(timer, f);
 	}
 
 	//
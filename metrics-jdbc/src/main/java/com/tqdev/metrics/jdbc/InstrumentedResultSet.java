@@ -0,0 +1,2111 @@
+/* Copyright (C) 2017 Maurits van der Schee
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.tqdev.metrics.jdbc;
+
+import java.io.InputStream;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.net.URL;
+import java.sql.Array;
+import java.sql.Blob;
+import java.sql.Clob;
+import java.sql.Date;
+import java.sql.NClob;
+import java.sql.Ref;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.RowId;
+import java.sql.SQLException;
+import java.sql.SQLType;
+import java.sql.SQLWarning;
+import java.sql.SQLXML;
+import java.sql.Statement;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.util.Calendar;
+import java.util.Map;
+
+import com.tqdev.metrics.core.MetricRegistry;
+
+/**
+ * Instrumentation wrapper class for {@link ResultSet}. It counts the rows
+ * that are fetched and the time that is spent in {@link #next()} in plain
+ * fields, so that iterating has (almost) no overhead. When the result set is
+ * closed (or its statement is closed or executed again) the time is recorded
+ * in the timer "jdbc.ResultSet" and the rows are added to
+ * "jdbc.ResultSet.Rows", both under the key of the statement.
+ */
+public class InstrumentedResultSet implements ResultSet {
+
+	/** The wrapped result set. */
+	private final ResultSet resultSet;
+
+	/** The (instrumented) statement that created the result set. */
+	private final Statement statement;
+
+	/** The metric registry. */
+	private final MetricRegistry registry;
+
+	/** The key of the statement. */
+	private final String key;
+
+	/** The number of fetched rows. */
+	private long rows;
+
+	/** The time spent fetching rows in nanoseconds. */
+	private long nanos;
+
+	/** Whether the metrics are recorded. */
+	private boolean recorded;
+
+	/**
+	 * Instantiates a new instrumented result set.
+	 *
+	 * @param resultSet
+	 *            the result set
+	 * @param statement
+	 *            the statement
+	 * @param registry
+	 *            the registry
+	 * @param key
+	 *            the key
+	 */
+	InstrumentedResultSet(ResultSet resultSet, Statement statement, MetricRegistry registry, String key) {
+		this.resultSet = resultSet;
+		this.statement = statement;
+		this.registry = registry;
+		this.key = key;
+	}
+
+	/**
+	 * Records the fetched rows and the time spent fetching them (once).
+	 */
+	void record() {
+		if (recorded) {
+			return;
+		}
+		recorded = true;
+		if (!registry.isEnabled()) {
+			return;
+		}
+		registry.record("jdbc.ResultSet", key, nanos);
+		registry.add("jdbc.ResultSet.Rows", key, rows);
+	}
+
+	/**
+	 * Checks if this instruments the given result set.
+	 *
+	 * @param resultSet
+	 *            the result set
+	 * @return true, if this wraps the result set
+	 */
+	boolean instruments(ResultSet resultSet) {
+		return this.resultSet == resultSet;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#next()
+	 */
+	@Override
+	public boolean next() throws SQLException {
+		long start = registry.getNanos();
+		try {
+			boolean next = resultSet.next();
+			if (next) {
+				rows++;
+			}
+			return next;
+		} finally {
+			nanos += registry.getNanos() - start;
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#close()
+	 */
+	@Override
+	public void close() throws SQLException {
+		record();
+		resultSet.close();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#wasNull()
+	 */
+	@Override
+	public boolean wasNull() throws SQLException {
+		return resultSet.wasNull();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#getString(int)
+	 */
+	@Override
+	public String getString(int columnIndex) throws SQLException {
+		return resultSet.getString(columnIndex);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#getBoolean(int)
+	 */
+	@Override
+	public boolean getBoolean(int columnIndex) throws SQLException {
+		return resultSet.getBoolean(columnIndex);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#getByte(int)
+	 */
+	@Override
+	public byte getByte(int columnIndex) throws SQLException {
+		return resultSet.getByte(columnIndex);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#getShort(int)
+	 */
+	@Override
+	public short getShort(int columnIndex) throws SQLException {
+		return resultSet.getShort(columnIndex);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#getInt(int)
+	 */
+	@Override
+	public int getInt(int columnIndex) throws SQLException {
+		return resultSet.getInt(columnIndex);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#getLong(int)
+	 */
+	@Override
+	public long getLong(int columnIndex) throws SQLException {
+		return resultSet.getLong(columnIndex);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#getFloat(int)
+	 */
+	@Override
+	public float getFloat(int columnIndex) throws SQLException {
+		return resultSet.getFloat(columnIndex);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#getDouble(int)
+	 */
+	@Override
+	public double getDouble(int columnIndex) throws SQLException {
+		return resultSet.getDouble(columnIndex);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#getBigDecimal(int, int)
+	 */
+	@Override
+	@Deprecated
+	public BigDecimal getBigDecimal(int columnIndex, int scale) throws SQLException {
+		return resultSet.getBigDecimal(columnIndex, scale);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#getBytes(int)
+	 */
+	@Override
+	public byte[] getBytes(int columnIndex) throws SQLException {
+		return resultSet.getBytes(columnIndex);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#getDate(int)
+	 */
+	@Override
+	public Date getDate(int columnIndex) throws SQLException {
+		return resultSet.getDate(columnIndex);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#getTime(int)
+	 */
+	@Override
+	public Time getTime(int columnIndex) throws SQLException {
+		return resultSet.getTime(columnIndex);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#getTimestamp(int)
+	 */
+	@Override
+	public Timestamp getTimestamp(int columnIndex) throws SQLException {
+		return resultSet.getTimestamp(columnIndex);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#getAsciiStream(int)
+	 */
+	@Override
+	public InputStream getAsciiStream(int columnIndex) throws SQLException {
+		return resultSet.getAsciiStream(columnIndex);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#getUnicodeStream(int)
+	 */
+	@Override
+	@Deprecated
+	public InputStream getUnicodeStream(int columnIndex) throws SQLException {
+		return resultSet.getUnicodeStream(columnIndex);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#getBinaryStream(int)
+	 */
+	@Override
+	public InputStream getBinaryStream(int columnIndex) throws SQLException {
+		return resultSet.getBinaryStream(columnIndex);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#getString(java.lang.String)
+	 */
+	@Override
+	public String getString(String columnLabel) throws SQLException {
+		return resultSet.getString(columnLabel);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#getBoolean(java.lang.String)
+	 */
+	@Override
+	public boolean getBoolean(String columnLabel) throws SQLException {
+		return resultSet.getBoolean(columnLabel);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#getByte(java.lang.String)
+	 */
+	@Override
+	public byte getByte(String columnLabel) throws SQLException {
+		return resultSet.getByte(columnLabel);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#getShort(java.lang.String)
+	 */
+	@Override
+	public short getShort(String columnLabel) throws SQLException {
+		return resultSet.getShort(columnLabel);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#getInt(java.lang.String)
+	 */
+	@Override
+	public int getInt(String columnLabel) throws SQLException {
+		return resultSet.getInt(columnLabel);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#getLong(java.lang.String)
+	 */
+	@Override
+	public long getLong(String columnLabel) throws SQLException {
+		return resultSet.getLong(columnLabel);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#getFloat(java.lang.String)
+	 */
+	@Override
+	public float getFloat(String columnLabel) throws SQLException {
+		return resultSet.getFloat(columnLabel);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#getDouble(java.lang.String)
+	 */
+	@Override
+	public double getDouble(String columnLabel) throws SQLException {
+		return resultSet.getDouble(columnLabel);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#getBigDecimal(java.lang.String, int)
+	 */
+	@Override
+	@Deprecated
+	public BigDecimal getBigDecimal(String columnLabel, int scale) throws SQLException {
+		return resultSet.getBigDecimal(columnLabel, scale);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#getBytes(java.lang.String)
+	 */
+	@Override
+	public byte[] getBytes(String columnLabel) throws SQLException {
+		return resultSet.getBytes(columnLabel);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#getDate(java.lang.String)
+	 */
+	@Override
+	public Date getDate(String columnLabel) throws SQLException {
+		return resultSet.getDate(columnLabel);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#getTime(java.lang.String)
+	 */
+	@Override
+	public Time getTime(String columnLabel) throws SQLException {
+		return resultSet.getTime(columnLabel);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#getTimestamp(java.lang.String)
+	 */
+	@Override
+	public Timestamp getTimestamp(String columnLabel) throws SQLException {
+		return resultSet.getTimestamp(columnLabel);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#getAsciiStream(java.lang.String)
+	 */
+	@Override
+	public InputStream getAsciiStream(String columnLabel) throws SQLException {
+		return resultSet.getAsciiStream(columnLabel);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#getUnicodeStream(java.lang.String)
+	 */
+	@Override
+	@Deprecated
+	public InputStream getUnicodeStream(String columnLabel) throws SQLException {
+		return resultSet.getUnicodeStream(columnLabel);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#getBinaryStream(java.lang.String)
+	 */
+	@Override
+	public InputStream getBinaryStream(String columnLabel) throws SQLException {
+		return resultSet.getBinaryStream(columnLabel);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#getWarnings()
+	 */
+	@Override
+	public SQLWarning getWarnings() throws SQLException {
+		return resultSet.getWarnings();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#clearWarnings()
+	 */
+	@Override
+	public void clearWarnings() throws SQLException {
+		resultSet.clearWarnings();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#getCursorName()
+	 */
+	@Override
+	public String getCursorName() throws SQLException {
+		return resultSet.getCursorName();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#getMetaData()
+	 */
+	@Override
+	public ResultSetMetaData getMetaData() throws SQLException {
+		return resultSet.getMetaData();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#getObject(int)
+	 */
+	@Override
+	public Object getObject(int columnIndex) throws SQLException {
+		return resultSet.getObject(columnIndex);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#getObject(java.lang.String)
+	 */
+	@Override
+	public Object getObject(String columnLabel) throws SQLException {
+		return resultSet.getObject(columnLabel);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#findColumn(java.lang.String)
+	 */
+	@Override
+	public int findColumn(String columnLabel) throws SQLException {
+		return resultSet.findColumn(columnLabel);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#getCharacterStream(int)
+	 */
+	@Override
+	public Reader getCharacterStream(int columnIndex) throws SQLException {
+		return resultSet.getCharacterStream(columnIndex);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#getCharacterStream(java.lang.String)
+	 */
+	@Override
+	public Reader getCharacterStream(String columnLabel) throws SQLException {
+		return resultSet.getCharacterStream(columnLabel);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#getBigDecimal(int)
+	 */
+	@Override
+	public BigDecimal getBigDecimal(int columnIndex) throws SQLException {
+		return resultSet.getBigDecimal(columnIndex);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#getBigDecimal(java.lang.String)
+	 */
+	@Override
+	public BigDecimal getBigDecimal(String columnLabel) throws SQLException {
+		return resultSet.getBigDecimal(columnLabel);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#isBeforeFirst()
+	 */
+	@Override
+	public boolean isBeforeFirst() throws SQLException {
+		return resultSet.isBeforeFirst();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#isAfterLast()
+	 */
+	@Override
+	public boolean isAfterLast() throws SQLException {
+		return resultSet.isAfterLast();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#isFirst()
+	 */
+	@Override
+	public boolean isFirst() throws SQLException {
+		return resultSet.isFirst();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#isLast()
+	 */
+	@Override
+	public boolean isLast() throws SQLException {
+		return resultSet.isLast();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#beforeFirst()
+	 */
+	@Override
+	public void beforeFirst() throws SQLException {
+		resultSet.beforeFirst();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#afterLast()
+	 */
+	@Override
+	public void afterLast() throws SQLException {
+		resultSet.afterLast();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#first()
+	 */
+	@Override
+	public boolean first() throws SQLException {
+		return resultSet.first();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#last()
+	 */
+	@Override
+	public boolean last() throws SQLException {
+		return resultSet.last();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#getRow()
+	 */
+	@Override
+	public int getRow() throws SQLException {
+		return resultSet.getRow();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#absolute(int)
+	 */
+	@Override
+	public boolean absolute(int row) throws SQLException {
+		return resultSet.absolute(row);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#relative(int)
+	 */
+	@Override
+	public boolean relative(int rows) throws SQLException {
+		return resultSet.relative(rows);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#previous()
+	 */
+	@Override
+	public boolean previous() throws SQLException {
+		return resultSet.previous();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#setFetchDirection(int)
+	 */
+	@Override
+	public void setFetchDirection(int direction) throws SQLException {
+		resultSet.setFetchDirection(direction);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#getFetchDirection()
+	 */
+	@Override
+	public int getFetchDirection() throws SQLException {
+		return resultSet.getFetchDirection();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#setFetchSize(int)
+	 */
+	@Override
+	public void setFetchSize(int rows) throws SQLException {
+		resultSet.setFetchSize(rows);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#getFetchSize()
+	 */
+	@Override
+	public int getFetchSize() throws SQLException {
+		return resultSet.getFetchSize();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#getType()
+	 */
+	@Override
+	public int getType() throws SQLException {
+		return resultSet.getType();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#getConcurrency()
+	 */
+	@Override
+	public int getConcurrency() throws SQLException {
+		return resultSet.getConcurrency();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#rowUpdated()
+	 */
+	@Override
+	public boolean rowUpdated() throws SQLException {
+		return resultSet.rowUpdated();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#rowInserted()
+	 */
+	@Override
+	public boolean rowInserted() throws SQLException {
+		return resultSet.rowInserted();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#rowDeleted()
+	 */
+	@Override
+	public boolean rowDeleted() throws SQLException {
+		return resultSet.rowDeleted();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#updateNull(int)
+	 */
+	@Override
+	public void updateNull(int columnIndex) throws SQLException {
+		resultSet.updateNull(columnIndex);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#updateBoolean(int, boolean)
+	 */
+	@Override
+	public void updateBoolean(int columnIndex, boolean x) throws SQLException {
+		resultSet.updateBoolean(columnIndex, x);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#updateByte(int, byte)
+	 */
+	@Override
+	public void updateByte(int columnIndex, byte x) throws SQLException {
+		resultSet.updateByte(columnIndex, x);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#updateShort(int, short)
+	 */
+	@Override
+	public void updateShort(int columnIndex, short x) throws SQLException {
+		resultSet.updateShort(columnIndex, x);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#updateInt(int, int)
+	 */
+	@Override
+	public void updateInt(int columnIndex, int length) throws SQLException {
+		resultSet.updateInt(columnIndex, length);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#updateLong(int, long)
+	 */
+	@Override
+	public void updateLong(int columnIndex, long length) throws SQLException {
+		resultSet.updateLong(columnIndex, length);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#updateFloat(int, float)
+	 */
+	@Override
+	public void updateFloat(int columnIndex, float x) throws SQLException {
+		resultSet.updateFloat(columnIndex, x);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#updateDouble(int, double)
+	 */
+	@Override
+	public void updateDouble(int columnIndex, double x) throws SQLException {
+		resultSet.updateDouble(columnIndex, x);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#updateBigDecimal(int, java.math.BigDecimal)
+	 */
+	@Override
+	public void updateBigDecimal(int columnIndex, BigDecimal x) throws SQLException {
+		resultSet.updateBigDecimal(columnIndex, x);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#updateString(int, java.lang.String)
+	 */
+	@Override
+	public void updateString(int columnIndex, String x) throws SQLException {
+		resultSet.updateString(columnIndex, x);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#updateBytes(int, byte[])
+	 */
+	@Override
+	public void updateBytes(int columnIndex, byte[] x) throws SQLException {
+		resultSet.updateBytes(columnIndex, x);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#updateDate(int, java.sql.Date)
+	 */
+	@Override
+	public void updateDate(int columnIndex, Date x) throws SQLException {
+		resultSet.updateDate(columnIndex, x);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#updateTime(int, java.sql.Time)
+	 */
+	@Override
+	public void updateTime(int columnIndex, Time x) throws SQLException {
+		resultSet.updateTime(columnIndex, x);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#updateTimestamp(int, java.sql.Timestamp)
+	 */
+	@Override
+	public void updateTimestamp(int columnIndex, Timestamp x) throws SQLException {
+		resultSet.updateTimestamp(columnIndex, x);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#updateAsciiStream(int, java.io.InputStream, int)
+	 */
+	@Override
+	public void updateAsciiStream(int columnIndex, InputStream x, int length) throws SQLException {
+		resultSet.updateAsciiStream(columnIndex, x, length);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#updateBinaryStream(int, java.io.InputStream, int)
+	 */
+	@Override
+	public void updateBinaryStream(int columnIndex, InputStream x, int length) throws SQLException {
+		resultSet.updateBinaryStream(columnIndex, x, length);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#updateCharacterStream(int, java.io.Reader, int)
+	 */
+	@Override
+	public void updateCharacterStream(int columnIndex, Reader x, int length) throws SQLException {
+		resultSet.updateCharacterStream(columnIndex, x, length);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#updateObject(int, java.lang.Object, int)
+	 */
+	@Override
+	public void updateObject(int columnIndex, Object x, int scaleOrLength) throws SQLException {
+		resultSet.updateObject(columnIndex, x, scaleOrLength);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#updateObject(int, java.lang.Object)
+	 */
+	@Override
+	public void updateObject(int columnIndex, Object x) throws SQLException {
+		resultSet.updateObject(columnIndex, x);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#updateNull(java.lang.String)
+	 */
+	@Override
+	public void updateNull(String columnLabel) throws SQLException {
+		resultSet.updateNull(columnLabel);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#updateBoolean(java.lang.String, boolean)
+	 */
+	@Override
+	public void updateBoolean(String columnLabel, boolean x) throws SQLException {
+		resultSet.updateBoolean(columnLabel, x);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#updateByte(java.lang.String, byte)
+	 */
+	@Override
+	public void updateByte(String columnLabel, byte x) throws SQLException {
+		resultSet.updateByte(columnLabel, x);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#updateShort(java.lang.String, short)
+	 */
+	@Override
+	public void updateShort(String columnLabel, short x) throws SQLException {
+		resultSet.updateShort(columnLabel, x);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#updateInt(java.lang.String, int)
+	 */
+	@Override
+	public void updateInt(String columnLabel, int length) throws SQLException {
+		resultSet.updateInt(columnLabel, length);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#updateLong(java.lang.String, long)
+	 */
+	@Override
+	public void updateLong(String columnLabel, long length) throws SQLException {
+		resultSet.updateLong(columnLabel, length);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#updateFloat(java.lang.String, float)
+	 */
+	@Override
+	public void updateFloat(String columnLabel, float x) throws SQLException {
+		resultSet.updateFloat(columnLabel, x);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#updateDouble(java.lang.String, double)
+	 */
+	@Override
+	public void updateDouble(String columnLabel, double x) throws SQLException {
+		resultSet.updateDouble(columnLabel, x);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#updateBigDecimal(java.lang.String,
+	 * java.math.BigDecimal)
+	 */
+	@Override
+	public void updateBigDecimal(String columnLabel, BigDecimal x) throws SQLException {
+		resultSet.updateBigDecimal(columnLabel, x);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#updateString(java.lang.String, java.lang.String)
+	 */
+	@Override
+	public void updateString(String columnLabel, String x) throws SQLException {
+		resultSet.updateString(columnLabel, x);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#updateBytes(java.lang.String, byte[])
+	 */
+	@Override
+	public void updateBytes(String columnLabel, byte[] x) throws SQLException {
+		resultSet.updateBytes(columnLabel, x);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#updateDate(java.lang.String, java.sql.Date)
+	 */
+	@Override
+	public void updateDate(String columnLabel, Date x) throws SQLException {
+		resultSet.updateDate(columnLabel, x);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#updateTime(java.lang.String, java.sql.Time)
+	 */
+	@Override
+	public void updateTime(String columnLabel, Time x) throws SQLException {
+		resultSet.updateTime(columnLabel, x);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#updateTimestamp(java.lang.String,
+	 * java.sql.Timestamp)
+	 */
+	@Override
+	public void updateTimestamp(String columnLabel, Timestamp x) throws SQLException {
+		resultSet.updateTimestamp(columnLabel, x);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#updateAsciiStream(java.lang.String,
+	 * java.io.InputStream, int)
+	 */
+	@Override
+	public void updateAsciiStream(String columnLabel, InputStream x, int length) throws SQLException {
+		resultSet.updateAsciiStream(columnLabel, x, length);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#updateBinaryStream(java.lang.String,
+	 * java.io.InputStream, int)
+	 */
+	@Override
+	public void updateBinaryStream(String columnLabel, InputStream x, int length) throws SQLException {
+		resultSet.updateBinaryStream(columnLabel, x, length);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#updateCharacterStream(java.lang.String,
+	 * java.io.Reader, int)
+	 */
+	@Override
+	public void updateCharacterStream(String columnLabel, Reader x, int length) throws SQLException {
+		resultSet.updateCharacterStream(columnLabel, x, length);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#updateObject(java.lang.String, java.lang.Object,
+	 * int)
+	 */
+	@Override
+	public void updateObject(String columnLabel, Object x, int scaleOrLength) throws SQLException {
+		resultSet.updateObject(columnLabel, x, scaleOrLength);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#updateObject(java.lang.String, java.lang.Object)
+	 */
+	@Override
+	public void updateObject(String columnLabel, Object x) throws SQLException {
+		resultSet.updateObject(columnLabel, x);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#insertRow()
+	 */
+	@Override
+	public void insertRow() throws SQLException {
+		resultSet.insertRow();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#updateRow()
+	 */
+	@Override
+	public void updateRow() throws SQLException {
+		resultSet.updateRow();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#deleteRow()
+	 */
+	@Override
+	public void deleteRow() throws SQLException {
+		resultSet.deleteRow();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#refreshRow()
+	 */
+	@Override
+	public void refreshRow() throws SQLException {
+		resultSet.refreshRow();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#cancelRowUpdates()
+	 */
+	@Override
+	public void cancelRowUpdates() throws SQLException {
+		resultSet.cancelRowUpdates();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#moveToInsertRow()
+	 */
+	@Override
+	public void moveToInsertRow() throws SQLException {
+		resultSet.moveToInsertRow();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#moveToCurrentRow()
+	 */
+	@Override
+	public void moveToCurrentRow() throws SQLException {
+		resultSet.moveToCurrentRow();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#getStatement()
+	 */
+	@Override
+	public Statement getStatement() throws SQLException {
+		return statement;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#getObject(int, java.util.Map)
+	 */
+	@Override
+	public Object getObject(int columnIndex, Map<String, Class<?>> map) throws SQLException {
+		return resultSet.getObject(columnIndex, map);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#getRef(int)
+	 */
+	@Override
+	public Ref getRef(int columnIndex) throws SQLException {
+		return resultSet.getRef(columnIndex);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#getBlob(int)
+	 */
+	@Override
+	public Blob getBlob(int columnIndex) throws SQLException {
+		return resultSet.getBlob(columnIndex);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#getClob(int)
+	 */
+	@Override
+	public Clob getClob(int columnIndex) throws SQLException {
+		return resultSet.getClob(columnIndex);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#getArray(int)
+	 */
+	@Override
+	public Array getArray(int columnIndex) throws SQLException {
+		return resultSet.getArray(columnIndex);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#getObject(java.lang.String, java.util.Map)
+	 */
+	@Override
+	public Object getObject(String columnLabel, Map<String, Class<?>> map) throws SQLException {
+		return resultSet.getObject(columnLabel, map);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#getRef(java.lang.String)
+	 */
+	@Override
+	public Ref getRef(String columnLabel) throws SQLException {
+		return resultSet.getRef(columnLabel);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#getBlob(java.lang.String)
+	 */
+	@Override
+	public Blob getBlob(String columnLabel) throws SQLException {
+		return resultSet.getBlob(columnLabel);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#getClob(java.lang.String)
+	 */
+	@Override
+	public Clob getClob(String columnLabel) throws SQLException {
+		return resultSet.getClob(columnLabel);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#getArray(java.lang.String)
+	 */
+	@Override
+	public Array getArray(String columnLabel) throws SQLException {
+		return resultSet.getArray(columnLabel);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#getDate(int, java.util.Calendar)
+	 */
+	@Override
+	public Date getDate(int columnIndex, Calendar cal) throws SQLException {
+		return resultSet.getDate(columnIndex, cal);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#getDate(java.lang.String, java.util.Calendar)
+	 */
+	@Override
+	public Date getDate(String columnLabel, Calendar cal) throws SQLException {
+		return resultSet.getDate(columnLabel, cal);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#getTime(int, java.util.Calendar)
+	 */
+	@Override
+	public Time getTime(int columnIndex, Calendar cal) throws SQLException {
+		return resultSet.getTime(columnIndex, cal);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#getTime(java.lang.String, java.util.Calendar)
+	 */
+	@Override
+	public Time getTime(String columnLabel, Calendar cal) throws SQLException {
+		return resultSet.getTime(columnLabel, cal);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#getTimestamp(int, java.util.Calendar)
+	 */
+	@Override
+	public Timestamp getTimestamp(int columnIndex, Calendar cal) throws SQLException {
+		return resultSet.getTimestamp(columnIndex, cal);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#getTimestamp(java.lang.String,
+	 * java.util.Calendar)
+	 */
+	@Override
+	public Timestamp getTimestamp(String columnLabel, Calendar cal) throws SQLException {
+		return resultSet.getTimestamp(columnLabel, cal);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#getURL(int)
+	 */
+	@Override
+	public URL getURL(int columnIndex) throws SQLException {
+		return resultSet.getURL(columnIndex);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#getURL(java.lang.String)
+	 */
+	@Override
+	public URL getURL(String columnLabel) throws SQLException {
+		return resultSet.getURL(columnLabel);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#updateRef(int, java.sql.Ref)
+	 */
+	@Override
+	public void updateRef(int columnIndex, Ref x) throws SQLException {
+		resultSet.updateRef(columnIndex, x);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#updateRef(java.lang.String, java.sql.Ref)
+	 */
+	@Override
+	public void updateRef(String columnLabel, Ref x) throws SQLException {
+		resultSet.updateRef(columnLabel, x);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#updateBlob(int, java.sql.Blob)
+	 */
+	@Override
+	public void updateBlob(int columnIndex, Blob x) throws SQLException {
+		resultSet.updateBlob(columnIndex, x);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#updateBlob(java.lang.String, java.sql.Blob)
+	 */
+	@Override
+	public void updateBlob(String columnLabel, Blob x) throws SQLException {
+		resultSet.updateBlob(columnLabel, x);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#updateClob(int, java.sql.Clob)
+	 */
+	@Override
+	public void updateClob(int columnIndex, Clob x) throws SQLException {
+		resultSet.updateClob(columnIndex, x);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#updateClob(java.lang.String, java.sql.Clob)
+	 */
+	@Override
+	public void updateClob(String columnLabel, Clob x) throws SQLException {
+		resultSet.updateClob(columnLabel, x);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#updateArray(int, java.sql.Array)
+	 */
+	@Override
+	public void updateArray(int columnIndex, Array x) throws SQLException {
+		resultSet.updateArray(columnIndex, x);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#updateArray(java.lang.String, java.sql.Array)
+	 */
+	@Override
+	public void updateArray(String columnLabel, Array x) throws SQLException {
+		resultSet.updateArray(columnLabel, x);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#getRowId(int)
+	 */
+	@Override
+	public RowId getRowId(int columnIndex) throws SQLException {
+		return resultSet.getRowId(columnIndex);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#getRowId(java.lang.String)
+	 */
+	@Override
+	public RowId getRowId(String columnLabel) throws SQLException {
+		return resultSet.getRowId(columnLabel);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#updateRowId(int, java.sql.RowId)
+	 */
+	@Override
+	public void updateRowId(int columnIndex, RowId x) throws SQLException {
+		resultSet.updateRowId(columnIndex, x);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#updateRowId(java.lang.String, java.sql.RowId)
+	 */
+	@Override
+	public void updateRowId(String columnLabel, RowId x) throws SQLException {
+		resultSet.updateRowId(columnLabel, x);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#getHoldability()
+	 */
+	@Override
+	public int getHoldability() throws SQLException {
+		return resultSet.getHoldability();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#isClosed()
+	 */
+	@Override
+	public boolean isClosed() throws SQLException {
+		return resultSet.isClosed();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#updateNString(int, java.lang.String)
+	 */
+	@Override
+	public void updateNString(int columnIndex, String nString) throws SQLException {
+		resultSet.updateNString(columnIndex, nString);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#updateNString(java.lang.String, java.lang.String)
+	 */
+	@Override
+	public void updateNString(String columnLabel, String nString) throws SQLException {
+		resultSet.updateNString(columnLabel, nString);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#updateNClob(int, java.sql.NClob)
+	 */
+	@Override
+	public void updateNClob(int columnIndex, NClob nClob) throws SQLException {
+		resultSet.updateNClob(columnIndex, nClob);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#updateNClob(java.lang.String, java.sql.NClob)
+	 */
+	@Override
+	public void updateNClob(String columnLabel, NClob nClob) throws SQLException {
+		resultSet.updateNClob(columnLabel, nClob);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#getNClob(int)
+	 */
+	@Override
+	public NClob getNClob(int columnIndex) throws SQLException {
+		return resultSet.getNClob(columnIndex);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#getNClob(java.lang.String)
+	 */
+	@Override
+	public NClob getNClob(String columnLabel) throws SQLException {
+		return resultSet.getNClob(columnLabel);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#getSQLXML(int)
+	 */
+	@Override
+	public SQLXML getSQLXML(int columnIndex) throws SQLException {
+		return resultSet.getSQLXML(columnIndex);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#getSQLXML(java.lang.String)
+	 */
+	@Override
+	public SQLXML getSQLXML(String columnLabel) throws SQLException {
+		return resultSet.getSQLXML(columnLabel);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#updateSQLXML(int, java.sql.SQLXML)
+	 */
+	@Override
+	public void updateSQLXML(int columnIndex, SQLXML xmlObject) throws SQLException {
+		resultSet.updateSQLXML(columnIndex, xmlObject);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#updateSQLXML(java.lang.String, java.sql.SQLXML)
+	 */
+	@Override
+	public void updateSQLXML(String columnLabel, SQLXML xmlObject) throws SQLException {
+		resultSet.updateSQLXML(columnLabel, xmlObject);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#getNString(int)
+	 */
+	@Override
+	public String getNString(int columnIndex) throws SQLException {
+		return resultSet.getNString(columnIndex);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#getNString(java.lang.String)
+	 */
+	@Override
+	public String getNString(String columnLabel) throws SQLException {
+		return resultSet.getNString(columnLabel);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#getNCharacterStream(int)
+	 */
+	@Override
+	public Reader getNCharacterStream(int columnIndex) throws SQLException {
+		return resultSet.getNCharacterStream(columnIndex);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#getNCharacterStream(java.lang.String)
+	 */
+	@Override
+	public Reader getNCharacterStream(String columnLabel) throws SQLException {
+		return resultSet.getNCharacterStream(columnLabel);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#updateNCharacterStream(int, java.io.Reader, long)
+	 */
+	@Override
+	public void updateNCharacterStream(int columnIndex, Reader x, long length) throws SQLException {
+		resultSet.updateNCharacterStream(columnIndex, x, length);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#updateNCharacterStream(java.lang.String,
+	 * java.io.Reader, long)
+	 */
+	@Override
+	public void updateNCharacterStream(String columnLabel, Reader x, long length) throws SQLException {
+		resultSet.updateNCharacterStream(columnLabel, x, length);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#updateAsciiStream(int, java.io.InputStream, long)
+	 */
+	@Override
+	public void updateAsciiStream(int columnIndex, InputStream x, long length) throws SQLException {
+		resultSet.updateAsciiStream(columnIndex, x, length);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#updateBinaryStream(int, java.io.InputStream,
+	 * long)
+	 */
+	@Override
+	public void updateBinaryStream(int columnIndex, InputStream x, long length) throws SQLException {
+		resultSet.updateBinaryStream(columnIndex, x, length);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#updateCharacterStream(int, java.io.Reader, long)
+	 */
+	@Override
+	public void updateCharacterStream(int columnIndex, Reader x, long length) throws SQLException {
+		resultSet.updateCharacterStream(columnIndex, x, length);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#updateAsciiStream(java.lang.String,
+	 * java.io.InputStream, long)
+	 */
+	@Override
+	public void updateAsciiStream(String columnLabel, InputStream x, long length) throws SQLException {
+		resultSet.updateAsciiStream(columnLabel, x, length);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#updateBinaryStream(java.lang.String,
+	 * java.io.InputStream, long)
+	 */
+	@Override
+	public void updateBinaryStream(String columnLabel, InputStream x, long length) throws SQLException {
+		resultSet.updateBinaryStream(columnLabel, x, length);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#updateCharacterStream(java.lang.String,
+	 * java.io.Reader, long)
+	 */
+	@Override
+	public void updateCharacterStream(String columnLabel, Reader x, long length) throws SQLException {
+		resultSet.updateCharacterStream(columnLabel, x, length);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#updateBlob(int, java.io.InputStream, long)
+	 */
+	@Override
+	public void updateBlob(int columnIndex, InputStream inputStream, long length) throws SQLException {
+		resultSet.updateBlob(columnIndex, inputStream, length);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#updateBlob(java.lang.String,
+	 * java.io.InputStream, long)
+	 */
+	@Override
+	public void updateBlob(String columnLabel, InputStream inputStream, long length) throws SQLException {
+		resultSet.updateBlob(columnLabel, inputStream, length);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#updateClob(int, java.io.Reader, long)
+	 */
+	@Override
+	public void updateClob(int columnIndex, Reader reader, long length) throws SQLException {
+		resultSet.updateClob(columnIndex, reader, length);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#updateClob(java.lang.String, java.io.Reader,
+	 * long)
+	 */
+	@Override
+	public void updateClob(String columnLabel, Reader reader, long length) throws SQLException {
+		resultSet.updateClob(columnLabel, reader, length);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#updateNClob(int, java.io.Reader, long)
+	 */
+	@Override
+	public void updateNClob(int columnIndex, Reader reader, long length) throws SQLException {
+		resultSet.updateNClob(columnIndex, reader, length);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#updateNClob(java.lang.String, java.io.Reader,
+	 * long)
+	 */
+	@Override
+	public void updateNClob(String columnLabel, Reader reader, long length) throws SQLException {
+		resultSet.updateNClob(columnLabel, reader, length);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#updateNCharacterStream(int, java.io.Reader)
+	 */
+	@Override
+	public void updateNCharacterStream(int columnIndex, Reader x) throws SQLException {
+		resultSet.updateNCharacterStream(columnIndex, x);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#updateNCharacterStream(java.lang.String,
+	 * java.io.Reader)
+	 */
+	@Override
+	public void updateNCharacterStream(String columnLabel, Reader x) throws SQLException {
+		resultSet.updateNCharacterStream(columnLabel, x);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#updateAsciiStream(int, java.io.InputStream)
+	 */
+	@Override
+	public void updateAsciiStream(int columnIndex, InputStream x) throws SQLException {
+		resultSet.updateAsciiStream(columnIndex, x);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#updateBinaryStream(int, java.io.InputStream)
+	 */
+	@Override
+	public void updateBinaryStream(int columnIndex, InputStream x) throws SQLException {
+		resultSet.updateBinaryStream(columnIndex, x);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#updateCharacterStream(int, java.io.Reader)
+	 */
+	@Override
+	public void updateCharacterStream(int columnIndex, Reader x) throws SQLException {
+		resultSet.updateCharacterStream(columnIndex, x);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#updateAsciiStream(java.lang.String,
+	 * java.io.InputStream)
+	 */
+	@Override
+	public void updateAsciiStream(String columnLabel, InputStream x) throws SQLException {
+		resultSet.updateAsciiStream(columnLabel, x);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#updateBinaryStream(java.lang.String,
+	 * java.io.InputStream)
+	 */
+	@Override
+	public void updateBinaryStream(String columnLabel, InputStream x) throws SQLException {
+		resultSet.updateBinaryStream(columnLabel, x);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#updateCharacterStream(java.lang.String,
+	 * java.io.Reader)
+	 */
+	@Override
+	public void updateCharacterStream(String columnLabel, Reader x) throws SQLException {
+		resultSet.updateCharacterStream(columnLabel, x);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#updateBlob(int, java.io.InputStream)
+	 */
+	@Override
+	public void updateBlob(int columnIndex, InputStream inputStream) throws SQLException {
+		resultSet.updateBlob(columnIndex, inputStream);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#updateBlob(java.lang.String, java.io.InputStream)
+	 */
+	@Override
+	public void updateBlob(String columnLabel, InputStream inputStream) throws SQLException {
+		resultSet.updateBlob(columnLabel, inputStream);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#updateClob(int, java.io.Reader)
+	 */
+	@Override
+	public void updateClob(int columnIndex, Reader reader) throws SQLException {
+		resultSet.updateClob(columnIndex, reader);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#updateClob(java.lang.String, java.io.Reader)
+	 */
+	@Override
+	public void updateClob(String columnLabel, Reader reader) throws SQLException {
+		resultSet.updateClob(columnLabel, reader);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#updateNClob(int, java.io.Reader)
+	 */
+	@Override
+	public void updateNClob(int columnIndex, Reader reader) throws SQLException {
+		resultSet.updateNClob(columnIndex, reader);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#updateNClob(java.lang.String, java.io.Reader)
+	 */
+	@Override
+	public void updateNClob(String columnLabel, Reader reader) throws SQLException {
+		resultSet.updateNClob(columnLabel, reader);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#getObject(int, java.lang.Class)
+	 */
+	@Override
+	public <T> T getObject(int columnIndex, Class<T> type) throws SQLException {
+		return resultSet.getObject(columnIndex, type);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#getObject(java.lang.String, java.lang.Class)
+	 */
+	@Override
+	public <T> T getObject(String columnLabel, Class<T> type) throws SQLException {
+		return resultSet.getObject(columnLabel, type);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#updateObject(int, java.lang.Object,
+	 * java.sql.SQLType, int)
+	 */
+	@Override
+	public void updateObject(int columnIndex, Object x, SQLType targetSqlType, int scaleOrLength) throws SQLException {
+		resultSet.updateObject(columnIndex, x, targetSqlType, scaleOrLength);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#updateObject(java.lang.String, java.lang.Object,
+	 * java.sql.SQLType, int)
+	 */
+	@Override
+	public void updateObject(String columnLabel, Object x, SQLType targetSqlType, int scaleOrLength)
+			throws SQLException {
+		resultSet.updateObject(columnLabel, x, targetSqlType, scaleOrLength);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#updateObject(int, java.lang.Object,
+	 * java.sql.SQLType)
+	 */
+	@Override
+	public void updateObject(int columnIndex, Object x, SQLType targetSqlType) throws SQLException {
+		resultSet.updateObject(columnIndex, x, targetSqlType);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.ResultSet#updateObject(java.lang.String, java.lang.Object,
+	 * java.sql.SQLType)
+	 */
+	@Override
+	public void updateObject(String columnLabel, Object x, SQLType targetSqlType) throws SQLException {
+		resultSet.updateObject(columnLabel, x, targetSqlType);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.Wrapper#unwrap(java.lang.Class)
+	 */
+	@Override
+	public <T> T unwrap(Class<T> iface) throws SQLException {
+		return resultSet.unwrap(iface);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.sql.Wrapper#isWrapperFor(java.lang.Class)
+	 */
+	@Override
+	public boolean isWrapperFor(Class<?> iface) throws SQLException {
+		return resultSet.isWrapperFor(iface);
+	}
+}
@@ -23,6 +23,7 @@ package com.tqdev.metrics.jdbc;
 import java.sql.SQLException;
 
 import com.tqdev.metrics.core.MetricRegistry;
+import com.tqdev.metrics.core.Timer;
 
 /**
  * The Class InstrumentedSqlWrapper.
@@ -61,7 +62,8 @@ abstract class InstrumentedSqlWrapper {
 	}
 
 	/**
-	 * Timed execute.
+	 * Timed execute, the duration is recorded under the normalized sql (see
+	 * {@link SqlNormalizer}).
 	 *
 	 * @param <C>
 	 *            the generic type
@@ -82,8 +84,32 @@ abstract class InstrumentedSqlWrapper {
 			return f.execute();
 		} finally {
 			long duration = registry.getNanos() - start;
-			registry.increment("jdbc.Statement.Invocations", sql);
-			registry.add("jdbc.Statement.Durations", sql, duration);
+			registry.record("jdbc.Statement", SqlNormalizer.getInstance().normalize(sql), duration);
+		}
+	}
+
+	/**
+	 * Timed execute on a timer that is resolved in advance.
+	 *
+	 * @param <C>
+	 *            the generic type
+	 * @param timer
+	 *            the timer
+	 * @param f
+	 *            the f
+	 * @return the c
+	 * @throws SQLException
+	 *             the SQL exception
+	 */
+	<C> C timedExecute(Timer timer, SqlHandler<C> f) throws SQLException {
+		if (!registry.isEnabled()) {
+			return f.execute();
+		}
+		long start = registry.getNanos();
+		try {
+			return f.execute();
+		} finally {
+			timer.record(registry.getNanos() - start);
 		}
 	}
 
@@ -41,6 +41,15 @@ public class InstrumentedStatement extends InstrumentedSqlWrapper implements Sta
 	/** The batch statements. */
 	protected List<String> batchStatements = new LinkedList<>();
 
+	/**
+	 * The last result set that is returned by executeQuery or getResultSet
+	 * (or null).
+	 */
+	private InstrumentedResultSet resultSet;
+
+	/** The sql of the last execution (or null). */
+	private String executedSql;
+
 	/**
 	 * Instantiates a new instrumented statement.
 	 *
@@ -61,7 +70,72 @@ public class InstrumentedStatement extends InstrumentedSqlWrapper implements Sta
 	 */
 	@Override
 	public ResultSet executeQuery(String sql) throws SQLException {
-		return timedExecute(sql, () -> statement.executeQuery(sql));
+		return instrument(sql, timedExecute(sql, () -> statement.executeQuery(sql)));
+	}
+
+	/**
+	 * Instruments a result set, so that the rows and the time spent fetching
+	 * them are recorded under the (normalized) sql. The previous result set
+	 * is closed by the execution, so its metrics are recorded.
+	 *
+	 * @param sql
+	 *            the sql
+	 * @param resultSet
+	 *            the result set
+	 * @return the instrumented result set
+	 */
+	ResultSet instrument(String sql, ResultSet resultSet) {
+		closeResultSet();
+		if (resultSet == null || !registry.isEnabled()) {
+			return resultSet;
+		}
+		this.resultSet = new InstrumentedResultSet(resultSet, this, registry,
+				SqlNormalizer.getInstance().normalize(sql));
+		return this.resultSet;
+	}
+
+	/**
+	 * Timed execute, the previous result set is closed by the execution (so
+	 * its metrics are recorded) and the sql is kept to instrument the result
+	 * set that is returned by getResultSet.
+	 *
+	 * @param <C>
+	 *            the generic type
+	 * @param sql
+	 *            the sql
+	 * @param f
+	 *            the f
+	 * @return the c
+	 * @throws SQLException
+	 *             the SQL exception
+	 */
+	@Override
+	<C> C timedExecute(String sql, SqlHandler<C> f) throws SQLException {
+		executing(sql);
+		return super.timedExecute(sql, f);
+	}
+
+	/**
+	 * Records the metrics of the previous result set (as it is closed by the
+	 * execution) and keeps the sql of the execution.
+	 *
+	 * @param sql
+	 *            the sql
+	 */
+	void executing(String sql) {
+		closeResultSet();
+		executedSql = sql;
+	}
+
+	/**
+	 * Records the metrics of the last result set, as it is closed with the
+	 * statement.
+	 */
+	private void closeResultSet() {
+		if (resultSet != null) {
+			resultSet.record();
+			resultSet = null;
+		}
 	}
 
 	/*
@@ -220,6 +294,7 @@ public class InstrumentedStatement extends InstrumentedSqlWrapper implements Sta
 	 */
 	@Override
 	public void close() throws SQLException {
+		closeResultSet();
 		statement.close();
 	}
 
@@ -340,7 +415,14 @@ public class InstrumentedStatement extends InstrumentedSqlWrapper implements Sta
 	 */
 	@Override
 	public ResultSet getResultSet() throws SQLException {
-		return statement.getResultSet();
+		ResultSet resultSet = statement.getResultSet();
+		if (resultSet == null || executedSql == null) {
+			return resultSet;
+		}
+		if (this.resultSet != null && this.resultSet.instruments(resultSet)) {
+			return this.resultSet;
+		}
+		return instrument(executedSql, resultSet);
 	}
 
 	/*
@@ -360,6 +442,7 @@ public class InstrumentedStatement extends InstrumentedSqlWrapper implements Sta
 	 */
 	@Override
 	public boolean getMoreResults() throws SQLException {
+		closeResultSet();
 		return statement.getMoreResults();
 	}
 
@@ -462,6 +545,12 @@ public class InstrumentedStatement extends InstrumentedSqlWrapper implements Sta
 	 */
 	@Override
 	public boolean getMoreResults(int current) throws SQLException {
+		if (current == KEEP_CURRENT_RESULT) {
+			// the result set stays open and records its metrics when closed
+			resultSet = null;
+		} else {
+			closeResultSet();
+		}
 		return statement.getMoreResults(current);
 	}
 
@@ -0,0 +1,363 @@
+/* Copyright (C) 2017 Maurits van der Schee
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.tqdev.metrics.jdbc;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The Class SqlNormalizer turns SQL statements into metric keys. Literals
+ * (strings and numbers) are replaced by a placeholder ("?"), lists of
+ * placeholders after "IN" are collapsed into a single placeholder, comments
+ * are removed and whitespace is collapsed into a single space. This way
+ * statements that are not parameterized (with inline ids) do not create a new
+ * key per execution. The results are cached, so a statement that is executed
+ * repeatedly is normalized only once (the SQL of a statement is usually the
+ * same instance, so lookups are mostly resolved by reference). The results
+ * are also interned, so statements that normalize to the same key share a
+ * single instance of it. Statements that are longer than the maximum length
+ * are normalized, but not cached. When the cache exceeds its maximum size it
+ * is cleared. Note that normalization changes the keys of the "jdbc.Statement"
+ * types (compared to the raw SQL), it can be disabled to keep the raw SQL as
+ * key.
+ */
+public class SqlNormalizer {
+
+	/** The default maximum number of cached statements. */
+	public static final int DEFAULT_MAX_SIZE = 10000;
+
+	/** The default maximum length of cached statements. */
+	public static final int DEFAULT_MAX_LENGTH = 4096;
+
+	/** The placeholder that replaces literals. */
+	private static final char PLACEHOLDER = '?';
+
+	/** The maximum number of cached statements. */
+	private final int maxSize;
+
+	/** The maximum length of cached statements. */
+	private final int maxLength;
+
+	/** The normalized statements. */
+	private final ConcurrentHashMap<String, String> statements;
+
+	/** The canonical instances of the normalized statements. */
+	private final ConcurrentHashMap<String, String> keys;
+
+	/** Whether or not statements are normalized. */
+	private volatile boolean enabled = true;
+
+	/**
+	 * Instantiates a new SQL normalizer with the default maximum size.
+	 */
+	public SqlNormalizer() {
+		this(DEFAULT_MAX_SIZE);
+	}
+
+	/**
+	 * Instantiates a new SQL normalizer with the default maximum length.
+	 *
+	 * @param maxSize
+	 *            the maximum number of cached statements
+	 */
+	public SqlNormalizer(int maxSize) {
+		this(maxSize, DEFAULT_MAX_LENGTH);
+	}
+
+	/**
+	 * Instantiates a new SQL normalizer.
+	 *
+	 * @param maxSize
+	 *            the maximum number of cached statements
+	 * @param maxLength
+	 *            the maximum length of cached statements
+	 */
+	public SqlNormalizer(int maxSize, int maxLength) {
+		this.maxSize = maxSize;
+		this.maxLength = maxLength;
+		this.statements = new ConcurrentHashMap<>();
+		this.keys = new ConcurrentHashMap<>();
+	}
+
+	/**
+	 * Gets the normalized form of a statement (or the statement itself when
+	 * normalization is disabled).
+	 *
+	 * @param sql
+	 *            the sql
+	 * @return the normalized sql
+	 */
+	public String normalize(String sql) {
+		if (!enabled) {
+			return sql;
+		}
+		String normalized = statements.get(sql);
+		if (normalized == null) {
+			normalized = parse(sql);
+			if (sql.length() > maxLength) {
+				return normalized;
+			}
+			if (statements.size() >= maxSize) {
+				statements.clear();
+				keys.clear();
+			}
+			String key = keys.putIfAbsent(normalized, normalized);
+			if (key != null) {
+				normalized = key;
+			}
+			statements.put(sql, normalized);
+		}
+		return normalized;
+	}
+
+	/**
+	 * Checks if statements are normalized.
+	 *
+	 * @return true, if statements are normalized
+	 */
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * Enables or disables normalization, when disabled the raw SQL is used
+	 * as key (as it was before statements were normalized).
+	 *
+	 * @param enabled
+	 *            whether or not statements are normalized
+	 */
+	public void setEnabled(boolean enabled) {
+		this.enabled = enabled;
+	}
+
+	/**
+	 * Gets the number of statements in the cache.
+	 *
+	 * @return the number of statements
+	 */
+	public int size() {
+		return statements.size();
+	}
+
+	/**
+	 * Normalizes a statement (without caching it).
+	 *
+	 * @param sql
+	 *            the sql
+	 * @return the normalized sql
+	 */
+	static String parse(String sql) {
+		int length = sql.length();
+		StringBuilder out = new StringBuilder(length);
+		int[] parentheses = new int[8];
+		int depth = 0;
+		boolean space = false;
+		int i = 0;
+		while (i < length) {
+			char c = sql.charAt(i);
+			if (Character.isWhitespace(c)) {
+				space = out.length() > 0;
+				i++;
+				continue;
+			}
+			if (c == '-' && i + 1 < length && sql.charAt(i + 1) == '-') {
+				while (i < length && sql.charAt(i) != '\n') {
+					i++;
+				}
+				space = out.length() > 0;
+				continue;
+			}
+			if (c == '/' && i + 1 < length && sql.charAt(i + 1) == '*') {
+				int end = sql.indexOf("*/", i + 2);
+				i = (end < 0) ? length : end + 2;
+				space = out.length() > 0;
+				continue;
+			}
+			if (space) {
+				out.append(' ');
+				space = false;
+			}
+			if (c == '\'') {
+				i = skipString(sql, i);
+				out.append(PLACEHOLDER);
+			} else if (c == '"' || c == '`' || c == '[') {
+				int end = sql.indexOf(c == '[' ? ']' : c, i + 1);
+				end = (end < 0) ? length : end + 1;
+				out.append(sql, i, end);
+				i = end;
+			} else if (isDigit(c) || (c == '.' && i + 1 < length && isDigit(sql.charAt(i + 1)))) {
+				i = skipNumber(sql, i);
+				out.append(PLACEHOLDER);
+			} else if (isWordCharacter(c)) {
+				int start = i;
+				while (i < length && isWordCharacter(sql.charAt(i))) {
+					i++;
+				}
+				if (i - start == 1 && i < length && sql.charAt(i) == '\'' && "NnEeXxBb".indexOf(c) >= 0) {
+					// a prefixed string literal (such as N'...' or X'...')
+					i = skipString(sql, i);
+					out.append(PLACEHOLDER);
+				} else {
+					out.append(sql, start, i);
+				}
+			} else if (c == '(') {
+				if (depth == parentheses.length) {
+					parentheses = Arrays.copyOf(parentheses, depth * 2);
+				}
+				parentheses[depth++] = out.length();
+				out.append(c);
+				i++;
+			} else if (c == ')') {
+				if (depth > 0) {
+					collapseList(out, parentheses[--depth]);
+				}
+				out.append(c);
+				i++;
+			} else {
+				out.append(c);
+				i++;
+			}
+		}
+		return out.toString();
+	}
+
+	/**
+	 * Collapses a list of placeholders after "IN" into a single placeholder.
+	 *
+	 * @param out
+	 *            the normalized sql (up to the closing parenthesis)
+	 * @param open
+	 *            the position of the opening parenthesis
+	 */
+	private static void collapseList(StringBuilder out, int open) {
+		int placeholders = 0;
+		for (int i = open + 1; i < out.length(); i++) {
+			char c = out.charAt(i);
+			if (c == PLACEHOLDER) {
+				placeholders++;
+			} else if (c != ',' && c != ' ') {
+				return;
+			}
+		}
+		if (placeholders < 2) {
+			return;
+		}
+		int end = open;
+		if (end > 0 && out.charAt(end - 1) == ' ') {
+			end--;
+		}
+		if (end < 2 || !out.substring(end - 2, end).equalsIgnoreCase("in")
+				|| (end > 2 && isWordCharacter(out.charAt(end - 3)))) {
+			return;
+		}
+		out.setLength(open + 1);
+		out.append(PLACEHOLDER);
+	}
+
+	/**
+	 * Skips a string literal, quotes are escaped by doubling them or (as in
+	 * MySQL) with a backslash.
+	 *
+	 * @param sql
+	 *            the sql
+	 * @param i
+	 *            the position of the opening quote
+	 * @return the position after the closing quote
+	 */
+	private static int skipString(String sql, int i) {
+		int length = sql.length();
+		i++;
+		while (i < length) {
+			if (sql.charAt(i) == '\\') {
+				i += 2;
+				continue;
+			}
+			if (sql.charAt(i) == '\'') {
+				if (i + 1 < length && sql.charAt(i + 1) == '\'') {
+					i += 2;
+					continue;
+				}
+				return i + 1;
+			}
+			i++;
+		}
+		return length;
+	}
+
+	/**
+	 * Skips a numeric literal (including decimals, exponents and hexadecimal
+	 * numbers).
+	 *
+	 * @param sql
+	 *            the sql
+	 * @param i
+	 *            the position of the first character
+	 * @return the position after the literal
+	 */
+	private static int skipNumber(String sql, int i) {
+		int length = sql.length();
+		while (i < length) {
+			char c = sql.charAt(i);
+			if (isDigit(c) || c == '.' || Character.isLetter(c)) {
+				i++;
+			} else if ((c == '+' || c == '-') && (sql.charAt(i - 1) == 'e' || sql.charAt(i - 1) == 'E')) {
+				i++;
+			} else {
+				break;
+			}
+		}
+		return i;
+	}
+
+	/**
+	 * Checks if a character is a (ASCII) digit.
+	 *
+	 * @param c
+	 *            the character
+	 * @return true, if it is a digit
+	 */
+	private static boolean isDigit(char c) {
+		return c >= '0' && c <= '9';
+	}
+
+	/**
+	 * Checks if a character is part of an identifier or keyword.
+	 *
+	 * @param c
+	 *            the character
+	 * @return true, if it is part of a word
+	 */
+	private static boolean isWordCharacter(char c) {
+		return c == '_' || c == '$' || Character.isLetterOrDigit(c);
+	}
+
+	/** The instance. */
+	private static final SqlNormalizer instance = new SqlNormalizer();
+
+	/**
+	 * Gets the single instance of SqlNormalizer.
+	 *
+	 * @return single instance of SqlNormalizer
+	 */
+	public static SqlNormalizer getInstance() {
+		return instance;
+	}
+}
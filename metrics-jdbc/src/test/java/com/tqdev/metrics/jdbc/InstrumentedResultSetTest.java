@@ -0,0 +1,168 @@
+/* Copyright (C) 2017 Maurits van der Schee
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.tqdev.metrics.jdbc;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import javax.sql.DataSource;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * The Class tests the InstrumentedResultSet.
+ */
+public class InstrumentedResultSetTest extends InstrumentedDataSourceTestBase {
+
+	/** The wrapped result set. */
+	private ResultSet resultSet;
+
+	/**
+	 * Initialize with a result set of two rows.
+	 *
+	 * @throws SQLException
+	 *             the SQL exception
+	 */
+	@Before
+	public void setUpResultSet() throws SQLException {
+		resultSet = mock(ResultSet.class);
+		when(resultSet.next()).thenReturn(true, true, false);
+		Connection connection = mock(Connection.class);
+		Statement statement = mock(Statement.class);
+		PreparedStatement preparedStatement = mock(PreparedStatement.class);
+		when(statement.executeQuery(anyString())).thenReturn(resultSet);
+		when(preparedStatement.executeQuery()).thenReturn(resultSet);
+		when(statement.execute(anyString())).thenReturn(true);
+		when(statement.getResultSet()).thenReturn(resultSet);
+		when(preparedStatement.execute()).thenReturn(true);
+		when(preparedStatement.getResultSet()).thenReturn(resultSet);
+		when(connection.createStatement()).thenReturn(statement);
+		when(connection.prepareStatement(anyString())).thenReturn(preparedStatement);
+		DataSource wrapped = mock(DataSource.class);
+		when(wrapped.getConnection()).thenReturn(connection);
+		dataSource = new InstrumentedDataSource(wrapped, registry);
+	}
+
+	/**
+	 * Should record rows and fetch time when closed.
+	 *
+	 * @throws SQLException
+	 *             the SQL exception
+	 */
+	@Test
+	public void shouldRecordRowsAndFetchTimeWhenClosed() throws SQLException {
+		Statement statement = dataSource.getConnection().createStatement();
+		ResultSet rows = statement.executeQuery("select * from users where id > 10");
+		assertThat(rows.getStatement()).isSameAs(statement);
+		while (rows.next()) {
+			rows.getString(1);
+		}
+		assertThat(registry.has("jdbc.ResultSet.Rows", "select * from users where id > ?")).isFalse();
+		rows.close();
+		rows.close();
+		assertThat(registry.get("jdbc.ResultSet.Rows", "select * from users where id > ?")).isEqualTo(2);
+		assertThat(registry.get("jdbc.ResultSet.Invocations", "select * from users where id > ?")).isEqualTo(1);
+		assertThat(registry.get("jdbc.ResultSet.Durations", "select * from users where id > ?"))
+				.isEqualTo(123456789L * 3);
+		assertThat(registry.get("jdbc.Statement.Durations", "select * from users where id > ?")).isEqualTo(123456789L);
+	}
+
+	/**
+	 * Should record when the statement is closed.
+	 *
+	 * @throws SQLException
+	 *             the SQL exception
+	 */
+	@Test
+	public void shouldRecordWhenStatementIsClosed() throws SQLException {
+		PreparedStatement statement = dataSource.getConnection().prepareStatement("select * from users");
+		ResultSet rows = statement.executeQuery();
+		rows.next();
+		statement.close();
+		assertThat(registry.get("jdbc.ResultSet.Rows", "select * from users")).isEqualTo(1);
+		assertThat(registry.get("jdbc.ResultSet.Invocations", "select * from users")).isEqualTo(1);
+	}
+
+	/**
+	 * Should instrument the result set that is returned after execute.
+	 *
+	 * @throws SQLException
+	 *             the SQL exception
+	 */
+	@Test
+	public void shouldInstrumentResultSetOfExecute() throws SQLException {
+		Statement statement = dataSource.getConnection().createStatement();
+		assertThat(statement.execute("select * from users where id > 10")).isTrue();
+		ResultSet rows = statement.getResultSet();
+		assertThat(rows).isNotSameAs(resultSet);
+		assertThat(statement.getResultSet()).isSameAs(rows);
+		while (rows.next()) {
+			rows.getString(1);
+		}
+		statement.getMoreResults();
+		assertThat(registry.get("jdbc.ResultSet.Rows", "select * from users where id > ?")).isEqualTo(2);
+		assertThat(registry.get("jdbc.ResultSet.Invocations", "select * from users where id > ?")).isEqualTo(1);
+		when(resultSet.next()).thenReturn(true, false);
+		PreparedStatement preparedStatement = dataSource.getConnection().prepareStatement("select * from users");
+		preparedStatement.execute();
+		preparedStatement.getResultSet().next();
+		preparedStatement.close();
+		assertThat(registry.get("jdbc.ResultSet.Rows", "select * from users")).isEqualTo(1);
+	}
+
+	/**
+	 * Should record when the statement is executed again.
+	 *
+	 * @throws SQLException
+	 *             the SQL exception
+	 */
+	@Test
+	public void shouldRecordWhenStatementIsExecutedAgain() throws SQLException {
+		Statement statement = dataSource.getConnection().createStatement();
+		ResultSet rows = statement.executeQuery("select * from users");
+		rows.next();
+		statement.executeUpdate("delete from users");
+		assertThat(registry.get("jdbc.ResultSet.Rows", "select * from users")).isEqualTo(1);
+		assertThat(registry.get("jdbc.ResultSet.Invocations", "select * from users")).isEqualTo(1);
+	}
+
+	/**
+	 * Should not instrument when disabled.
+	 *
+	 * @throws SQLException
+	 *             the SQL exception
+	 */
+	@Test
+	public void shouldNotInstrumentWhenDisabled() throws SQLException {
+		registry.setEnabled(false);
+		ResultSet rows = dataSource.getConnection().createStatement().executeQuery("select * from users");
+		assertThat(rows).isSameAs(resultSet);
+	}
+}
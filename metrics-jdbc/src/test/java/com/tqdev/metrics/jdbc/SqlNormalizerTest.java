@@ -0,0 +1,139 @@
+/* Copyright (C) 2017 Maurits van der Schee
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.tqdev.metrics.jdbc;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import org.junit.Test;
+
+/**
+ * The Class tests the SqlNormalizer.
+ */
+public class SqlNormalizerTest extends InstrumentedDataSourceTestBase {
+
+	/**
+	 * Should replace literals.
+	 */
+	@Test
+	public void shouldReplaceLiterals() {
+		assertThat(SqlNormalizer.parse("select * from users where id = 123 and name = 'O''Brien'"))
+				.isEqualTo("select * from users where id = ? and name = ?");
+		assertThat(SqlNormalizer.parse("update t1 set price=-1.5e-3, code=X'0F', label=N'naïve' where v=.5"))
+				.isEqualTo("update t1 set price=-?, code=?, label=? where v=?");
+		assertThat(SqlNormalizer.parse("select \"col 1\", `col2` from [tab 3] where x = 0x1F"))
+				.isEqualTo("select \"col 1\", `col2` from [tab 3] where x = ?");
+	}
+
+	/**
+	 * Should collapse whitespace and remove comments.
+	 */
+	@Test
+	public void shouldCollapseWhitespaceAndRemoveComments() {
+		assertThat(SqlNormalizer.parse("  select a,\n\t b -- the columns\n from  t /* the table */ "))
+				.isEqualTo("select a, b from t");
+	}
+
+	/**
+	 * Should collapse in lists.
+	 */
+	@Test
+	public void shouldCollapseInLists() {
+		assertThat(SqlNormalizer.parse("select * from t where id in (1, 2, 3) and k NOT IN ('a','b')"))
+				.isEqualTo("select * from t where id in (?) and k NOT IN (?)");
+		assertThat(SqlNormalizer.parse("select * from t where id in(?,?,?)")).isEqualTo("select * from t where id in(?)");
+		assertThat(SqlNormalizer.parse("insert into t values (1, 2)")).isEqualTo("insert into t values (?, ?)");
+		assertThat(SqlNormalizer.parse("select max(1, 2) from t where join (1, 2)"))
+				.isEqualTo("select max(?, ?) from t where join (?, ?)");
+	}
+
+	/**
+	 * Should cache normalized statements.
+	 */
+	@Test
+	public void shouldCacheNormalizedStatements() {
+		SqlNormalizer normalizer = new SqlNormalizer(2);
+		String normalized = normalizer.normalize("select 1");
+		assertThat(normalizer.normalize(new String("select 1"))).isSameAs(normalized);
+		normalizer.normalize("select 2");
+		assertThat(normalizer.size()).isEqualTo(2);
+		normalizer.normalize("select 3");
+		assertThat(normalizer.size()).isEqualTo(1);
+	}
+
+	/**
+	 * Should intern normalized statements.
+	 */
+	@Test
+	public void shouldInternNormalizedStatements() {
+		SqlNormalizer normalizer = new SqlNormalizer(10);
+		String normalized = normalizer.normalize("select * from t where id = 1");
+		assertThat(normalizer.normalize("select * from t where id = 2")).isSameAs(normalized);
+	}
+
+	/**
+	 * Should not cache long statements.
+	 */
+	@Test
+	public void shouldNotCacheLongStatements() {
+		SqlNormalizer normalizer = new SqlNormalizer(10, 10);
+		assertThat(normalizer.normalize("select * from t where id = 1")).isEqualTo("select * from t where id = ?");
+		assertThat(normalizer.size()).isEqualTo(0);
+	}
+
+	/**
+	 * Should not normalize statements when disabled.
+	 */
+	@Test
+	public void shouldNotNormalizeStatementsWhenDisabled() {
+		SqlNormalizer normalizer = new SqlNormalizer();
+		normalizer.setEnabled(false);
+		assertThat(normalizer.normalize("select 1")).isEqualTo("select 1");
+		assertThat(normalizer.size()).isEqualTo(0);
+	}
+
+	/**
+	 * Should skip strings with backslash escaped quotes.
+	 */
+	@Test
+	public void shouldSkipStringsWithBackslashEscapedQuotes() {
+		assertThat(SqlNormalizer.parse("select * from t where a = 'it\\'s' and b = 'c:\\\\' and c = 1"))
+				.isEqualTo("select * from t where a = ? and b = ? and c = ?");
+	}
+
+	/**
+	 * Should measure statements under the normalized key.
+	 *
+	 * @throws SQLException
+	 *             the SQL exception
+	 */
+	@Test
+	public void shouldMeasureStatementsUnderNormalizedKey() throws SQLException {
+		Statement statement = dataSource.getConnection().createStatement();
+		statement.executeQuery("select * from users where id = 1");
+		statement.executeQuery("select *  from users where id = 2");
+		statement.executeUpdate("delete from users where id in (3, 4, 5)");
+		assertThat(registry.get("jdbc.Statement.Invocations", "select * from users where id = ?")).isEqualTo(2);
+		assertThat(registry.get("jdbc.Statement.Invocations", "delete from users where id in (?)")).isEqualTo(1);
+	}
+}
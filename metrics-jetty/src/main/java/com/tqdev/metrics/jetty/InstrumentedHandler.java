@@ -37,6 +37,7 @@ import org.eclipse.jetty.util.thread.QueuedThreadPool;
 
 import com.tqdev.metrics.core.Gauge;
 import com.tqdev.metrics.core.MetricRegistry;
+import com.tqdev.metrics.core.Timer;
 
 /**
  * An instrumented Jetty handler wrapper to keep track of total duration and
@@ -47,6 +48,15 @@ public class InstrumentedHandler extends HandlerWrapper {
 	/** The registry to store metrics in. */
 	private final MetricRegistry registry;
 
+	/** The timers per response status group (index 0 is other). */
+	private final Timer[] responseTimers = new Timer[6];
+
+	/** The timers per request method (last index is other). */
+	private final Timer[] requestTimers = new Timer[HttpMethod.values().length + 1];
+
+	/** The timer of all requests. */
+	private Timer aggregatedTimer;
+
 	/**
 	 * Instantiates a new instrumented handler.
 	 *
@@ -94,20 +104,15 @@ public class InstrumentedHandler extends HandlerWrapper {
 		super.doStart();
 
 		for (int responseStatus = 1; responseStatus <= 5; responseStatus++) {
-			registry.set("jetty.Response.Invocations", responseStatus + "xx-responses", 0);
-			registry.set("jetty.Response.Durations", responseStatus + "xx-responses", 0);
+			responseTimers[responseStatus] = registry.timer("jetty.Response", responseStatus + "xx-responses");
 		}
-		registry.set("jetty.Response.Invocations", "other-responses", 0);
-		registry.set("jetty.Response.Durations", "other-responses", 0);
+		responseTimers[0] = registry.timer("jetty.Response", "other-responses");
 		for (HttpMethod method : HttpMethod.values()) {
 			String name = method.asString().toLowerCase();
-			registry.set("jetty.Request.Invocations", name + "-requests", 0);
-			registry.set("jetty.Request.Durations", name + "-requests", 0);
+			requestTimers[method.ordinal()] = registry.timer("jetty.Request", name + "-requests");
 		}
-		registry.set("jetty.Request.Invocations", "other-requests", 0);
-		registry.set("jetty.Request.Durations", "other-requests", 0);
-		registry.set("jetty.Aggregated.Invocations", "requests", 0);
-		registry.set("jetty.Aggregated.Durations", "requests", 0);
+		requestTimers[requestTimers.length - 1] = registry.timer("jetty.Request", "other-requests");
+		aggregatedTimer = registry.timer("jetty.Aggregated", "requests");
 
 		registry.set("jetty.Thread.Gauges", "threads", (Gauge) () -> getServer().getThreadPool().getThreads());
 		registry.set("jetty.Thread.Gauges", "idle-threads", (Gauge) () -> getServer().getThreadPool().getIdleThreads());
@@ -152,33 +157,33 @@ public class InstrumentedHandler extends HandlerWrapper {
 	}
 
 	/**
-	 * Get a grouping identifier for metrics based on request method.
+	 * Get a grouping index for metrics based on request method.
 	 *
 	 * @param method
 	 *            the method
-	 * @return the string
+	 * @return the index in the request timers
 	 */
-	private String getMethodGroup(String method) {
+	private int getMethodGroup(String method) {
 		final HttpMethod m = HttpMethod.fromString(method);
 		if (m == null) {
-			return "other";
+			return requestTimers.length - 1;
 		}
-		return m.asString().toLowerCase();
+		return m.ordinal();
 	}
 
 	/**
-	 * Get a grouping identifier for metrics based on response status.
+	 * Get a grouping index for metrics based on response status.
 	 *
 	 * @param status
 	 *            the status
-	 * @return the string
+	 * @return the index in the response timers
 	 */
-	private String getStatusGroup(int status) {
+	private int getStatusGroup(int status) {
 		final int responseStatus = status / 100;
 		if ((responseStatus < 1) || (responseStatus > 5)) {
-			return "other";
+			return 0;
 		}
-		return responseStatus + "xx";
+		return responseStatus;
 	}
 
 	/**
@@ -193,13 +198,8 @@ public class InstrumentedHandler extends HandlerWrapper {
 	 */
 	private void updateResponses(HttpServletRequest request, HttpServletResponse response, long startTime) {
 		final long duration = registry.getNanos() - startTime;
-		registry.increment("jetty.Aggregated.Invocations", "requests");
-		registry.add("jetty.Aggregated.Durations", "requests", duration);
-		final String methodGroup = getMethodGroup(request.getMethod());
-		registry.increment("jetty.Request.Invocations", methodGroup + "-requests");
-		registry.add("jetty.Request.Durations", methodGroup + "-requests", duration);
-		final String statusGroup = getStatusGroup(response.getStatus());
-		registry.increment("jetty.Response.Invocations", statusGroup + "-responses");
-		registry.add("jetty.Response.Durations", statusGroup + "-responses", duration);
+		aggregatedTimer.record(duration);
+		requestTimers[getMethodGroup(request.getMethod())].record(duration);
+		responseTimers[getStatusGroup(response.getStatus())].record(duration);
 	}
 }
@@ -23,14 +23,21 @@ package com.tqdev.metrics.jmx;
 import java.lang.management.ManagementFactory;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
 
 import javax.management.Attribute;
 import javax.management.AttributeList;
 import javax.management.AttributeNotFoundException;
 import javax.management.DynamicMBean;
 import javax.management.InstanceAlreadyExistsException;
+import javax.management.InstanceNotFoundException;
 import javax.management.InvalidAttributeValueException;
+import javax.management.JMException;
 import javax.management.MBeanException;
 import javax.management.MBeanInfo;
 import javax.management.MBeanNotificationInfo;
@@ -45,11 +52,40 @@ import javax.management.RuntimeOperationsException;
 import javax.management.openmbean.*;
 
 import com.tqdev.metrics.core.MetricRegistry;
+import com.tqdev.metrics.core.Reporter;
+import com.tqdev.metrics.core.ReportingScheduler;
+import com.tqdev.metrics.core.Snapshot;
 
 /**
- * OpenMBean for accessing (a part of) the metric registry via JMX
+ * OpenMBean for accessing (a part of) the metric registry via JMX. The
+ * MBeanInfo and the CompositeTypes of the attributes are cached until the
+ * structure version of the registry changes (a type or key is added or
+ * removed), so that polling clients do not rebuild them on every request.
+ * Optionally every type is also registered as an MBean of its own (with the
+ * keys as attributes), so that a client can read a single type without
+ * reading all of them. Failures to (un)register these MBeans are counted in
+ * type "metrics.Reporter.Errors" (with key "JmxReporter").
  */
-public class JmxReporter implements DynamicMBean {
+public class JmxReporter implements DynamicMBean, Reporter {
+
+	/** The names of the items of the result of the "read" operation. */
+	private static final String[] READ_ITEMS = { "version", "millis", "types", "ends", "keys", "values" };
+
+	/** The type of the result of the "read" operation. */
+	static final CompositeType READ_TYPE;
+
+	static {
+		try {
+			READ_TYPE = new CompositeType("Snapshot", "Snapshot of all metrics", READ_ITEMS,
+					new String[] { "version of the names", "time in milliseconds", "types",
+							"end (exclusive) of the keys and values of each type", "keys", "values" },
+					new OpenType<?>[] { SimpleType.LONG, SimpleType.LONG, new ArrayType<String[]>(1, SimpleType.STRING),
+							ArrayType.getPrimitiveArrayType(int[].class), new ArrayType<String[]>(1, SimpleType.STRING),
+							ArrayType.getPrimitiveArrayType(long[].class) });
+		} catch (OpenDataException e) {
+			throw new IllegalStateException(e);
+		}
+	}
 
 	/**
 	 * The registry in which the metrics, that this JMXReporter reports, are
@@ -60,7 +96,25 @@ public class JmxReporter implements DynamicMBean {
 	/**
 	 * The description of the JMX Reporter as seen in JConsole or VisualVM.
 	 */
-	private String description;
+	private volatile String description;
+
+	/** The cached information (or null when it is not created yet). */
+	private volatile Info info;
+
+	/** The domain in which the MBeans are registered (or null). */
+	private String domain;
+
+	/** Whether every type is registered as an MBean of its own. */
+	private boolean typeMBeans;
+
+	/** The names of the registered MBeans by type. */
+	private final Map<String, ObjectName> typeNames = new HashMap<>();
+
+	/** The structure version of the registered MBeans of the types. */
+	private long typesVersion = -1;
+
+	/** The names of the last read snapshot (or null). */
+	private Layout layout;
 
 	/**
 	 * Instantiates a new JMX reporter.
@@ -88,14 +142,16 @@ public class JmxReporter implements DynamicMBean {
 			return registry.isEnabled();
 		}
 		String type = attributeNameOrPath.trim();
-		if (registry.hasType(type)) {
+		Info info = getInfo();
+		Snapshot snapshot = registry.snapshot(type);
+		if (snapshot.getTypeCount() > 0) {
 			Map<String, Long> items = new HashMap<>();
-			for (String key : registry.getKeys(type)) {
-				items.put(key, registry.get(type, key));
+			for (int i = snapshot.getStart(0); i < snapshot.getEnd(0); i++) {
+				items.put(snapshot.getKey(i), snapshot.getValue(i));
 			}
 			CompositeDataSupport result = null;
 			try {
-				result = new CompositeDataSupport(getCompositeType(type), items);
+				result = getCompositeData(info, type, items);
 			} catch (OpenDataException e) {
 				// TODO Auto-generated catch block
 				e.printStackTrace();
@@ -182,10 +238,73 @@ public class JmxReporter implements DynamicMBean {
 			registry.reset();
 			return null;
 		}
+		if (operationName.equals("read")) {
+			long sinceVersion = -1;
+			if (params != null && params.length == 1 && params[0] instanceof Long) {
+				sinceVersion = (Long) params[0];
+			} else if (params != null && params.length > 0) {
+				throw new RuntimeOperationsException(new IllegalArgumentException("Invalid parameters for read"),
+						"Operation read takes no parameters or a version (long)");
+			}
+			try {
+				return read(sinceVersion);
+			} catch (OpenDataException e) {
+				throw new MBeanException(e);
+			}
+		}
 		throw new RuntimeOperationsException(new IllegalArgumentException("Cannot find operation: " + operationName),
 				String.format("Operation %s not defined for this OpenMBean", operationName));
 	}
 
+	/**
+	 * Gets the cached information, it is replaced when the structure version
+	 * of the registry has changed. The version is read before the registry,
+	 * so information that is cached under a version is never older than it.
+	 *
+	 * @return the information
+	 */
+	private Info getInfo() {
+		long version = registry.getStructureVersion();
+		Info info = this.info;
+		if (info == null || info.version != version) {
+			info = new Info(version);
+			this.info = info;
+		}
+		return info;
+	}
+
+	/**
+	 * Gets the composite data of a type, using the cached CompositeType when
+	 * its keys match the items (the structure may have changed since the
+	 * information was cached).
+	 *
+	 * @param info
+	 *            the cached information
+	 * @param type
+	 *            the type
+	 * @param items
+	 *            the values by key
+	 * @return the composite data
+	 * @throws OpenDataException
+	 *             the open data exception
+	 */
+	private CompositeDataSupport getCompositeData(Info info, String type, Map<String, Long> items)
+			throws OpenDataException {
+		CompositeType compositeType = info.compositeTypes.get(type);
+		if (compositeType != null && compositeType.keySet().size() == items.size()) {
+			try {
+				return new CompositeDataSupport(compositeType, items);
+			} catch (OpenDataException e) {
+				// the keys have changed, create a new type
+			}
+		}
+		compositeType = getCompositeType(type, items.keySet());
+		if (compositeType != null) {
+			info.compositeTypes.put(type, compositeType);
+		}
+		return new CompositeDataSupport(compositeType, items);
+	}
+
 	/*
 	 * (non-Javadoc)
 	 *
@@ -193,29 +312,89 @@ public class JmxReporter implements DynamicMBean {
 	 */
 	@Override
 	public MBeanInfo getMBeanInfo() {
+		Info info = getInfo();
+		MBeanInfo mbeanInfo = info.mbeanInfo;
+		if (mbeanInfo == null) {
+			mbeanInfo = createMBeanInfo(info);
+			info.mbeanInfo = mbeanInfo;
+			updateTypeMBeans();
+		}
+		return mbeanInfo;
+	}
+
+	/**
+	 * Creates the MBeanInfo, the CompositeTypes are added to the cached
+	 * information.
+	 *
+	 * @param info
+	 *            the cached information
+	 * @return the MBeanInfo
+	 */
+	private MBeanInfo createMBeanInfo(Info info) {
 
 		ArrayList<OpenMBeanAttributeInfoSupport> attributes = new ArrayList<>();
 
 		attributes.add(new OpenMBeanAttributeInfoSupport("enabled", "enabled", SimpleType.BOOLEAN, true, true, true));
 		for (String type : registry.getTypes()) {
-			attributes.add(new OpenMBeanAttributeInfoSupport(type, type, getCompositeType(type), true, false, false));
+			CompositeType compositeType = getCompositeType(type, registry.getKeys(type));
+			if (compositeType != null) {
+				info.compositeTypes.put(type, compositeType);
+			}
+			attributes.add(new OpenMBeanAttributeInfoSupport(type, type, compositeType, true, false, false));
 		}
 
 		OpenMBeanParameterInfo[] params = new OpenMBeanParameterInfoSupport[0];
 		OpenMBeanOperationInfoSupport reset = new OpenMBeanOperationInfoSupport("reset", "Reset all Metrics", params,
 				SimpleType.VOID, MBeanOperationInfo.ACTION);
+		OpenMBeanOperationInfoSupport read = new OpenMBeanOperationInfoSupport("read", "Read all Metrics", params,
+				READ_TYPE, MBeanOperationInfo.INFO);
+		OpenMBeanOperationInfoSupport readSince = new OpenMBeanOperationInfoSupport("read",
+				"Read all Metrics, without the names when they did not change since the version",
+				new OpenMBeanParameterInfoSupport[] {
+						new OpenMBeanParameterInfoSupport("sinceVersion", "version of the names", SimpleType.LONG) },
+				READ_TYPE, MBeanOperationInfo.INFO);
 
 		return new OpenMBeanInfoSupport(this.getClass().getName(), description,
 				attributes.toArray(new OpenMBeanAttributeInfoSupport[0]), new OpenMBeanConstructorInfoSupport[0],
-				new OpenMBeanOperationInfoSupport[] { reset }, new MBeanNotificationInfo[0]);
+				new OpenMBeanOperationInfoSupport[] { reset, read, readSince }, new MBeanNotificationInfo[0]);
+	}
+
+	/**
+	 * Reads all metrics in a single (compact) composite value, so that a
+	 * remote client can fetch all of them in one round trip. The keys and
+	 * values of all types are packed in a "keys" and a "values" array, where
+	 * the "ends" array holds the end (exclusive) of every type. The names
+	 * ("types", "ends" and "keys") are identified by a "version", when they
+	 * did not change since the given version they are left out (empty), so
+	 * that a client that keeps the names only receives the values.
+	 *
+	 * @param sinceVersion
+	 *            the version of the names that the client has (or -1)
+	 * @return the composite data
+	 * @throws OpenDataException
+	 *             the open data exception
+	 */
+	public synchronized CompositeData read(long sinceVersion) throws OpenDataException {
+		Snapshot snapshot = registry.snapshot();
+		if (layout == null || !layout.matches(snapshot)) {
+			layout = new Layout(snapshot, layout);
+		}
+		long[] values = new long[snapshot.size()];
+		for (int i = 0; i < values.length; i++) {
+			values[i] = snapshot.getValue(i);
+		}
+		boolean names = layout.version != sinceVersion;
+		return new CompositeDataSupport(READ_TYPE, READ_ITEMS,
+				new Object[] { layout.version, snapshot.getMillis(), names ? layout.types : new String[0],
+						names ? layout.ends : new int[0], names ? layout.keys : new String[0], values });
 	}
 
 	@SuppressWarnings("rawtypes")
-	private CompositeType getCompositeType(String type) {
+	private CompositeType getCompositeType(String type, Iterable<String> keys) {
 		ArrayList<String> nameList = new ArrayList<>();
 		ArrayList<OpenType> typeList = new ArrayList<>();
 
-		for (String key : registry.getKeys(type)) {
+		for (String key : keys) {
 			nameList.add(key);
 			typeList.add(SimpleType.LONG);
 		}
@@ -251,11 +430,239 @@ public class JmxReporter implements DynamicMBean {
 	 */
 	public void register(String domain, String description) throws MalformedObjectNameException,
 			InstanceAlreadyExistsException, MBeanRegistrationException, NotCompliantMBeanException {
+		register(domain, description, false);
+	}
+
+	/**
+	 * Register, optionally with an MBean per type (named
+	 * "domain:type=Metrics,name=type"). The MBeans of new types are
+	 * registered when the MBeanInfo is requested, or on every report when
+	 * this reporter is added to a {@link com.tqdev.metrics.core.ReportingScheduler}.
+	 *
+	 * @param domain
+	 *            the domain
+	 * @param description
+	 *            the description
+	 * @param typeMBeans
+	 *            whether every type is registered as an MBean of its own
+	 * @throws MalformedObjectNameException
+	 *             the malformed object name exception
+	 * @throws InstanceAlreadyExistsException
+	 *             the instance already exists exception
+	 * @throws MBeanRegistrationException
+	 *             the m bean registration exception
+	 * @throws NotCompliantMBeanException
+	 *             the not compliant M bean exception
+	 */
+	public void register(String domain, String description, boolean typeMBeans) throws MalformedObjectNameException,
+			InstanceAlreadyExistsException, MBeanRegistrationException, NotCompliantMBeanException {
 		this.description = description;
+		this.info = null;
 		MBeanServer mbs = ManagementFactory.getPlatformMBeanServer();
 		ObjectName name = new ObjectName(domain + ":type=Metrics");
 		if (!mbs.isRegistered(name)) {
 			mbs.registerMBean(this, name);
 		}
+		synchronized (this) {
+			this.domain = domain;
+			this.typeMBeans = typeMBeans;
+			this.typesVersion = -1;
+		}
+		updateTypeMBeans();
+	}
+
+	/**
+	 * Unregisters the MBean and the MBeans of the types.
+	 *
+	 * @throws MalformedObjectNameException
+	 *             the malformed object name exception
+	 * @throws MBeanRegistrationException
+	 *             the m bean registration exception
+	 */
+	public synchronized void unregister() throws MalformedObjectNameException, MBeanRegistrationException {
+		if (domain == null) {
+			return;
+		}
+		MBeanServer mbs = ManagementFactory.getPlatformMBeanServer();
+		try {
+			for (ObjectName name : typeNames.values()) {
+				mbs.unregisterMBean(name);
+			}
+			mbs.unregisterMBean(new ObjectName(domain + ":type=Metrics"));
+		} catch (InstanceNotFoundException ignore) {
+			// ignore when it was unregistered by someone else
+		}
+		typeNames.clear();
+		domain = null;
+	}
+
+	/**
+	 * Report, the MBeans of new types are registered (and those of removed
+	 * types are unregistered). The values are read on request.
+	 *
+	 * @param snapshot
+	 *            the snapshot
+	 * @return true, if successful
+	 */
+	@Override
+	public boolean report(Snapshot snapshot) {
+		return updateTypeMBeans();
+	}
+
+	/**
+	 * Registers the MBeans of the types that do not have one yet and
+	 * unregisters those of the types that no longer exist, when the structure
+	 * of the registry has changed.
+	 *
+	 * @return true, if successful
+	 */
+	private synchronized boolean updateTypeMBeans() {
+		if (domain == null || !typeMBeans) {
+			return true;
+		}
+		long version = registry.getStructureVersion();
+		if (version == typesVersion) {
+			return true;
+		}
+		MBeanServer mbs = ManagementFactory.getPlatformMBeanServer();
+		Set<String> types = new HashSet<>();
+		try {
+			for (String type : registry.getTypes()) {
+				types.add(type);
+				if (!typeNames.containsKey(type)) {
+					ObjectName name = new ObjectName(domain + ":type=Metrics,name=" + quote(type));
+					if (!mbs.isRegistered(name)) {
+						mbs.registerMBean(new JmxTypeMBean(registry, type), name);
+					}
+					typeNames.put(type, name);
+				}
+			}
+			Iterator<Map.Entry<String, ObjectName>> iterator = typeNames.entrySet().iterator();
+			while (iterator.hasNext()) {
+				Map.Entry<String, ObjectName> entry = iterator.next();
+				if (!types.contains(entry.getKey())) {
+					if (mbs.isRegistered(entry.getValue())) {
+						mbs.unregisterMBean(entry.getValue());
+					}
+					iterator.remove();
+				}
+			}
+		} catch (JMException e) {
+			registry.counter(ReportingScheduler.ERRORS_TYPE, "JmxReporter").increment();
+			return false;
+		}
+		typesVersion = version;
+		return true;
+	}
+
+	/**
+	 * Quotes a value of an ObjectName when it contains special characters.
+	 *
+	 * @param value
+	 *            the value
+	 * @return the (quoted) value
+	 */
+	private static String quote(String value) {
+		for (int i = 0; i < value.length(); i++) {
+			if (",=:\"*?\\\n".indexOf(value.charAt(i)) >= 0) {
+				return ObjectName.quote(value);
+			}
+		}
+		return value;
+	}
+
+	/**
+	 * The names of a snapshot, with a (random) version that identifies them,
+	 * so that the versions of different runs do not collide.
+	 */
+	private static final class Layout {
+
+		/** The version. */
+		private final long version;
+
+		/** The types. */
+		private final String[] types;
+
+		/** The end (exclusive) of the keys of every type. */
+		private final int[] ends;
+
+		/** The keys. */
+		private final String[] keys;
+
+		/**
+		 * Instantiates the names of a snapshot.
+		 *
+		 * @param snapshot
+		 *            the snapshot
+		 * @param previous
+		 *            the previous names (or null)
+		 */
+		private Layout(Snapshot snapshot, Layout previous) {
+			long version;
+			do {
+				version = ThreadLocalRandom.current().nextLong() & Long.MAX_VALUE;
+			} while (previous != null && version == previous.version);
+			this.version = version;
+			this.types = new String[snapshot.getTypeCount()];
+			this.ends = new int[types.length];
+			for (int t = 0; t < types.length; t++) {
+				types[t] = snapshot.getType(t);
+				ends[t] = snapshot.getEnd(t);
+			}
+			this.keys = new String[snapshot.size()];
+			for (int i = 0; i < keys.length; i++) {
+				keys[i] = snapshot.getKey(i);
+			}
+		}
+
+		/**
+		 * Checks if a snapshot has these names.
+		 *
+		 * @param snapshot
+		 *            the snapshot
+		 * @return true, if the names match
+		 */
+		private boolean matches(Snapshot snapshot) {
+			if (snapshot.getTypeCount() != types.length || snapshot.size() != keys.length) {
+				return false;
+			}
+			for (int t = 0; t < types.length; t++) {
+				if (ends[t] != snapshot.getEnd(t) || !types[t].equals(snapshot.getType(t))) {
+					return false;
+				}
+			}
+			for (int i = 0; i < keys.length; i++) {
+				if (!keys[i].equals(snapshot.getKey(i))) {
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+
+	/**
+	 * The information that is cached for a structure version of the
+	 * registry.
+	 */
+	private static final class Info {
+
+		/** The structure version. */
+		private final long version;
+
+		/** The MBeanInfo (or null when it is not created yet). */
+		private volatile MBeanInfo mbeanInfo;
+
+		/** The CompositeTypes by type. */
+		private final Map<String, CompositeType> compositeTypes = new ConcurrentHashMap<>();
+
+		/**
+		 * Instantiates new information.
+		 *
+		 * @param version
+		 *            the structure version
+		 */
+		private Info(long version) {
+			this.version = version;
+		}
 	}
 }
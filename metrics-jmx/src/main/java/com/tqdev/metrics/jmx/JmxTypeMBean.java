@@ -0,0 +1,174 @@
+/* Copyright (C) 2017 Maurits van der Schee
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.tqdev.metrics.jmx;
+
+import java.util.ArrayList;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.InvalidAttributeValueException;
+import javax.management.MBeanException;
+import javax.management.MBeanInfo;
+import javax.management.MBeanNotificationInfo;
+import javax.management.ReflectionException;
+import javax.management.RuntimeOperationsException;
+import javax.management.openmbean.OpenMBeanAttributeInfoSupport;
+import javax.management.openmbean.OpenMBeanConstructorInfoSupport;
+import javax.management.openmbean.OpenMBeanInfoSupport;
+import javax.management.openmbean.OpenMBeanOperationInfoSupport;
+import javax.management.openmbean.SimpleType;
+
+import com.tqdev.metrics.core.MetricRegistry;
+import com.tqdev.metrics.core.Snapshot;
+
+/**
+ * OpenMBean for accessing the metrics of a single type via JMX, with the keys
+ * as attributes. The MBeanInfo is cached until the structure version of the
+ * registry changes.
+ */
+final class JmxTypeMBean implements DynamicMBean {
+
+	/** The registry. */
+	private final MetricRegistry registry;
+
+	/** The type. */
+	private final String type;
+
+	/** The structure version of the cached MBeanInfo. */
+	private long version = -1;
+
+	/** The cached MBeanInfo (or null when it is not created yet). */
+	private MBeanInfo info;
+
+	/**
+	 * Instantiates a new MBean of a type.
+	 *
+	 * @param registry
+	 *            the registry
+	 * @param type
+	 *            the type
+	 */
+	JmxTypeMBean(MetricRegistry registry, String type) {
+		this.registry = registry;
+		this.type = type;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see javax.management.DynamicMBean#getAttribute(java.lang.String)
+	 */
+	@Override
+	public Object getAttribute(String key) throws AttributeNotFoundException, MBeanException, ReflectionException {
+		if (key == null) {
+			throw new RuntimeOperationsException(new IllegalArgumentException("key cannot be null"),
+					"Cannot call getAttribute with null key");
+		}
+		if (!registry.has(type, key)) {
+			throw new AttributeNotFoundException("Cannot find key: " + key);
+		}
+		return registry.get(type, key);
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see
+	 * javax.management.DynamicMBean#setAttribute(javax.management.Attribute)
+	 */
+	@Override
+	public void setAttribute(Attribute attribute)
+			throws AttributeNotFoundException, InvalidAttributeValueException, MBeanException, ReflectionException {
+		throw new AttributeNotFoundException("No writable attribute has been found");
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see javax.management.DynamicMBean#getAttributes(java.lang.String[])
+	 */
+	@Override
+	public AttributeList getAttributes(String[] keys) {
+		if (keys == null) {
+			throw new RuntimeOperationsException(new IllegalArgumentException("keys[] cannot be null"),
+					"Cannot call getAttributes with null keys");
+		}
+		AttributeList resultList = new AttributeList();
+		if (keys.length == 0) {
+			return resultList;
+		}
+		Snapshot snapshot = registry.snapshot(type);
+		for (String key : keys) {
+			int i = snapshot.indexOf(type, key);
+			if (i >= 0) {
+				resultList.add(new Attribute(key, snapshot.getValue(i)));
+			}
+		}
+		return resultList;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see javax.management.DynamicMBean#setAttributes(javax.management.
+	 * AttributeList)
+	 */
+	@Override
+	public AttributeList setAttributes(AttributeList attributes) {
+		return new AttributeList();
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see javax.management.DynamicMBean#invoke(java.lang.String,
+	 * java.lang.Object[], java.lang.String[])
+	 */
+	@Override
+	public Object invoke(String operationName, Object[] params, String[] signature)
+			throws MBeanException, ReflectionException {
+		throw new RuntimeOperationsException(new IllegalArgumentException("Cannot find operation: " + operationName),
+				String.format("Operation %s not defined for this OpenMBean", operationName));
+	}
+
+	/*
+	 * (non-Javadoc)
+	 *
+	 * @see javax.management.DynamicMBean#getMBeanInfo()
+	 */
+	@Override
+	public synchronized MBeanInfo getMBeanInfo() {
+		long version = registry.getStructureVersion();
+		if (info == null || this.version != version) {
+			ArrayList<OpenMBeanAttributeInfoSupport> attributes = new ArrayList<>();
+			for (String key : registry.getKeys(type)) {
+				attributes.add(new OpenMBeanAttributeInfoSupport(key, key, SimpleType.LONG, true, false, false));
+			}
+			info = new OpenMBeanInfoSupport(getClass().getName(), type,
+					attributes.toArray(new OpenMBeanAttributeInfoSupport[0]), new OpenMBeanConstructorInfoSupport[0],
+					new OpenMBeanOperationInfoSupport[0], new MBeanNotificationInfo[0]);
+			this.version = version;
+		}
+		return info;
+	}
+}
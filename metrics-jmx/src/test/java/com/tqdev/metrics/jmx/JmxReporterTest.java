@@ -25,12 +25,15 @@ import org.junit.Before;
 import org.junit.Test;
 
 import javax.management.*;
+import javax.management.openmbean.CompositeData;
 import javax.management.openmbean.CompositeDataSupport;
 import javax.management.openmbean.CompositeType;
 import javax.management.openmbean.InvalidKeyException;
+import javax.management.openmbean.OpenMBeanAttributeInfo;
 import javax.management.openmbean.OpenDataException;
 import java.lang.management.ManagementFactory;
 import java.util.HashMap;
+import java.util.Map;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -301,12 +304,73 @@ public class JmxReporterTest {
 	@Test
 	public void shouldReportInformationOnResetOperation() {
 		MBeanInfo info = reporter.getMBeanInfo();
-		assertThat(info.getOperations().length).isEqualTo(1);
+		assertThat(info.getOperations().length).isEqualTo(3);
 		assertThat(info.getOperations()[0].getName()).isEqualTo("reset");
 		assertThat(info.getOperations()[0].getReturnType()).isEqualTo("java.lang.Void");
 		assertThat(info.getOperations()[0].getSignature().length).isEqualTo(0);
 	}
 
+	/**
+	 * Should read all metrics when invoking read operation.
+	 *
+	 * @throws ReflectionException
+	 *             the reflection exception
+	 * @throws MBeanException
+	 *             the MBean exception
+	 */
+	@Test
+	public void shouldReadAllMetricsWhenInvokingReadOperation() throws ReflectionException, MBeanException {
+		registry.increment("jdbc.Statement.Invocations", "select");
+		registry.increment("jdbc.Statement.Invocations", "update");
+		registry.add("jdbc.Statement.Durations", "select", 123456789);
+		CompositeData data = (CompositeData) reporter.invoke("read", new Object[] {}, new String[] {});
+		assertThat(data.getCompositeType()).isEqualTo(JmxReporter.READ_TYPE);
+		String[] types = (String[]) data.get("types");
+		int[] ends = (int[]) data.get("ends");
+		String[] keys = (String[]) data.get("keys");
+		long[] values = (long[]) data.get("values");
+		assertThat(types).containsExactlyInAnyOrder("jdbc.Statement.Invocations", "jdbc.Statement.Durations");
+		assertThat(ends[ends.length - 1]).isEqualTo(3);
+		Map<String, Long> read = new HashMap<>();
+		for (int t = 0, i = 0; t < types.length; t++) {
+			for (; i < ends[t]; i++) {
+				read.put(types[t] + "/" + keys[i], values[i]);
+			}
+		}
+		assertThat(read).containsEntry("jdbc.Statement.Invocations/select", 1L)
+				.containsEntry("jdbc.Statement.Invocations/update", 1L)
+				.containsEntry("jdbc.Statement.Durations/select", 123456789L).hasSize(3);
+	}
+
+	/**
+	 * Should read only values when the names did not change since the
+	 * version.
+	 *
+	 * @throws ReflectionException
+	 *             the reflection exception
+	 * @throws MBeanException
+	 *             the MBean exception
+	 */
+	@Test
+	public void shouldReadOnlyValuesWhenNamesDidNotChange() throws ReflectionException, MBeanException {
+		registry.increment("jdbc.Statement.Invocations", "select");
+		CompositeData first = (CompositeData) reporter.invoke("read", new Object[] {}, new String[] {});
+		long version = (long) first.get("version");
+		registry.increment("jdbc.Statement.Invocations", "select");
+		CompositeData second = (CompositeData) reporter.invoke("read", new Object[] { version },
+				new String[] { "long" });
+		assertThat(second.get("version")).isEqualTo(version);
+		assertThat((String[]) second.get("keys")).isEmpty();
+		assertThat((String[]) second.get("types")).isEmpty();
+		assertThat((long[]) second.get("values")).containsExactly(2L);
+		registry.increment("jdbc.Statement.Invocations", "update");
+		CompositeData third = (CompositeData) reporter.invoke("read", new Object[] { version },
+				new String[] { "long" });
+		assertThat(third.get("version")).isNotEqualTo(version);
+		assertThat((String[]) third.get("keys")).containsExactlyInAnyOrder("select", "update");
+		assertThat((long[]) third.get("values")).hasSize(2);
+	}
+
 	/**
 	 * Should reset when invoking reset operation.
 	 *
@@ -354,4 +418,73 @@ public class JmxReporterTest {
 		assertThat(mbs.isRegistered(name)).isFalse();
 	}
 
+	/**
+	 * Should cache information until the structure changes.
+	 */
+	@Test
+	public void shouldCacheInformationUntilStructureChanges() {
+		registry.increment("jdbc.Statement.Invocations", "select");
+		MBeanInfo info = reporter.getMBeanInfo();
+		registry.increment("jdbc.Statement.Invocations", "select");
+		assertThat(reporter.getMBeanInfo()).isSameAs(info);
+		registry.increment("jdbc.Statement.Invocations", "update");
+		MBeanInfo changed = reporter.getMBeanInfo();
+		assertThat(changed).isNotSameAs(info);
+		CompositeType compositeType = (CompositeType) ((OpenMBeanAttributeInfo) changed.getAttributes()[1])
+				.getOpenType();
+		assertThat(compositeType.keySet()).containsExactlyInAnyOrder("select", "update");
+	}
+
+	/**
+	 * Should read values when the structure changed after caching.
+	 *
+	 * @throws MBeanException
+	 *             the MBean exception
+	 * @throws AttributeNotFoundException
+	 *             the attribute not found exception
+	 * @throws ReflectionException
+	 *             the reflection exception
+	 */
+	@Test
+	public void shouldReadValuesWhenStructureChanged()
+			throws MBeanException, AttributeNotFoundException, ReflectionException {
+		registry.increment("jdbc.Statement.Invocations", "select");
+		reporter.getMBeanInfo();
+		assertThat(readJmx("jdbc.Statement.Invocations", "select")).isEqualTo(1);
+		registry.increment("jdbc.Statement.Invocations", "update");
+		assertThat(readJmx("jdbc.Statement.Invocations", "update")).isEqualTo(1);
+		registry.reset();
+		registry.increment("jdbc.Statement.Invocations", "delete");
+		assertThat(readJmx("jdbc.Statement.Invocations", "delete")).isEqualTo(1);
+	}
+
+	/**
+	 * Should register an MBean per type.
+	 *
+	 * @throws JMException
+	 *             the JMX exception
+	 */
+	@Test
+	public void shouldRegisterMBeanPerType() throws JMException {
+		registry.increment("jdbc.Statement.Invocations", "select");
+		reporter.register("com.tqdev.metrics.types", "TQdev.com's Metrics", true);
+		MBeanServer mbs = ManagementFactory.getPlatformMBeanServer();
+		ObjectName name = new ObjectName("com.tqdev.metrics.types:type=Metrics,name=jdbc.Statement.Invocations");
+		try {
+			assertThat(mbs.isRegistered(name)).isTrue();
+			assertThat(mbs.getAttribute(name, "select")).isEqualTo(1L);
+			assertThat(mbs.getMBeanInfo(name).getAttributes()).extracting("name").containsExactly("select");
+			registry.add("jdbc.Statement.Durations", "select", 123);
+			reporter.report(registry.snapshot());
+			ObjectName durations = new ObjectName("com.tqdev.metrics.types:type=Metrics,name=jdbc.Statement.Durations");
+			assertThat(mbs.isRegistered(durations)).isTrue();
+			AttributeList attributes = mbs.getAttributes(durations, new String[] { "select", "update" });
+			assertThat(attributes.asList()).extracting("value").containsExactly(123L);
+		} finally {
+			reporter.unregister();
+		}
+		assertThat(mbs.isRegistered(name)).isFalse();
+		assertThat(mbs.isRegistered(new ObjectName("com.tqdev.metrics.types:type=Metrics"))).isFalse();
+	}
+
 }
\ No newline at end of file
@@ -0,0 +1,215 @@
+/* Copyright (C) 2017 Maurits van der Schee
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.tqdev.metrics.prometheus;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.tqdev.metrics.core.ExpositionWriter;
+import com.tqdev.metrics.core.Histogram;
+import com.tqdev.metrics.core.NameCache;
+import com.tqdev.metrics.core.Snapshot;
+
+/**
+ * The OpenMetricsWriter class writes a snapshot in the OpenMetrics text
+ * format. Every type is written as a metric family (with "# TYPE" and "# HELP"
+ * metadata) named after the type (with invalid characters replaced with an
+ * underscore), so the snapshot should be sorted (see
+ * {@link com.tqdev.metrics.core.MetricRegistry#snapshot(boolean)}). When
+ * distinct types have the same name (such as "a.b" and "a_b") the types that
+ * are encoded later get a numbered suffix (such as "a_b_2"), so that no two
+ * families have the same name. A family
+ * is a "counter" (samples with "_total" suffix) when it has only counters, a
+ * "gauge" when it has only gauges and a "summary" (quantiles and "_count")
+ * when it has only histograms or sketches, otherwise it is "unknown". The
+ * registry does not record when a counter was created, so no "_created"
+ * samples are written.
+ */
+public final class OpenMetricsWriter {
+
+	/** The content type of the OpenMetrics text format. */
+	public static final String CONTENT_TYPE = "application/openmetrics-text; version=1.0.0; charset=utf-8";
+
+	/** The quantile labels of summaries, with the end of the labels. */
+	private static final byte[][] QUANTILE_LABELS = new byte[Histogram.QUANTILES.length][];
+
+	/** The start of the type metadata. */
+	private static final byte[] TYPE = "# TYPE ".getBytes(StandardCharsets.US_ASCII);
+
+	/** The start of the help metadata. */
+	private static final byte[] HELP = "# HELP ".getBytes(StandardCharsets.US_ASCII);
+
+	/** The family types. */
+	private static final byte[] COUNTER = " counter\n".getBytes(StandardCharsets.US_ASCII),
+			GAUGE = " gauge\n".getBytes(StandardCharsets.US_ASCII),
+			SUMMARY = " summary\n".getBytes(StandardCharsets.US_ASCII),
+			UNKNOWN = " unknown\n".getBytes(StandardCharsets.US_ASCII);
+
+	/** The suffix of counter samples. */
+	private static final byte[] TOTAL = "_total".getBytes(StandardCharsets.US_ASCII);
+
+	/** The suffix of the count sample of summaries. */
+	private static final byte[] COUNT = "_count".getBytes(StandardCharsets.US_ASCII);
+
+	/** The end of the labels. */
+	private static final byte[] LABELS_END = "\"} ".getBytes(StandardCharsets.US_ASCII);
+
+	/** The end of the exposition. */
+	private static final byte[] EOF = "# EOF\n".getBytes(StandardCharsets.US_ASCII);
+
+	static {
+		for (int q = 0; q < QUANTILE_LABELS.length; q++) {
+			QUANTILE_LABELS[q] = ("\",quantile=\"" + Histogram.QUANTILES[q] + "\"} ").getBytes(StandardCharsets.US_ASCII);
+		}
+	}
+
+	/** The start of the labels, up to the value of the "type_instance" label. */
+	private final byte[] labels;
+
+	/** The encoded family names by type. */
+	private final NameCache names = new NameCache(this::encodeName);
+
+	/** The types by family name, to detect types that have the same name. */
+	private final ConcurrentHashMap<String, String> families = new ConcurrentHashMap<>();
+
+	/** The encoded help texts (with line end) by type. */
+	private final NameCache helps = new NameCache(type -> (" " + escape(type) + "\n").getBytes(StandardCharsets.UTF_8));
+
+	/** The encoded keys. */
+	private final NameCache keys = new NameCache(key -> escape(key).getBytes(StandardCharsets.UTF_8));
+
+	/** The writer that is reused between reports (guarded by itself). */
+	private final ExpositionWriter writer = new ExpositionWriter(8192);
+
+	/**
+	 * Instantiates a new OpenMetrics writer.
+	 *
+	 * @param instanceName
+	 *            the name of the JVM instance or machine that generates the
+	 *            metrics (as "host" label)
+	 */
+	public OpenMetricsWriter(String instanceName) {
+		this.labels = ("{host=\"" + escape(instanceName) + "\",type_instance=\"").getBytes(StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Write the metrics of a snapshot, followed by the "# EOF" marker.
+	 *
+	 * @param out
+	 *            the out
+	 * @param snapshot
+	 *            the snapshot
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public void write(OutputStream out, Snapshot snapshot) throws IOException {
+		synchronized (writer) {
+			ExpositionWriter w = writer.reset(out);
+			for (int t = 0; t < snapshot.getTypeCount(); t++) {
+				int start = snapshot.getStart(t);
+				int end = snapshot.getEnd(t);
+				if (start == end) {
+					continue;
+				}
+				int gauges = 0;
+				int summaries = 0;
+				for (int i = start; i < end; i++) {
+					if (snapshot.isGauge(i)) {
+						gauges++;
+					} else if (snapshot.hasQuantiles(i)) {
+						summaries++;
+					}
+				}
+				byte[] kind = gauges == 0 && summaries == 0 ? COUNTER
+						: gauges == end - start ? GAUGE : summaries == end - start ? SUMMARY : UNKNOWN;
+				byte[] name = names.get(snapshot.getType(t));
+				w.write(TYPE);
+				w.write(name);
+				w.write(kind);
+				w.write(HELP);
+				w.write(name);
+				w.write(helps.get(snapshot.getType(t)));
+				for (int i = start; i < end; i++) {
+					byte[] key = keys.get(snapshot.getKey(i));
+					if (kind == SUMMARY) {
+						for (int q = 0; q < QUANTILE_LABELS.length; q++) {
+							w.write(name);
+							w.write(labels);
+							w.write(key);
+							w.write(QUANTILE_LABELS[q]);
+							w.write(snapshot.getQuantile(i, q));
+							w.write((byte) '\n');
+						}
+					}
+					w.write(name);
+					if (kind == COUNTER) {
+						w.write(TOTAL);
+					} else if (kind == SUMMARY) {
+						w.write(COUNT);
+					}
+					w.write(labels);
+					w.write(key);
+					w.write(LABELS_END);
+					w.write(snapshot.getValue(i));
+					w.write((byte) '\n');
+				}
+			}
+			w.write(EOF);
+			w.close();
+		}
+	}
+
+	/**
+	 * Encodes a type as metric family name, with a numbered suffix when the
+	 * name is taken by another type.
+	 *
+	 * @param type
+	 *            the type
+	 * @return the encoded name
+	 */
+	private byte[] encodeName(String type) {
+		String name = type.replaceAll("[^a-zA-Z0-9_:]", "_");
+		if (name.isEmpty() || Character.isDigit(name.charAt(0))) {
+			name = "_" + name;
+		}
+		String family = name;
+		for (int i = 2;; i++) {
+			String owner = families.putIfAbsent(family, type);
+			if (owner == null || owner.equals(type)) {
+				return family.getBytes(StandardCharsets.US_ASCII);
+			}
+			family = name + "_" + i;
+		}
+	}
+
+	/**
+	 * Escapes a label value (or help text).
+	 *
+	 * @param str
+	 *            the string
+	 * @return the escaped string
+	 */
+	private static String escape(String str) {
+		return str.replace("\\", "\\\\").replace("\n", "\\n").replace("\"", "\\\"");
+	}
+}
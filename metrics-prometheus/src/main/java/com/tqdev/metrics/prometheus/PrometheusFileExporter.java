@@ -0,0 +1,115 @@
+/* Copyright (C) 2017 Maurits van der Schee
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.tqdev.metrics.prometheus;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import com.tqdev.metrics.core.BinaryFileReader;
+import com.tqdev.metrics.core.MetricRegistry;
+import com.tqdev.metrics.core.Snapshot;
+
+/**
+ * The PrometheusFileExporter class converts files that are written by a
+ * {@link com.tqdev.metrics.core.BinaryFileReporter} to the Prometheus text
+ * format.
+ */
+public final class PrometheusFileExporter extends PrometheusReporter {
+
+	/**
+	 * Instantiates a new Prometheus file exporter.
+	 *
+	 * @param instanceName
+	 *            the instance name
+	 */
+	private PrometheusFileExporter(String instanceName) {
+		super(new MetricRegistry(), instanceName);
+	}
+
+	/**
+	 * Report, there is nothing to report.
+	 *
+	 * @param snapshot
+	 *            the snapshot
+	 * @return true, if successful
+	 */
+	@Override
+	public boolean report(Snapshot snapshot) {
+		return true;
+	}
+
+	/**
+	 * Export the snapshots in a binary file.
+	 *
+	 * @param file
+	 *            the file
+	 * @param out
+	 *            the out (that is not closed)
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public static void export(File file, OutputStream out) throws IOException {
+		OutputStream unclosed = new FilterOutputStream(out) {
+			@Override
+			public void write(byte[] b, int off, int len) throws IOException {
+				out.write(b, off, len);
+			}
+
+			@Override
+			public void close() throws IOException {
+				flush();
+			}
+		};
+		try (BinaryFileReader reader = new BinaryFileReader(file)) {
+			PrometheusFileExporter exporter = null;
+			Snapshot snapshot;
+			while ((snapshot = reader.next()) != null) {
+				if (exporter == null || !exporter.instanceName.equals(reader.getInstanceName())) {
+					exporter = new PrometheusFileExporter(reader.getInstanceName());
+				}
+				exporter.write(unclosed, snapshot);
+			}
+		}
+	}
+
+	/**
+	 * Prints the snapshots in binary files in the Prometheus text format.
+	 *
+	 * @param args
+	 *            the files
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length == 0) {
+			System.err.println("Usage: java " + PrometheusFileExporter.class.getName() + " <file>...");
+			System.exit(1);
+		}
+		OutputStream out = new BufferedOutputStream(System.out, 65536);
+		for (String arg : args) {
+			export(new File(arg), out);
+		}
+		out.flush();
+	}
+}
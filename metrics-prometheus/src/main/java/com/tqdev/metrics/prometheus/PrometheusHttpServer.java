@@ -0,0 +1,289 @@
+/* Copyright (C) 2017 Maurits van der Schee
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.tqdev.metrics.prometheus;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import com.tqdev.metrics.core.MetricRegistry;
+import com.tqdev.metrics.core.ReportingScheduler;
+import com.tqdev.metrics.core.Snapshot;
+
+/**
+ * The PrometheusHttpServer class serves the values in the metric registry in
+ * Prometheus text format (or in the OpenMetrics format when the client
+ * accepts it) on the "/metrics" path, so that Prometheus can scrape them
+ * directly. The exposition text is written into a pooled buffer
+ * (one per handler thread) that is reused between scrapes, the response is
+ * compressed when the client accepts gzip. Requests are handled by a bounded
+ * number of threads, when they are all busy requests are queued and when the
+ * queue is full requests are rejected: their connection is closed (so the
+ * thread that accepts connections never handles requests) and they are
+ * counted in type "metrics.Reporter.Errors" (with key
+ * "PrometheusHttpServer").
+ */
+public class PrometheusHttpServer extends PrometheusReporter {
+
+	/** The content type of the Prometheus text format. */
+	public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+	/** The (empty) OpenMetrics exposition when the registry is disabled. */
+	private static final byte[] EOF = "# EOF\n".getBytes(StandardCharsets.US_ASCII);
+
+	/** The server. */
+	private final HttpServer server;
+
+	/** The executor that handles the requests. */
+	private final ThreadPoolExecutor executor;
+
+	/** The buffers that are reused between scrapes (their arrays only grow). */
+	private final BlockingQueue<ByteArrayOutputStream> buffers;
+
+	/**
+	 * Instantiates a new Prometheus HTTP server on a port (of all interfaces)
+	 * that handles requests using a single thread, and starts it.
+	 *
+	 * @param registry
+	 *            the registry
+	 * @param instanceName
+	 *            the instance name
+	 * @param port
+	 *            the port
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public PrometheusHttpServer(MetricRegistry registry, String instanceName, int port) throws IOException {
+		this(registry, instanceName, new InetSocketAddress(port), 1);
+	}
+
+	/**
+	 * Instantiates a new Prometheus HTTP server and starts it.
+	 *
+	 * @param registry
+	 *            the registry
+	 * @param instanceName
+	 *            the instance name
+	 * @param address
+	 *            the address to listen on
+	 * @param threads
+	 *            the maximum number of threads that handle requests
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public PrometheusHttpServer(MetricRegistry registry, String instanceName, InetSocketAddress address, int threads)
+			throws IOException {
+		super(registry, instanceName);
+		buffers = new ArrayBlockingQueue<>(threads);
+		executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(threads),
+				r -> {
+					Thread thread = new Thread(r, "prometheus-http");
+					thread.setDaemon(true);
+					return thread;
+				}, this::reject);
+		executor.allowCoreThreadTimeOut(true);
+		server = HttpServer.create(address, 0);
+		server.createContext("/metrics", this::handle);
+		server.setExecutor(executor);
+		server.start();
+	}
+
+	/**
+	 * Rejects a request when all threads are busy and the queue is full. The
+	 * request is rejected with an I/O exception, as that is what makes the
+	 * server close the connection on every Java version (Java 8 leaves it
+	 * open on other exceptions).
+	 *
+	 * @param runnable
+	 *            the runnable that would handle the request
+	 * @param executor
+	 *            the executor
+	 */
+	private void reject(Runnable runnable, ThreadPoolExecutor executor) {
+		registry.counter(ReportingScheduler.ERRORS_TYPE, "PrometheusHttpServer").increment();
+		PrometheusHttpServer.<RuntimeException>rethrow(new IOException("all threads are busy"));
+	}
+
+	/**
+	 * Throws a (checked) exception without declaring it.
+	 *
+	 * @param <T>
+	 *            the type that the exception is thrown as
+	 * @param throwable
+	 *            the exception
+	 * @throws T
+	 *             always
+	 */
+	@SuppressWarnings("unchecked")
+	private static <T extends Throwable> void rethrow(Throwable throwable) throws T {
+		throw (T) throwable;
+	}
+
+	/**
+	 * Gets the address the server listens on.
+	 *
+	 * @return the address
+	 */
+	public InetSocketAddress getAddress() {
+		return server.getAddress();
+	}
+
+	/**
+	 * Handles a scrape.
+	 *
+	 * @param exchange
+	 *            the exchange
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	private void handle(HttpExchange exchange) throws IOException {
+		try {
+			String method = exchange.getRequestMethod();
+			if (!method.equals("GET") && !method.equals("HEAD")) {
+				exchange.getResponseHeaders().set("Allow", "GET, HEAD");
+				exchange.sendResponseHeaders(405, -1);
+				return;
+			}
+			ByteArrayOutputStream buffer = buffers.poll();
+			if (buffer == null) {
+				buffer = new ByteArrayOutputStream(65536);
+			}
+			try {
+				buffer.reset();
+				boolean openMetrics = acceptsOpenMetrics(exchange);
+				if (openMetrics) {
+					if (registry.isEnabled()) {
+						writeOpenMetrics(buffer);
+					} else {
+						buffer.write(EOF);
+					}
+				} else if (registry.isEnabled()) {
+					write(buffer);
+				}
+				exchange.getResponseHeaders().set("Content-Type",
+						openMetrics ? OpenMetricsWriter.CONTENT_TYPE : CONTENT_TYPE);
+				if (method.equals("HEAD")) {
+					exchange.sendResponseHeaders(200, -1);
+				} else if (acceptsGzip(exchange)) {
+					exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+					exchange.sendResponseHeaders(200, 0);
+					try (OutputStream out = new GZIPOutputStream(exchange.getResponseBody(), 8192)) {
+						buffer.writeTo(out);
+					}
+				} else {
+					exchange.sendResponseHeaders(200, buffer.size());
+					buffer.writeTo(exchange.getResponseBody());
+				}
+			} finally {
+				buffers.offer(buffer);
+			}
+		} finally {
+			exchange.close();
+		}
+	}
+
+	/**
+	 * Checks if the client accepts the OpenMetrics format (as Prometheus does
+	 * by default).
+	 *
+	 * @param exchange
+	 *            the exchange
+	 * @return true, if OpenMetrics is accepted
+	 */
+	private static boolean acceptsOpenMetrics(HttpExchange exchange) {
+		return accepts(exchange, "Accept", "application/openmetrics-text");
+	}
+
+	/**
+	 * Checks if the client accepts a gzip compressed response.
+	 *
+	 * @param exchange
+	 *            the exchange
+	 * @return true, if gzip is accepted
+	 */
+	private static boolean acceptsGzip(HttpExchange exchange) {
+		return accepts(exchange, "Accept-Encoding", "gzip");
+	}
+
+	/**
+	 * Checks if a value is listed in a request header without a quality of
+	 * zero (such as "gzip;q=0", which means it is not accepted).
+	 *
+	 * @param exchange
+	 *            the exchange
+	 * @param header
+	 *            the name of the header
+	 * @param accepted
+	 *            the value (a media type or encoding)
+	 * @return true, if the value is accepted
+	 */
+	private static boolean accepts(HttpExchange exchange, String header, String accepted) {
+		List<String> values = exchange.getRequestHeaders().get(header);
+		if (values != null) {
+			for (String value : values) {
+				for (String element : value.split(",")) {
+					String[] parts = element.trim().split(";");
+					if (parts[0].trim().equalsIgnoreCase(accepted)) {
+						for (int i = 1; i < parts.length; i++) {
+							if (parts[i].trim().matches("q=0(\\.0*)?")) {
+								return false;
+							}
+						}
+						return true;
+					}
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Report, the metrics are served on request, so there is nothing to do.
+	 *
+	 * @param snapshot
+	 *            the snapshot
+	 * @return true, if successful
+	 */
+	@Override
+	public boolean report(Snapshot snapshot) {
+		return true;
+	}
+
+	/**
+	 * Stops the server and the threads that handle requests.
+	 */
+	@Override
+	public void shutdown() {
+		server.stop(0);
+		executor.shutdown();
+		super.shutdown();
+	}
+}
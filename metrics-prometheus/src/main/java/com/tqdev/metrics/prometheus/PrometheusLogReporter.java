@@ -28,6 +28,7 @@ import java.io.IOException;
 import java.util.Arrays;
 
 import com.tqdev.metrics.core.MetricRegistry;
+import com.tqdev.metrics.core.Snapshot;
 
 /**
  * The PrometheusFileReporter class reports values in the metric registry to
@@ -82,15 +83,14 @@ public class PrometheusLogReporter extends PrometheusReporter {
 	}
 
 	/**
-	 * Report.
+	 * Report a snapshot.
 	 *
+	 * @param snapshot
+	 *            the snapshot
 	 * @return true, if successful
 	 */
 	@Override
-	public boolean report() {
-		if (!registry.isEnabled()) {
-			return true;
-		}
+	public boolean report(Snapshot snapshot) {
 		File dir = new File(metricPath);
 		if (!dir.exists()) {
 			if (!dir.mkdir()) {
@@ -98,14 +98,14 @@ public class PrometheusLogReporter extends PrometheusReporter {
 			}
 		}
 		long threadId = Thread.currentThread().getId();
-		String time = String.valueOf(registry.getMillis());
+		String time = String.valueOf(snapshot.getMillis());
 		String temp = metricPath + "/" + time + "." + threadId;
 		String filename = metricPath + "/" + time + ".prom";
 		try {
 			File tempFile = new File(temp);
 			FileOutputStream fos = new FileOutputStream(tempFile);
 			BufferedOutputStream out = new BufferedOutputStream(fos, 8192);
-			write(out);
+			write(out, snapshot);
 			out.close();
 			tempFile.renameTo(new File(filename));
 			remove(maxFileCount);
@@ -0,0 +1,296 @@
+/* Copyright (C) 2017 Maurits van der Schee
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.tqdev.metrics.prometheus;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.concurrent.TimeUnit;
+
+import com.tqdev.metrics.core.Histogram;
+import com.tqdev.metrics.core.MetricRegistry;
+import com.tqdev.metrics.core.NameCache;
+import com.tqdev.metrics.core.ReportingScheduler;
+import com.tqdev.metrics.core.Snapshot;
+
+/**
+ * The PrometheusRemoteWriteReporter class pushes values in the metric
+ * registry to an endpoint that implements the Prometheus remote-write
+ * protocol (such as Prometheus with the remote-write receiver enabled). A
+ * snapshot is encoded as protobuf "WriteRequest" with one sample per series,
+ * compressed with Snappy and posted. The series have the same name and labels
+ * as in the text format (sketches are not sent). A request that is rejected
+ * (a 4xx response, other than 408 and 429) is not retried, as the next
+ * report sends the next snapshot. After other failures (such as a 5xx
+ * response or a timeout) reports are skipped for a backoff that doubles after
+ * every failure (up to the maximum). Failed requests are counted in type
+ * "metrics.Reporter.Errors" (with key "PrometheusRemoteWriteReporter"). The
+ * connection is kept alive (and reused) between requests, as responses are
+ * read completely.
+ */
+public class PrometheusRemoteWriteReporter extends PrometheusReporter {
+
+	/** The encoded quantile labels of histograms and sketches. */
+	private static final byte[][] QUANTILE_LABELS = new byte[Histogram.QUANTILES.length][];
+
+	static {
+		for (int q = 0; q < QUANTILE_LABELS.length; q++) {
+			QUANTILE_LABELS[q] = RemoteWriteEncoder.label("quantile", String.valueOf(Histogram.QUANTILES[q]));
+		}
+	}
+
+	/** The report URL. */
+	protected final String reportUrl;
+
+	/** The encoded "__name__", "host" and "instance" labels by type. */
+	private final NameCache nameLabels = new NameCache(type -> encodeName(type, ""));
+
+	/** The encoded labels of the count series (of histograms and sketches) by type. */
+	private final NameCache countLabels = new NameCache(type -> encodeName(type, "_count"));
+
+	/** The encoded "type" labels by type. */
+	private final NameCache typeLabels = new NameCache(PrometheusRemoteWriteReporter::encodeType);
+
+	/** The encoded "type_instance" labels by key. */
+	private final NameCache keyLabels = new NameCache(key -> RemoteWriteEncoder.label("type_instance", key));
+
+	/** The labels of a series (sorted by name). */
+	private final byte[][] labels = new byte[4][];
+
+	/** The encoder. */
+	private final RemoteWriteEncoder encoder = new RemoteWriteEncoder();
+
+	/** The compressor. */
+	private final SnappyCompressor compressor = new SnappyCompressor();
+
+	/** The compressed request body. */
+	private byte[] compressed = new byte[0];
+
+	/** The buffer in which responses are read. */
+	private final byte[] response = new byte[1024];
+
+	/** The initial backoff in milliseconds. */
+	private long initialBackoff = TimeUnit.SECONDS.toMillis(1);
+
+	/** The maximum backoff in milliseconds. */
+	private long maxBackoff = TimeUnit.MINUTES.toMillis(1);
+
+	/** The current backoff in milliseconds (0 after a successful request). */
+	private long backoff;
+
+	/** The time (in millis) before which no request is sent. */
+	private long retryAt;
+
+	/**
+	 * Instantiates a new Prometheus remote-write reporter.
+	 *
+	 * @param registry
+	 *            the registry
+	 * @param instanceName
+	 *            the instance name
+	 * @param reportUrl
+	 *            the report URL (such as "http://localhost:9090/api/v1/write")
+	 */
+	public PrometheusRemoteWriteReporter(MetricRegistry registry, String instanceName, String reportUrl) {
+		super(registry, instanceName);
+		this.reportUrl = reportUrl;
+	}
+
+	/**
+	 * Instantiates a new Prometheus remote-write reporter.
+	 *
+	 * @param registry
+	 *            the registry
+	 * @param instanceName
+	 *            the instance name
+	 * @param reportUrl
+	 *            the report URL (such as "http://localhost:9090/api/v1/write")
+	 * @param intervalInSeconds
+	 *            the interval in seconds
+	 */
+	public PrometheusRemoteWriteReporter(MetricRegistry registry, String instanceName, String reportUrl,
+			int intervalInSeconds) {
+		this(registry, instanceName, reportUrl);
+		run(intervalInSeconds);
+	}
+
+	/**
+	 * Sets the backoff after a failed request, it doubles after every failed
+	 * request (up to the maximum).
+	 *
+	 * @param initialMillis
+	 *            the initial backoff in milliseconds
+	 * @param maxMillis
+	 *            the maximum backoff in milliseconds
+	 */
+	public synchronized void setBackoff(long initialMillis, long maxMillis) {
+		this.initialBackoff = initialMillis;
+		this.maxBackoff = maxMillis;
+	}
+
+	/**
+	 * Report a snapshot, unless the backoff after a failed request has not
+	 * passed.
+	 *
+	 * @param snapshot
+	 *            the snapshot
+	 * @return true, if successful
+	 */
+	@Override
+	public synchronized boolean report(Snapshot snapshot) {
+		if (System.currentTimeMillis() < retryAt) {
+			return false;
+		}
+		int status = post(encode(snapshot));
+		if (status >= 200 && status < 300) {
+			backoff = 0;
+			return true;
+		}
+		registry.counter(ReportingScheduler.ERRORS_TYPE, "PrometheusRemoteWriteReporter").increment();
+		if (status < 400 || status >= 500 || status == 408 || status == 429) {
+			backoff = backoff == 0 ? initialBackoff : Math.min(backoff * 2, maxBackoff);
+			retryAt = System.currentTimeMillis() + backoff;
+		}
+		return false;
+	}
+
+	/**
+	 * Posts the compressed request.
+	 *
+	 * @param length
+	 *            the length of the compressed request
+	 * @return the status code, or -1 when the request failed
+	 */
+	private int post(int length) {
+		try {
+			HttpURLConnection con = (HttpURLConnection) new URL(reportUrl).openConnection();
+			con.setRequestMethod("POST");
+			con.setConnectTimeout(Long.valueOf(TimeUnit.SECONDS.toMillis(2)).intValue());
+			con.setReadTimeout(Long.valueOf(TimeUnit.SECONDS.toMillis(2)).intValue());
+			con.setDoOutput(true);
+			con.setFixedLengthStreamingMode(length);
+			con.setRequestProperty("Content-Type", "application/x-protobuf");
+			con.setRequestProperty("Content-Encoding", "snappy");
+			con.setRequestProperty("X-Prometheus-Remote-Write-Version", "0.1.0");
+			try (OutputStream out = con.getOutputStream()) {
+				out.write(compressed, 0, length);
+			}
+			int status = con.getResponseCode();
+			// read the response completely, so that the connection is reused
+			try (InputStream in = status < 400 ? con.getInputStream() : con.getErrorStream()) {
+				if (in != null) {
+					while (in.read(response) != -1) {
+						// discard
+					}
+				}
+			}
+			return status;
+		} catch (IOException e) {
+			// counted as failed request by the report
+			return -1;
+		}
+	}
+
+	/**
+	 * Encodes a snapshot as compressed "WriteRequest" in the compressed
+	 * buffer.
+	 *
+	 * @param snapshot
+	 *            the snapshot
+	 * @return the length of the compressed request
+	 */
+	int encode(Snapshot snapshot) {
+		encoder.reset();
+		long time = snapshot.getMillis();
+		for (int t = 0; t < snapshot.getTypeCount(); t++) {
+			byte[] name = nameLabels.get(snapshot.getType(t));
+			labels[2] = typeLabels.get(snapshot.getType(t));
+			for (int i = snapshot.getStart(t); i < snapshot.getEnd(t); i++) {
+				labels[0] = name;
+				labels[3] = keyLabels.get(snapshot.getKey(i));
+				if (snapshot.hasQuantiles(i)) {
+					for (int q = 0; q < QUANTILE_LABELS.length; q++) {
+						labels[1] = QUANTILE_LABELS[q];
+						encoder.write(labels, snapshot.getQuantile(i, q), time);
+					}
+					// the number of recorded values, as the "_count" of a summary
+					labels[0] = countLabels.get(snapshot.getType(t));
+				}
+				labels[1] = null;
+				encoder.write(labels, snapshot.getValue(i), time);
+			}
+		}
+		int max = SnappyCompressor.maxCompressedLength(encoder.size());
+		if (compressed.length < max) {
+			compressed = new byte[max];
+		}
+		return compressor.compress(encoder.getBuffer(), encoder.size(), compressed);
+	}
+
+	/**
+	 * Gets the compressed request body (of the last report).
+	 *
+	 * @return the compressed buffer
+	 */
+	byte[] getCompressed() {
+		return compressed;
+	}
+
+	/**
+	 * Encodes the labels of a type that sort before the "quantile" label, the
+	 * metric name (with invalid characters replaced with an underscore), the
+	 * "host" and the "instance" label.
+	 *
+	 * @param type
+	 *            the type
+	 * @param suffix
+	 *            the suffix of the metric name
+	 * @return the encoded labels
+	 */
+	private byte[] encodeName(String type, String suffix) {
+		String parts[] = NameCache.splitType(type);
+		String name = parts[0].replaceAll("[^a-zA-Z0-9_:]", "_") + suffix;
+		if (name.isEmpty() || Character.isDigit(name.charAt(0))) {
+			name = "_" + name;
+		}
+		byte[] nameLabel = RemoteWriteEncoder.label("__name__", name);
+		byte[] hostLabel = RemoteWriteEncoder.label("host", instanceName);
+		byte[] instanceLabel = RemoteWriteEncoder.label("instance", parts[1]);
+		byte[] encoded = new byte[nameLabel.length + hostLabel.length + instanceLabel.length];
+		System.arraycopy(nameLabel, 0, encoded, 0, nameLabel.length);
+		System.arraycopy(hostLabel, 0, encoded, nameLabel.length, hostLabel.length);
+		System.arraycopy(instanceLabel, 0, encoded, nameLabel.length + hostLabel.length, instanceLabel.length);
+		return encoded;
+	}
+
+	/**
+	 * Encodes the "type" label of a type.
+	 *
+	 * @param type
+	 *            the type
+	 * @return the encoded label
+	 */
+	private static byte[] encodeType(String type) {
+		return RemoteWriteEncoder.label("type", NameCache.splitType(type)[2]);
+	}
+}
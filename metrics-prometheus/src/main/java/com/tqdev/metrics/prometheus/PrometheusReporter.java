@@ -20,15 +20,35 @@
  */
 package com.tqdev.metrics.prometheus;
 
+import java.io.IOException;
 import java.io.OutputStream;
-import java.io.PrintWriter;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.TimeUnit;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
 
+import com.tqdev.metrics.core.ExpositionWriter;
+import com.tqdev.metrics.core.Histogram;
 import com.tqdev.metrics.core.MetricRegistry;
+import com.tqdev.metrics.core.NameCache;
+import com.tqdev.metrics.core.Reporter;
+import com.tqdev.metrics.core.ReportingScheduler;
+import com.tqdev.metrics.core.Snapshot;
 
-abstract class PrometheusReporter {
+abstract class PrometheusReporter implements Reporter {
+
+	/** The quantile labels of histograms and sketches, with the end of the labels. */
+	private static final byte[][] QUANTILE_LABELS = new byte[Histogram.QUANTILES.length][];
+
+	/** The end of the labels. */
+	private static final byte[] LABELS_END = "\"} ".getBytes(StandardCharsets.US_ASCII);
+
+	/** The start of the sketch comment. */
+	private static final byte[] SKETCH_COMMENT = "# SKETCH ".getBytes(StandardCharsets.US_ASCII);
+
+	static {
+		for (int q = 0; q < QUANTILE_LABELS.length; q++) {
+			QUANTILE_LABELS[q] = ("\",quantile=\"" + Histogram.QUANTILES[q] + "\"} ").getBytes(StandardCharsets.US_ASCII);
+		}
+	}
 
 	/**
 	 * The instanceName used to identify the source of the metrics in Prometheus.
@@ -40,6 +60,24 @@ abstract class PrometheusReporter {
 	 */
 	protected final MetricRegistry registry;
 
+	/** The scheduler that runs this reporter (or null when not running). */
+	private volatile ReportingScheduler scheduler;
+
+	/** The encoded starts of the series by type. */
+	private final NameCache types = new NameCache(type -> encodeType(type, ""));
+
+	/** The encoded starts of the count series (of histograms and sketches) by type. */
+	private final NameCache counts = new NameCache(type -> encodeType(type, "_count"));
+
+	/** The encoded keys. */
+	private final NameCache keys = new NameCache(PrometheusReporter::encodeKey);
+
+	/** The writer that is reused between reports (guarded by itself). */
+	private final ExpositionWriter writer = new ExpositionWriter(8192);
+
+	/** The writer of the OpenMetrics format. */
+	private final OpenMetricsWriter openMetrics;
+
 	/**
 	 * Instantiates a new JMX reporter.
 	 *
@@ -52,7 +90,7 @@ abstract class PrometheusReporter {
 	public PrometheusReporter(MetricRegistry registry, String instanceName) {
 		this.instanceName = instanceName;
 		this.registry = registry;
-		ScheduledExecutorService exec = Executors.newSingleThreadScheduledExecutor();
+		this.openMetrics = new OpenMetricsWriter(instanceName);
 	}
 
 	// metric_name [
@@ -72,57 +110,162 @@ abstract class PrometheusReporter {
 	// timestamp = milliseconds since epoch (int64)
 
 	/**
-	 * Write.
+	 * Write the metrics of a (consistent) snapshot of the registry. Histograms
+	 * are written as one sample per quantile (with a "quantile" label) and a
+	 * sample with the number of recorded values (with the "_count" suffix), as
+	 * a summary is. Sketches are written the same way, with a "# SKETCH"
+	 * comment with the serialized sketch (Base64), so that sketches of many
+	 * instances can be merged by {@link com.tqdev.metrics.core.SketchMerger}.
 	 *
 	 * @param out
 	 *            the out
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
 	 */
-	public void write(OutputStream out) {
-		PrintWriter w = new PrintWriter(out);
-		String instanceStr = instanceName.replace("\\", "\\\\").replace("\n", "\\n").replace("\"", "\\\"");
-		String time = String.valueOf((registry.getMillis() / 1000) * 1000);
-		for (String type : registry.getTypes()) {
-			String typeStr = type.replace("\\", "\\\\").replace("\n", "\\n").replace("\"", "\\\"");
-			for (String key : registry.getKeys(type)) {
-				String keyStr = key.replace("\\", "\\\\").replace("\n", "\\n").replace("\"", "\\\"");
-				String parts[] = typeStr.split("\\.", 3);
-				w.print(parts[0]);
-				w.print("{host=\"");
-				w.print(instanceStr);
-				w.print("\",instance=\"");
-				if (parts.length > 1) {
-					w.print(parts[1]);
-				}
-				w.print("\",type=\"");
-				if (parts.length > 2) {
-					w.append(parts[2]);
+	public void write(OutputStream out) throws IOException {
+		write(out, registry.snapshot());
+	}
+
+	/**
+	 * Write the metrics of a (consistent) snapshot of the registry.
+	 *
+	 * @param out
+	 *            the out
+	 * @param snapshot
+	 *            the snapshot
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public void write(OutputStream out, Snapshot snapshot) throws IOException {
+		synchronized (writer) {
+			ExpositionWriter w = writer.reset(out);
+			long time = (snapshot.getMillis() / 1000) * 1000;
+			for (int t = 0; t < snapshot.getTypeCount(); t++) {
+				byte[] series = types.get(snapshot.getType(t));
+				for (int i = snapshot.getStart(t); i < snapshot.getEnd(t); i++) {
+					byte[] key = keys.get(snapshot.getKey(i));
+					if (snapshot.hasQuantiles(i)) {
+						for (int q = 0; q < QUANTILE_LABELS.length; q++) {
+							w.write(series);
+							w.write(key);
+							w.write(QUANTILE_LABELS[q]);
+							w.write(snapshot.getQuantile(i, q));
+							w.write((byte) ' ');
+							w.write(time);
+							w.write((byte) '\n');
+						}
+					}
+					if (snapshot.hasSketch(i)) {
+						w.write(SKETCH_COMMENT);
+						w.write(series);
+						w.write(key);
+						w.write(LABELS_END);
+						w.write(Base64.getEncoder().encode(snapshot.getSketch(i)));
+						w.write((byte) '\n');
+					}
+					w.write(snapshot.hasQuantiles(i) ? counts.get(snapshot.getType(t)) : series);
+					w.write(key);
+					w.write(LABELS_END);
+					w.write(snapshot.getValue(i));
+					w.write((byte) ' ');
+					w.write(time);
+					w.write((byte) '\n');
 				}
-				w.print("\",type_instance=\"");
-				w.print(keyStr);
-				w.print("\"} ");
-				w.print(registry.get(type, key));
-				w.println(" " + time);
 			}
+			w.close();
 		}
-		w.close();
 	}
 
-	public abstract boolean report();
+	/**
+	 * Write the metrics of a new (sorted) snapshot of the registry in the
+	 * OpenMetrics format, see {@link OpenMetricsWriter}.
+	 *
+	 * @param out
+	 *            the out
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public void writeOpenMetrics(OutputStream out) throws IOException {
+		openMetrics.write(out, registry.snapshot(true));
+	}
+
+	/**
+	 * Encodes the start of the series of a type, up to the value of the
+	 * "type_instance" label.
+	 *
+	 * @param type
+	 *            the type
+	 * @param suffix
+	 *            the suffix of the metric name
+	 * @return the encoded start of the series
+	 */
+	private byte[] encodeType(String type, String suffix) {
+		String parts[] = NameCache.splitType(escape(type));
+		StringBuilder series = new StringBuilder();
+		series.append(parts[0]);
+		series.append(suffix);
+		series.append("{host=\"");
+		series.append(escape(instanceName));
+		series.append("\",instance=\"");
+		series.append(parts[1]);
+		series.append("\",type=\"");
+		series.append(parts[2]);
+		series.append("\",type_instance=\"");
+		return series.toString().getBytes(StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Encodes a key as label value.
+	 *
+	 * @param key
+	 *            the key
+	 * @return the encoded key
+	 */
+	private static byte[] encodeKey(String key) {
+		return escape(key).getBytes(StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Escapes a label value.
+	 *
+	 * @param str
+	 *            the string
+	 * @return the escaped string
+	 */
+	private static String escape(String str) {
+		return str.replace("\\", "\\\\").replace("\n", "\\n").replace("\"", "\\\"");
+	}
+
+	/**
+	 * Report a new snapshot of the registry.
+	 *
+	 * @return true, if successful
+	 */
+	public boolean report() {
+		if (!registry.isEnabled()) {
+			return true;
+		}
+		return report(registry.snapshot());
+	}
 
 	/**
-	 * Run.
+	 * Run, on the scheduler that is shared by the reporters of the registry
+	 * that run at the same interval (so they report the same snapshots).
 	 *
 	 * @param intervalInSeconds
 	 *            the interval in seconds
 	 */
 	public void run(int intervalInSeconds) {
-		exec.scheduleAtFixedRate(() -> this.report(), 1, intervalInSeconds, TimeUnit.SECONDS);
+		scheduler = ReportingScheduler.addShared(registry, intervalInSeconds, this);
 	}
 
 	/**
-	 * Handler for shutdown of Executor service.
+	 * Handler for shutdown of the scheduler.
 	 */
 	public void shutdown() {
-		this.exec.shutdown();
+		ReportingScheduler scheduler = this.scheduler;
+		if (scheduler != null) {
+			scheduler.remove(this);
+		}
 	}
 }
@@ -0,0 +1,202 @@
+/* Copyright (C) 2017 Maurits van der Schee
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.tqdev.metrics.prometheus;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * The RemoteWriteEncoder class encodes time series directly as the protobuf
+ * "WriteRequest" message of the Prometheus remote-write protocol, without
+ * building messages as objects. Labels are passed as encoded "labels" fields
+ * (see {@link #label(String, String)}), so that they can be cached. The
+ * buffer is reused, so an encoder should not be shared between threads.
+ *
+ * <pre>
+ * message WriteRequest { repeated TimeSeries timeseries = 1; }
+ * message TimeSeries { repeated Label labels = 1; repeated Sample samples = 2; }
+ * message Label { string name = 1; string value = 2; }
+ * message Sample { double value = 1; int64 timestamp = 2; }
+ * </pre>
+ */
+final class RemoteWriteEncoder {
+
+	/** The tag of a length delimited field 1. */
+	private static final byte FIELD_1_BYTES = 0x0a;
+
+	/** The tag of a length delimited field 2. */
+	private static final byte FIELD_2_BYTES = 0x12;
+
+	/** The tag of a 64 bit field 1. */
+	private static final byte FIELD_1_FIXED64 = 0x09;
+
+	/** The tag of a varint field 2. */
+	private static final byte FIELD_2_VARINT = 0x10;
+
+	/** The buffer. */
+	private byte[] buffer = new byte[65536];
+
+	/** The number of bytes in the buffer. */
+	private int count;
+
+	/**
+	 * Encodes a label as "labels" field of a time series, a label with an
+	 * empty value is omitted (encoded as no bytes).
+	 *
+	 * @param name
+	 *            the name
+	 * @param value
+	 *            the value
+	 * @return the encoded field
+	 */
+	static byte[] label(String name, String value) {
+		if (value.isEmpty()) {
+			return new byte[0];
+		}
+		byte[] n = name.getBytes(StandardCharsets.UTF_8);
+		byte[] v = value.getBytes(StandardCharsets.UTF_8);
+		int size = 1 + varintSize(n.length) + n.length + 1 + varintSize(v.length) + v.length;
+		byte[] field = new byte[1 + varintSize(size) + size];
+		int o = 0;
+		field[o++] = FIELD_1_BYTES;
+		o = writeVarint(field, o, size);
+		field[o++] = FIELD_1_BYTES;
+		o = writeVarint(field, o, n.length);
+		System.arraycopy(n, 0, field, o, n.length);
+		o += n.length;
+		field[o++] = FIELD_2_BYTES;
+		o = writeVarint(field, o, v.length);
+		System.arraycopy(v, 0, field, o, v.length);
+		return field;
+	}
+
+	/**
+	 * Empties the buffer.
+	 */
+	void reset() {
+		count = 0;
+	}
+
+	/**
+	 * Gets the buffer.
+	 *
+	 * @return the buffer
+	 */
+	byte[] getBuffer() {
+		return buffer;
+	}
+
+	/**
+	 * Gets the number of bytes in the buffer.
+	 *
+	 * @return the size
+	 */
+	int size() {
+		return count;
+	}
+
+	/**
+	 * Write a time series with a single sample, the labels (encoded fields)
+	 * must be sorted by name.
+	 *
+	 * @param labels
+	 *            the encoded labels (a null element is skipped)
+	 * @param value
+	 *            the value
+	 * @param timestamp
+	 *            the timestamp in milliseconds
+	 */
+	void write(byte[][] labels, double value, long timestamp) {
+		int sampleSize = 1 + 8 + 1 + varintSize(timestamp);
+		int size = 1 + varintSize(sampleSize) + sampleSize;
+		for (byte[] label : labels) {
+			if (label != null) {
+				size += label.length;
+			}
+		}
+		ensure(1 + varintSize(size) + size);
+		buffer[count++] = FIELD_1_BYTES;
+		count = writeVarint(buffer, count, size);
+		for (byte[] label : labels) {
+			if (label != null) {
+				System.arraycopy(label, 0, buffer, count, label.length);
+				count += label.length;
+			}
+		}
+		buffer[count++] = FIELD_2_BYTES;
+		count = writeVarint(buffer, count, sampleSize);
+		buffer[count++] = FIELD_1_FIXED64;
+		long bits = Double.doubleToRawLongBits(value);
+		for (int i = 0; i < 8; i++) {
+			buffer[count++] = (byte) (bits >>> (8 * i));
+		}
+		buffer[count++] = FIELD_2_VARINT;
+		count = writeVarint(buffer, count, timestamp);
+	}
+
+	/**
+	 * Ensures that the buffer has room for the number of bytes.
+	 *
+	 * @param length
+	 *            the number of bytes
+	 */
+	private void ensure(int length) {
+		if (count + length > buffer.length) {
+			buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, count + length));
+		}
+	}
+
+	/**
+	 * Gets the size of a varint.
+	 *
+	 * @param value
+	 *            the value
+	 * @return the size
+	 */
+	private static int varintSize(long value) {
+		int size = 1;
+		while ((value & ~0x7fL) != 0) {
+			value >>>= 7;
+			size++;
+		}
+		return size;
+	}
+
+	/**
+	 * Write a varint.
+	 *
+	 * @param out
+	 *            the output
+	 * @param o
+	 *            the position in the output
+	 * @param value
+	 *            the value
+	 * @return the position in the output
+	 */
+	private static int writeVarint(byte[] out, int o, long value) {
+		while ((value & ~0x7fL) != 0) {
+			out[o++] = (byte) ((value & 0x7f) | 0x80);
+			value >>>= 7;
+		}
+		out[o++] = (byte) value;
+		return o;
+	}
+}
@@ -0,0 +1,204 @@
+/* Copyright (C) 2017 Maurits van der Schee
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.tqdev.metrics.prometheus;
+
+import java.util.Arrays;
+
+/**
+ * The SnappyCompressor class compresses bytes in the Snappy block format (as
+ * required by the Prometheus remote-write protocol). Matches of at least 4
+ * bytes are found (greedily) using a hash table of positions, the input is
+ * compressed in blocks of 64 kB, so that copies fit a 2 byte offset. The hash
+ * table is reused, so a compressor should not be shared between threads.
+ */
+final class SnappyCompressor {
+
+	/** The size of a block. */
+	private static final int BLOCK_SIZE = 1 << 16;
+
+	/** The number of bits of the hash. */
+	private static final int HASH_BITS = 14;
+
+	/** The positions in the block by hash of 4 bytes. */
+	private final int[] table = new int[1 << HASH_BITS];
+
+	/**
+	 * Gets the maximum length of the compressed bytes.
+	 *
+	 * @param length
+	 *            the length of the input
+	 * @return the maximum compressed length
+	 */
+	static int maxCompressedLength(int length) {
+		return 32 + length + length / 6;
+	}
+
+	/**
+	 * Compresses the input.
+	 *
+	 * @param in
+	 *            the input
+	 * @param length
+	 *            the length of the input
+	 * @param out
+	 *            the output, at least of the maximum compressed length
+	 * @return the length of the output
+	 */
+	int compress(byte[] in, int length, byte[] out) {
+		int o = writeVarint(out, 0, length);
+		for (int start = 0; start < length; start += BLOCK_SIZE) {
+			o = compressBlock(in, start, Math.min(start + BLOCK_SIZE, length), out, o);
+		}
+		return o;
+	}
+
+	/**
+	 * Compresses a block.
+	 *
+	 * @param in
+	 *            the input
+	 * @param start
+	 *            the start of the block
+	 * @param end
+	 *            the end of the block
+	 * @param out
+	 *            the output
+	 * @param o
+	 *            the position in the output
+	 * @return the position in the output
+	 */
+	private int compressBlock(byte[] in, int start, int end, byte[] out, int o) {
+		Arrays.fill(table, 0);
+		int literal = start;
+		int i = start;
+		while (i + 4 <= end) {
+			int bytes = readInt(in, i);
+			int hash = (bytes * 0x1e35a7bd) >>> (32 - HASH_BITS);
+			int candidate = start + table[hash];
+			table[hash] = i - start;
+			if (candidate < i && readInt(in, candidate) == bytes) {
+				o = writeLiteral(in, literal, i - literal, out, o);
+				int length = 4;
+				while (i + length < end && in[candidate + length] == in[i + length]) {
+					length++;
+				}
+				o = writeCopy(i - candidate, length, out, o);
+				i += length;
+				literal = i;
+			} else {
+				i++;
+			}
+		}
+		return writeLiteral(in, literal, end - literal, out, o);
+	}
+
+	/**
+	 * Write a literal.
+	 *
+	 * @param in
+	 *            the input
+	 * @param start
+	 *            the start of the literal
+	 * @param length
+	 *            the length of the literal
+	 * @param out
+	 *            the output
+	 * @param o
+	 *            the position in the output
+	 * @return the position in the output
+	 */
+	private static int writeLiteral(byte[] in, int start, int length, byte[] out, int o) {
+		if (length == 0) {
+			return o;
+		}
+		int n = length - 1;
+		if (n < 60) {
+			out[o++] = (byte) (n << 2);
+		} else if (n < 1 << 8) {
+			out[o++] = (byte) (60 << 2);
+			out[o++] = (byte) n;
+		} else {
+			out[o++] = (byte) (61 << 2);
+			out[o++] = (byte) n;
+			out[o++] = (byte) (n >>> 8);
+		}
+		System.arraycopy(in, start, out, o, length);
+		return o + length;
+	}
+
+	/**
+	 * Write copies (of at most 64 bytes) with a 2 byte offset.
+	 *
+	 * @param offset
+	 *            the offset
+	 * @param length
+	 *            the length
+	 * @param out
+	 *            the output
+	 * @param o
+	 *            the position in the output
+	 * @return the position in the output
+	 */
+	private static int writeCopy(int offset, int length, byte[] out, int o) {
+		while (length > 0) {
+			// keep at least 4 bytes for the last copy
+			int n = length > 64 ? (length < 68 ? 60 : 64) : length;
+			out[o++] = (byte) (((n - 1) << 2) | 2);
+			out[o++] = (byte) offset;
+			out[o++] = (byte) (offset >>> 8);
+			length -= n;
+		}
+		return o;
+	}
+
+	/**
+	 * Write a varint.
+	 *
+	 * @param out
+	 *            the output
+	 * @param o
+	 *            the position in the output
+	 * @param value
+	 *            the value
+	 * @return the position in the output
+	 */
+	private static int writeVarint(byte[] out, int o, int value) {
+		while ((value & ~0x7f) != 0) {
+			out[o++] = (byte) ((value & 0x7f) | 0x80);
+			value >>>= 7;
+		}
+		out[o++] = (byte) value;
+		return o;
+	}
+
+	/**
+	 * Read an integer (4 bytes, little endian).
+	 *
+	 * @param in
+	 *            the input
+	 * @param i
+	 *            the position
+	 * @return the integer
+	 */
+	private static int readInt(byte[] in, int i) {
+		return (in[i] & 0xff) | (in[i + 1] & 0xff) << 8 | (in[i + 2] & 0xff) << 16 | (in[i + 3] & 0xff) << 24;
+	}
+}
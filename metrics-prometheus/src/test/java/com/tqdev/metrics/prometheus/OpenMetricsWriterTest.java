@@ -0,0 +1,138 @@
+/* Copyright (C) 2017 Maurits van der Schee
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.tqdev.metrics.prometheus;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.tqdev.metrics.core.MetricRegistry;
+
+/**
+ * The Class OpenMetricsWriterTest.
+ */
+public class OpenMetricsWriterTest {
+
+	/** The registry. */
+	protected MetricRegistry registry;
+
+	/** The writer. */
+	private OpenMetricsWriter writer;
+
+	/**
+	 * Initialize.
+	 */
+	@Before
+	public void setUp() {
+		registry = new MetricRegistry();
+		writer = new OpenMetricsWriter("localhost");
+	}
+
+	/**
+	 * Writes a sorted snapshot of the registry.
+	 *
+	 * @return the exposition
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	private String write() throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		writer.write(out, registry.snapshot(true));
+		return new String(out.toByteArray(), StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Should write counter and gauge families.
+	 *
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	@Test
+	public void shouldWriteCounterAndGaugeFamilies() throws IOException {
+		registry.add("jdbc.Statement.Invocations", "update", 2);
+		registry.add("jdbc.Statement.Invocations", "select", 3);
+		registry.set("jvm.Runtime", "Threads", () -> 12);
+		assertThat(write()).isEqualTo("# TYPE jdbc_Statement_Invocations counter\n"
+				+ "# HELP jdbc_Statement_Invocations jdbc.Statement.Invocations\n"
+				+ "jdbc_Statement_Invocations_total{host=\"localhost\",type_instance=\"select\"} 3\n"
+				+ "jdbc_Statement_Invocations_total{host=\"localhost\",type_instance=\"update\"} 2\n"
+				+ "# TYPE jvm_Runtime gauge\n"
+				+ "# HELP jvm_Runtime jvm.Runtime\n"
+				+ "jvm_Runtime{host=\"localhost\",type_instance=\"Threads\"} 12\n"
+				+ "# EOF\n");
+	}
+
+	/**
+	 * Should write summary families.
+	 *
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	@Test
+	public void shouldWriteSummaryFamilies() throws IOException {
+		registry.histogram("jdbc.Statement.Latency", "select").record(1000);
+		registry.histogram("jdbc.Statement.Latency", "select").record(1000);
+		String exposition = write();
+		assertThat(exposition).startsWith("# TYPE jdbc_Statement_Latency summary\n");
+		assertThat(exposition).contains(
+				"jdbc_Statement_Latency{host=\"localhost\",type_instance=\"select\",quantile=\"0.5\"} ",
+				"jdbc_Statement_Latency{host=\"localhost\",type_instance=\"select\",quantile=\"0.999\"} ",
+				"jdbc_Statement_Latency_count{host=\"localhost\",type_instance=\"select\"} 2\n");
+	}
+
+	/**
+	 * Should write unknown families and escape names.
+	 *
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	@Test
+	public void shouldWriteUnknownFamiliesAndEscapeNames() throws IOException {
+		registry.add("1st-type", "say \"hi\"", 1);
+		registry.set("1st-type", "gauge", () -> 2);
+		assertThat(write()).isEqualTo("# TYPE _1st_type unknown\n"
+				+ "# HELP _1st_type 1st-type\n"
+				+ "_1st_type{host=\"localhost\",type_instance=\"gauge\"} 2\n"
+				+ "_1st_type{host=\"localhost\",type_instance=\"say \\\"hi\\\"\"} 1\n"
+				+ "# EOF\n");
+	}
+
+	/**
+	 * Should not write families with the same name.
+	 *
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	@Test
+	public void shouldNotWriteFamiliesWithTheSameName() throws IOException {
+		registry.add("a.b", "x", 1);
+		registry.add("a_b", "y", 2);
+		String exposition = write();
+		assertThat(exposition).contains("# TYPE a_b counter\n# HELP a_b a.b\n", "# TYPE a_b_2 counter\n",
+				"a_b_2_total{host=\"localhost\",type_instance=\"y\"} 2\n");
+		assertThat(write()).isEqualTo(exposition);
+	}
+}
@@ -30,6 +30,8 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
 import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
 
 import org.junit.After;
 import org.junit.Before;
@@ -115,6 +117,49 @@ public class PrometheusFileReporterTest {
 				"jdbc{host=\"localhost\",instance=\"Statement\",type=\"Duration\",type_instance=\"select\"} 123 1510373758000");
 	}
 
+	/**
+	 * Should write quantiles and count of histogram.
+	 *
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	@Test
+	public void shouldWriteQuantilesAndCountOfHistogram() throws IOException {
+		registry.histogram("jdbc.Statement.Latency", "select").record(123);
+		registry.histogram("jdbc.Statement.Latency", "select").record(120);
+		boolean success = reporter.report();
+		String content = String.join("\n", Files.readAllLines(tempPath.resolve("20171111.prom")));
+		assertThat(success).isTrue();
+		assertThat(content).isEqualTo(
+				"jdbc{host=\"localhost\",instance=\"Statement\",type=\"Latency\",type_instance=\"select\",quantile=\"0.5\"} 127 1510373758000" + "\n"
+						+ "jdbc{host=\"localhost\",instance=\"Statement\",type=\"Latency\",type_instance=\"select\",quantile=\"0.9\"} 127 1510373758000" + "\n"
+						+ "jdbc{host=\"localhost\",instance=\"Statement\",type=\"Latency\",type_instance=\"select\",quantile=\"0.99\"} 127 1510373758000" + "\n"
+						+ "jdbc{host=\"localhost\",instance=\"Statement\",type=\"Latency\",type_instance=\"select\",quantile=\"0.999\"} 127 1510373758000" + "\n"
+						+ "jdbc_count{host=\"localhost\",instance=\"Statement\",type=\"Latency\",type_instance=\"select\"} 2 1510373758000");
+	}
+
+	/**
+	 * Should write sketch.
+	 *
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	@Test
+	public void shouldWriteSketch() throws IOException {
+		registry.sketch("jdbc.Statement.Latency", "select").record(1000);
+		boolean success = reporter.report();
+		List<String> lines = Files.readAllLines(tempPath.resolve("20171111.prom"));
+		assertThat(success).isTrue();
+		assertThat(lines).hasSize(6);
+		assertThat(lines.get(0)).isEqualTo(
+				"jdbc{host=\"localhost\",instance=\"Statement\",type=\"Latency\",type_instance=\"select\",quantile=\"0.5\"} 1002 1510373758000");
+		assertThat(lines.get(4)).isEqualTo(
+				"# SKETCH jdbc{host=\"localhost\",instance=\"Statement\",type=\"Latency\",type_instance=\"select\"} "
+						+ Base64.getEncoder().encodeToString(registry.getSketch("jdbc.Statement.Latency", "select").toBytes()));
+		assertThat(lines.get(5)).isEqualTo(
+				"jdbc_count{host=\"localhost\",instance=\"Statement\",type=\"Latency\",type_instance=\"select\"} 1 1510373758000");
+	}
+
 	/**
 	 * Should append file.
 	 *
@@ -146,6 +191,7 @@ public class PrometheusFileReporterTest {
 		String line = "jdbc{host=\"localhost\",instance=\"Statement\",type=\"Duration\",type_instance=\"select\"} 123 1510373758000\n";
 		Files.write(tempPath.resolve("20171110.prom"), line.getBytes(), StandardOpenOption.CREATE_NEW);
 		boolean success = reporter.report();
+		reporter.shutdown();
 		File[] gzipFiles = tempPath.toFile().listFiles((f, s) -> s.endsWith(".gz"));
 		File[] textFiles = tempPath.toFile().listFiles((f, s) -> s.endsWith(".prom"));
 		assertThat(success).isTrue();
@@ -169,6 +215,7 @@ public class PrometheusFileReporterTest {
 		Files.createFile(tempPath.resolve("20171109.prom.gz"));
 		Files.write(tempPath.resolve("20171110.prom"), line.getBytes(), StandardOpenOption.CREATE_NEW);
 		boolean success = reporter.report();
+		reporter.shutdown();
 		File[] gzipFiles = tempPath.toFile().listFiles((f, s) -> s.endsWith(".gz"));
 		Arrays.sort(gzipFiles);
 		File[] textFiles = tempPath.toFile().listFiles((f, s) -> s.endsWith(".prom"));
@@ -0,0 +1,258 @@
+/* Copyright (C) 2017 Maurits van der Schee
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.tqdev.metrics.prometheus;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.tqdev.metrics.core.MetricRegistry;
+import com.tqdev.metrics.core.ReportingScheduler;
+
+/**
+ * The Class PrometheusHttpServerTest.
+ */
+public class PrometheusHttpServerTest {
+
+	/** The registry. */
+	protected MetricRegistry registry;
+
+	/** The server. */
+	private PrometheusHttpServer server;
+
+	/**
+	 * Initialize.
+	 *
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	@Before
+	public void setUp() throws IOException {
+		registry = spy(new MetricRegistry());
+		when(registry.getMillis()).thenReturn(1510373758123L);
+		server = new PrometheusHttpServer(registry, "localhost",
+				new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 2);
+	}
+
+	/**
+	 * Cleanup.
+	 */
+	@After
+	public void tearDown() {
+		server.shutdown();
+	}
+
+	/**
+	 * Opens a connection to a path of the server.
+	 *
+	 * @param path
+	 *            the path
+	 * @return the connection
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	private HttpURLConnection open(String path) throws IOException {
+		URL url = new URL("http", "127.0.0.1", server.getAddress().getPort(), path);
+		return (HttpURLConnection) url.openConnection();
+	}
+
+	/**
+	 * Reads a stream as UTF-8.
+	 *
+	 * @param in
+	 *            the in
+	 * @return the string
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	private String read(InputStream in) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buffer = new byte[8192];
+		int length;
+		while ((length = in.read(buffer)) > 0) {
+			out.write(buffer, 0, length);
+		}
+		in.close();
+		return new String(out.toByteArray(), StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Should serve metrics.
+	 *
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	@Test
+	public void shouldServeMetrics() throws IOException {
+		registry.add("jdbc.Statement.Duration", "select", 123);
+		for (int i = 0; i < 2; i++) {
+			HttpURLConnection connection = open("/metrics");
+			assertThat(connection.getResponseCode()).isEqualTo(200);
+			assertThat(connection.getContentType()).isEqualTo(PrometheusHttpServer.CONTENT_TYPE);
+			assertThat(read(connection.getInputStream())).isEqualTo(
+					"jdbc{host=\"localhost\",instance=\"Statement\",type=\"Duration\",type_instance=\"select\"} 123 1510373758000\n");
+		}
+	}
+
+	/**
+	 * Should serve OpenMetrics when accepted.
+	 *
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	@Test
+	public void shouldServeOpenMetricsWhenAccepted() throws IOException {
+		registry.add("jdbc.Statement.Duration", "select", 123);
+		HttpURLConnection connection = open("/metrics");
+		connection.setRequestProperty("Accept",
+				"application/openmetrics-text;version=1.0.0,text/plain;version=0.0.4;q=0.5,*/*;q=0.1");
+		assertThat(connection.getResponseCode()).isEqualTo(200);
+		assertThat(connection.getContentType()).isEqualTo(OpenMetricsWriter.CONTENT_TYPE);
+		assertThat(read(connection.getInputStream())).isEqualTo("# TYPE jdbc_Statement_Duration counter\n"
+				+ "# HELP jdbc_Statement_Duration jdbc.Statement.Duration\n"
+				+ "jdbc_Statement_Duration_total{host=\"localhost\",type_instance=\"select\"} 123\n# EOF\n");
+	}
+
+	/**
+	 * Should not serve OpenMetrics when not accepted.
+	 *
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	@Test
+	public void shouldNotServeOpenMetricsWhenNotAccepted() throws IOException {
+		HttpURLConnection connection = open("/metrics");
+		connection.setRequestProperty("Accept", "application/openmetrics-text;version=1.0.0;q=0,text/plain");
+		assertThat(connection.getResponseCode()).isEqualTo(200);
+		assertThat(connection.getContentType()).isEqualTo(PrometheusHttpServer.CONTENT_TYPE);
+	}
+
+	/**
+	 * Should serve gzip compressed metrics.
+	 *
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	@Test
+	public void shouldServeGzipCompressedMetrics() throws IOException {
+		registry.add("jdbc.Statement.Duration", "select", 123);
+		HttpURLConnection connection = open("/metrics");
+		connection.setRequestProperty("Accept-Encoding", "deflate, gzip;q=0.8");
+		assertThat(connection.getResponseCode()).isEqualTo(200);
+		assertThat(connection.getContentEncoding()).isEqualTo("gzip");
+		assertThat(read(new GZIPInputStream(connection.getInputStream()))).isEqualTo(
+				"jdbc{host=\"localhost\",instance=\"Statement\",type=\"Duration\",type_instance=\"select\"} 123 1510373758000\n");
+	}
+
+	/**
+	 * Should not serve gzip compressed metrics when not accepted.
+	 *
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	@Test
+	public void shouldNotServeGzipCompressedMetricsWhenNotAccepted() throws IOException {
+		HttpURLConnection connection = open("/metrics");
+		connection.setRequestProperty("Accept-Encoding", "gzip;q=0");
+		assertThat(connection.getResponseCode()).isEqualTo(200);
+		assertThat(connection.getContentEncoding()).isNull();
+	}
+
+	/**
+	 * Should not serve other paths or methods.
+	 *
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	@Test
+	public void shouldNotServeOtherPathsOrMethods() throws IOException {
+		assertThat(open("/other").getResponseCode()).isEqualTo(404);
+		HttpURLConnection connection = open("/metrics");
+		connection.setRequestMethod("POST");
+		assertThat(connection.getResponseCode()).isEqualTo(405);
+	}
+
+	/**
+	 * Should reject requests when saturated.
+	 *
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 * @throws InterruptedException
+	 *             the interrupted exception
+	 */
+	@Test
+	public void shouldRejectRequestsWhenSaturated() throws IOException, InterruptedException {
+		List<Socket> sockets = new ArrayList<>();
+		int rejected = -1;
+		try {
+			// requests that never end keep the threads busy and fill the queue
+			for (int i = 0; i < 10 && rejected < 0; i++) {
+				Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.getAddress().getPort());
+				sockets.add(socket);
+				socket.setSoTimeout(200);
+				socket.getOutputStream().write("GET /metrics HTTP/1.1\r\n".getBytes(StandardCharsets.US_ASCII));
+				try {
+					if (socket.getInputStream().read() < 0) {
+						rejected = i;
+					}
+				} catch (SocketTimeoutException e) {
+					// the request is handled or queued
+				} catch (IOException e) {
+					rejected = i;
+				}
+			}
+		} finally {
+			for (Socket socket : sockets) {
+				socket.close();
+			}
+		}
+		assertThat(rejected).isEqualTo(4);
+		assertThat(registry.get(ReportingScheduler.ERRORS_TYPE, "PrometheusHttpServer")).isEqualTo(1);
+		// the threads are released as the closed requests fail
+		int status = 0;
+		for (int i = 0; i < 50 && status != 200; i++) {
+			try {
+				status = open("/metrics").getResponseCode();
+			} catch (IOException e) {
+				Thread.sleep(100);
+			}
+		}
+		assertThat(status).isEqualTo(200);
+	}
+}
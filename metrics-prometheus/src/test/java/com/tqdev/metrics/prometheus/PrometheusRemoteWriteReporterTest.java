@@ -0,0 +1,278 @@
+/* Copyright (C) 2017 Maurits van der Schee
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.tqdev.metrics.prometheus;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.xerial.snappy.Snappy;
+
+import com.sun.net.httpserver.HttpServer;
+import com.tqdev.metrics.core.MetricRegistry;
+import com.tqdev.metrics.core.ReportingScheduler;
+
+/**
+ * The Class PrometheusRemoteWriteReporterTest.
+ */
+public class PrometheusRemoteWriteReporterTest {
+
+	/** The registry. */
+	protected MetricRegistry registry;
+
+	/** The server. */
+	private HttpServer server;
+
+	/** The status code that the server responds with. */
+	private volatile int status = 204;
+
+	/** The headers of the requests (content type and encoding). */
+	private final List<String> headers = new CopyOnWriteArrayList<>();
+
+	/** The decoded series of the requests. */
+	private final List<String> series = new CopyOnWriteArrayList<>();
+
+	/** The reporter. */
+	private PrometheusRemoteWriteReporter reporter;
+
+	/**
+	 * Initialize.
+	 *
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	@Before
+	public void setUp() throws IOException {
+		registry = spy(new MetricRegistry());
+		when(registry.getMillis()).thenReturn(1510373758123L);
+		server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+		server.createContext("/api/v1/write", exchange -> {
+			headers.add(exchange.getRequestHeaders().getFirst("Content-Type") + ";"
+					+ exchange.getRequestHeaders().getFirst("Content-Encoding"));
+			series.addAll(decode(Snappy.uncompress(readAll(exchange.getRequestBody()))));
+			exchange.sendResponseHeaders(status, -1);
+			exchange.close();
+		});
+		server.start();
+		reporter = new PrometheusRemoteWriteReporter(registry, "localhost",
+				"http://127.0.0.1:" + server.getAddress().getPort() + "/api/v1/write");
+	}
+
+	/**
+	 * Cleanup.
+	 */
+	@After
+	public void tearDown() {
+		reporter.shutdown();
+		server.stop(0);
+	}
+
+	/**
+	 * Reads all bytes of a stream.
+	 *
+	 * @param in
+	 *            the stream
+	 * @return the bytes
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	private static byte[] readAll(InputStream in) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buffer = new byte[8192];
+		int length;
+		while ((length = in.read(buffer)) > 0) {
+			out.write(buffer, 0, length);
+		}
+		return out.toByteArray();
+	}
+
+	/**
+	 * Reads a varint.
+	 *
+	 * @param in
+	 *            the buffer
+	 * @return the value
+	 */
+	private static long readVarint(ByteBuffer in) {
+		long value = 0;
+		for (int shift = 0;; shift += 7) {
+			byte b = in.get();
+			value |= (long) (b & 0x7f) << shift;
+			if (b >= 0) {
+				return value;
+			}
+		}
+	}
+
+	/**
+	 * Reads a length delimited field.
+	 *
+	 * @param in
+	 *            the buffer
+	 * @return the field
+	 */
+	private static ByteBuffer readBytes(ByteBuffer in) {
+		int length = (int) readVarint(in);
+		ByteBuffer field = in.slice().order(ByteOrder.LITTLE_ENDIAN);
+		field.limit(length);
+		in.position(in.position() + length);
+		return field;
+	}
+
+	/**
+	 * Decodes a "WriteRequest" as lines in the text format.
+	 *
+	 * @param request
+	 *            the request
+	 * @return the lines
+	 */
+	private static List<String> decode(byte[] request) {
+		List<String> lines = new ArrayList<>();
+		ByteBuffer in = ByteBuffer.wrap(request);
+		while (in.hasRemaining()) {
+			assertThat(in.get()).isEqualTo((byte) 0x0a);
+			ByteBuffer timeSeries = readBytes(in);
+			StringBuilder line = new StringBuilder();
+			while (timeSeries.hasRemaining()) {
+				byte tag = timeSeries.get();
+				ByteBuffer field = readBytes(timeSeries);
+				if (tag == 0x0a) {
+					assertThat(field.get()).isEqualTo((byte) 0x0a);
+					String name = StandardCharsets.UTF_8.decode(readBytes(field)).toString();
+					assertThat(field.get()).isEqualTo((byte) 0x12);
+					String value = StandardCharsets.UTF_8.decode(readBytes(field)).toString();
+					line.append(line.length() == 0 ? "" : ",").append(name).append('=').append(value);
+				} else {
+					assertThat(tag).isEqualTo((byte) 0x12);
+					assertThat(field.get()).isEqualTo((byte) 0x09);
+					double value = field.getDouble();
+					assertThat(field.get()).isEqualTo((byte) 0x10);
+					line.append(' ').append(value).append(' ').append(readVarint(field));
+				}
+			}
+			lines.add(line.toString());
+		}
+		return lines;
+	}
+
+	/**
+	 * Should post snappy compressed protobuf.
+	 */
+	@Test
+	public void shouldPostSnappyCompressedProtobuf() {
+		registry.add("jdbc.Statement.Duration", "select", 123);
+		registry.set("jvm.Runtime", "Threads", 12);
+		assertThat(reporter.report()).isTrue();
+		assertThat(headers).containsExactly("application/x-protobuf;snappy");
+		assertThat(series).containsOnly(
+				"__name__=jdbc,host=localhost,instance=Statement,type=Duration,type_instance=select 123.0 1510373758123",
+				"__name__=jvm,host=localhost,instance=Runtime,type_instance=Threads 12.0 1510373758123");
+	}
+
+	/**
+	 * Should post quantiles with sorted labels and the count.
+	 */
+	@Test
+	public void shouldPostQuantilesWithSortedLabelsAndCount() {
+		registry.histogram("jdbc.Statement.Latency", "select").record(1000);
+		registry.histogram("jdbc.Statement.Latency", "select").record(1000);
+		assertThat(reporter.report()).isTrue();
+		assertThat(series).hasSize(5);
+		assertThat(series.get(0)).startsWith(
+				"__name__=jdbc,host=localhost,instance=Statement,quantile=0.5,type=Latency,type_instance=select ");
+		assertThat(series.get(4)).isEqualTo(
+				"__name__=jdbc_count,host=localhost,instance=Statement,type=Latency,type_instance=select 2.0 1510373758123");
+	}
+
+	/**
+	 * Should encode many series.
+	 */
+	@Test
+	public void shouldEncodeManySeries() {
+		for (int i = 0; i < 10000; i++) {
+			registry.add("jdbc.Statement.Invocations", "query " + i, i);
+		}
+		assertThat(reporter.report()).isTrue();
+		assertThat(series).hasSize(10000);
+		assertThat(series).contains(
+				"__name__=jdbc,host=localhost,instance=Statement,type=Invocations,type_instance=query 9999 9999.0 1510373758123");
+	}
+
+	/**
+	 * Should fail on server error.
+	 */
+	@Test
+	public void shouldFailOnServerError() {
+		status = 500;
+		registry.increment("jdbc.Statement.Invocations", "select");
+		assertThat(reporter.report()).isFalse();
+		assertThat(registry.get(ReportingScheduler.ERRORS_TYPE, "PrometheusRemoteWriteReporter")).isEqualTo(1);
+	}
+
+	/**
+	 * Should back off after a server error.
+	 *
+	 * @throws InterruptedException
+	 *             the interrupted exception
+	 */
+	@Test
+	public void shouldBackOffAfterServerError() throws InterruptedException {
+		reporter.setBackoff(100, 100);
+		status = 503;
+		registry.increment("jdbc.Statement.Invocations", "select");
+		assertThat(reporter.report()).isFalse();
+		status = 204;
+		assertThat(reporter.report()).isFalse();
+		assertThat(headers).hasSize(1);
+		Thread.sleep(150);
+		assertThat(reporter.report()).isTrue();
+		assertThat(headers).hasSize(2);
+	}
+
+	/**
+	 * Should not back off after a rejected request.
+	 */
+	@Test
+	public void shouldNotBackOffAfterRejectedRequest() {
+		reporter.setBackoff(60000, 60000);
+		status = 400;
+		registry.increment("jdbc.Statement.Invocations", "select");
+		assertThat(reporter.report()).isFalse();
+		status = 204;
+		assertThat(reporter.report()).isTrue();
+		assertThat(headers).hasSize(2);
+	}
+}
@@ -0,0 +1,104 @@
+/* Copyright (C) 2017 Maurits van der Schee
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.tqdev.metrics.prometheus;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+import org.xerial.snappy.Snappy;
+
+/**
+ * The Class SnappyCompressorTest.
+ */
+public class SnappyCompressorTest {
+
+	/** The compressor. */
+	private final SnappyCompressor compressor = new SnappyCompressor();
+
+	/**
+	 * Compresses the input.
+	 *
+	 * @param input
+	 *            the input
+	 * @return the compressed bytes
+	 */
+	private byte[] compress(byte[] input) {
+		byte[] out = new byte[SnappyCompressor.maxCompressedLength(input.length)];
+		return Arrays.copyOf(out, compressor.compress(input, input.length, out));
+	}
+
+	/**
+	 * Should compress empty input.
+	 *
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	@Test
+	public void shouldCompressEmptyInput() throws IOException {
+		assertThat(compress(new byte[0])).containsExactly(0);
+	}
+
+	/**
+	 * Should compress repetitive input.
+	 *
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	@Test
+	public void shouldCompressRepetitiveInput() throws IOException {
+		StringBuilder text = new StringBuilder();
+		for (int i = 0; i < 10000; i++) {
+			text.append("jdbc{host=\"localhost\",instance=\"Statement\",type=\"Invocations\",type_instance=\"q")
+					.append(i).append("\"} ").append(i * 7).append('\n');
+		}
+		byte[] input = text.toString().getBytes(StandardCharsets.UTF_8);
+		byte[] compressed = compress(input);
+		assertThat(compressed.length).isLessThan(input.length / 4);
+		assertThat(Snappy.uncompress(compressed)).isEqualTo(input);
+	}
+
+	/**
+	 * Should compress random input.
+	 *
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	@Test
+	public void shouldCompressRandomInput() throws IOException {
+		Random random = new Random(42);
+		for (int length : new int[] { 1, 3, 4, 17, 100, 65535, 65536, 65537, 200000 }) {
+			byte[] input = new byte[length];
+			random.nextBytes(input);
+			for (int i = 0; i + 80 < length; i += 97) {
+				// mix in runs of zeros of different lengths
+				Arrays.fill(input, i, i + (i % 80), (byte) 0);
+			}
+			byte[] compressed = compress(input);
+			assertThat(compressed.length).isLessThanOrEqualTo(SnappyCompressor.maxCompressedLength(length));
+			assertThat(Snappy.uncompress(compressed)).isEqualTo(input);
+		}
+	}
+}
@@ -79,7 +79,6 @@ public class MeasureUserActivityFilter extends OncePerRequestFilter {
 		final long duration = registry.getNanos() - startTime;
 
 		final String username = getUsername();
-		registry.increment("spring.Username.Invocations", username);
-		registry.add("spring.Username.Durations", username, duration);
+		registry.record("spring.Username", username, duration);
 	}
 }
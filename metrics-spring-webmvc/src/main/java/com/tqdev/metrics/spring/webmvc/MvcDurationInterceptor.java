@@ -20,12 +20,15 @@
  */
 package com.tqdev.metrics.spring.webmvc;
 
+import java.util.concurrent.ConcurrentHashMap;
+
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
 import org.springframework.web.method.HandlerMethod;
 import org.springframework.web.servlet.handler.HandlerInterceptorAdapter;
 
+import com.tqdev.metrics.core.CompositeKeys;
 import com.tqdev.metrics.core.MetricRegistry;
 
 /**
@@ -36,6 +39,12 @@ public class MvcDurationInterceptor extends HandlerInterceptorAdapter {
 	/** The registry. */
 	private final MetricRegistry registry;
 
+	/** The names by controller and action, so that they are not concatenated per request. */
+	private final CompositeKeys names = new CompositeKeys(".");
+
+	/** The controller names by class, so that they are not derived per request. */
+	private final ConcurrentHashMap<Class<?>, String> controllerNames = new ConcurrentHashMap<>();
+
 	/**
 	 * Instantiates a new MVC duration interceptor.
 	 *
@@ -82,7 +91,12 @@ public class MvcDurationInterceptor extends HandlerInterceptorAdapter {
 	 * @return the class name
 	 */
 	public String getControllerName(HandlerMethod handler) {
-		return handler.getMethod().getDeclaringClass().getSimpleName();
+		Class<?> controller = handler.getMethod().getDeclaringClass();
+		String name = controllerNames.get(controller);
+		if (name == null) {
+			name = controllerNames.computeIfAbsent(controller, Class::getSimpleName);
+		}
+		return name;
 	}
 
 	/*
@@ -105,12 +119,11 @@ public class MvcDurationInterceptor extends HandlerInterceptorAdapter {
 
 		if (handler instanceof HandlerMethod) {
 			HandlerMethod handlerMethod = (HandlerMethod) handler;
-			name = getControllerName(handlerMethod) + "." + getActionName(handlerMethod);
+			name = names.get(getControllerName(handlerMethod), getActionName(handlerMethod));
 		} else {
 			name = "(other)";
 		}
 
-		registry.add("spring.Handler.Durations", name, duration);
-		registry.increment("spring.Handler.Invocations", name);
+		registry.record("spring.Handler", name, duration);
 	}
 }
@@ -0,0 +1,369 @@
+/* Copyright (C) 2017 Maurits van der Schee
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.tqdev.metrics.statsd;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.DatagramChannel;
+import java.nio.charset.StandardCharsets;
+
+import com.tqdev.metrics.core.DatagramOutputStream;
+import com.tqdev.metrics.core.ExpositionWriter;
+import com.tqdev.metrics.core.Histogram;
+import com.tqdev.metrics.core.MetricRegistry;
+import com.tqdev.metrics.core.NameCache;
+import com.tqdev.metrics.core.Reporter;
+import com.tqdev.metrics.core.ReportingScheduler;
+import com.tqdev.metrics.core.Snapshot;
+
+/**
+ * The StatsdReporter class reports values in the metric registry to a StatsD
+ * (or DogStatsD) agent over UDP. The metrics are aggregated by the registry,
+ * so every interval the change of counters (and timers) since the previous
+ * report is sent as (signed) counter ("c") and gauges and the quantiles of
+ * histograms and sketches are sent as gauge ("g"). The lines are packed into
+ * packets of at most the maximum packet size, that are sent over a
+ * non-blocking channel.
+ * Packets that can not be sent immediately and lines that do not fit in a
+ * packet are dropped and counted in the types
+ * "metrics.Reporter.DroppedPackets" and "metrics.Reporter.OversizedLines"
+ * (with key "Statsd"), reports that fail are counted in type
+ * "metrics.Reporter.Errors" (with key "StatsdReporter").
+ *
+ * Metric names are the type and the key separated by a dot (for instance
+ * "jdbc.Statement.Invocations.select"), quantiles have a suffix (".p50",
+ * ".p90", ".p99" and ".p999"). When DogStatsD tags are enabled, the name is
+ * the type and the host and key are sent as tags (such as
+ * "#host:localhost,type_instance:select"), quantiles are then tagged (such as
+ * "quantile:0.99").
+ */
+public class StatsdReporter implements Reporter {
+
+	/** The default maximum packet size (that fits the MTU of Ethernet). */
+	public static final int DEFAULT_MAX_PACKET_SIZE = 1432;
+
+	/** The suffixes of the quantiles of histograms and sketches. */
+	private static final byte[][] QUANTILE_SUFFIXES = new byte[Histogram.QUANTILES.length][];
+
+	/** The tags of the quantiles of histograms and sketches. */
+	private static final byte[][] QUANTILE_TAGS = new byte[Histogram.QUANTILES.length][];
+
+	/** The counter type. */
+	private static final byte[] COUNTER = "|c".getBytes(StandardCharsets.US_ASCII);
+
+	/** The gauge type. */
+	private static final byte[] GAUGE = "|g".getBytes(StandardCharsets.US_ASCII);
+
+	static {
+		for (int q = 0; q < Histogram.QUANTILES.length; q++) {
+			String quantile = String.valueOf(Histogram.QUANTILES[q]);
+			String digits = quantile.substring(2);
+			if (digits.length() == 1) {
+				digits += "0";
+			}
+			QUANTILE_SUFFIXES[q] = (".p" + digits).getBytes(StandardCharsets.US_ASCII);
+			QUANTILE_TAGS[q] = (",quantile:" + quantile).getBytes(StandardCharsets.US_ASCII);
+		}
+	}
+
+	/**
+	 * The instanceName used to identify the source of the metrics (as tag).
+	 */
+	protected final String instanceName;
+
+	/**
+	 * The registry in which the metrics, that this StatsdReporter reports,
+	 * are stored.
+	 */
+	protected final MetricRegistry registry;
+
+	/** Whether the host and key are sent as DogStatsD tags. */
+	protected final boolean tags;
+
+	/** The channel. */
+	private final DatagramChannel channel;
+
+	/** The packets that are written. */
+	private final DatagramOutputStream packets;
+
+	/** The encoded types. */
+	private final NameCache types = new NameCache(StatsdReporter::encode);
+
+	/** The encoded keys (as name suffix or tags). */
+	private final NameCache keys;
+
+	/** The writer that is reused between reports (guarded by this). */
+	private final ExpositionWriter writer = new ExpositionWriter(1024);
+
+	/** The snapshot of the previous report. */
+	private Snapshot previous;
+
+	/** The scheduler that runs this reporter (or null when not running). */
+	private volatile ReportingScheduler scheduler;
+
+	/**
+	 * Instantiates a new StatsD reporter.
+	 *
+	 * @param registry
+	 *            the registry
+	 * @param instanceName
+	 *            the instance name
+	 * @param address
+	 *            the address of the StatsD agent
+	 * @param maxPacketSize
+	 *            the maximum packet size
+	 * @param tags
+	 *            whether the host and key are sent as DogStatsD tags
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public StatsdReporter(MetricRegistry registry, String instanceName, InetSocketAddress address, int maxPacketSize,
+			boolean tags) throws IOException {
+		this.registry = registry;
+		this.instanceName = instanceName;
+		this.tags = tags;
+		this.channel = DatagramChannel.open();
+		this.channel.configureBlocking(false);
+		this.packets = new DatagramOutputStream(channel, address, maxPacketSize,
+				registry.counter("metrics.Reporter.DroppedPackets", "Statsd"),
+				registry.counter("metrics.Reporter.OversizedLines", "Statsd"));
+		if (tags) {
+			byte[] host = ("|#host:" + encodeTag(instanceName) + ",type_instance:").getBytes(StandardCharsets.UTF_8);
+			this.keys = new NameCache(key -> concat(host, encodeTag(key).getBytes(StandardCharsets.UTF_8)));
+		} else {
+			this.keys = new NameCache(key -> concat(new byte[] { '.' }, encode(key)));
+		}
+	}
+
+	/**
+	 * Instantiates a new StatsD reporter.
+	 *
+	 * @param registry
+	 *            the registry
+	 * @param instanceName
+	 *            the instance name
+	 * @param address
+	 *            the address of the StatsD agent
+	 * @param maxPacketSize
+	 *            the maximum packet size
+	 * @param tags
+	 *            whether the host and key are sent as DogStatsD tags
+	 * @param intervalInSeconds
+	 *            the interval in seconds
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public StatsdReporter(MetricRegistry registry, String instanceName, InetSocketAddress address, int maxPacketSize,
+			boolean tags, int intervalInSeconds) throws IOException {
+		this(registry, instanceName, address, maxPacketSize, tags);
+		run(intervalInSeconds);
+	}
+
+	/**
+	 * Report.
+	 *
+	 * @return true, if successful
+	 */
+	public boolean report() {
+		if (!registry.isEnabled()) {
+			return true;
+		}
+		return report(registry.snapshot());
+	}
+
+	/**
+	 * Report a snapshot. The snapshot becomes the previous snapshot also when
+	 * the report fails, as some packets may have been sent (the changes in
+	 * packets that are lost are not sent again, as they would be counted
+	 * twice when they did arrive).
+	 *
+	 * @param snapshot
+	 *            the snapshot
+	 * @return true, if successful
+	 */
+	@Override
+	public synchronized boolean report(Snapshot snapshot) {
+		try {
+			write(snapshot, previous);
+		} catch (IOException e) {
+			registry.counter(ReportingScheduler.ERRORS_TYPE, "StatsdReporter").increment();
+			return false;
+		} finally {
+			previous = snapshot;
+		}
+		return true;
+	}
+
+	/**
+	 * Write the metrics of a snapshot as StatsD lines, counters as the
+	 * (signed) change since the previous snapshot. The metrics of a type are
+	 * usually in the same order in both snapshots, so they are matched by
+	 * position and only looked up by key when they are not.
+	 *
+	 * @param snapshot
+	 *            the snapshot
+	 * @param previous
+	 *            the previous snapshot (or null)
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	private void write(Snapshot snapshot, Snapshot previous) throws IOException {
+		ExpositionWriter w = writer.reset(packets);
+		for (int t = 0; t < snapshot.getTypeCount(); t++) {
+			String typeStr = snapshot.getType(t);
+			byte[] type = types.get(typeStr);
+			int p = -1;
+			if (previous != null) {
+				p = t < previous.getTypeCount() && previous.getType(t).equals(typeStr) ? t
+						: previous.indexOfType(typeStr);
+			}
+			for (int i = snapshot.getStart(t); i < snapshot.getEnd(t); i++) {
+				String keyStr = snapshot.getKey(i);
+				byte[] key = keys.get(keyStr);
+				long value = snapshot.getValue(i);
+				if (!snapshot.isGauge(i) && p >= 0) {
+					int j = previous.getStart(p) + i - snapshot.getStart(t);
+					if (j >= previous.getEnd(p) || !previous.getKey(j).equals(keyStr)) {
+						j = previous.indexOf(typeStr, keyStr);
+					}
+					if (j >= 0) {
+						value -= previous.getValue(j);
+					}
+				}
+				if (snapshot.isGauge(i) || value != 0) {
+					writeLine(w, type, key, null, value, snapshot.isGauge(i) ? GAUGE : COUNTER);
+				}
+				if (snapshot.hasQuantiles(i)) {
+					for (int q = 0; q < Histogram.QUANTILES.length; q++) {
+						byte[] quantile = tags ? QUANTILE_TAGS[q] : QUANTILE_SUFFIXES[q];
+						writeLine(w, type, key, quantile, snapshot.getQuantile(i, q), GAUGE);
+					}
+				}
+			}
+		}
+		w.close();
+	}
+
+	/**
+	 * Write a line.
+	 *
+	 * @param w
+	 *            the writer
+	 * @param type
+	 *            the encoded type
+	 * @param key
+	 *            the encoded key
+	 * @param quantile
+	 *            the encoded quantile (or null)
+	 * @param value
+	 *            the value
+	 * @param kind
+	 *            the kind of metric (counter or gauge)
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	private void writeLine(ExpositionWriter w, byte[] type, byte[] key, byte[] quantile, long value, byte[] kind)
+			throws IOException {
+		w.write(type);
+		if (!tags) {
+			w.write(key);
+			if (quantile != null) {
+				w.write(quantile);
+			}
+		}
+		w.write((byte) ':');
+		w.write(value);
+		w.write(kind);
+		if (tags) {
+			w.write(key);
+			if (quantile != null) {
+				w.write(quantile);
+			}
+		}
+		w.write((byte) '\n');
+	}
+
+	/**
+	 * Encodes a name, replacing the characters that have a meaning in the
+	 * StatsD protocol (and whitespace) with an underscore.
+	 *
+	 * @param name
+	 *            the name
+	 * @return the encoded name
+	 */
+	private static byte[] encode(String name) {
+		return name.replaceAll("[:|@#,\\s]", "_").getBytes(StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Encodes a tag value, replacing the characters that have a meaning in the
+	 * DogStatsD protocol (and whitespace) with an underscore.
+	 *
+	 * @param value
+	 *            the value
+	 * @return the encoded tag value
+	 */
+	private static String encodeTag(String value) {
+		return value.replaceAll("[|@#,\\s]", "_");
+	}
+
+	/**
+	 * Concatenates two byte arrays.
+	 *
+	 * @param a
+	 *            the first array
+	 * @param b
+	 *            the second array
+	 * @return the concatenation
+	 */
+	private static byte[] concat(byte[] a, byte[] b) {
+		byte[] c = new byte[a.length + b.length];
+		System.arraycopy(a, 0, c, 0, a.length);
+		System.arraycopy(b, 0, c, a.length, b.length);
+		return c;
+	}
+
+	/**
+	 * Run, on the scheduler that is shared by the reporters of the registry
+	 * that run at the same interval (so they report the same snapshots).
+	 *
+	 * @param intervalInSeconds
+	 *            the interval in seconds
+	 */
+	public void run(int intervalInSeconds) {
+		scheduler = ReportingScheduler.addShared(registry, intervalInSeconds, this);
+	}
+
+	/**
+	 * Handler for shutdown of the scheduler and the channel.
+	 */
+	public void shutdown() {
+		ReportingScheduler scheduler = this.scheduler;
+		if (scheduler != null) {
+			scheduler.remove(this);
+		}
+		try {
+			channel.close();
+		} catch (IOException ignore) {
+			// ignore when channel cannot be closed
+		}
+	}
+}
@@ -0,0 +1,192 @@
+/* Copyright (C) 2017 Maurits van der Schee
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.tqdev.metrics.statsd;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.tqdev.metrics.core.MetricRegistry;
+
+/**
+ * The Class StatsdReporterTest.
+ */
+public class StatsdReporterTest {
+
+	/** The registry. */
+	protected MetricRegistry registry;
+
+	/** The local UDP listener. */
+	private DatagramSocket listener;
+
+	/** The reporter. */
+	private StatsdReporter reporter;
+
+	/**
+	 * Initialize.
+	 *
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	@Before
+	public void setUp() throws IOException {
+		registry = new MetricRegistry();
+		listener = new DatagramSocket(0, InetAddress.getLoopbackAddress());
+	}
+
+	/**
+	 * Cleanup.
+	 */
+	@After
+	public void tearDown() {
+		if (reporter != null) {
+			reporter.shutdown();
+		}
+		listener.close();
+	}
+
+	/**
+	 * Creates the reporter.
+	 *
+	 * @param tags
+	 *            whether DogStatsD tags are sent
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	private void createReporter(boolean tags) throws IOException {
+		reporter = new StatsdReporter(registry, "localhost",
+				new InetSocketAddress(InetAddress.getLoopbackAddress(), listener.getLocalPort()),
+				StatsdReporter.DEFAULT_MAX_PACKET_SIZE, tags);
+	}
+
+	/**
+	 * Receives the lines that are sent, until no packet arrives for 200
+	 * milliseconds.
+	 *
+	 * @return the lines
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	private List<String> receive() throws IOException {
+		List<String> lines = new ArrayList<>();
+		byte[] buffer = new byte[65536];
+		listener.setSoTimeout(200);
+		try {
+			while (true) {
+				DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+				listener.receive(packet);
+				String content = new String(packet.getData(), 0, packet.getLength(), StandardCharsets.UTF_8);
+				lines.addAll(Arrays.asList(content.split("\n")));
+			}
+		} catch (SocketTimeoutException e) {
+			return lines;
+		}
+	}
+
+	/**
+	 * Should send counter deltas.
+	 *
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	@Test
+	public void shouldSendCounterDeltas() throws IOException {
+		createReporter(false);
+		registry.add("jdbc.Statement.Duration", "select", 123);
+		assertThat(reporter.report()).isTrue();
+		assertThat(receive()).containsExactly("jdbc.Statement.Duration.select:123|c");
+		registry.add("jdbc.Statement.Duration", "select", 7);
+		assertThat(reporter.report()).isTrue();
+		assertThat(receive()).containsExactly("jdbc.Statement.Duration.select:7|c");
+		assertThat(reporter.report()).isTrue();
+		assertThat(receive()).isEmpty();
+	}
+
+	/**
+	 * Should send decreases as negative counter deltas.
+	 *
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	@Test
+	public void shouldSendNegativeCounterDeltas() throws IOException {
+		createReporter(false);
+		registry.add("jdbc.Statement.Duration", "select", 123);
+		registry.add("jdbc.Statement.Duration", "update", 5);
+		assertThat(reporter.report()).isTrue();
+		receive();
+		registry.add("jdbc.Statement.Duration", "select", -23);
+		registry.add("jdbc.Statement.Duration", "insert", 3);
+		assertThat(reporter.report()).isTrue();
+		assertThat(receive()).containsOnly("jdbc.Statement.Duration.select:-23|c",
+				"jdbc.Statement.Duration.insert:3|c");
+	}
+
+	/**
+	 * Should send gauges and quantiles.
+	 *
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	@Test
+	public void shouldSendGaugesAndQuantiles() throws IOException {
+		createReporter(false);
+		registry.set("jvm.Threads", "count", () -> 12);
+		registry.histogram("jdbc.Statement.Latency", "select a:b").record(123);
+		assertThat(reporter.report()).isTrue();
+		assertThat(receive()).containsOnly("jvm.Threads.count:12|g", "jdbc.Statement.Latency.select_a_b:1|c",
+				"jdbc.Statement.Latency.select_a_b.p50:127|g", "jdbc.Statement.Latency.select_a_b.p90:127|g",
+				"jdbc.Statement.Latency.select_a_b.p99:127|g", "jdbc.Statement.Latency.select_a_b.p999:127|g");
+		assertThat(reporter.report()).isTrue();
+		assertThat(receive()).containsOnly("jvm.Threads.count:12|g", "jdbc.Statement.Latency.select_a_b.p50:127|g",
+				"jdbc.Statement.Latency.select_a_b.p90:127|g", "jdbc.Statement.Latency.select_a_b.p99:127|g",
+				"jdbc.Statement.Latency.select_a_b.p999:127|g");
+	}
+
+	/**
+	 * Should send DogStatsD tags.
+	 *
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	@Test
+	public void shouldSendDogStatsdTags() throws IOException {
+		createReporter(true);
+		registry.add("jdbc.Statement.Duration", "select", 123);
+		registry.histogram("jdbc.Statement.Latency", "select").record(123);
+		assertThat(reporter.report()).isTrue();
+		assertThat(receive()).contains("jdbc.Statement.Duration:123|c|#host:localhost,type_instance:select",
+				"jdbc.Statement.Latency:127|g|#host:localhost,type_instance:select,quantile:0.99");
+	}
+}